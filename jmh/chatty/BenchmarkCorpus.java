@@ -0,0 +1,85 @@
+
+package chatty;
+
+import chatty.util.irc.ParsedMsg;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Access to the bundled corpus of chat lines (chat-corpus.txt) that the
+ * benchmarks run on. The corpus consists of raw IRC lines in the format Twitch
+ * sends them (PRIVMSG with all the usual tags, USERNOTICE, CLEARCHAT, PING),
+ * including emotes, Emoji, replies and repeated messages.
+ *
+ * @author tduva
+ */
+public class BenchmarkCorpus {
+
+    private static List<String> lines;
+
+    /**
+     * All raw IRC lines of the corpus.
+     *
+     * @return An unmodifiable List
+     */
+    public static synchronized List<String> getLines() {
+        if (lines == null) {
+            lines = Collections.unmodifiableList(load());
+        }
+        return lines;
+    }
+
+    /**
+     * The message text of all PRIVMSG lines of the corpus.
+     *
+     * @return A new List
+     */
+    public static List<String> getMessages() {
+        List<String> result = new ArrayList<>();
+        for (String line : getLines()) {
+            ParsedMsg p = ParsedMsg.parse(line);
+            if (p != null && p.getCommand().equals("PRIVMSG") && p.getParameters().has(1)) {
+                result.add(p.getParameters().get(1));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The corpus as received from the server, with "\r\n" line endings.
+     *
+     * @return The UTF-8 encoded data
+     */
+    public static byte[] getRawData() {
+        StringBuilder b = new StringBuilder();
+        for (String line : getLines()) {
+            b.append(line).append("\r\n");
+        }
+        return b.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> load() {
+        List<String> result = new ArrayList<>();
+        try (InputStream in = BenchmarkCorpus.class.getResourceAsStream("chat-corpus.txt");
+                BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    result.add(line);
+                }
+            }
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return result;
+    }
+
+}
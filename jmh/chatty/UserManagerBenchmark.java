@@ -0,0 +1,71 @@
+package chatty;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Looking up users in 50 channels from several threads at once, like messages
+ * from several connections being received while the GUI accesses the same
+ * users.
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Threads(8)
+public class UserManagerBenchmark {
+
+    private static final int NUM_CHANNELS = 50;
+    private static final int NUM_NAMES = 2000;
+
+    private UserManager userManager;
+    private Room[] rooms;
+    private String[] names;
+
+    @Setup
+    public void setup() {
+        userManager = new UserManager();
+        rooms = new Room[NUM_CHANNELS];
+        for (int i = 0; i < NUM_CHANNELS; i++) {
+            rooms[i] = Room.createRegular("#channel" + i);
+        }
+        names = new String[NUM_NAMES];
+        for (int i = 0; i < NUM_NAMES; i++) {
+            names[i] = "user" + i;
+        }
+        // Most lookups are for users that already exist
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < NUM_NAMES * 10; i++) {
+            userManager.getUser(rooms[random.nextInt(NUM_CHANNELS)], names[random.nextInt(NUM_NAMES)]);
+        }
+    }
+
+    @Benchmark
+    public User getUser() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return userManager.getUser(rooms[random.nextInt(NUM_CHANNELS)], names[random.nextInt(NUM_NAMES)]);
+    }
+
+    @Benchmark
+    public List<User> getUsersByName() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return userManager.getUsersByName(names[random.nextInt(NUM_NAMES)]);
+    }
+
+}
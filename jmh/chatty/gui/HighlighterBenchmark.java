@@ -0,0 +1,117 @@
+
+package chatty.gui;
+
+import chatty.Addressbook;
+import chatty.BenchmarkCorpus;
+import chatty.Room;
+import chatty.User;
+import chatty.util.irc.IrcBadges;
+import chatty.util.irc.MsgTags;
+import chatty.util.irc.ParsedMsg;
+import chatty.util.settings.Settings;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Checking all messages of the corpus against a typical list of Highlight
+ * items.
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class HighlighterBenchmark {
+
+    private static final String[] ITEMS = new String[]{
+        "tduva",
+        "w:pb",
+        "w:wr",
+        "cs:Kappa",
+        "start:!song",
+        "startw:!bet",
+        "text:clip",
+        "reg:\\b(pog|poggers)\\b",
+        "regw:split|splits",
+        "cat:vip text:hello",
+        "user:mod_man",
+        "chan:#speedrunner w:boss",
+        "config:b|vip/1 text:gg",
+        "config:firstmsg",
+        "blacklist:lol text:insane"
+    };
+
+    private List<Message> messages;
+    private Highlighter highlighter;
+    private Addressbook ab;
+
+    private static class Message {
+
+        final User user;
+        final String text;
+        final MsgTags tags;
+
+        Message(User user, String text, MsgTags tags) {
+            this.user = user;
+            this.text = text;
+            this.tags = tags;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        Settings settings = new Settings("", null);
+        settings.addBoolean("abSaveOnChange", false);
+        ab = new Addressbook(null, null, settings);
+        ab.add("vipperson", "vip");
+        ab.add("mod_man", "vip");
+        User.UserSettings userSettings = new User.UserSettings(100, null, ab, null);
+
+        highlighter = new Highlighter("benchmark");
+        highlighter.update(Arrays.asList(ITEMS));
+
+        Map<String, User> users = new HashMap<>();
+        messages = new ArrayList<>();
+        for (String line : BenchmarkCorpus.getLines()) {
+            ParsedMsg p = ParsedMsg.parse(line);
+            if (!p.getCommand().equals("PRIVMSG")) {
+                continue;
+            }
+            String channel = p.getParameters().get(0);
+            User user = users.computeIfAbsent(channel + p.getNick(), k -> {
+                User u = new User(p.getNick(), Room.createRegular(channel));
+                u.setUserSettings(userSettings);
+                return u;
+            });
+            user.setTwitchBadges(IrcBadges.parse(p.getTags().get("badges")));
+            messages.add(new Message(user, p.getParameters().get(1), p.getTags()));
+        }
+    }
+
+    @Benchmark
+    public void check(Blackhole bh) {
+        for (Message m : messages) {
+            bh.consume(highlighter.check(Highlighter.HighlightItem.Type.REGULAR,
+                    m.text, -1, -1, null, ab, m.user, null, m.tags, false));
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+
+package chatty.util;
+
+import chatty.BenchmarkCorpus;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Applying look-alike character substitutions (as used for Highlighting) to
+ * all messages of the corpus.
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class Replacer2Benchmark {
+
+    private List<String> messages;
+    private Replacer2 replacer;
+
+    @Setup
+    public void setup() {
+        messages = BenchmarkCorpus.getMessages();
+        replacer = Replacer2.create(Arrays.asList(new String[]{
+            "a а 𝒜 @ 4",
+            "e е 3",
+            "i і 1 !",
+            "o о 0 ()",
+            "s ѕ $ 5",
+            "t 7 +",
+            "hello hallo hellö"
+        }));
+    }
+
+    @Benchmark
+    public void replace(Blackhole bh) {
+        for (String message : messages) {
+            bh.consume(replacer.replace(message));
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+
+package chatty.util;
+
+import chatty.BenchmarkCorpus;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Similarity of each message to the previous messages in the corpus, like the
+ * repeated message detection compares a new message to a user's recent
+ * messages.
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class StringUtilBenchmark {
+
+    /**
+     * How many previous messages each message is compared to.
+     */
+    @Param({"20"})
+    public int history;
+
+    private List<String> messages;
+    private List<BigramFingerprint> fingerprints;
+
+    @Setup
+    public void setup() {
+        messages = BenchmarkCorpus.getMessages();
+        fingerprints = new ArrayList<>();
+        for (String message : messages) {
+            fingerprints.add(new BigramFingerprint(message));
+        }
+    }
+
+    @Benchmark
+    public void getSimilarity(Blackhole bh) {
+        for (int i = 0; i < messages.size(); i++) {
+            for (int j = Math.max(0, i - history); j < i; j++) {
+                bh.consume(StringUtil.getSimilarity(messages.get(i), messages.get(j)));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getSimilarity2(Blackhole bh) {
+        for (int i = 0; i < messages.size(); i++) {
+            for (int j = Math.max(0, i - history); j < i; j++) {
+                bh.consume(StringUtil.getSimilarity2(messages.get(i), messages.get(j)));
+            }
+        }
+    }
+
+    /**
+     * Like the repeated message detection, where the fingerprints of previous
+     * messages are cached.
+     */
+    @Benchmark
+    public void checkSimilarityCached(Blackhole bh) {
+        for (int i = 0; i < fingerprints.size(); i++) {
+            for (int j = Math.max(0, i - history); j < i; j++) {
+                bh.consume(BigramFingerprint.checkSimilarity(fingerprints.get(i), fingerprints.get(j), 0.8f, 1));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+package chatty.util.api;
+
+import chatty.BenchmarkCorpus;
+import chatty.gui.emoji.EmojiUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Finding Emoji in the messages of the corpus that may contain Emoji (the
+ * same check ChannelTextPane does first), once with the index and once
+ * checking every Emoji's regex (as done before the index).
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EmojiIndexBenchmark {
+
+    private List<String> messages;
+    private Set<Emoticon> emoji;
+    private EmoticonIndex index;
+
+    @Setup
+    public void setup() {
+        messages = new ArrayList<>();
+        for (String message : BenchmarkCorpus.getMessages()) {
+            if (EmojiUtil.mightContainEmoji(message)) {
+                messages.add(message);
+            }
+        }
+        emoji = EmojiUtil.makeEmoticons("twemoji");
+        index = new EmoticonIndex(emoji);
+    }
+
+    @Benchmark
+    public void index(Blackhole bh) {
+        for (String message : messages) {
+            index.find(message, e -> true, (emote, start, end) -> bh.consume(emote));
+        }
+    }
+
+    @Benchmark
+    public void regexPerEmoji(Blackhole bh) {
+        for (String message : messages) {
+            for (Emoticon emote : emoji) {
+                Matcher m = emote.getMatcher(message);
+                while (m.find()) {
+                    bh.consume(emote);
+                }
+            }
+        }
+    }
+
+}
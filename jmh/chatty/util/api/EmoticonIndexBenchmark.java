@@ -0,0 +1,89 @@
+
+package chatty.util.api;
+
+import chatty.BenchmarkCorpus;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Finding emotes in all messages of the corpus, the way ChannelTextPane does
+ * for every message, once with the index and once checking every emote's regex
+ * (as done before the index).
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EmoticonIndexBenchmark {
+
+    private static final String[] CORPUS_EMOTES = new String[]{
+        "catJAM", "KEKW", "OMEGALUL", "monkaS", "PepeLaugh", "Sadge", "EZ",
+        "Clap", "widepeepoHappy", "pepeD", "forsenE", "HYPERS"
+    };
+
+    /**
+     * Number of third-party emotes in the channel.
+     */
+    @Param({"100", "3000"})
+    public int emoteCount;
+
+    private List<String> messages;
+    private Set<Emoticon> emotes;
+    private EmoticonIndex index;
+
+    @Setup
+    public void setup() {
+        messages = BenchmarkCorpus.getMessages();
+        emotes = new HashSet<>();
+        for (String code : CORPUS_EMOTES) {
+            emotes.add(new Emoticon.Builder(Emoticon.Type.BTTV, code).setLiteral(true).build());
+        }
+        for (int i = emotes.size(); i < emoteCount; i++) {
+            Emoticon.Type type = i % 2 == 0 ? Emoticon.Type.SEVENTV : Emoticon.Type.FFZ;
+            emotes.add(new Emoticon.Builder(type, "emote" + i).setLiteral(type == Emoticon.Type.SEVENTV).build());
+        }
+        // Some smilies that still use regex
+        emotes.add(new Emoticon.Builder(Emoticon.Type.TWITCH, ":)").build());
+        emotes.add(new Emoticon.Builder(Emoticon.Type.TWITCH, "B)").build());
+        index = new EmoticonIndex(emotes);
+    }
+
+    @Benchmark
+    public void index(Blackhole bh) {
+        for (String message : messages) {
+            index.find(message, e -> true, (emote, start, end) -> bh.consume(emote));
+        }
+    }
+
+    @Benchmark
+    public void regexPerEmote(Blackhole bh) {
+        for (String message : messages) {
+            for (Emoticon emote : emotes) {
+                Matcher m = emote.getMatcher(message);
+                while (m.find()) {
+                    bh.consume(emote);
+                }
+            }
+        }
+    }
+
+}
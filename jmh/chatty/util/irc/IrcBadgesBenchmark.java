@@ -0,0 +1,54 @@
+
+package chatty.util.irc;
+
+import chatty.BenchmarkCorpus;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing the "badges" and "badge-info" tags of all lines of the corpus.
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IrcBadgesBenchmark {
+
+    private List<String> badges;
+
+    @Setup
+    public void setup() {
+        badges = new ArrayList<>();
+        for (String line : BenchmarkCorpus.getLines()) {
+            ParsedMsg p = ParsedMsg.parse(line);
+            if (p.getTags().containsKey("badges")) {
+                badges.add(p.getTags().get("badges"));
+                badges.add(p.getTags().get("badge-info"));
+            }
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole bh) {
+        for (String data : badges) {
+            bh.consume(IrcBadges.parse(data));
+        }
+    }
+
+}
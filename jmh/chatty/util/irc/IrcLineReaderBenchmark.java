@@ -0,0 +1,87 @@
+
+package chatty.util.irc;
+
+import chatty.BenchmarkCorpus;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reading the corpus as a stream of received data (repeated a few times, to
+ * simulate a high-volume connection), compared to the per-character loop
+ * Connection used before.
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IrcLineReaderBenchmark {
+
+    @Param({"10"})
+    public int repeat;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        byte[] corpus = BenchmarkCorpus.getRawData();
+        data = new byte[corpus.length * repeat];
+        for (int i = 0; i < repeat; i++) {
+            System.arraycopy(corpus, 0, data, corpus.length * i, corpus.length);
+        }
+    }
+
+    @Benchmark
+    public void lineReader(Blackhole bh) throws IOException {
+        IrcLineReader reader = new IrcLineReader(new ByteArrayInputStream(data));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            bh.consume(line);
+        }
+    }
+
+    @Benchmark
+    public void perCharReader(Blackhole bh) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(data), StandardCharsets.UTF_8));
+        StringBuilder b = new StringBuilder();
+        boolean previousWasCR = false;
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\r') {
+                previousWasCR = true;
+            }
+            else if (c == '\n') {
+                if (previousWasCR) {
+                    bh.consume(b.toString());
+                    b.setLength(0);
+                    previousWasCR = false;
+                }
+            }
+            else {
+                b.append((char) c);
+                previousWasCR = false;
+            }
+        }
+    }
+
+}
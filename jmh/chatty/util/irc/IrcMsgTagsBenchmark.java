@@ -0,0 +1,76 @@
+
+package chatty.util.irc;
+
+import chatty.BenchmarkCorpus;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing the tags of all lines of the corpus.
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IrcMsgTagsBenchmark {
+
+    private List<String> tags;
+
+    @Setup
+    public void setup() {
+        tags = new ArrayList<>();
+        for (String line : BenchmarkCorpus.getLines()) {
+            if (line.startsWith("@")) {
+                tags.add(line.substring(1, line.indexOf(' ')));
+            }
+        }
+    }
+
+    @Benchmark
+    public void parseTags(Blackhole bh) {
+        for (String data : tags) {
+            bh.consume(IrcMsgTags.parseTags(data));
+        }
+    }
+
+    @Benchmark
+    public void parseTagsAndGet(Blackhole bh) {
+        for (String data : tags) {
+            Map<String, String> parsed = IrcMsgTags.parseTags(data);
+            bh.consume(parsed.get("id"));
+            bh.consume(parsed.get("emotes"));
+            bh.consume(parsed.get("badges"));
+        }
+    }
+
+    /**
+     * Operations that need all entries.
+     *
+     * @param bh
+     */
+    @Benchmark
+    public void parseTagsAndIterate(Blackhole bh) {
+        for (String data : tags) {
+            MsgTags parsed = MsgTags.parse(data);
+            bh.consume(parsed.keys());
+        }
+    }
+
+}
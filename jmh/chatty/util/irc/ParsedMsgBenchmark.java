@@ -0,0 +1,63 @@
+
+package chatty.util.irc;
+
+import chatty.BenchmarkCorpus;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing all lines of the corpus, as done for every received line.
+ *
+ * @author tduva
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ParsedMsgBenchmark {
+
+    private List<String> lines;
+
+    @Setup
+    public void setup() {
+        lines = BenchmarkCorpus.getLines();
+    }
+
+    @Benchmark
+    public void parse(Blackhole bh) {
+        for (String line : lines) {
+            bh.consume(ParsedMsg.parse(line));
+        }
+    }
+
+    /**
+     * Parse and access the tags that are used for most messages.
+     *
+     * @param bh
+     */
+    @Benchmark
+    public void parseAndReadCommonTags(Blackhole bh) {
+        for (String line : lines) {
+            ParsedMsg p = ParsedMsg.parse(line);
+            MsgTags tags = p.getTags();
+            bh.consume(tags.getId());
+            bh.consume(tags.getRawEmotes());
+            bh.consume(tags.get("badges"));
+            bh.consume(tags.get("display-name"));
+        }
+    }
+
+}
@@ -4,8 +4,9 @@ package chatty;
 import static chatty.Irc.SSL_ERROR;
 import chatty.util.DateTime;
 import chatty.util.Debugging;
-import chatty.util.RingBuffer;
+import chatty.util.StampedRingBuffer;
 import chatty.util.StringUtil;
+import chatty.util.irc.IrcLineReader;
 import java.io.*;
 import java.net.InetSocketAddress;
 import java.net.Socket;
@@ -29,12 +30,16 @@ public class Connection implements Runnable {
     
     private final InetSocketAddress address;
     private final Irc irc;
-    private final RingBuffer<Msg> debugBuffer = new RingBuffer<>(20);
+    /**
+     * Recently received/sent lines, the stamp is the time with the lowest bit
+     * set for sent lines.
+     */
+    private final StampedRingBuffer<String> debugBuffer = new StampedRingBuffer<>(20);
     private int debugCounter = -1;
     
     private Socket socket;
     private PrintWriter out;
-    private BufferedReader in;
+    private InputStream in;
     private boolean connected = false;
     
     private int disconnectReason = -1;
@@ -104,9 +109,7 @@ public class Connection implements Runnable {
             out = new PrintWriter(
                     new OutputStreamWriter(socket.getOutputStream(),charset)
                     );
-            in = new BufferedReader(
-                    new InputStreamReader(socket.getInputStream(),charset)
-                );
+            in = socket.getInputStream();
             socket.setSoTimeout(SOCKET_BLOCK_TIMEOUT);
         } catch (UnknownHostException ex) {
             irc.disconnected(Irc.ERROR_UNKNOWN_HOST);
@@ -128,48 +131,24 @@ public class Connection implements Runnable {
         connected = true;
         irc.connected(socket.getInetAddress().toString(),address.getPort());
         
-        StringBuilder b = new StringBuilder();
-        boolean previousWasCR = false;
-        String receivedLine = null;
+        IrcLineReader reader = new IrcLineReader(in);
         while (true) {
             try {
                 /**
                  * Read line ending with \r\n (blocks, but has a timeout set).
                  * 
                  * This also filters \r and \n characters from the parsed
-                 * messages, because they are not added to the buffer.
+                 * messages, because they are not added to the line.
                  */
-                int c = in.read();
-                if (c == -1) {
+                String receivedLine = reader.readLine();
+                if (receivedLine == null) {
                     // End of stream
                     break;
                 }
-                if (c == '\r') {
-                    previousWasCR = true;
-                    //System.out.print("\\r");
-                } else if (c == '\n') {
-                    //System.out.println("\\n");
-                    if (previousWasCR) {
-                        // Take buffer as line and reset
-                        receivedLine = b.toString();
-                        b.setLength(0);
-                        previousWasCR = false;
-                    }
-                } else {
-                    b.append((char)c);
-                    previousWasCR = false;
-                    //System.out.print((char)c);
-                }
-                
-                if (receivedLine == null) {
-                    // Read more characters to get to end of line
-                    continue;
-                }
                 
                 // Line was received
-                debugBuffer.add(new Msg(System.currentTimeMillis(), receivedLine, false));
+                debugBuffer.add(debugStamp(false), receivedLine);
                 irc.received(receivedLine);
-                receivedLine = null;
                 activity();
             } catch (SocketTimeoutException ex) {
                 checkConnection();
@@ -251,14 +230,17 @@ public class Connection implements Runnable {
      */
     synchronized public void send(String data) {
         data = StringUtil.removeLinebreakCharacters(data);
-        debugBuffer.add(new Msg(System.currentTimeMillis(), data, true));
+        debugBuffer.add(debugStamp(true), data);
         irc.sent(data);
         out.print(data+"\r\n");
         out.flush();
     }
     
+    private static long debugStamp(boolean sent) {
+        return System.currentTimeMillis() << 1 | (sent ? 1 : 0);
+    }
+    
     public void debug() {
-        List<Msg> recent = debugBuffer.getItems();
         StringBuilder b = new StringBuilder();
         b.append(idPrefix);
         b.append(address);
@@ -268,14 +250,14 @@ public class Connection implements Runnable {
         b.append(" / Check count: ");
         b.append(connectionCheckedCount).append("/").append(PING_AFTER_CHECKS);
         b.append("\n");
-        for (Msg msg : recent) {
-            b.append(DateTime.formatExact(msg.time));
+        debugBuffer.forEach((stamp, raw) -> {
+            b.append(DateTime.formatExact(stamp >> 1));
             b.append(" ");
-            if (msg.sent) {
+            if ((stamp & 1) == 1) {
                 b.append("<<< ");
             }
-            b.append(filterToken(msg.raw)).append("\n");
-        }
+            b.append(filterToken(raw)).append("\n");
+        });
         LOGGER.info(b.toString());
     }
     
@@ -286,17 +268,4 @@ public class Connection implements Runnable {
         return msg;
     }
     
-    private static class Msg {
-        
-        public final long time;
-        public final String raw;
-        public final boolean sent;
-        
-        public Msg(long time, String raw, boolean sent) {
-            this.time = time;
-            this.raw = raw;
-            this.sent = sent;
-        }
-    }
-    
 }
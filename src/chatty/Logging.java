@@ -3,6 +3,7 @@ package chatty;
 
 import chatty.Chatty.PathType;
 import chatty.gui.laf.LaFChanger;
+import chatty.util.RawRecorder;
 import chatty.util.RingBuffer;
 import java.io.File;
 import java.io.IOException;
@@ -24,8 +25,6 @@ public class Logging {
     public static final Level USERINFO = new UserinfoLevel();
     
     private static final String LOG_FILE = Chatty.getPath(PathType.DEBUG).toString()+File.separator+"debug%g.log";
-    private static final String LOG_FILE_IRC = Chatty.getPath(PathType.DEBUG).toString()+File.separator+"debug_irc%g.log";
-    private static final String LOG_FILE_EVENTSUB = Chatty.getPath(PathType.DEBUG).toString()+File.separator+"debug_eventsub%g.log";
     
     /**
      * Maximum log file size in bytes.
@@ -37,11 +36,22 @@ public class Logging {
      */
     private static final int MAX_LOG_FILES = 3;
     
+    /**
+     * Maximum size in bytes for the raw IRC/EventSub logs.
+     */
+    private static final int MAX_RAW_LOG_SIZE = MAX_LOG_SIZE * 4;
+    
+    /**
+     * Lines waiting to be written to a raw log, before further lines are
+     * dropped.
+     */
+    private static final int RAW_LOG_QUEUE_CAPACITY = 20000;
+    
     private final RingBuffer<LogRecord> lastMessages = new RingBuffer<>(8);
     
     private static TwitchClient client;
     
-    private static Logger LOGGER_EVENTSUB;
+    private static RawRecorder eventSubRecorder;
     
     public Logging(final TwitchClient client) {
         Logging.client = client;
@@ -91,7 +101,7 @@ public class Logging {
                     if (record.getMessage().startsWith("[EventSub]")
                             || record.getMessage().contains("https://api.twitch.tv/helix/eventsub/subscriptions")) {
                         client.debugEventSub(record.getMessage());
-                        LOGGER_EVENTSUB.info(record.getMessage());
+                        logEventSub(record.getMessage());
                     }
                 }
                 if (record.getLevel() == Level.SEVERE) {
@@ -123,7 +133,7 @@ public class Logging {
         guiHandler.setLevel(Level.INFO);
         Logger.getLogger("").addHandler(guiHandler);
         
-        createEventSubLogger();
+        createEventSubRecorder();
     }
     
     /**
@@ -206,42 +216,40 @@ public class Logging {
         
     }
     
-    private static void createEventSubLogger() {
-        LOGGER_EVENTSUB = Logger.getLogger(Logging.class.getName() + "EVENTSUB");
-        LOGGER_EVENTSUB.setUseParentHandlers(false);
-        FileHandler handler = getExtraFileHandler(LOG_FILE_EVENTSUB);
-        if (handler != null) {
-            LOGGER_EVENTSUB.addHandler(handler);
-        }
+    private static void createEventSubRecorder() {
+        eventSubRecorder = createRawRecorder("debug_eventsub", false);
     }
     
     public static void logEventSub(String line) {
-        LOGGER_EVENTSUB.info(line);
+        if (eventSubRecorder != null) {
+            eventSubRecorder.add(RawRecorder.Type.INFO, line);
+        }
     }
     
-    public static FileHandler getIrcFileHandler() {
-        return getExtraFileHandler(LOG_FILE_IRC);
+    /**
+     * Create and start a recorder for raw lines in the debug directory,
+     * rotating through two files.
+     * 
+     * @param name The name of the files (without number and extension)
+     * @param compressed Whether to write compressed binary files
+     * @return The recorder
+     */
+    public static RawRecorder createRawRecorder(String name, boolean compressed) {
+        createLogDir();
+        RawRecorder recorder = new RawRecorder(Chatty.getPath(PathType.DEBUG),
+                name, compressed, MAX_RAW_LOG_SIZE, 2, RAW_LOG_QUEUE_CAPACITY);
+        recorder.start();
+        return recorder;
     }
     
-    public static FileHandler getExtraFileHandler(String path) {
-        createLogDir();
-        try {
-            FileHandler file = new FileHandler(path, MAX_LOG_SIZE * 4, 2, true);
-            file.setFormatter(new Formatter() {
-
-                @Override
-                public String format(LogRecord record) {
-                    return String.format("[%1$tF %1$tT/%1$tL] %2$s\n",
-                            new Date(record.getMillis()),
-                            record.getMessage());
-                }
-            });
-            file.setLevel(Level.INFO);
-            return file;
-        } catch (IOException | SecurityException ex) {
-            fileWarning(ex);
+    /**
+     * Write remaining lines of the EventSub log, should be called when
+     * exiting.
+     */
+    public static void closeRawRecorders() {
+        if (eventSubRecorder != null) {
+            eventSubRecorder.close();
         }
-        return null;
     }
     
     public static void createLogDir() {
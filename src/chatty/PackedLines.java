@@ -0,0 +1,377 @@
+
+package chatty;
+
+import chatty.User.Message;
+import chatty.User.TextMessage;
+import chatty.util.BigramFingerprint;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Stores the lines of a User with less memory usage than a list of Message
+ * objects. Regular chat messages (which make up most lines) are not stored as
+ * objects, but packed into arrays: The text as UTF-8 in a byte array shared
+ * by all lines of the user and the message id as two longs (if it's a UUID,
+ * which it usually is). Other types of lines are stored as they are.
+ *
+ * <p>Packed messages are turned back into TextMessage objects when retrieved,
+ * so this can be used like any other list, although some methods are provided
+ * to access some data without having to do that.</p>
+ *
+ * <p>Lines can only be added at the end and only the oldest line can be
+ * removed (with the max size given). Not thread-safe, the User lock must be
+ * held.</p>
+ *
+ * @author tduva
+ */
+class PackedLines extends AbstractList<Message> {
+
+    private static final byte PACKED = 1;
+    private static final byte ACTION = 2;
+    private static final byte UUID_ID = 4;
+
+    private static final int MIN_TEXT_CAPACITY = 64;
+
+    private final int maxSize;
+
+    // Ring buffer, with the oldest line at head
+    private int head;
+    private int size;
+    private long[] times;
+    private byte[] flags;
+    private int[] textOffsets;
+    private int[] textLengths;
+    private long[] idsMost;
+    private long[] idsLeast;
+
+    /**
+     * For lines that are not packed the Message, otherwise the id if it isn't
+     * stored as UUID.
+     */
+    private Object[] objects;
+
+    /**
+     * Only created if necessary.
+     */
+    private BigramFingerprint[] fingerprints;
+
+    // Text data of all packed lines, in the order they were added
+    private byte[] text = new byte[0];
+    private int textEnd;
+
+    public PackedLines(int maxSize) {
+        this.maxSize = Math.max(maxSize, 1);
+        allocate(1);
+    }
+
+    private void allocate(int capacity) {
+        times = new long[capacity];
+        flags = new byte[capacity];
+        textOffsets = new int[capacity];
+        textLengths = new int[capacity];
+        idsMost = new long[capacity];
+        idsLeast = new long[capacity];
+        objects = new Object[capacity];
+    }
+
+    private int index(int i) {
+        return (head + i) % times.length;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index: "+i+", Size: "+size);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Message get(int i) {
+        checkIndex(i);
+        int index = index(i);
+        if ((flags[index] & PACKED) == 0) {
+            return (Message) objects[index];
+        }
+        TextMessage msg = new TextMessage(times[index], getText(index),
+                (flags[index] & ACTION) != 0, getId(index), null);
+        if (fingerprints != null) {
+            msg.fingerprint = fingerprints[index];
+        }
+        return msg;
+    }
+
+    /**
+     * Get the time of the line, without creating a Message object.
+     *
+     * @param i The index of the line
+     * @return The time of the line
+     */
+    public long getTime(int i) {
+        checkIndex(i);
+        int index = index(i);
+        if ((flags[index] & PACKED) == 0) {
+            return ((Message) objects[index]).getTime();
+        }
+        return times[index];
+    }
+
+    /**
+     * Find a TextMessage with the given id, without creating Message objects
+     * for the other lines.
+     *
+     * @param msgId The id (must not be null)
+     * @return The index, or -1 if none was found
+     */
+    public int indexOfTextMessage(String msgId) {
+        UUID uuid = parseId(msgId);
+        for (int i = 0; i < size; i++) {
+            int index = index(i);
+            byte f = flags[index];
+            if ((f & PACKED) == 0) {
+                if (objects[index] instanceof TextMessage
+                        && msgId.equals(((TextMessage) objects[index]).id)) {
+                    return i;
+                }
+            }
+            else if ((f & UUID_ID) != 0) {
+                if (uuid != null
+                        && idsMost[index] == uuid.getMostSignificantBits()
+                        && idsLeast[index] == uuid.getLeastSignificantBits()) {
+                    return i;
+                }
+            }
+            else if (msgId.equals(objects[index])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Cache the fingerprint of the text of a packed message, since the
+     * TextMessage is created again every time.
+     *
+     * @param i The index of the line
+     * @param fingerprint The fingerprint
+     */
+    public void setFingerprint(int i, BigramFingerprint fingerprint) {
+        checkIndex(i);
+        int index = index(i);
+        if ((flags[index] & PACKED) == 0) {
+            return;
+        }
+        if (fingerprints == null) {
+            fingerprints = new BigramFingerprint[times.length];
+        }
+        fingerprints[index] = fingerprint;
+    }
+
+    @Override
+    public void add(int i, Message line) {
+        if (i != size) {
+            throw new UnsupportedOperationException("Can only add at the end");
+        }
+        if (size == maxSize) {
+            removeOldest();
+        }
+        if (size == times.length) {
+            grow();
+        }
+        int index = index(size);
+        size++;
+        modCount++;
+        setInternal(index, line);
+    }
+
+    @Override
+    public Message set(int i, Message line) {
+        Message previous = get(i);
+        int index = index(i);
+        clearInternal(index);
+        setInternal(index, line);
+        return previous;
+    }
+
+    @Override
+    public Message remove(int i) {
+        if (i != 0) {
+            throw new UnsupportedOperationException("Can only remove the oldest line");
+        }
+        Message previous = get(0);
+        removeOldest();
+        return previous;
+    }
+
+    private void removeOldest() {
+        clearInternal(head);
+        head = index(1);
+        size--;
+        modCount++;
+    }
+
+    private void setInternal(int index, Message line) {
+        if (line.getClass() == TextMessage.class
+                && ((TextMessage) line).lowTrust == null) {
+            TextMessage msg = (TextMessage) line;
+            byte f = PACKED;
+            if (msg.action) {
+                f |= ACTION;
+            }
+            UUID uuid = parseId(msg.id);
+            if (uuid != null) {
+                f |= UUID_ID;
+                idsMost[index] = uuid.getMostSignificantBits();
+                idsLeast[index] = uuid.getLeastSignificantBits();
+            }
+            else {
+                objects[index] = msg.id;
+            }
+            flags[index] = f;
+            times[index] = msg.getTime();
+            addText(index, msg.text);
+            if (fingerprints != null) {
+                fingerprints[index] = msg.fingerprint;
+            }
+        }
+        else {
+            flags[index] = 0;
+            objects[index] = line;
+        }
+    }
+
+    private void clearInternal(int index) {
+        objects[index] = null;
+        textLengths[index] = 0;
+        if (fingerprints != null) {
+            fingerprints[index] = null;
+        }
+    }
+
+    /**
+     * Increase the capacity, moving the oldest line to index 0.
+     */
+    private void grow() {
+        int capacity = Math.min(Math.max(times.length * 2, 4), maxSize);
+        long[] oldTimes = times;
+        byte[] oldFlags = flags;
+        int[] oldTextOffsets = textOffsets;
+        int[] oldTextLengths = textLengths;
+        long[] oldIdsMost = idsMost;
+        long[] oldIdsLeast = idsLeast;
+        Object[] oldObjects = objects;
+        BigramFingerprint[] oldFingerprints = fingerprints;
+        allocate(capacity);
+        if (oldFingerprints != null) {
+            fingerprints = new BigramFingerprint[capacity];
+        }
+        for (int i = 0; i < size; i++) {
+            int from = (head + i) % oldTimes.length;
+            times[i] = oldTimes[from];
+            flags[i] = oldFlags[from];
+            textOffsets[i] = oldTextOffsets[from];
+            textLengths[i] = oldTextLengths[from];
+            idsMost[i] = oldIdsMost[from];
+            idsLeast[i] = oldIdsLeast[from];
+            objects[i] = oldObjects[from];
+            if (oldFingerprints != null) {
+                fingerprints[i] = oldFingerprints[from];
+            }
+        }
+        head = 0;
+    }
+
+    //======
+    // Text
+    //======
+
+    private void addText(int index, String value) {
+        if (value == null) {
+            textLengths[index] = -1;
+            return;
+        }
+        byte[] data = value.getBytes(StandardCharsets.UTF_8);
+        if (textEnd + data.length > text.length) {
+            compactText(data.length);
+        }
+        System.arraycopy(data, 0, text, textEnd, data.length);
+        textOffsets[index] = textEnd;
+        textLengths[index] = data.length;
+        textEnd += data.length;
+    }
+
+    /**
+     * Remove the text of lines that have been removed, making sure there is
+     * enough space for adding the given number of bytes.
+     *
+     * @param required The number of bytes that will be added
+     */
+    private void compactText(int required) {
+        int used = 0;
+        for (int i = 0; i < size; i++) {
+            used += Math.max(textLengths[index(i)], 0);
+        }
+        // May also shrink it, if a lot of space was unused
+        byte[] result = new byte[Math.max((used + required) * 3 / 2, MIN_TEXT_CAPACITY)];
+        int pos = 0;
+        for (int i = 0; i < size; i++) {
+            int index = index(i);
+            int length = textLengths[index];
+            if (length >= 0) {
+                System.arraycopy(text, textOffsets[index], result, pos, length);
+                textOffsets[index] = pos;
+                pos += length;
+            }
+        }
+        text = result;
+        textEnd = pos;
+    }
+
+    private String getText(int index) {
+        int length = textLengths[index];
+        if (length == -1) {
+            return null;
+        }
+        return new String(text, textOffsets[index], length, StandardCharsets.UTF_8);
+    }
+
+    //=====
+    // Id
+    //=====
+
+    private String getId(int index) {
+        if ((flags[index] & UUID_ID) != 0) {
+            return new UUID(idsMost[index], idsLeast[index]).toString();
+        }
+        return (String) objects[index];
+    }
+
+    /**
+     * Parse the id as UUID, but only if turning it back into a String results
+     * in the same id.
+     *
+     * @param id
+     * @return The UUID, or null if not a UUID in the expected format
+     */
+    private static UUID parseId(String id) {
+        if (id == null || id.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(id);
+            if (Objects.equals(uuid.toString(), id)) {
+                return uuid;
+            }
+        }
+        catch (IllegalArgumentException ex) {
+            // Not a UUID
+        }
+        return null;
+    }
+
+}
@@ -112,6 +112,7 @@ public class SettingsManager {
         settings.addLong("autoSaveSettings", 15);
         settings.addBoolean("debugLogIrc", false);
         settings.addBoolean("debugLogIrcFile", false);
+        settings.addBoolean("debugLogIrcFileCompressed", false);
         settings.addString("ignoreError", "");
         settings.addBoolean("autoRequestMods", false);
         
@@ -269,6 +270,7 @@ public class SettingsManager {
         settings.addLong("animationPause", 2);
         settings.addLong("animationPauseFrame", 2);
         settings.addBoolean("legacyAnimations", false);
+        settings.addLong("animationFrameCache", 32);
         settings.addList("ignoredEmotes", new ArrayList(), Setting.STRING);
         settings.addList("favoriteEmotes", new ArrayList(), Setting.LIST);
         settings.addLong("smilies", 10);
@@ -296,6 +298,7 @@ public class SettingsManager {
                 Setting.STRING);
         
         settings.addBoolean("imageCache", true);
+        settings.addBoolean("imageCachePack", false);
         
         // Colors
         settings.addString("foregroundColor","#111111");
@@ -389,6 +392,7 @@ public class SettingsManager {
         settings.addMap("userNotes", new HashMap(), Setting.STRING);
         settings.addMap("userNotesChat", new HashMap(), Setting.STRING);
         settings.addLong("userDialogMessageLimit", 100);
+        settings.addBoolean("userMessagesPacked", false);
 
         // History / Favorites
         settings.addMap("channelHistory",new TreeMap(), Setting.LONG);
@@ -534,6 +538,7 @@ public class SettingsManager {
         settings.addBoolean("inputEnabled", true);
         settings.addLong("bufferSize", 500);
         settings.addMap("bufferSizes", new HashMap<>(), Setting.LONG);
+        settings.addLong("scrollbackSize", 0);
         settings.addBoolean("chatInsertTop", false);
 
         settings.addString("liveStreamsSorting", "recent");
@@ -741,6 +746,9 @@ public class SettingsManager {
         settings.addBoolean("logSubdirectories", false);
         settings.addString("logTimestamp", "[yyyy-MM-dd HH:mm:ss]");
         settings.addBoolean("logLockFiles", true);
+        // Max delay in ms before written lines are flushed (0 = each batch)
+        settings.addLong("logFlushDelay", 0);
+        settings.addLong("logFlushLines", 500);
         
         // TAB Completion
         settings.addBoolean("completionEnabled", true);
@@ -21,6 +21,7 @@ import chatty.util.api.ChannelInfo;
 import chatty.util.api.TwitchApi;
 import chatty.WhisperManager.WhisperListener;
 import chatty.gui.GuiUtil;
+import chatty.gui.HighlightContext;
 import chatty.gui.Highlighter;
 import chatty.gui.laf.LaF;
 import chatty.gui.laf.LaF.LaFSettings;
@@ -38,6 +39,7 @@ import chatty.util.BatchAction;
 import chatty.util.BotNameManager;
 import chatty.util.DateTime;
 import chatty.util.Debugging;
+import chatty.util.gif.DecodedFrameCache;
 import chatty.util.EmoticonListener;
 import chatty.util.IconManager;
 import chatty.util.ffz.FrankerFaceZ;
@@ -52,6 +54,7 @@ import chatty.util.OtherBadges;
 import chatty.util.ProcessManager;
 import chatty.util.Pronouns;
 import chatty.util.RawMessageTest;
+import chatty.util.RawRecorder;
 import chatty.util.ReplyManager;
 import chatty.util.Sound;
 import chatty.util.Speedruncom;
@@ -74,6 +77,7 @@ import chatty.util.api.EmoticonUpdate;
 import chatty.util.api.Emoticons;
 import chatty.util.api.Follower;
 import chatty.util.api.FollowerInfo;
+import chatty.util.api.ImageLoader;
 import chatty.util.api.ResultManager;
 import chatty.util.api.ResultManager.CreateClipResult;
 import chatty.util.api.StreamCategory;
@@ -117,7 +121,6 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
-import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.swing.JOptionPane;
@@ -329,6 +332,7 @@ public class TwitchClient {
         
         ImageCache.setDefaultPath(Chatty.getPathCreate(PathType.CACHE).resolve("img"));
         ImageCache.setCachingEnabled(settings.getBoolean("imageCache"));
+        ImageCache.setPackEnabled(settings.getBoolean("imageCachePack"));
         ImageCache.deleteExpiredFiles();
         EmoticonSizeCache.loadFromFile();
 
@@ -364,6 +368,7 @@ public class TwitchClient {
         c = new TwitchConnection(new Messages(), settings, "main", roomManager);
         c.setUserSettings(new User.UserSettings(
                 settings.getInt("userDialogMessageLimit"),
+                settings.getBoolean("userMessagesPacked"),
                 usercolorManager, addressbook, usericonManager));
         c.setCustomNamesManager(customNames);
         c.setBotNameManager(botNameManager);
@@ -2007,6 +2012,16 @@ public class TwitchClient {
                 return;
             } else if (parameter.startsWith("file ")) {
                 RawMessageTest.simulateFile(c, parameter.substring("file ".length()));
+            } else if (parameter.startsWith("replay ")) {
+                String[] split = parameter.substring("replay ".length()).split(" ");
+                double speed = 1;
+                if (split.length > 1) {
+                    try {
+                        speed = Double.parseDouble(split[1]);
+                    } catch (NumberFormatException ex) { }
+                }
+                RawMessageTest.replayFile(c, split[0], speed);
+                return;
             }
             String raw = RawMessageTest.simulateIRC(channel, parameter, c.getUsername());
             if (raw != null) {
@@ -2091,6 +2106,14 @@ public class TwitchClient {
             }
         } else if (command.equals("threadinfo")) {
             LogUtil.logThreadInfo();
+        } else if (command.equals("framecache")) {
+            g.printLine(room, DecodedFrameCache.getStats());
+        } else if (command.equals("imageloader")) {
+            g.printLine(room, ImageLoader.get().getStats());
+        } else if (command.equals("highlightstats")) {
+            g.printLine(room, HighlightContext.getStats());
+        } else if (command.equals("apistats")) {
+            g.printSystemMultline(room, api.getRequestStats());
         } else if (command.equals("addusers")) {
             String[] split = parameter.split(" ", 2);
             int amount = Integer.parseInt(split[0]);
@@ -3398,6 +3421,8 @@ public class TwitchClient {
         eventSub.disconnect();
         g.cleanUp();
         chatLog.close();
+        ircLogger.close();
+        Logging.closeRawRecorders();
         System.exit(0);
     }
     
@@ -3889,22 +3914,17 @@ public class TwitchClient {
     
     private class IrcLogger {
         
-        private final Logger IRC_LOGGER = Logger.getLogger(TwitchClient.IrcLogger.class.getName());
-        
-        IrcLogger() {
-            IRC_LOGGER.setUseParentHandlers(false);
-            FileHandler handler = Logging.getIrcFileHandler();
-            if (handler != null) {
-                IRC_LOGGER.addHandler(handler);
-            }
-        }
+        /**
+         * Only created once logging to file is enabled.
+         */
+        private volatile RawRecorder recorder;
         
         public void onRawReceived(String text) {
             if (settings.getBoolean("debugLogIrc")) {
                 g.printDebugIrc("--> " + text);
             }
             if (settings.getBoolean("debugLogIrcFile")) {
-                IRC_LOGGER.info("--> " + text);
+                getRecorder().add(RawRecorder.Type.RECEIVED, text);
             }
         }
         
@@ -3913,7 +3933,33 @@ public class TwitchClient {
                 g.printDebugIrc("<-- " + text);
             }
             if (settings.getBoolean("debugLogIrcFile")) {
-                IRC_LOGGER.info("<-- " + text);
+                getRecorder().add(RawRecorder.Type.SENT, text);
+            }
+        }
+        
+        private RawRecorder getRecorder() {
+            boolean compressed = settings.getBoolean("debugLogIrcFileCompressed");
+            RawRecorder current = recorder;
+            if (current == null || current.isCompressed() != compressed) {
+                synchronized (this) {
+                    current = recorder;
+                    if (current == null || current.isCompressed() != compressed) {
+                        if (current != null) {
+                            // Don't wait on the IRC thread
+                            current.close(false);
+                        }
+                        current = Logging.createRawRecorder("debug_irc", compressed);
+                        recorder = current;
+                    }
+                }
+            }
+            return current;
+        }
+        
+        public void close() {
+            RawRecorder current = recorder;
+            if (current != null) {
+                current.close();
             }
         }
         
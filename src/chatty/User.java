@@ -8,6 +8,7 @@ import chatty.util.api.usericons.UsericonManager;
 import chatty.util.colors.HtmlColors;
 import chatty.gui.NamedColor;
 import chatty.gui.components.textpane.ModLogInfo;
+import chatty.util.BigramFingerprint;
 import chatty.util.Debugging;
 import chatty.util.StringUtil;
 import chatty.util.api.eventsub.payloads.ModActionPayload;
@@ -122,6 +123,13 @@ public class User implements Comparable<User> {
     // Messages
     //==========
     private List<Message> lines;
+    
+    /**
+     * With packed lines enabled, lines are only packed once there are more
+     * than this, since packing has some overhead that isn't worth it for the
+     * many users that only have one or two lines.
+     */
+    private static final int MAX_UNPACKED_LINES = 4;
 
     private int numberOfMessages;
     private int numberOfLines;
@@ -585,6 +593,13 @@ public class User implements Comparable<User> {
         if (lines == null) {
             lines = new ArrayList<>(1);
         }
+        else if (userSettings.packedLines
+                && lines.size() == MAX_UNPACKED_LINES
+                && !(lines instanceof PackedLines)) {
+            List<Message> packed = new PackedLines(userSettings.maxLines);
+            packed.addAll(lines);
+            lines = packed;
+        }
         lines.add(line);
         if (lines.size() > userSettings.maxLines) {
             lines.remove(0);
@@ -609,7 +624,7 @@ public class User implements Comparable<User> {
         if (lines == null) {
             return 0;
         }
-        compareMsg = StringUtil.prepareForSimilarityComparison(compareMsg, ignoredChars);
+        BigramFingerprint compare = BigramFingerprint.prepare(compareMsg, ignoredChars);
         int result = 0;
         long checkUntilTime = System.currentTimeMillis() - timeframe * 1000;
         for (int i=lines.size() - 1; i>=0; i--) {
@@ -620,8 +635,11 @@ public class User implements Comparable<User> {
                     break;
                 }
                 if (msg.text.length() >= minLen) {
-                    String text = StringUtil.prepareForSimilarityComparison(msg.text, ignoredChars);
-                    if (StringUtil.checkSimilarity(compareMsg, text, minSimilarity, method) > 0) {
+                    BigramFingerprint text = msg.getFingerprint(ignoredChars);
+                    if (lines instanceof PackedLines) {
+                        ((PackedLines) lines).setFingerprint(i, text);
+                    }
+                    if (BigramFingerprint.checkSimilarity(compare, text, minSimilarity, method) > 0) {
                         result++;
                     }
                 }
@@ -686,6 +704,10 @@ public class User implements Comparable<User> {
         if (lines == null) {
             return null;
         }
+        if (lines instanceof PackedLines) {
+            int index = ((PackedLines) lines).indexOfTextMessage(msgId);
+            return index != -1 ? (TextMessage) lines.get(index) : null;
+        }
         for (Message msg : lines) {
             if (msg instanceof TextMessage) {
                 TextMessage textMsg = (TextMessage)msg;
@@ -773,6 +795,9 @@ public class User implements Comparable<User> {
     
     private long getLastLineTime() {
         if (lines != null && !lines.isEmpty()) {
+            if (lines instanceof PackedLines) {
+                return ((PackedLines) lines).getTime(lines.size() - 1);
+            }
             return lines.get(lines.size() - 1).time;
         }
         return -1;
@@ -1313,6 +1338,12 @@ public class User implements Comparable<User> {
         public final String id;
         public final SuspiciousMessagePayload lowTrust;
         
+        /**
+         * Cached for repeated message detection, only accessed while holding
+         * the lock of the User the message belongs to.
+         */
+        BigramFingerprint fingerprint;
+        
         public TextMessage(long time, String message, boolean action, String id, SuspiciousMessagePayload lowTrust) {
             super(time);
             this.text = message;
@@ -1329,6 +1360,20 @@ public class User implements Comparable<User> {
             return action;
         }
         
+        /**
+         * Get the fingerprint of the text for comparing similarity, which is
+         * only created once (unless the ignored chars change).
+         * 
+         * @param ignoredChars The sorted chars to ignore, may be null
+         * @return The fingerprint
+         */
+        private BigramFingerprint getFingerprint(char[] ignoredChars) {
+            if (fingerprint == null || !fingerprint.isPreparedWith(ignoredChars)) {
+                fingerprint = BigramFingerprint.prepare(text, ignoredChars);
+            }
+            return fingerprint;
+        }
+        
         public TextMessage addLowTrust(SuspiciousMessagePayload data) {
             return new TextMessage(getTime(), text, action, id, data);
         }
@@ -1648,16 +1693,33 @@ public class User implements Comparable<User> {
         public static final UserSettings EMPTY = new UserSettings(100, null, null, null);
         
         private final int maxLines;
+        private final boolean packedLines;
         private final UsercolorManager colorManager;
         private final Addressbook addressbook;
         private final UsericonManager iconManager;
         
         public UserSettings(int maxLines, UsercolorManager colorManager,
                             Addressbook addressbook, UsericonManager iconManager) {
+            this(maxLines, false, colorManager, addressbook, iconManager);
+        }
+        
+        /**
+         * 
+         * @param maxLines The max number of lines stored per user
+         * @param packedLines Store lines in a more compact way, using less
+         * memory but making accessing them a bit slower
+         * @param colorManager
+         * @param addressbook
+         * @param iconManager 
+         */
+        public UserSettings(int maxLines, boolean packedLines,
+                            UsercolorManager colorManager,
+                            Addressbook addressbook, UsericonManager iconManager) {
             if (maxLines < 0) {
                 maxLines = 100;
             }
             this.maxLines = maxLines;
+            this.packedLines = packedLines;
             this.colorManager = colorManager;
             this.addressbook = addressbook;
             this.iconManager = iconManager;
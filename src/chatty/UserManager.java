@@ -7,8 +7,8 @@ import chatty.util.api.usericons.UsericonManager;
 import chatty.util.BotNameManager;
 import chatty.util.StringUtil;
 import chatty.util.settings.Settings;
-import java.util.Map.Entry;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 /**
@@ -20,6 +20,12 @@ import java.util.logging.Logger;
  * Although it could be useful to add some caching again (e.g. for showing
  * user type in userlist before the user said something).
  * 
+ * <p>Since this is accessed for every message, getting existing users doesn't
+ * lock. Users are stored in a map per channel, with an additional index by
+ * username for looking up a user across all channels. Adding or removing
+ * users synchronizes on the map of the affected channel, so that the index
+ * stays consistent with the channel maps.</p>
+ * 
  * @author tduva
  */
 public class UserManager {
@@ -33,9 +39,20 @@ public class UserManager {
     private volatile String localUsername;
     public final User specialUser = new User("[specialUser]", Room.createRegular("[nochannel]"));
     
-    private final HashMap<String, HashMap<String, User>> users = new HashMap<>();
-    private final HashMap<String, String> cachedColors = new HashMap<>();
-    private boolean capitalizedNames = false;
+    /**
+     * Channel -> (username -> User). Channel maps are never removed, so that a
+     * map can't be replaced while a user is being added to it.
+     */
+    private final Map<String, Map<String, User>> users = new ConcurrentHashMap<>();
+    
+    /**
+     * Username -> (channel -> User), only modified while holding the lock of
+     * the channel map.
+     */
+    private final Map<String, Map<String, User>> usersByName = new ConcurrentHashMap<>();
+    
+    private final Map<String, String> cachedColors = new ConcurrentHashMap<>();
+    private volatile boolean capitalizedNames = false;
     
     private final User errorUser = new User("[Error]", Room.createRegular("#[error]"));
 
@@ -139,13 +156,19 @@ public class UserManager {
      * @param channel
      * @return 
      */
-    public synchronized HashMap<String, User> getUsersByChannel(String channel) {
-        HashMap<String, User> result = users.get(channel);
-        if (result == null) {
-            result = new HashMap<>();
-            users.put(channel, result);
-        }
-        return result;
+    public Map<String, User> getUsersByChannel(String channel) {
+        return users.computeIfAbsent(channelKey(channel), c -> new ConcurrentHashMap<>());
+    }
+    
+    /**
+     * The map doesn't allow null keys, which shouldn't occur anyway, but just
+     * in case.
+     * 
+     * @param channel
+     * @return 
+     */
+    private static String channelKey(String channel) {
+        return channel == null ? "" : channel;
     }
 
     /**
@@ -156,18 +179,12 @@ public class UserManager {
      * @param name The username to search for
      * @return The List of User-objects.
      */
-    public synchronized List<User> getUsersByName(String name) {
-        name = StringUtil.toLowerCase(name);
-        List<User> result = new ArrayList<>();
-        Iterator<HashMap<String, User>> it = users.values().iterator();
-        while (it.hasNext()) {
-            HashMap<String, User> channelUsers = it.next();
-            User user = channelUsers.get(name);
-            if (user != null) {
-                result.add(user);
-            }
+    public List<User> getUsersByName(String name) {
+        Map<String, User> channelUsers = usersByName.get(StringUtil.toLowerCase(name));
+        if (channelUsers == null) {
+            return new ArrayList<>();
         }
-        return result;
+        return new ArrayList<>(channelUsers.values());
     }
 
     /**
@@ -178,8 +195,15 @@ public class UserManager {
      * @param name
      * @return The {@code User} object or null if none exists
      */
-    public synchronized User getUserIfExists(String channel, String name) {
-        return getUsersByChannel(channel).get(name);
+    public User getUserIfExists(String channel, String name) {
+        if (name == null) {
+            return null;
+        }
+        Map<String, User> channelUsers = users.get(channelKey(channel));
+        if (channelUsers == null) {
+            return null;
+        }
+        return channelUsers.get(name);
     }
     
     /**
@@ -191,58 +215,81 @@ public class UserManager {
      * @return The matching User object
      * @see User
      */
-    public synchronized User getUser(Room room, String name) {
+    public User getUser(Room room, String name) {
         // Not sure if this makes sense
         if (name == null || name.isEmpty()) {
             return errorUser;
         }
         name = StringUtil.toLowerCase(name);
         User user = getUserIfExists(room.getChannel(), name);
-        if (user == null) {
-            // Capitalize name if enabled (might still be overwritten by setting
-            // displayNick from tags)
-            String capitalizedName = name;
-            if (capitalizedNames) {
-                capitalizedName = name.substring(0, 1).toUpperCase(Locale.ROOT) + name.substring(1);
+        if (user != null) {
+            return user;
+        }
+        Map<String, User> channelUsers = getUsersByChannel(room.getChannel());
+        synchronized (channelUsers) {
+            // Check again, may have been added while waiting for the lock
+            user = channelUsers.get(name);
+            if (user != null) {
+                return user;
             }
+            user = createUser(room, name);
+            channelUsers.put(name, user);
+            String channel = channelKey(room.getChannel());
+            User newUser = user;
+            // Atomic per name, since clear() may remove it concurrently
+            usersByName.compute(name, (n, byName) -> {
+                if (byName == null) {
+                    byName = new ConcurrentHashMap<>(4);
+                }
+                byName.put(channel, newUser);
+                return byName;
+            });
+        }
+        return user;
+    }
+    
+    private User createUser(Room room, String name) {
+        // Capitalize name if enabled (might still be overwritten by setting
+        // displayNick from tags)
+        String capitalizedName = name;
+        if (capitalizedNames) {
+            capitalizedName = name.substring(0, 1).toUpperCase(Locale.ROOT) + name.substring(1);
+        }
+        /**
+         * Use this constructor to provide the name already used for the map
+         * key, so that there aren't duplicate Strings (before it would
+         * lowercase the capitalized name in the User constructor).
+         */
+        User user = new User(name, capitalizedName, null, room);
+        user.setUserSettings(userSettings);
+        if (customNamesManager != null) {
+            user.setCustomNick(customNamesManager.getCustomName(name));
+        }
+        if (botNameManager != null && botNameManager.isBotName(room.getOwnerChannel(), name)) {
+            user.setBot(true);
+        }
+        // Initialize some values if present for this name
+        if (cachedColors.containsKey(name)) {
+            user.setColor(cachedColors.get(name));
+        }
+        if (name.equals(localUsername)) {
             /**
-             * Use this constructor to provide the name already used for the map
-             * key, so that there aren't duplicate Strings (before it would
-             * lowercase the capitalized name in the User constructor).
+             * Set initial data for local user that is globally valid. This
+             * data would have been received from the GLOBALUSERSTATE
+             * command which may not be send after every join or sent
+             * message.
              */
-            user = new User(name, capitalizedName, null, room);
-            user.setUserSettings(userSettings);
-            if (customNamesManager != null) {
-                user.setCustomNick(customNamesManager.getCustomName(name));
-            }
-            if (botNameManager != null && botNameManager.isBotName(room.getOwnerChannel(), name)) {
-                user.setBot(true);
+            user.setAdmin(specialUser.isAdmin());
+            user.setStaff(specialUser.isStaff());
+            user.setTurbo(specialUser.hasTurbo());
+            user.setId(specialUser.getId());
+            user.setLocalUser(true);
+            if (!specialUser.hasDefaultColor()) {
+                user.setColor(specialUser.getPlainColor());
             }
-            // Initialize some values if present for this name
-            if (cachedColors.containsKey(name)) {
-                user.setColor(cachedColors.get(name));
-            }
-            if (name.equals(localUsername)) {
-                /**
-                 * Set initial data for local user that is globally valid. This
-                 * data would have been received from the GLOBALUSERSTATE
-                 * command which may not be send after every join or sent
-                 * message.
-                 */
-                user.setAdmin(specialUser.isAdmin());
-                user.setStaff(specialUser.isStaff());
-                user.setTurbo(specialUser.hasTurbo());
-                user.setId(specialUser.getId());
-                user.setLocalUser(true);
-                if (!specialUser.hasDefaultColor()) {
-                    user.setColor(specialUser.getPlainColor());
-                }
-                if (specialUser.hasDisplayNickSet()) {
-                    user.setDisplayNick(specialUser.getDisplayNick());
-                }
+            if (specialUser.hasDisplayNickSet()) {
+                user.setDisplayNick(specialUser.getDisplayNick());
             }
-            // Put User into the map for the channel
-            getUsersByChannel(room.getChannel()).put(name, user);
         }
         return user;
     }
@@ -254,30 +301,21 @@ public class UserManager {
      * @param name The username to be searched for
      * @return A Map with channel->User association
      */
-    public synchronized HashMap<String,User> getChannelsAndUsersByUserName(String name) {
-        String lowercaseName = StringUtil.toLowerCase(name);
-        HashMap<String,User> result = new HashMap<>();
-        
-        Iterator<Entry<String, HashMap<String, User>>> it = users.entrySet().iterator();
-        while (it.hasNext()) {
-            Entry<String, HashMap<String, User>> channel = it.next();
-            
-            String channelName = channel.getKey();
-            HashMap<String,User> channelUsers = channel.getValue();
-            
-            User user = channelUsers.get(lowercaseName);
-            if (user != null) {
-                result.put(channelName,user);
-            }
+    public HashMap<String,User> getChannelsAndUsersByUserName(String name) {
+        Map<String, User> channelUsers = usersByName.get(StringUtil.toLowerCase(name));
+        if (channelUsers == null) {
+            return new HashMap<>();
         }
-        return result;
+        return new HashMap<>(channelUsers);
     }
     
     /**
      * Remove all users.
      */
-    public synchronized void clear() {
-        users.clear();
+    public void clear() {
+        for (String channel : users.keySet()) {
+            clear(channel);
+        }
     }
     
     /**
@@ -285,11 +323,23 @@ public class UserManager {
      * 
      * @param channel 
      */
-    public synchronized void clear(String channel) {
-        getUsersByChannel(channel).clear();
+    public void clear(String channel) {
+        Map<String, User> channelUsers = users.get(channelKey(channel));
+        if (channelUsers == null) {
+            return;
+        }
+        synchronized (channelUsers) {
+            for (String name : channelUsers.keySet()) {
+                usersByName.computeIfPresent(name, (n, byName) -> {
+                    byName.remove(channelKey(channel));
+                    return byName.isEmpty() ? null : byName;
+                });
+            }
+            channelUsers.clear();
+        }
     }
     
-    public synchronized void clearLinesOfInactiveUsers() {
+    public void clearLinesOfInactiveUsers() {
         if (settings == null) {
             return;
         }
@@ -314,7 +364,7 @@ public class UserManager {
      * @return The number of users affected (whether something actually changed
      * or not)
      */
-    public synchronized int clearLines(String channel, boolean messageNumberOnly) {
+    public int clearLines(String channel, boolean messageNumberOnly) {
         if (channel == null) {
             int result = 0;
             for (String chan : users.keySet()) {
@@ -345,10 +395,9 @@ public class UserManager {
     /**
      * Set all users offline.
      */
-    public synchronized void setAllOffline() {
-        Iterator<HashMap<String,User>> it = users.values().iterator();
-        while (it.hasNext()) {
-            setAllOffline(it.next());
+    public void setAllOffline() {
+        for (Map<String, User> usersInChannel : users.values()) {
+            setAllOffline(usersInChannel);
         }
     }
     
@@ -357,9 +406,10 @@ public class UserManager {
      * 
      * @param channel 
      */
-    public synchronized void setAllOffline(String channel) {
+    public void setAllOffline(String channel) {
         if (channel == null) {
             setAllOffline();
+            return;
         }
         Map<String, User> usersInChannel = users.get(channel);
         if (usersInChannel != null) {
@@ -384,7 +434,7 @@ public class UserManager {
      * @param userName String The name of the user
      * @param color String The color as a string representation
      */
-    protected synchronized void setColorForUsername(String userName, String color) {
+    protected void setColorForUsername(String userName, String color) {
         userName = StringUtil.toLowerCase(userName);
         cachedColors.put(userName,color);
         
@@ -0,0 +1,167 @@
+
+package chatty.gui;
+
+import chatty.Addressbook;
+import chatty.User;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * Results of checks on a single message that can be shared between the
+ * several Highlighter instances (Ignore, Highlight, Filter, Msg Colors, ..)
+ * the message is checked against, since many items (in different lists) may
+ * check the same regex on the same text or the same Addressbook category.
+ *
+ * <p>
+ * A new instance should be created for each message. Not thread-safe, it is
+ * only meant to be used by one thread checking a message.
+ * </p>
+ *
+ * @author tduva
+ */
+public class HighlightContext {
+
+    private static final LongAdder totalEvaluated = new LongAdder();
+    private static final LongAdder totalSaved = new LongAdder();
+
+    private final Map<List<Object>, Boolean> results = new HashMap<>();
+    private int evaluated;
+    private int saved;
+
+    /**
+     * Get a stored result, or evaluate and store it.
+     *
+     * @param key The key, which must contain everything the result depends
+     * on
+     * @param evaluate Performs the actual check
+     * @return The result
+     */
+    private boolean get(List<Object> key, BooleanSupplier evaluate) {
+        Boolean result = getStored(key);
+        if (result == null) {
+            result = evaluate.getAsBoolean();
+            store(key, result);
+        }
+        return result;
+    }
+
+    private Boolean getStored(List<Object> key) {
+        Boolean result = results.get(key);
+        if (result != null) {
+            saved++;
+            totalSaved.increment();
+        }
+        return result;
+    }
+
+    private void store(List<Object> key, boolean result) {
+        results.put(key, result);
+        evaluated++;
+        totalEvaluated.increment();
+    }
+
+    //==========================
+    // Checks
+    //==========================
+
+    public boolean hasCategory(User user, String category) {
+        return get(Arrays.asList("cat", user, category),
+                () -> user.hasCategory(category));
+    }
+
+    public boolean hasCategory(Addressbook ab, String name, String category) {
+        return get(Arrays.asList("abCat", ab, name, category),
+                () -> ab.hasCategory(name, category));
+    }
+
+    public boolean hasTwitchBadge(User user, String id, String version) {
+        return get(Arrays.asList("badge", user, id, version),
+                () -> version == null ? user.hasTwitchBadge(id) : user.hasTwitchBadge(id, version));
+    }
+
+    //--------------------------
+    // Regex
+    //--------------------------
+
+    /**
+     * Create the key for storing whether a regex finds any match in a text
+     * (without taking a blacklist into account). Patterns are equal if they
+     * have the same regex and flags, even if compiled separately.
+     *
+     * @param pattern
+     * @param text
+     * @param msgStart
+     * @param msgEnd
+     * @param restrictToMsg
+     * @return The key
+     */
+    static List<Object> regexKey(Pattern pattern, String text, int msgStart, int msgEnd, boolean restrictToMsg) {
+        return Arrays.asList("regex", pattern.pattern(), pattern.flags(),
+                text, msgStart, msgEnd, restrictToMsg);
+    }
+
+    /**
+     * Whether the regex found any match, if it has already been checked and
+     * the result can be used. If a blacklist has to be applied only a stored
+     * "no match" can be used, since the matches themselves are not stored.
+     *
+     * @param key Created with
+     * {@link #regexKey(Pattern, String, int, int, boolean)}
+     * @param blacklist Whether a blacklist has to be applied
+     * @return true or false if checked and usable, null otherwise
+     */
+    Boolean getRegexResult(List<Object> key, boolean blacklist) {
+        Boolean result = results.get(key);
+        if (result == null || (result && blacklist)) {
+            return null;
+        }
+        return getStored(key);
+    }
+
+    void setRegexResult(List<Object> key, boolean found) {
+        if (!results.containsKey(key)) {
+            store(key, found);
+        }
+    }
+
+    //==========================
+    // Stats
+    //==========================
+
+    /**
+     * The number of checks that were actually performed for this message.
+     *
+     * @return
+     */
+    public int getEvaluated() {
+        return evaluated;
+    }
+
+    /**
+     * The number of checks that used a stored result for this message.
+     *
+     * @return
+     */
+    public int getSaved() {
+        return saved;
+    }
+
+    /**
+     * Info about the checks of all messages so far, for debugging.
+     *
+     * @return
+     */
+    public static String getStats() {
+        long numEvaluated = totalEvaluated.sum();
+        long numSaved = totalSaved.sum();
+        long total = numEvaluated + numSaved;
+        return String.format("Highlight checks: %d evaluated, %d saved (%d%%)",
+                numEvaluated, numSaved, total > 0 ? numSaved * 100 / total : 0);
+    }
+
+}
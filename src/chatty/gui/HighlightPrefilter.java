@@ -0,0 +1,137 @@
+
+package chatty.gui;
+
+import chatty.gui.Highlighter.HighlightItem;
+import chatty.util.AhoCorasick;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Quickly finds out which items of a list of Highlight items may match a text,
+ * so that only those have to be checked in full.
+ *
+ * Many items only match when the message contains a certain text (e.g.
+ * "text:", "w:", "cs:" or "start:" prefix), which would usually mean a
+ * separate regex search per item. Instead, the texts of all items are searched
+ * for in a single pass, and items whose text isn't contained in the message
+ * can be skipped, since they can't match anyway. Items without such a text are
+ * always candidates, so the result of checking the items in order stays the
+ * same.
+ *
+ * Immutable after creation, so it can be used from several threads.
+ *
+ * @author tduva
+ */
+public class HighlightPrefilter {
+
+    private final int size;
+    private final boolean[] always;
+
+    private final AhoCorasick caseSensitive;
+    private final int[] caseSensitiveItems;
+    private final AhoCorasick caseInsensitive;
+    private final int[] caseInsensitiveItems;
+
+    /**
+     * Create a prefilter for the given items. The items must not change their
+     * matching requirements afterwards.
+     *
+     * @param items The items, the indices of this list are used in the
+     * result of {@link #getCandidates(String)}
+     */
+    public HighlightPrefilter(List<HighlightItem> items) {
+        size = items.size();
+        always = new boolean[size];
+        List<String> csTexts = new ArrayList<>();
+        List<Integer> csItems = new ArrayList<>();
+        List<String> ciTexts = new ArrayList<>();
+        List<Integer> ciItems = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            HighlightItem item = items.get(i);
+            String text = item.getRequiredText();
+            if (text == null || text.isEmpty()) {
+                always[i] = true;
+            }
+            else if (item.isRequiredTextCaseSensitive()) {
+                csTexts.add(text);
+                csItems.add(i);
+            }
+            else if (hasSurrogate(text)) {
+                // Case-insensitive regex compares codepoints, so don't risk it
+                always[i] = true;
+            }
+            else {
+                ciTexts.add(text);
+                ciItems.add(i);
+            }
+        }
+        caseSensitive = csTexts.isEmpty() ? null : new AhoCorasick(csTexts, false);
+        caseSensitiveItems = toArray(csItems);
+        caseInsensitive = ciTexts.isEmpty() ? null : new AhoCorasick(ciTexts, true);
+        caseInsensitiveItems = toArray(ciItems);
+    }
+
+    private static boolean hasSurrogate(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isSurrogate(text.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Whether any items can be skipped at all, otherwise checking for
+     * candidates isn't necessary.
+     *
+     * @return
+     */
+    public boolean isEffective() {
+        return caseSensitive != null || caseInsensitive != null;
+    }
+
+    /**
+     * Get the items that may match the given text. Items that are not a
+     * candidate definitely don't match this text, for any other requirements.
+     *
+     * @param text The text the items would be matched against, may be null
+     * @return An array with the same size as the list of items given in the
+     * constructor, with the candidates set to true, or null if all items are
+     * candidates
+     */
+    public boolean[] getCandidates(String text) {
+        if (text == null || !isEffective()) {
+            return null;
+        }
+        boolean[] result = Arrays.copyOf(always, size);
+        if (caseSensitive != null) {
+            caseSensitive.find(text, i -> result[caseSensitiveItems[i]] = true);
+        }
+        if (caseInsensitive != null) {
+            caseInsensitive.find(text, i -> result[caseInsensitiveItems[i]] = true);
+        }
+        return result;
+    }
+
+    /**
+     * Check if the item with the given index is a candidate, according to the
+     * result of {@link #getCandidates(String)}.
+     *
+     * @param candidates The candidates, may be null
+     * @param index The index of the item
+     * @return true if the item may match
+     */
+    public static boolean isCandidate(boolean[] candidates, int index) {
+        return candidates == null || candidates[index];
+    }
+
+}
@@ -58,6 +58,7 @@ public class Highlighter {
     private final Map<String, Long> lastHighlighted = new HashMap<>();
     private final Map<String, HighlightItem> lastHighlightedItem = new HashMap<>();
     private final List<HighlightItem> items = new ArrayList<>();
+    private HighlightPrefilter prefilter = new HighlightPrefilter(items);
     private final List<HighlightItem> blacklistItems = new ArrayList<>();
     private HighlightItem usernameItem;
     private HighlightItem lastMatchItem;
@@ -90,6 +91,7 @@ public class Highlighter {
      */
     public void update(List<String> newItems) {
         compile(newItems, items, "");
+        prefilter = new HighlightPrefilter(items);
         hasOverrideIgnored = false;
         items.forEach(item -> {
             if (item.overrideIgnored()) {
@@ -284,6 +286,33 @@ public class Highlighter {
                          String text, int msgStart, int msgEnd,
                          String channel, Addressbook ab, User user,
                          User localUser, MsgTags tags, boolean ignored) {
+        return check(type, text, msgStart, msgEnd, channel, ab, user, localUser, tags, ignored, null);
+    }
+    
+    /**
+     * Same as
+     * {@link #check(HighlightItem.Type, String, int, int, String, Addressbook, User, User, MsgTags, boolean)},
+     * but with a context that allows sharing results of individual checks
+     * with other checks of the same message.
+     * 
+     * @param type
+     * @param text
+     * @param msgStart
+     * @param msgEnd
+     * @param channel
+     * @param ab
+     * @param user
+     * @param localUser
+     * @param tags
+     * @param ignored
+     * @param context The context for this message, may be null
+     * @return 
+     */
+    public boolean check(HighlightItem.Type type,
+                         String text, int msgStart, int msgEnd,
+                         String channel, Addressbook ab, User user,
+                         User localUser, MsgTags tags, boolean ignored,
+                         HighlightContext context) {
         
         Replacer2.Result subResult = null;
         if (substitutes != null && hasSubstitutesEnabled) {
@@ -313,17 +342,28 @@ public class Highlighter {
                 && usernameItem != null
                 && (blacklist == null || !blacklist.block)
                 && !ignored
-                && usernameItem.matches(type, text, -1, -1, blacklist, channel, ab, user, localUser, tags)) {
+                && usernameItem.matches(type, text, -1, -1, blacklist, channel, ab, user, localUser, tags, context)) {
             fillLastMatchVariables(usernameItem, text, -1, -1, null);
             addMatch(user, usernameItem);
             return true;
         }
         
+        // Items that can't match because they require text that isn't there
+        boolean[] candidates = prefilter.getCandidates(text);
+        boolean[] subCandidates = null;
+        if (subResult != null) {
+            subCandidates = prefilter.getCandidates(subResult.getChangedText());
+        }
+        
         // Then try to match against the items
         boolean alreadyMatched = false;
-        for (HighlightItem item : items) {
+        for (int i = 0; i < items.size(); i++) {
+            HighlightItem item = items.get(i);
             // On what does matching take place (changed text or not)
             boolean subEnabled = item.substitutesEnabled(substitutesDefault) && subResult != null;
+            if (!HighlightPrefilter.isCandidate(subEnabled ? subCandidates : candidates, i)) {
+                continue;
+            }
             String itemText = text;
             int itemMsgStart = msgStart;
             int itemMsgEnd = msgEnd;
@@ -341,7 +381,7 @@ public class Highlighter {
             boolean ignoredBlocks = ignored && !item.overrideIgnored();
             if (!blacklistBlocks
                     && !ignoredBlocks
-                    && item.matches(type, itemText, itemMsgStart, itemMsgEnd, item.overrideBlacklist ? null : itemBlacklist, channel, ab, user, localUser, tags)) {
+                    && item.matches(type, itemText, itemMsgStart, itemMsgEnd, item.overrideBlacklist ? null : itemBlacklist, channel, ab, user, localUser, tags, context)) {
                 // Item matched
                 if (!alreadyMatched) {
                     // Only for the first match
@@ -591,6 +631,14 @@ public class Highlighter {
         private final List<Item> matchItems = new ArrayList<>();
         private Pattern pattern;
         private boolean matchMessageText;
+        
+        /**
+         * The text the main pattern matches literally, if it was created from
+         * such a prefix (only valid as long as the pattern is still the same).
+         */
+        private String literalText;
+        private boolean literalCaseSensitive;
+        private Pattern literalPattern;
         private List<HighlightItem> localBlacklistItems;
         private final Map<String, CustomCommand> localPresets;
         
@@ -660,6 +708,7 @@ public class Highlighter {
          */
         private boolean blacklistPreventedTextMatch;
         private boolean blockedByBlacklist;
+        private HighlightContext context;
         
         private enum Status {
             MOD("m"), LEAD_MOD("L"), SUBSCRIBER("s"), BROADCASTER("b"), ADMIN("a"), STAFF("f"),
@@ -678,6 +727,13 @@ public class Highlighter {
          */
         private static final Map<String, Function<String, String>> patternPrefixes = new HashMap<>();
         
+        /**
+         * Text matching prefixes that only quote the text (value is whether
+         * it's case-sensitive), so the text has to be contained in the message
+         * for a match.
+         */
+        private static final Map<String, Boolean> literalPrefixes = new HashMap<>();
+        
         static {
             /**
              * Add text matching prefixes and their pattern builder functions
@@ -695,6 +751,9 @@ public class Highlighter {
             addPatternPrefix(text -> "(?iu)^"+Pattern.quote(text), "start:");
             addPatternPrefix(text -> "(?iu)^"+Pattern.quote(text)+"\\b", "startw:");
             addPatternPrefix(text -> "(?iu)" + Pattern.quote(text), "text:");
+            
+            addLiteralPrefix(false, "w:", "start:", "startw:", "text:");
+            addLiteralPrefix(true, "wcs:", "cs:");
         }
         
         /**
@@ -783,7 +842,7 @@ public class Highlighter {
                     List<String> categories = parseStringListPrefix(item, "cat:", s -> s);
                     addUserItem("Any of Addressbook Categories", categories, user -> {
                         for (String category : categories) {
-                            if (user.hasCategory(category)) {
+                            if (hasCategory(user, category)) {
                                 return true;
                             }
                         }
@@ -794,7 +853,7 @@ public class Highlighter {
                     List<String> categories = parseStringListPrefix(item, "!cat:", s -> s);
                     addUserItem("Not any of Addressbook Categories", categories, user -> {
                         for (String category : categories) {
-                            if (!user.hasCategory(category)) {
+                            if (!hasCategory(user, category)) {
                                 return true;
                             }
                         }
@@ -962,7 +1021,7 @@ public class Highlighter {
                     List<String> cats = parseStringListPrefix(item, "chanCat:", s -> s);
                     addChanCatItem("Channel Addressbook Category", cats, (channel, ab) -> {
                         for (String cat : cats) {
-                            if (ab.hasCategory(channel, cat)) {
+                            if (hasCategory(ab, channel, cat)) {
                                 return true;
                             }
                         }
@@ -973,7 +1032,7 @@ public class Highlighter {
                     List<String> cats = parseStringListPrefix(item, "!chanCat:", s -> s);
                     addChanCatItem("Not Channel Addressbook Category", cats, (channel, ab) -> {
                         for (String cat : cats) {
-                            if (!ab.hasCategory(channel, cat)) {
+                            if (!hasCategory(ab, channel, cat)) {
                                 return true;
                             }
                         }
@@ -985,7 +1044,7 @@ public class Highlighter {
                     addChanCatItem("Channel/User Addressbook Category", cats, (channel, ab) -> {
                         String stream = Helper.toStream(channel);
                         for (String cat : cats) {
-                            if (ab.hasCategory(channel, cat) || ab.hasCategory(stream, cat)) {
+                            if (hasCategory(ab, channel, cat) || hasCategory(ab, stream, cat)) {
                                 return true;
                             }
                         }
@@ -997,7 +1056,7 @@ public class Highlighter {
                     addChanCatItem("Not Channel/User Addressbook Category", cats, (channel, ab) -> {
                         String stream = Helper.toStream(channel);
                         for (String cat : cats) {
-                            if (!ab.hasCategory(channel, cat) && !ab.hasCategory(stream, cat)) {
+                            if (!hasCategory(ab, channel, cat) && !hasCategory(ab, stream, cat)) {
                                 return true;
                             }
                         }
@@ -1303,6 +1362,7 @@ public class Highlighter {
                 else {
                     textWithoutPrefix = item;
                     pattern = compilePattern("(?iu)" + Pattern.quote(item));
+                    setLiteral(item, false);
                 }
             }
         }
@@ -1380,15 +1440,8 @@ public class Highlighter {
             if (!badges.isEmpty()) {
                 addUserItem("Any of Twitch Badge", badges, user -> {
                     for (BadgeType type : badges) {
-                        if (type.version == null) {
-                            if (user.hasTwitchBadge(type.id)) {
-                                return true;
-                            }
-                        }
-                        else {
-                            if (user.hasTwitchBadge(type.id, type.version)) {
-                                return true;
-                            }
+                        if (hasTwitchBadge(user, type.id, type.version)) {
+                            return true;
                         }
                     }
                     return false;
@@ -1637,6 +1690,9 @@ public class Highlighter {
                     mainPrefix = prefix;
                     this.pattern = compilePattern(completePattern);
                     matchMessageText = prefix.startsWith("msg");
+                    if (literalPrefixes.containsKey(prefix)) {
+                        setLiteral(withoutPrefix, literalPrefixes.get(prefix));
+                    }
                     return true;
                 }
             }
@@ -1705,6 +1761,59 @@ public class Highlighter {
             }
         }
 
+        /**
+         * Adds prefixes (and their "msg" variant) that match the text
+         * literally.
+         * 
+         * @param caseSensitive
+         * @param prefixes 
+         */
+        private static void addLiteralPrefix(boolean caseSensitive, String... prefixes) {
+            for (String prefix : prefixes) {
+                literalPrefixes.put(prefix, caseSensitive);
+                literalPrefixes.put("msg"+prefix, caseSensitive);
+            }
+        }
+        
+        /**
+         * Remember the text the just compiled main pattern matches literally.
+         * 
+         * @param text
+         * @param caseSensitive 
+         */
+        private void setLiteral(String text, boolean caseSensitive) {
+            literalText = text;
+            literalCaseSensitive = caseSensitive;
+            literalPattern = pattern;
+        }
+        
+        /**
+         * The text that has to be contained in a message for this item to
+         * possibly match, because the main pattern matches it literally (for
+         * example with the "text:" or "w:" prefix or no prefix).
+         * 
+         * @return The text, or null if this item doesn't have such a
+         * requirement
+         * @see #isRequiredTextCaseSensitive()
+         */
+        public String getRequiredText() {
+            if (pattern != null && pattern == literalPattern) {
+                return literalText;
+            }
+            return null;
+        }
+        
+        /**
+         * Whether the text returned by {@link #getRequiredText()} has to be
+         * contained with the same case, otherwise the case is ignored the same
+         * way as in a regex with the "(?iu)" flags.
+         * 
+         * @return 
+         */
+        public boolean isRequiredTextCaseSensitive() {
+            return literalCaseSensitive;
+        }
+
         private Pattern compilePattern(String patternString) {
             try {
                 Pattern pattern = Pattern.compile(patternString);
@@ -1742,20 +1851,33 @@ public class Highlighter {
             if (pattern == null) {
                 return true;
             }
+            List<Object> key = null;
+            if (context != null) {
+                key = HighlightContext.regexKey(pattern, text, msgStart, msgEnd, matchMessageTextLocal);
+                Boolean found = context.getRegexResult(key, blacklist != null);
+                if (found != null) {
+                    return found;
+                }
+            }
             try {
                 Matcher m = TimeoutPatternMatcher.create(pattern, text, 100);
                 if (!applyMsgRestriction(m, msgStart, msgEnd, matchMessageTextLocal)) {
+                    setRegexResult(key, false);
                     return false;
                 }
+                boolean found = false;
                 while (m.find()) {
+                    found = true;
                     boolean notBlacklisted = blacklist == null || !blacklist.isBlacklisted(m.start(), m.end());
                     if (notBlacklisted) {
+                        setRegexResult(key, true);
                         return true;
                     }
                     else {
                         blacklistPreventedTextMatch = true;
                     }
                 }
+                setRegexResult(key, found);
             } catch (Exception ex) {
                 /**
                  * Catch error since there seems to be a rare case where some
@@ -1802,6 +1924,36 @@ public class Highlighter {
             return false;
         }
         
+        private void setRegexResult(List<Object> key, boolean found) {
+            if (context != null && key != null) {
+                context.setRegexResult(key, found);
+            }
+        }
+        
+        private boolean hasCategory(User user, String category) {
+            if (context != null) {
+                return context.hasCategory(user, category);
+            }
+            return user.hasCategory(category);
+        }
+        
+        private boolean hasCategory(Addressbook ab, String name, String category) {
+            if (context != null) {
+                return context.hasCategory(ab, name, category);
+            }
+            return ab.hasCategory(name, category);
+        }
+        
+        private boolean hasTwitchBadge(User user, String id, String version) {
+            if (context != null) {
+                return context.hasTwitchBadge(user, id, version);
+            }
+            if (version == null) {
+                return user.hasTwitchBadge(id);
+            }
+            return user.hasTwitchBadge(id, version);
+        }
+        
         /**
          * Restrict the match region of the given Matcher, if applicable.
          * 
@@ -2117,6 +2269,35 @@ public class Highlighter {
                                Blacklist blacklist,
                                String channel, Addressbook ab, User user,
                                User localUser, MsgTags tags) {
+            return matches(type, text, msgStart, msgEnd, blacklist, channel, ab, user, localUser, tags, null);
+        }
+        
+        /**
+         * Same as
+         * {@link #matches(Type, String, int, int, Blacklist, String, Addressbook, User, User, MsgTags)},
+         * but may use and store results of individual checks in the given
+         * context.
+         * 
+         * @param context The context for this message, may be null
+         */
+        public boolean matches(Type type, String text, int msgStart, int msgEnd,
+                               Blacklist blacklist,
+                               String channel, Addressbook ab, User user,
+                               User localUser, MsgTags tags,
+                               HighlightContext context) {
+            this.context = context;
+            try {
+                return matchesInternal(type, text, msgStart, msgEnd, blacklist, channel, ab, user, localUser, tags);
+            }
+            finally {
+                this.context = null;
+            }
+        }
+        
+        private boolean matchesInternal(Type type, String text, int msgStart, int msgEnd,
+                               Blacklist blacklist,
+                               String channel, Addressbook ab, User user,
+                               User localUser, MsgTags tags) {
             failedItem = null;
             blacklistPreventedTextMatch = false;
             blockedByBlacklist = false;
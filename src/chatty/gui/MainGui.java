@@ -119,6 +119,7 @@ import javax.swing.event.ChangeListener;
 import javax.swing.event.MenuEvent;
 import javax.swing.event.MenuListener;
 import chatty.util.dnd.DockPopout;
+import chatty.util.gif.DecodedFrameCache;
 import chatty.util.gif.FocusUpdates;
 import chatty.util.gif.GifUtil;
 import chatty.util.history.HistoryUtil;
@@ -188,6 +189,12 @@ public class MainGui extends JFrame implements Runnable {
     private WindowStateManager windowStateManager;
     protected DockedDialogManager dockedDialogs;
     private final IgnoredMessages ignoredMessagesHelper = new IgnoredMessages(this);
+    
+    /**
+     * Chat output that depends on the order of messages, run in batches.
+     */
+    private final RenderQueue renderQueue = new RenderQueue();
+    
     public final HotkeyManager hotkeyManager = new HotkeyManager(this);
     public final LocalEmotesSetting localEmotes;
     public RoutingManager routingManager;
@@ -1244,6 +1251,7 @@ public class MainGui extends JFrame implements Runnable {
         
         FocusUpdates.set(client.settings);
         GifUtil.setSettings(client.settings);
+        DecodedFrameCache.setMaxSize(client.settings.getLong("animationFrameCache") * 1024 * 1024);
         TransparencyManager.loadSettings(client.settings);
     }
     
@@ -3599,7 +3607,7 @@ public class MainGui extends JFrame implements Runnable {
         client.resolveSourceData(user, tags0, tags1 -> {
             
         
-        SwingUtilities.invokeLater(new Runnable() {
+        renderQueue.add(new Runnable() {
             @Override
             public void run() {
                 /**
@@ -3661,8 +3669,10 @@ public class MainGui extends JFrame implements Runnable {
                 
                 boolean isOwnMessage = client.isOwnUsername(user.getName()) || (whisper && action);
                 boolean ignoredUser = (userIgnored(user, whisper) && !isOwnMessage);
+                // Shares results between the different checks of this message
+                HighlightContext hlContext = new HighlightContext();
                 // May be necessary to check even if ignoredUser, to get ignore matchings later on
-                boolean ignored = checkMsg(ignoreList, "ignore", text, -2, -2, user, localUser, tags, isOwnMessage, false) || ignoredUser;
+                boolean ignored = checkMsg(ignoreList, "ignore", text, -2, -2, user, localUser, tags, isOwnMessage, false, hlContext) || ignoredUser;
                 if (!HistoryUtil.checkAllowMatch(tags, "Ignore", ignoreList.getLastMatchItem(), client.settings)) {
                     ignored = false;
                     ignoredUser = false;
@@ -3678,7 +3688,7 @@ public class MainGui extends JFrame implements Runnable {
                     boolean rejectIgnoredWithoutPrefix = client.settings.getBoolean("highlightOverrideIgnored")
                                               || client.settings.getBoolean("highlightIgnored")
                                               ? false : ignored;
-                    highlighted = checkMsg(highlighter, "highlight", text, -2, -2, user, localUser, tags, isOwnMessage, rejectIgnoredWithoutPrefix);
+                    highlighted = checkMsg(highlighter, "highlight", text, -2, -2, user, localUser, tags, isOwnMessage, rejectIgnoredWithoutPrefix, hlContext);
                     if (!HistoryUtil.checkAllowMatch(tags, "Highlight", highlighter.getLastMatchItem(), client.settings)) {
                         highlighted = false;
                     }
@@ -3763,7 +3773,7 @@ public class MainGui extends JFrame implements Runnable {
                         printInfo(chan, InfoMessage.createInfo("Own message ignored."));
                     }
                 } else {
-                    boolean hasReplacements = checkMsg(filter, "filter", text, -2, -2, user, localUser, tags, isOwnMessage, false);
+                    boolean hasReplacements = checkMsg(filter, "filter", text, -2, -2, user, localUser, tags, isOwnMessage, false, hlContext);
 
                     // Print message, but determine how exactly
                     UserMessage message = new UserMessage(user, text, tagEmotes, tags.getId(), bitsForEmotes,
@@ -3788,7 +3798,7 @@ public class MainGui extends JFrame implements Runnable {
                         routingTargets.add(highlighter.getLastMatchItem());
                     }
                     if (!(highlighted || hlByPoints) || client.settings.getBoolean("msgColorsPrefer")) {
-                        MsgColorItem colorItem = msgColorManager.getMsgColor(user, localUser, text, -2, -2, tags);
+                        MsgColorItem colorItem = msgColorManager.getMsgColor(user, localUser, text, -2, -2, tags, hlContext);
                         if (!HistoryUtil.checkAllowMatch(tags, "msgColors", colorItem.getMatcher(), client.settings)) {
                             colorItem = MsgColorManager.EMPTY;
                         }
@@ -3856,7 +3866,7 @@ public class MainGui extends JFrame implements Runnable {
         client.resolveSourceData(user, tags0, tags -> {
             
             
-        SwingUtilities.invokeLater(() -> {
+        renderQueue.add(() -> {
             SubscriberMessage m = new SubscriberMessage(user, text, message, tags);
 
             boolean printed = printUsernoticeInternal(m);
@@ -3884,7 +3894,7 @@ public class MainGui extends JFrame implements Runnable {
      * @param tags 
      */
     public void printPointsNotice(final User user, final String text, final String message, final MsgTags tags, final String redemptionId, boolean isUpdate, String status) {
-        SwingUtilities.invokeLater(() -> {
+        renderQueue.add(() -> {
             if (isUpdate && redemptionId != null && status != null) {
                 channels.getChannel(user.getRoom()).printInfoMessage(InfoMessage.createAppend(redemptionId, String.format("(%s)", status)));
             }
@@ -3910,7 +3920,7 @@ public class MainGui extends JFrame implements Runnable {
         client.resolveSourceData(user, tags0, tags -> {
             
             
-            SwingUtilities.invokeLater(() -> {
+            renderQueue.add(() -> {
                 UserNotice m = new UserNotice(type, user, text, message, tags);
                 printUsernoticeInternal(m);
             });
@@ -3920,7 +3930,7 @@ public class MainGui extends JFrame implements Runnable {
     }
     
     public void printUsernotice(UserNotice m) {
-        GuiUtil.edt(() -> {
+        renderQueue.edt(() -> {
             printUsernoticeInternal(m);
         });
     }
@@ -3962,11 +3972,11 @@ public class MainGui extends JFrame implements Runnable {
     
     private boolean checkHighlight(HighlightItem.Type type, String text, int msgStart, int msgEnd,
             String channel, Addressbook ab, User user, User localUser, MsgTags tags, Highlighter hl,
-            String setting, boolean isOwnMessage, boolean ignored) {
+            String setting, boolean isOwnMessage, boolean ignored, HighlightContext context) {
         if (client.settings.getBoolean(setting + "Enabled")) {
             if (client.settings.getBoolean(setting + "OwnText") ||
                     !isOwnMessage) {
-                return hl.check(type, text, msgStart, msgEnd, channel, ab, user, localUser, tags, ignored);
+                return hl.check(type, text, msgStart, msgEnd, channel, ab, user, localUser, tags, ignored, context);
             }
         }
         return false;
@@ -3974,17 +3984,17 @@ public class MainGui extends JFrame implements Runnable {
     
     private boolean checkMsg(Highlighter hl, String setting, String text, int msgStart, int msgEnd,
             User user, User localUser, MsgTags tags, boolean isOwnMessage,
-            boolean ignored) {
+            boolean ignored, HighlightContext context) {
         return checkHighlight(HighlightItem.Type.REGULAR, text, msgStart, msgEnd, null, null,
-                user, localUser, tags, hl, setting, isOwnMessage, ignored);
+                user, localUser, tags, hl, setting, isOwnMessage, ignored, context);
     }
     
     private boolean checkInfoMsg(Highlighter hl, String setting, String text, int msgStart, int msgEnd,
             User user, MsgTags tags, String channel, Addressbook ab,
-            boolean ignored) {
+            boolean ignored, HighlightContext context) {
         return checkHighlight(HighlightItem.Type.INFO, text, msgStart, msgEnd, channel, ab,
                 user, client.getLocalUser(channel), tags, hl, setting, false,
-                ignored);
+                ignored, context);
     }
     
     protected void ignoredMessagesCount(String channel, String message) {
@@ -4002,7 +4012,7 @@ public class MainGui extends JFrame implements Runnable {
     }
     
     public void userBanned(final User user, final long duration, final String reason, final String id) {
-        SwingUtilities.invokeLater(new Runnable() {
+        renderQueue.add(new Runnable() {
 
             @Override
             public void run() {
@@ -4020,7 +4030,7 @@ public class MainGui extends JFrame implements Runnable {
     }
     
     public void msgDeleted(final User user, String targetMsgId, String msg) {
-        SwingUtilities.invokeLater(() -> {
+        renderQueue.add(() -> {
             channels.getChannel(user.getRoom()).userBanned(user, -2, null, targetMsgId);
             user.addMsgDeleted(targetMsgId, msg);
             updateUserInfoDialog(user);
@@ -4038,7 +4048,7 @@ public class MainGui extends JFrame implements Runnable {
     }
     
     public void clearChat(final Room room) {
-        SwingUtilities.invokeLater(new Runnable() {
+        renderQueue.add(new Runnable() {
             @Override
             public void run() {
                 Channel panel;
@@ -4073,7 +4083,7 @@ public class MainGui extends JFrame implements Runnable {
     }
     
     public void printLine(final String line) {
-        GuiUtil.edt(() -> {
+        renderQueue.edt(() -> {
             Channel panel = channels.getLastActiveChannel();
             if (panel != null) {
                 printInfo(panel, InfoMessage.createInfo(line));
@@ -4082,7 +4092,7 @@ public class MainGui extends JFrame implements Runnable {
     }
     
     public void addToLine(final Room room, Object objectId, String text) {
-        GuiUtil.edt(() -> {
+        renderQueue.edt(() -> {
             channels.getChannel(room).printInfoMessage(InfoMessage.createAppend(objectId, text));
         });
     }
@@ -4092,7 +4102,7 @@ public class MainGui extends JFrame implements Runnable {
     }
     
     public void printSystem(final Room room, final String line) {
-        GuiUtil.edt(() -> {
+        renderQueue.edt(() -> {
             Channel channel;
             if (room == null || room == Room.EMPTY) {
                 channel = channels.getActiveChannel();
@@ -4107,7 +4117,7 @@ public class MainGui extends JFrame implements Runnable {
     }
     
     public void printSystemMultline(final Room room, final String text) {
-        GuiUtil.edt(() -> {
+        renderQueue.edt(() -> {
             String[] lines = text.split("\n");
             for (String line : lines) {
                 printSystem(room, line);
@@ -4121,7 +4131,7 @@ public class MainGui extends JFrame implements Runnable {
     
     public Object printInfo(final Room room, final String line, MsgTags tags) {
         Object objectId = new Object();
-        GuiUtil.edt(() -> {
+        renderQueue.edt(() -> {
             if (room == null || room == Room.EMPTY) {
                 printLine(line);
             } else {
@@ -4135,7 +4145,7 @@ public class MainGui extends JFrame implements Runnable {
     
     public Object printLineAll(final String line) {
         Object objectId = new Object();
-        SwingUtilities.invokeLater(() -> {
+        renderQueue.add(() -> {
             for (Channel channel : channels.allChannels()) {
                 // Separate for each channel, since it could be modified based
                 // on channel
@@ -4148,7 +4158,7 @@ public class MainGui extends JFrame implements Runnable {
     }
     
     public void printLineAllAppend(String text, Object objectId) {
-        GuiUtil.edt(() -> {
+        renderQueue.edt(() -> {
             for (Channel channel : channels.allChannels()) {
                 channel.printInfoMessage(InfoMessage.createAppend(objectId, text));
             }
@@ -4156,7 +4166,7 @@ public class MainGui extends JFrame implements Runnable {
     }
     
     public void printLineByOwnerChannel(final String channel, final String text) {
-        SwingUtilities.invokeLater(() -> {
+        renderQueue.add(() -> {
             for (Channel chan : channels.getExistingChannelsByOwner(channel)) {
                 printInfo(chan, InfoMessage.createInfo(text));
             }
@@ -4183,14 +4193,15 @@ public class MainGui extends JFrame implements Runnable {
         MsgTags tags = message.tags;
         User localUser = client.getLocalUser(channel.getChannel());
         RoutingTargets routingTargets = new RoutingTargets();
-        boolean ignored = checkInfoMsg(ignoreList, "ignore", message.text, message.getMsgStart(), message.getMsgEnd(), user, tags, channel.getChannel(), client.addressbook, false);
+        HighlightContext hlContext = new HighlightContext();
+        boolean ignored = checkInfoMsg(ignoreList, "ignore", message.text, message.getMsgStart(), message.getMsgEnd(), user, tags, channel.getChannel(), client.addressbook, false, hlContext);
         boolean highlighted = false;
         boolean ignoreCheck = !ignored
                 || highlighter.hasOverrideIgnored()
                 || client.settings.getBoolean("highlightOverrideIgnored");
         if (ignoreCheck && !message.isHidden() && !noHighlightUser) {
             boolean rejectIgnoredWithoutPrefix = client.settings.getBoolean("highlightOverrideIgnored") ? false : ignored;
-            highlighted = checkInfoMsg(highlighter, "highlight", message.text, message.getMsgStart(), message.getMsgEnd(), user, tags, channel.getChannel(), client.addressbook, rejectIgnoredWithoutPrefix);
+            highlighted = checkInfoMsg(highlighter, "highlight", message.text, message.getMsgStart(), message.getMsgEnd(), user, tags, channel.getChannel(), client.addressbook, rejectIgnoredWithoutPrefix, hlContext);
             if (highlighted) {
                 if (client.settings.getBoolean("highlightOverrideIgnored")
                         || highlighter.getLastMatchItem().overrideIgnored()) {
@@ -4226,7 +4237,7 @@ public class MainGui extends JFrame implements Runnable {
                 }
                 if (!highlighted || client.settings.getBoolean("msgColorsPrefer")) {
                     MsgColorItem colorItem = msgColorManager.getInfoColor(
-                            message.text, message.getMsgStart(), message.getMsgEnd(), channel.getChannel(), client.addressbook, user, localUser, tags);
+                            message.text, message.getMsgStart(), message.getMsgEnd(), channel.getChannel(), client.addressbook, user, localUser, tags, hlContext);
                     if (!colorItem.isEmpty()) {
                         message.color = colorItem.getForegroundIfEnabled();
                         message.bgColor = colorItem.getBackgroundIfEnabled();
@@ -4283,7 +4294,7 @@ public class MainGui extends JFrame implements Runnable {
      * @param user The User object of who was the target of this event (mod/..).
      */
     public void printCompact(final String type, final User user) {
-        SwingUtilities.invokeLater(new Runnable() {
+        renderQueue.add(new Runnable() {
             @Override
             public void run() {
                 channels.getChannel(user.getRoom()).printCompact(type, user);
@@ -4371,7 +4382,7 @@ public class MainGui extends JFrame implements Runnable {
     
     public void printModerationAction(final ModActionPayload data,
             final boolean ownAction) {
-        SwingUtilities.invokeLater(new Runnable() {
+        renderQueue.add(new Runnable() {
 
             @Override
             public void run() {
@@ -4425,7 +4436,7 @@ public class MainGui extends JFrame implements Runnable {
     public void printLowTrustUserInfo(User user, final SuspiciousMessagePayload data) {
         String channel = Helper.toValidChannel(data.stream);
         if (channels.isChannel(channel)) {
-            data.fetchUserInfoForBannedChannels(client.api, () -> SwingUtilities.invokeLater(() -> {
+            data.fetchUserInfoForBannedChannels(client.api, () -> renderQueue.add(() -> {
                 //--------------------------
                 // Restricted Message
                 //--------------------------
@@ -5591,6 +5602,8 @@ public class MainGui extends JFrame implements Runnable {
                     hotkeyManager.setGlobalHotkeysEnabled((Boolean)value);
                 } else if (setting.equals("imageCache")) {
                     ImageCache.setCachingEnabled(bool);
+                } else if (setting.equals("imageCachePack")) {
+                    ImageCache.setPackEnabled(bool);
                 } else if (setting.equals("mainResizable")) {
                     setResizable(bool);
                 } else if (setting.equals("streamChatResizable")) {
@@ -5682,6 +5695,8 @@ public class MainGui extends JFrame implements Runnable {
                     emotesDialog.setEmoteScale(((Long)value).intValue());
                 } else if (setting.equals("smilies")) {
                     updateSmilies();
+                } else if (setting.equals("animationFrameCache")) {
+                    DecodedFrameCache.setMaxSize((Long) value * 1024 * 1024);
                 }
             }
             if (setting.equals("liveStreamsSorting")
@@ -0,0 +1,98 @@
+
+package chatty.gui;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
+
+/**
+ * Runs tasks that output to chat in the EDT, in the order they were added.
+ * Instead of each task being a separate EDT event, all tasks queued up at the
+ * time are run in one go, so when many messages come in at once they are all
+ * printed before the EDT gets to layout and painting (which then only happens
+ * once for all of them).
+ *
+ * To keep the GUI responsive, a batch stops after a certain time and the
+ * remaining tasks are continued in a new EDT event, so that other events
+ * (like input) can be handled in between.
+ *
+ * All chat output that depends on the order of messages (e.g. a ban after the
+ * message it applies to) should go through the same queue.
+ *
+ * @author tduva
+ */
+public class RenderQueue {
+
+    private static final long MAX_BATCH_TIME = TimeUnit.MILLISECONDS.toNanos(15);
+
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Whether running the queue has been scheduled already (or is currently
+     * running).
+     */
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    /**
+     * Add a task to be run in the EDT, after all previously added tasks. Can
+     * be called from any thread.
+     *
+     * @param task
+     */
+    public void add(Runnable task) {
+        queue.add(task);
+        if (scheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::run);
+        }
+    }
+
+    /**
+     * Run the task immediately if this is called in the EDT, otherwise add it
+     * to the queue. Same as {@link GuiUtil#edt(Runnable)}, except for the
+     * order relative to other queued tasks.
+     *
+     * @param task
+     */
+    public void edt(Runnable task) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            task.run();
+        }
+        else {
+            add(task);
+        }
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        boolean done = false;
+        try {
+            while (System.nanoTime() - start < MAX_BATCH_TIME) {
+                Runnable task = queue.poll();
+                if (task == null) {
+                    scheduled.set(false);
+                    /**
+                     * A task may have been added after polling but before
+                     * resetting the flag, in which case it would not have been
+                     * scheduled.
+                     */
+                    if (queue.isEmpty() || !scheduled.compareAndSet(false, true)) {
+                        done = true;
+                        return;
+                    }
+                }
+                else {
+                    task.run();
+                }
+            }
+        }
+        finally {
+            if (!done) {
+                // Time ran out or a task threw an exception
+                SwingUtilities.invokeLater(this::run);
+            }
+        }
+    }
+
+}
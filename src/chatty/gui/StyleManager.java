@@ -39,7 +39,7 @@ public class StyleManager implements StyleServer {
             "highlightColor","highlightBackgroundColor",
             "highlightBackground", "showBanMessages","autoScroll",
             "deletedMessagesMode", "deletedMessagesMaxLength","searchResultColor",
-            "lineSpacing", "bufferSize", "actionColored","combineBanMessages",
+            "lineSpacing", "bufferSize", "scrollbackSize", "actionColored","combineBanMessages",
             "timestampTimezone", "autoScrollTimeout", "searchResultColor2",
             "inputFont","emoteScale", "emoteMaxHeight", "usericonScale",
             "emoteScaleGigantified",
@@ -211,6 +211,7 @@ public class StyleManager implements StyleServer {
         addLongSetting(Setting.AUTO_SCROLL_TIME, "autoScrollTimeout");
         addBooleanSetting(Setting.ACTION_COLORED, "actionColored");
         addLongSetting(Setting.BUFFER_SIZE, "bufferSize");
+        addLongSetting(Setting.SCROLLBACK_SIZE, "scrollbackSize");
         addBooleanSetting(Setting.COMBINE_BAN_MESSAGES, "combineBanMessages");
         addBooleanSetting(Setting.BAN_DURATION_APPENDED, "banDurationAppended");
         addBooleanSetting(Setting.BAN_REASON_APPENDED, "banReasonAppended");
@@ -3,6 +3,7 @@ package chatty.gui.colors;
 
 import chatty.Addressbook;
 import chatty.User;
+import chatty.gui.HighlightContext;
 import chatty.gui.Highlighter;
 import chatty.gui.Highlighter.HighlightItem;
 import chatty.util.irc.MsgTags;
@@ -30,7 +31,12 @@ public class MsgColorItem extends ColorItem {
     
     public boolean matches(HighlightItem.Type type, String text, int msgStart, int msgEnd, String channel,
             Addressbook ab, User user, User localUser, MsgTags tags) {
-        return search.matches(type, text, msgStart, msgEnd, null, channel, ab, user, localUser, tags);
+        return matches(type, text, msgStart, msgEnd, channel, ab, user, localUser, tags, null);
+    }
+    
+    public boolean matches(HighlightItem.Type type, String text, int msgStart, int msgEnd, String channel,
+            Addressbook ab, User user, User localUser, MsgTags tags, HighlightContext context) {
+        return search.matches(type, text, msgStart, msgEnd, null, channel, ab, user, localUser, tags, context);
     }
     
     public Highlighter.HighlightItem getMatcher() {
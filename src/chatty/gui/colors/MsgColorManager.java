@@ -3,6 +3,8 @@ package chatty.gui.colors;
 
 import chatty.Addressbook;
 import chatty.User;
+import chatty.gui.HighlightContext;
+import chatty.gui.HighlightPrefilter;
 import chatty.gui.Highlighter.HighlightItem;
 import chatty.util.colors.HtmlColors;
 import chatty.util.irc.MsgTags;
@@ -28,6 +30,7 @@ public class MsgColorManager {
     
     private final Settings settings;
     private volatile List<MsgColorItem> data;
+    private volatile HighlightPrefilter prefilter;
     
     public MsgColorManager(Settings settings) {
         this.settings = settings;
@@ -76,6 +79,7 @@ public class MsgColorManager {
             }
         }
         data = loadedData;
+        prefilter = createPrefilter(data);
     }
     
     /**
@@ -110,9 +114,18 @@ public class MsgColorManager {
      */
     public synchronized void setData(List<MsgColorItem> newData) {
         data = new ArrayList<>(newData);
+        prefilter = createPrefilter(data);
         saveToSettings();
     }
     
+    private static HighlightPrefilter createPrefilter(List<MsgColorItem> items) {
+        List<HighlightItem> matchers = new ArrayList<>();
+        for (MsgColorItem item : items) {
+            matchers.add(item.getMatcher());
+        }
+        return new HighlightPrefilter(matchers);
+    }
+    
     /**
      * Returns the color for this user and text (message), or null if no items
      * matched.
@@ -122,24 +135,28 @@ public class MsgColorManager {
      * @return 
      */
     private synchronized MsgColorItem getColor(HighlightItem.Type type, User user, User localUser,
-            String text, int msgStart, int msgEnd, String channel, MsgTags tags, Addressbook ab) {
+            String text, int msgStart, int msgEnd, String channel, MsgTags tags, Addressbook ab,
+            HighlightContext context) {
         if (data == null || !settings.getBoolean(ENABLED_SETTING)) {
             return EMPTY;
         }
-        for (MsgColorItem item : data) {
-            if (item.matches(type, text, msgStart, msgEnd, channel, ab, user, localUser, tags)) {
+        boolean[] candidates = prefilter.getCandidates(text);
+        for (int i = 0; i < data.size(); i++) {
+            MsgColorItem item = data.get(i);
+            if (HighlightPrefilter.isCandidate(candidates, i)
+                    && item.matches(type, text, msgStart, msgEnd, channel, ab, user, localUser, tags, context)) {
                 return item;
             }
         }
         return EMPTY;
     }
     
-    public synchronized MsgColorItem getMsgColor(User user, User localUser, String text, int msgStart, int msgEnd, MsgTags tags) {
-        return getColor(HighlightItem.Type.REGULAR, user, localUser, text, msgStart, msgEnd, user.getChannel(), tags, user.getAddressbook());
+    public synchronized MsgColorItem getMsgColor(User user, User localUser, String text, int msgStart, int msgEnd, MsgTags tags, HighlightContext context) {
+        return getColor(HighlightItem.Type.REGULAR, user, localUser, text, msgStart, msgEnd, user.getChannel(), tags, user.getAddressbook(), context);
     }
     
-    public synchronized MsgColorItem getInfoColor(String text, int msgStart, int msgEnd, String channel, Addressbook ab, User user, User localUser, MsgTags tags) {
-        return getColor(HighlightItem.Type.INFO, user, localUser, text, msgStart, msgEnd, channel, tags, ab);
+    public synchronized MsgColorItem getInfoColor(String text, int msgStart, int msgEnd, String channel, Addressbook ab, User user, User localUser, MsgTags tags, HighlightContext context) {
+        return getColor(HighlightItem.Type.INFO, user, localUser, text, msgStart, msgEnd, channel, tags, ab, context);
     }
     
 }
@@ -5,6 +5,7 @@ import chatty.gui.components.completion.AutoCompletionServer;
 import chatty.Room;
 import chatty.User;
 import chatty.gui.MainGui;
+import chatty.util.PrefixIndex;
 import chatty.util.StringUtil;
 import chatty.util.api.Emoticon;
 import chatty.util.api.Emoticons;
@@ -259,11 +260,11 @@ public class ChannelCompletion implements AutoCompletionServer {
     }
 
     private AutoCompletionServer.CompletionItems getCompletionItemsEmotes(String search, String prefix) {
-        Collection<Emoticon> allEmotes = new LinkedList<>();
-        allEmotes.addAll(main.emoticons.getUsableGlobalTwitchEmotes());
-        allEmotes.addAll(main.emoticons.getUsableFollowerEmotes(channel.getStreamName()));
-        allEmotes.addAll(main.emoticons.getUsableEmotesByStream(channel.getStreamName()));
-        allEmotes.addAll(main.emoticons.getUsableGlobalOtherEmotes());
+        Collection<Emoticon> allEmotes = new ArrayList<>();
+        addEmoteCandidates(allEmotes, main.emoticons.getUsableGlobalTwitchEmotes(), search, true);
+        addEmoteCandidates(allEmotes, main.emoticons.getUsableFollowerEmotes(channel.getStreamName()), search, false);
+        addEmoteCandidates(allEmotes, main.emoticons.getUsableEmotesByStream(channel.getStreamName()), search, true);
+        addEmoteCandidates(allEmotes, main.emoticons.getUsableGlobalOtherEmotes(), search, true);
         List<Emoticon> result = filterCompletionItems(allEmotes, search, SORT_EMOTES_BY_NAME, item -> {
             if (main.isEmoteIgnored(item, IgnoredEmotes.TAB_COMPLETION)) {
                 return null;
@@ -288,6 +289,44 @@ public class ChannelCompletion implements AutoCompletionServer {
         return new CompletionItems(items, prefix);
     }
     
+    /**
+     * Add the emotes that may match the search, which are then filtered
+     * further. Emotes with many emotes are looked up in an index instead of
+     * having to check every single emote.
+     * 
+     * @param result The emotes are added to this
+     * @param emotes The emotes to search in
+     * @param search Lowercase search
+     * @param indexed Whether the Collection can be indexed (not created
+     * on demand)
+     */
+    private void addEmoteCandidates(Collection<Emoticon> result,
+            Collection<Emoticon> emotes, String search, boolean indexed) {
+        String searchMode = settings().getString("completionSearch");
+        if (!indexed
+                || emotes.size() < MIN_INDEXED_EMOTES
+                || search.isEmpty()
+                || searchMode.equals("anywhere")) {
+            result.addAll(emotes);
+            return;
+        }
+        PrefixIndex<Emoticon> index = main.emoticons.getCompletionIndex(emotes);
+        Set<Emoticon> found = index.find(search);
+        if (searchMode.equals("words")) {
+            found.addAll(index.findWords(search));
+        }
+        /**
+         * Emotes with the same code are still in the same order as in the
+         * source, which matters for which one is used.
+         */
+        result.addAll(found);
+    }
+    
+    /**
+     * Checking a few emotes is faster than the index lookup.
+     */
+    private static final int MIN_INDEXED_EMOTES = 50;
+    
     private class EmoteCompletionItem extends CompletionItem {
 
         private final Emoticon emote;
@@ -445,11 +484,14 @@ public class ChannelCompletion implements AutoCompletionServer {
             Function<T, String> getString) {
         List<T> containing = new ArrayList<>();
         List<T> matched = new ArrayList<>();
-        Pattern cSearch = Pattern.compile(
-                Pattern.quote(search.substring(0, 1).toUpperCase(Locale.ENGLISH))
-                + "(?i)" + Pattern.quote(search.substring(1))
-        );
         String searchMode = main.getSettings().getString("completionSearch");
+        Pattern cSearch = null;
+        if (searchMode.equals("words") && !input.getCompleteToCommonPrefix()) {
+            cSearch = Pattern.compile(
+                    Pattern.quote(search.substring(0, 1).toUpperCase(Locale.ENGLISH))
+                    + "(?i)" + Pattern.quote(search.substring(1))
+            );
+        }
         Set<String> added = new HashSet<>();
         for (T item : data) {
             String itemString = getString.apply(item);
@@ -463,8 +505,7 @@ public class ChannelCompletion implements AutoCompletionServer {
             if (lc.startsWith(search)) {
                 matched.add(item);
                 added.add(itemString);
-            } else if (searchMode.equals("words")
-                    && !input.getCompleteToCommonPrefix()
+            } else if (cSearch != null
                     && cSearch.matcher(itemString).find()) {
                 containing.add(item);
                 added.add(itemString);
@@ -520,7 +561,7 @@ public class ChannelCompletion implements AutoCompletionServer {
         Set<User> regularMatched = new HashSet<>();
         Set<User> customMatched = new HashSet<>();
         Set<User> localizedMatched = new HashSet<>();
-        for (User user : users.getData()) {
+        for (User user : users.findUsers(search)) {
             matchUser(user, search, matchedUsers, regularMatched, localizedMatched, customMatched);
         }
         
@@ -174,6 +174,12 @@ public class EmotesDialog extends JDialog {
 //                repaint = true;
                 repaint();
             }
+
+            @Override
+            public boolean isLowPriority() {
+                // Chat images should be loaded first
+                return true;
+            }
         };
         
         // TODO: Focusable or maybe just when clicked on emote to insert code?
@@ -8,6 +8,7 @@ import chatty.gui.UserListener;
 import chatty.gui.UserlistModel;
 import chatty.gui.components.menus.ContextMenuListener;
 import chatty.gui.components.menus.UserContextMenu;
+import chatty.util.PrefixIndex;
 import chatty.util.settings.Settings;
 import java.awt.Color;
 import java.awt.Component;
@@ -15,6 +16,8 @@ import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import javax.swing.DefaultListCellRenderer;
 import javax.swing.JList;
 
@@ -28,6 +31,22 @@ public class UserList extends JList<User> {
     private final ContextMenuListener contextMenuListener;
     private final UserListener userListener;
 
+    /**
+     * Index of the users names for completion, which would otherwise have to
+     * go through all users in the channel for every search.
+     */
+    private final PrefixIndex<User> completionIndex = new PrefixIndex<>(user -> {
+        List<String> result = new ArrayList<>(3);
+        result.add(user.getName());
+        if (!user.hasRegularDisplayNick()) {
+            result.add(user.getDisplayNick());
+        }
+        if (user.hasCustomNickSet()) {
+            result.add(user.getCustomNick());
+        }
+        return result;
+    }, false);
+
     private long displayNamesMode = SettingsManager.DISPLAY_NAMES_MODE_CAPITALIZED;
     
     public UserList(ContextMenuListener contextMenuListener,
@@ -104,15 +123,20 @@ public class UserList extends JList<User> {
     
     public void addUser(User user) {
         data.add(user);
+        completionIndex.add(user);
     }
     
     public void removeUser(User user) {
         data.remove(user);
+        completionIndex.remove(user);
     }
     
     public void updateUser(User user) {
         data.remove(user);
         data.add(user);
+        // Names may have changed, also add if not in the list yet
+        completionIndex.remove(user);
+        completionIndex.add(user);
         //TODO: this didnt sort the user correctly after opping, maybe it can be fixed?
         //userlistData.updated(user);
     }
@@ -123,6 +147,7 @@ public class UserList extends JList<User> {
     
     public void clearUsers() {
         data.clear();
+        completionIndex.clear();
     }
     
     public int getNumUsers() {
@@ -133,6 +158,21 @@ public class UserList extends JList<User> {
         return data.getData();
     }
     
+    /**
+     * Find users that have a name (username, localized display name or custom
+     * name) starting with the given search, without going through all users.
+     * 
+     * @param search The search, case-insensitive
+     * @return The users, may contain some that don't actually match anymore
+     * (if names changed without the user being updated)
+     */
+    public Collection<User> findUsers(String search) {
+        if (search.isEmpty()) {
+            return getData();
+        }
+        return completionIndex.find(search);
+    }
+    
     /**
      * Open context menu for this user, if the event points at one.
      * 
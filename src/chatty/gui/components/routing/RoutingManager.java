@@ -4,6 +4,7 @@ package chatty.gui.components.routing;
 import chatty.User;
 import chatty.gui.Channels;
 import chatty.gui.DockStyledTabContainer;
+import chatty.gui.HighlightPrefilter;
 import chatty.gui.Highlighter;
 import chatty.gui.Highlighter.HighlightItem;
 import chatty.gui.MainGui;
@@ -36,6 +37,7 @@ public class RoutingManager {
     private final Map<String, RoutingTargetSettings> entries = new HashMap<>();
     private final Map<String, RoutingTarget> targets = new HashMap<>();
     private final List<HighlightItem> routing = new ArrayList<>();
+    private HighlightPrefilter routingPrefilter = new HighlightPrefilter(routing);
     private final MainGui main;
     private final StyleManager styles;
     private final Channels channels;
@@ -106,6 +108,7 @@ public class RoutingManager {
                 routing.add(item);
             }
         }
+        routingPrefilter = new HighlightPrefilter(routing);
     }
     
     public void setChannel(Channel channel) {
@@ -221,8 +224,11 @@ public class RoutingManager {
     }
     
     private void addRoutingTargets(RoutingTargets targets, UserMessage message, User localUser) {
-        for (HighlightItem item : routing) {
-            if (item.matches(HighlightItem.Type.REGULAR, message.text, message.user, localUser, message.tags)) {
+        boolean[] candidates = routingPrefilter.getCandidates(message.text);
+        for (int i = 0; i < routing.size(); i++) {
+            HighlightItem item = routing.get(i);
+            if (HighlightPrefilter.isCandidate(candidates, i)
+                    && item.matches(HighlightItem.Type.REGULAR, message.text, message.user, localUser, message.tags)) {
                 targets.add(item);
                 if (!isRoutingMulti()) {
                     return;
@@ -232,8 +238,11 @@ public class RoutingManager {
     }
     
     private void addRoutingTargets(RoutingTargets targets, InfoMessage message, User user, User localUser) {
-        for (HighlightItem item : routing) {
-            if (item.matches(HighlightItem.Type.INFO, message.text, user, localUser, message.tags)) {
+        boolean[] candidates = routingPrefilter.getCandidates(message.text);
+        for (int i = 0; i < routing.size(); i++) {
+            HighlightItem item = routing.get(i);
+            if (HighlightPrefilter.isCandidate(candidates, i)
+                    && item.matches(HighlightItem.Type.INFO, message.text, user, localUser, message.tags)) {
                 targets.add(item);
                 if (!isRoutingMulti()) {
                     return;
@@ -58,6 +58,8 @@ public class ChatSettings extends SettingsPanel {
         main.add(bufferSizesButton,
                 gbc);
         
+        SettingsUtil.addLabeledComponent(main, "scrollbackSize", 0, 5, 1, WEST, d.addSimpleLongSetting("scrollbackSize", 5, true));
+        
         gbc = d.makeGbc(0, 6, 3, 1, GridBagConstraints.WEST);
         main.add(d.addSimpleBooleanSetting("showImageTooltips"), gbc);
         
@@ -34,6 +34,7 @@ import chatty.util.StringUtil;
 import chatty.util.Timestamp;
 import chatty.util.api.CheerEmoticon;
 import chatty.util.api.Emoticon;
+import chatty.util.api.EmoticonIndex;
 import chatty.util.api.Emoticons;
 import chatty.util.api.Emoticons.TagEmotes;
 import chatty.util.api.CachedImage;
@@ -130,6 +131,7 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
      */
     private static final int BUFFER_SIZE_MIN = 10;
     private static final int BUFFER_SIZE_MAX = 10000;
+    private static final int SCROLLBACK_SIZE_MAX = 100000;
 
     /**
      * The Matcher to use for finding URLs in messages.
@@ -176,6 +178,39 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
      */
     private boolean newlineRequired = false;
     
+    /**
+     * Whether removing old lines and scrolling down has been scheduled to run
+     * after the currently queued EDT events, so it's only done once for all
+     * lines printed in a row (e.g. a batch of messages), instead of for every
+     * single line.
+     */
+    private boolean printFinishPending;
+    private boolean removeLinesRequired;
+    private boolean scrollDownRequired;
+    
+    /**
+     * Lines removed from the top of the document, which can be restored when
+     * scrolling up (if enabled).
+     */
+    private final Scrollback scrollback = new Scrollback();
+    private static final int SCROLLBACK_RESTORE_LINES = 100;
+    private boolean scrollbackRestorePending;
+    
+    /**
+     * Lines removed from the bottom of the document to make room for lines
+     * restored from the scrollback, which are put back when scrolling down
+     * again. New lines are also moved here while it contains any lines, so
+     * the document never contains more than twice the buffer size.
+     */
+    private final Scrollback newerLines = new Scrollback();
+    private boolean newerLinesRestorePending;
+    
+    /**
+     * New lines printed at the end of the document that still have to be
+     * moved to newerLines.
+     */
+    private int newLinesPending;
+    
     public enum Setting {
         TIMESTAMP_ENABLED, EMOTICONS_ENABLED, AUTO_SCROLL, USERICONS_ENABLED,
         
@@ -183,7 +218,8 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
         DELETED_MESSAGES_MODE, BAN_DURATION_APPENDED, BAN_REASON_APPENDED,
         BAN_DURATION_MESSAGE, BAN_REASON_MESSAGE,
         
-        ACTION_COLORED, LINKS_CUSTOM_COLOR, BUFFER_SIZE, AUTO_SCROLL_TIME,
+        ACTION_COLORED, LINKS_CUSTOM_COLOR, BUFFER_SIZE, SCROLLBACK_SIZE,
+        AUTO_SCROLL_TIME,
         EMOTICON_MAX_HEIGHT, EMOTICON_SCALE_FACTOR, USERICON_SCALE_FACTOR,
         EMOTICON_SCALE_FACTOR_GIGANTIFIED,
         CUSTOM_USERICON_SCALE_MODE, BOT_BADGE_ENABLED, CHANNEL_LOGO_SIZE,
@@ -1287,6 +1323,8 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
                 }
             }
         }
+        scrollback.markDeleted(user, targetMsgId);
+        newerLines.markDeleted(user, targetMsgId);
     }
     
     /**
@@ -2456,19 +2494,62 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
         int count = doc.getDefaultRootElement().getElementCount();
         int max = styles.bufferSize();
         
-        boolean regularRequirement =
-                  !scrollManager.fixedChat
-                && scrollManager.isScrollPositionNearEnd()
-                && count > max;
+        int amount = 0;
         
         /**
          * If not scrolled down for a long time (accidentally or on purpose)
          * it could cause running out of memory, so remove stuff just in case.
          */
-        boolean failsafe = count > max * 2;
+        if (count > max * 2) {
+            amount = count - max * 2;
+        }
         
-        if (regularRequirement || failsafe) {
-            removeFirstLines(2);
+        // When newer lines are stored, the end of the document isn't the end
+        if (!scrollManager.fixedChat
+                && scrollManager.isScrollPositionNearEnd()
+                && newerLines.size() == 0
+                && count > max) {
+            amount = count - max;
+        }
+        
+        // Always keep the newest line
+        amount = Math.min(amount, count - 1);
+        if (amount > 0) {
+            removeFirstLines(amount);
+        }
+    }
+    
+    /**
+     * Schedule removing old lines and scrolling down (if necessary) after the
+     * currently queued EDT events. When several lines are printed in a row
+     * this only has to be done once, removing all excess lines with a single
+     * document change.
+     */
+    private void schedulePrintFinish() {
+        if (!printFinishPending) {
+            printFinishPending = true;
+            SwingUtilities.invokeLater(this::finishPrint);
+        }
+    }
+    
+    private void finishPrint() {
+        printFinishPending = false;
+        // Only once the line is finished, since it may still be changed
+        if (newLinesPending > 0 && newlineRequired) {
+            moveLastLines(newLinesPending, true);
+            newLinesPending = 0;
+            if (newerLines.size() > styles.scrollbackSize()) {
+                showNewest();
+            }
+        }
+        updateScrollback();
+        if (removeLinesRequired) {
+            removeLinesRequired = false;
+            clearSomeChat();
+        }
+        if (scrollDownRequired) {
+            scrollDownRequired = false;
+            scrollDownIfNecessary();
         }
     }
 
@@ -2488,8 +2569,20 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
         int lastElementIndex = insertTop ? doc.getDefaultRootElement().getElementCount() - 1 : amount - 1;
         Element firstToRemove = doc.getDefaultRootElement().getElement(firstElementIndex);
         Element lastToRemove = doc.getDefaultRootElement().getElement(lastElementIndex);
+        scrollback.setCapacity(insertTop ? 0 : styles.scrollbackSize());
+        AttributeSet remainingParagraph = null;
         for (int i=firstElementIndex; i<=lastElementIndex; i++) {
-            clearImages(doc.getDefaultRootElement().getElement(i));
+            Element line = doc.getDefaultRootElement().getElement(i);
+            scrollback.addLast(doc, line);
+            clearImages(line);
+        }
+        if (scrollback.isEnabled() && lastElementIndex + 1 < doc.getDefaultRootElement().getElementCount()) {
+            /**
+             * Removing lines seems to copy paragraph attributes to the
+             * following line, so restore them, since the line will also be
+             * stored in the scrollback eventually.
+             */
+            remainingParagraph = doc.getDefaultRootElement().getElement(lastElementIndex + 1).getAttributes().copyAttributes();
         }
         int startOffset = firstToRemove.getStartOffset() - 1;
         if (startOffset < 0) {
@@ -2501,11 +2594,220 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
         }
         try {
             doc.remove(startOffset,endOffset - startOffset);
+            if (remainingParagraph != null) {
+                doc.setParagraphAttributes(0, 1, remainingParagraph, true);
+            }
         } catch (BadLocationException ex) {
 //            Logger.getLogger(ChannelTextPane.class.getName()).log(Level.SEVERE, ex.toString(), ex);
         }
    }
     
+    /**
+     * Put some lines from the scrollback back into the document when scrolled
+     * to the top, keeping the current scroll position on the previously first
+     * line.
+     */
+    private void restoreScrollback() {
+        scrollbackRestorePending = false;
+        JScrollBar vbar = scrollManager.scrollpane.getVerticalScrollBar();
+        if (insertTop
+                || vbar.getValue() > vbar.getMinimum()
+                || scrollManager.isScrollPositionNearEnd()) {
+            // Not scrolled to the top or everything fits without scrolling
+            return;
+        }
+        int length = scrollback.restoreAtStart(doc, SCROLLBACK_RESTORE_LINES, this::markRestoredLineDeleted);
+        // Keep the document size limited, newer lines can be restored later
+        int excess = doc.getDefaultRootElement().getElementCount() - styles.bufferSize() * 2;
+        if (excess > 0) {
+            moveLastLines(excess, false);
+        }
+        if (length > 0) {
+            // After the layout has been updated
+            SwingUtilities.invokeLater(() -> {
+                try {
+                    Rectangle rect = modelToView(Math.min(length, doc.getLength()));
+                    if (rect != null) {
+                        vbar.setValue(rect.y);
+                    }
+                } catch (BadLocationException ex) {
+                    LOGGER.warning("Bad Location");
+                }
+            });
+        }
+    }
+    
+    /**
+     * Put some lines stored in newerLines back into the document when
+     * scrolled to the bottom, removing lines from the top if necessary while
+     * keeping the current scroll position.
+     */
+    private void restoreNewerLines() {
+        newerLinesRestorePending = false;
+        JScrollBar vbar = scrollManager.scrollpane.getVerticalScrollBar();
+        if (insertTop
+                || newLinesPending > 0
+                || vbar.getValue() + vbar.getVisibleAmount() < vbar.getMaximum()) {
+            return;
+        }
+        newerLines.restoreAtEnd(doc, SCROLLBACK_RESTORE_LINES, this::markRestoredLineDeleted);
+        Element root = doc.getDefaultRootElement();
+        int excess = root.getElementCount() - styles.bufferSize() * 2;
+        if (excess > 0) {
+            int removedHeight = 0;
+            try {
+                Rectangle rect = modelToView(root.getElement(excess).getStartOffset());
+                if (rect != null) {
+                    removedHeight = rect.y;
+                }
+            } catch (BadLocationException ex) {
+                LOGGER.warning("Bad Location");
+            }
+            int value = vbar.getValue() - removedHeight;
+            removeFirstLines(excess);
+            // After the layout has been updated
+            SwingUtilities.invokeLater(() -> {
+                vbar.setValue(value);
+            });
+        }
+    }
+    
+    /**
+     * Move lines from the bottom of the document into newerLines.
+     * 
+     * @param amount The number of lines (the first line is always kept)
+     * @param newest true if the lines are newer than the ones already stored
+     * (new lines), false if they are older (lines removed when restoring
+     * older lines)
+     */
+    private void moveLastLines(int amount, boolean newest) {
+        Element root = doc.getDefaultRootElement();
+        int count = root.getElementCount();
+        amount = Math.min(amount, count - 1);
+        if (amount < 1) {
+            return;
+        }
+        int first = count - amount;
+        if (newest) {
+            for (int i = first; i < count; i++) {
+                newerLines.addLast(doc, root.getElement(i));
+            }
+        } else {
+            for (int i = count - 1; i >= first; i--) {
+                newerLines.addFirst(doc, root.getElement(i));
+            }
+        }
+        for (int i = first; i < count; i++) {
+            clearImages(root.getElement(i));
+        }
+        Element remaining = root.getElement(first - 1);
+        AttributeSet remainingParagraph = remaining.getAttributes().copyAttributes();
+        int startOffset = root.getElement(first).getStartOffset() - 1;
+        try {
+            doc.remove(startOffset, doc.getLength() - startOffset);
+            doc.setParagraphAttributes(remaining.getStartOffset(), 1, remainingParagraph, true);
+        } catch (BadLocationException ex) {
+            LOGGER.warning("Bad Location");
+        }
+    }
+    
+    /**
+     * Show the newest lines again, storing the current lines and any lines in
+     * newerLines in the scrollback.
+     */
+    private void showNewest() {
+        if (newerLines.size() == 0) {
+            return;
+        }
+        if (!scrollback.isEnabled()) {
+            flushNewerLines();
+            return;
+        }
+        Element root = doc.getDefaultRootElement();
+        // Pending new lines are the newest, so keep them in the document
+        int keep = Math.min(newLinesPending, root.getElementCount() - 1);
+        removeFirstLines(root.getElementCount() - keep);
+        newerLines.moveAllTo(scrollback);
+        newLinesPending = 0;
+        int restore = styles.bufferSize() - doc.getDefaultRootElement().getElementCount();
+        if (restore > 0) {
+            scrollback.restoreAtStart(doc, restore, this::markRestoredLineDeleted);
+        }
+    }
+    
+    /**
+     * Apply the current settings to the scrollback and newerLines capacity.
+     * If lines can't be stored anymore (e.g. the scrollback size was changed
+     * to 0), any lines in newerLines are put back into the document.
+     */
+    private void updateScrollback() {
+        int size = insertTop ? 0 : styles.scrollbackSize();
+        scrollback.setCapacity(size);
+        int newerCapacity = getNewerLinesCapacity(insertTop, styles.scrollbackSize(), styles.bufferSize());
+        if (newerCapacity == 0) {
+            flushNewerLines();
+        }
+        else {
+            if (newerLines.size() > newerCapacity) {
+                // Don't lose lines between the document and newerLines
+                showNewest();
+            }
+            newerLines.setCapacity(newerCapacity);
+        }
+    }
+    
+    /**
+     * The max number of lines in newerLines, which can only contain lines
+     * that were in the document or the scrollback before.
+     * 
+     * @param insertTop
+     * @param scrollbackSize
+     * @param bufferSize
+     * @return The capacity, 0 if no lines should be stored
+     */
+    static int getNewerLinesCapacity(boolean insertTop, int scrollbackSize, int bufferSize) {
+        if (insertTop || scrollbackSize <= 0) {
+            return 0;
+        }
+        return (scrollbackSize + bufferSize) * 2;
+    }
+    
+    /**
+     * Put all lines from newerLines back into the document (only the newest
+     * buffer size lines if there are more) and stop storing lines there.
+     * Waits until pending new lines have been moved into newerLines, so the
+     * order is kept.
+     */
+    private void flushNewerLines() {
+        if (newLinesPending > 0) {
+            return;
+        }
+        if (newerLines.size() > 0) {
+            if (newerLines.size() >= styles.bufferSize()) {
+                // Current lines would be removed anyway
+                removeFirstLines(doc.getDefaultRootElement().getElementCount());
+            }
+            newerLines.restoreAllAtEnd(doc, styles.bufferSize(), this::markRestoredLineDeleted);
+            clearSomeChat();
+        }
+        newerLines.setCapacity(0);
+    }
+    
+    /**
+     * Mark a line restored from storage as deleted, since the user was
+     * banned or the message deleted while it was stored.
+     * 
+     * @param line 
+     */
+    private void markRestoredLineDeleted(Element line) {
+        int mode = styles.getInt(Setting.DELETED_MESSAGES_MODE);
+        if (mode < DELETED_MESSAGES_KEEP) {
+            deleteMessage(line);
+        } else {
+            strikeThroughMessage(line, mode);
+        }
+    }
+    
     public void removeOldLines() {
         if (messageTimeout > 0) {
             Element paragraph = doc.getDefaultRootElement().getElement(insertTop ? doc.getDefaultRootElement().getElementCount() - 1 : 0);
@@ -2521,6 +2823,8 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
                 } else {
                     clearAll();
                 }
+                // Anything older should not be restored anymore either
+                scrollback.clear();
                 scrollDownIfNecessary();
                 resetNewlineRequired();
             }
@@ -2532,6 +2836,9 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
             doc.remove(0, doc.getLength());
             resetNewlineRequired();
             kit.clearImages();
+            scrollback.clear();
+            newerLines.clear();
+            newLinesPending = 0;
         } catch (BadLocationException ex) {
             Logger.getLogger(ChannelTextPane.class.getName()).log(Level.SEVERE, null, ex);
         }
@@ -2929,7 +3236,7 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
             AttributeSet baseStyle,
             Setting setting) {
         Set<User> alreadyChecked = new HashSet<>();
-        for (MentionCheck check : lastUsers.getItems()) {
+        for (MentionCheck check : lastUsers) {
             if (alreadyChecked.contains(check.user)) {
                 continue;
             }
@@ -2963,7 +3270,7 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
             // Check in recent users if no text supplied (usually for sent msgs)
             String msgId = tags.getReplyParentMsgId();
             Set<User> alreadyChecked = new HashSet<>();
-            for (MentionCheck check : lastUsers.getItems()) {
+            for (MentionCheck check : lastUsers) {
                 if (alreadyChecked.contains(check.user)) {
                     continue;
                 }
@@ -3020,7 +3327,9 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
         // Sent messages
         if (user.isLocalUser()) {
             findEmoticons(main.emoticons.getUsableGlobalTwitchEmotes(), text, ranges, rangesStyle);
-            findEmoticons(main.emoticons.getUsableFollowerEmotes(user.getStream()), text, ranges, rangesStyle);
+            // Created on demand, so don't cache the index
+            EmoticonIndex followerIndex = main.emoticons.getIndex(main.emoticons.getUsableFollowerEmotes(user.getStream()), false);
+            findEmoticons(null, followerIndex, text, ranges, rangesStyle, null);
             findEmoticons(main.emoticons.getSmilies(), text, ranges, rangesStyle);
         }
         
@@ -3200,29 +3509,25 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
     private void findEmoticons(User user, Set<Emoticon> emoticons, String text,
             Map<Integer, Integer> ranges, Map<Integer, MutableAttributeSet> rangesStyle,
             Set<String> accessToSets) {
+        findEmoticons(user, main.emoticons.getIndex(emoticons), text, ranges, rangesStyle, accessToSets);
+    }
+    
+    private void findEmoticons(User user, EmoticonIndex index, String text,
+            Map<Integer, Integer> ranges, Map<Integer, MutableAttributeSet> rangesStyle,
+            Set<String> accessToSets) {
         // Find emoticons
-        for (Emoticon emoticon : emoticons) {
-            // Check the text for every single emoticon
-            if (!emoticon.matchesUser(user, accessToSets)) {
-                continue;
-            }
-            if (main.emoticons.isEmoteIgnored(emoticon, IgnoredEmotes.CHAT)) {
-                continue;
-            }
-            Matcher m = emoticon.getMatcher(text);
-            while (m.find()) {
-                // As long as this emoticon is still found in the text, add
-                // it's position (if it doesn't overlap with something already
-                // found) and move on
-                int start = m.start();
-                int end = m.end() - 1;
-                // For Emoji, check for text style variation selector
-                boolean textEmoji = emoticon.type == Emoticon.Type.EMOJI && m.group().endsWith("\uFE0E");
-                if (!textEmoji) {
-                    addEmoticon(emoticon, start, end, ranges, rangesStyle, false);
-                }
-            }
-        }
+        index.find(text,
+                emoticon -> emoticon.matchesUser(user, accessToSets)
+                        && !main.emoticons.isEmoteIgnored(emoticon, IgnoredEmotes.CHAT),
+                (emoticon, start, end) -> {
+                    // Add the position of each match (if it doesn't overlap
+                    // with something already found)
+                    // For Emoji, check for text style variation selector
+                    boolean textEmoji = emoticon.type == Emoticon.Type.EMOJI && text.charAt(end) == '\uFE0E';
+                    if (!textEmoji) {
+                        addEmoticon(emoticon, start, end, ranges, rangesStyle, false);
+                    }
+                });
     }
     
     private void findBits(Set<CheerEmoticon> emotes, String text,
@@ -3348,6 +3653,8 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
      * @param style 
      */
     private void print(final String text, final AttributeSet style) {
+        // Before changing the document, so it runs before the layout update
+        schedulePrintFinish();
         try {
             String newline = "";
             int insertOffset;
@@ -3355,8 +3662,11 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
                 lengthSinceNewline = 0;
                 newline = "\n";
                 newlineRequired = false;
-                clearSomeChat();
+                removeLinesRequired = true;
                 insertOffset = insertTop ? 0 : doc.getLength();
+                if (newerLines.size() > 0 && !insertTop) {
+                    newLinesPending++;
+                }
             }
             else {
                 insertOffset = insertTop ? doc.getParagraphElement(0).getEndOffset() - 1 : doc.getLength();
@@ -3388,7 +3698,7 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
                 //this.getHighlighter().addHighlight(doc.getLength(), 10, null);
                 // TODO: check how this works
                 doc.setParagraphAttributes(getCurrentParagraphOffset(), 1, styles.paragraph(), true);
-                scrollDownIfNecessary();
+                scrollDownRequired = true;
             }
         } catch (BadLocationException e) {
             System.err.println("BadLocationException");
@@ -3397,7 +3707,7 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
 
     private void scrollDownIfNecessary() {
         if (lastSearchPos == null) {
-            if (scrollManager.isScrollPositionNearEnd()
+            if ((scrollManager.isScrollPositionNearEnd() && newerLines.size() == 0)
                     || scrollManager.scrolledUpTimeout()) {
                 /**
                  * This should work fine, however using scrollDown() instead
@@ -3427,6 +3737,19 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
             if (linePopup != null) {
                 linePopup.update();
             }
+            if (scrollback.size() > 0
+                    && !scrollbackRestorePending
+                    && e.getValue() == scroll.getVerticalScrollBar().getMinimum()) {
+                scrollbackRestorePending = true;
+                SwingUtilities.invokeLater(this::restoreScrollback);
+            }
+            JScrollBar vbar = scroll.getVerticalScrollBar();
+            if (newerLines.size() > 0
+                    && !newerLinesRestorePending
+                    && e.getValue() + vbar.getVisibleAmount() >= vbar.getMaximum()) {
+                newerLinesRestorePending = true;
+                SwingUtilities.invokeLater(this::restoreNewerLines);
+            }
         });
     }
     
@@ -3458,6 +3781,8 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
     
     public void refreshStyles() {
         styles.refresh();
+        // Scrollback size may have changed
+        updateScrollback();
     }
     
     public void setBufferSize(int size) {
@@ -3727,6 +4052,11 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
             if (fixedChat) {
                 return;
             }
+            if (newerLines.size() > 0) {
+                showNewest();
+                // Layout not updated yet
+                requestScrollDown();
+            }
             scrollingDownInProgress = true;
             scrollDown1();
             scrollingDownInProgress = false;
@@ -4097,6 +4427,7 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
             addNumericSetting(Setting.FILTER_COMBINING_CHARACTERS, 1, 0, 2);
             addNumericSetting(Setting.DELETED_MESSAGES_MODE, 30, -1, 9999999);
             addNumericSetting(Setting.BUFFER_SIZE, 250, BUFFER_SIZE_MIN, BUFFER_SIZE_MAX);
+            addNumericSetting(Setting.SCROLLBACK_SIZE, 0, 0, SCROLLBACK_SIZE_MAX);
             addNumericSetting(Setting.AUTO_SCROLL_TIME, 30, 5, 1234);
             addNumericSetting(Setting.EMOTICON_MAX_HEIGHT, 200, 0, 300);
             addNumericSetting(Setting.EMOTICON_SCALE_FACTOR, 100, 1, 200);
@@ -4578,6 +4909,16 @@ public class ChannelTextPane extends JTextPane implements LinkListener, CachedIm
             bufferSize = size;
         }
         
+        /**
+         * The max number of lines kept in a compact form in addition to the
+         * buffer, 0 if disabled.
+         * 
+         * @return 
+         */
+        public int scrollbackSize() {
+            return numericSettings.get(Setting.SCROLLBACK_SIZE);
+        }
+        
         public long namesMode() {
             return numericSettings.get(Setting.DISPLAY_NAMES_MODE);
         }
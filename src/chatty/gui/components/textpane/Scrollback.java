@@ -0,0 +1,376 @@
+
+package chatty.gui.components.textpane;
+
+import chatty.User;
+import chatty.gui.components.textpane.ChannelTextPane.Attribute;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
+import javax.swing.text.StyledDocument;
+
+/**
+ * Keeps lines that were removed from a chat document in a compact form (the
+ * text and the attributes of each part, without any elements or views), so
+ * they can be put back into the document when scrolling.
+ *
+ * The lines are kept in document order and are always a continuous section
+ * directly before the first line of the document (lines removed from the top)
+ * or directly after the last line (lines removed from the bottom, when older
+ * lines are shown). This way the document only has to contain a limited
+ * number of lines around the current scroll position, while a much larger
+ * number of lines can be kept overall.
+ *
+ * Stored lines keep the text they had when they were removed, except that
+ * lines of banned users or deleted messages are remembered so they can be
+ * marked as such when restored.
+ *
+ * Should only be used from the EDT.
+ *
+ * @author tduva
+ */
+public class Scrollback {
+
+    private static final Logger LOGGER = Logger.getLogger(Scrollback.class.getName());
+
+    private final ArrayDeque<Line> lines = new ArrayDeque<>();
+
+    /**
+     * Lines that may have to be marked as deleted by user, in the same order
+     * as in {@code lines}.
+     */
+    private final Map<User, ArrayDeque<Line>> userLines = new IdentityHashMap<>();
+    private int capacity;
+
+    /**
+     * Set the max number of stored lines. If set to 0, no lines are stored.
+     * When more lines are added, the oldest lines are removed.
+     *
+     * @param capacity
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        trim();
+    }
+
+    public boolean isEnabled() {
+        return capacity > 0;
+    }
+
+    public int size() {
+        return lines.size();
+    }
+
+    public void clear() {
+        lines.clear();
+        userLines.clear();
+    }
+
+    /**
+     * Store a line that is about to be removed from the top of the document,
+     * after any already stored lines. Lines have to be added in the order
+     * they appear in the document.
+     *
+     * @param doc The document
+     * @param paragraph The line
+     */
+    public void addLast(StyledDocument doc, Element paragraph) {
+        Line line = createLine(doc, paragraph);
+        if (line != null) {
+            addLast(line);
+            trim();
+        }
+    }
+
+    /**
+     * Store a line that is about to be removed from the bottom of the
+     * document, before any already stored lines. Lines have to be added in
+     * reverse of the order they appear in the document.
+     *
+     * @param doc The document
+     * @param paragraph The line
+     */
+    public void addFirst(StyledDocument doc, Element paragraph) {
+        Line line = createLine(doc, paragraph);
+        if (line != null) {
+            lines.addFirst(line);
+            if (line.user != null) {
+                userLines.computeIfAbsent(line.user, u -> new ArrayDeque<>()).addFirst(line);
+            }
+            trim();
+        }
+    }
+
+    /**
+     * Move all lines to the end of the given Scrollback (which is subject to
+     * its own capacity).
+     *
+     * @param other
+     */
+    public void moveAllTo(Scrollback other) {
+        for (Line line : lines) {
+            other.addLast(line);
+        }
+        other.trim();
+        clear();
+    }
+
+    private void addLast(Line line) {
+        lines.addLast(line);
+        if (line.user != null) {
+            userLines.computeIfAbsent(line.user, u -> new ArrayDeque<>()).addLast(line);
+        }
+    }
+
+    private Line createLine(StyledDocument doc, Element paragraph) {
+        if (capacity == 0) {
+            return null;
+        }
+        int start = paragraph.getStartOffset();
+        int end = Math.min(paragraph.getEndOffset(), doc.getLength());
+        if (end <= start) {
+            return null;
+        }
+        try {
+            String text = doc.getText(start, end - start);
+            if (text.endsWith("\n")) {
+                text = text.substring(0, text.length() - 1);
+            }
+            int count = paragraph.getElementCount();
+            int[] ends = new int[count];
+            AttributeSet[] attributes = new AttributeSet[count];
+            for (int i = 0; i < count; i++) {
+                Element part = paragraph.getElement(i);
+                ends[i] = Math.min(part.getEndOffset() - start, text.length());
+                // Copy, so the element itself isn't kept
+                attributes[i] = part.getAttributes().copyAttributes();
+            }
+            // Same lines as the ones ChannelTextPane marks when banning
+            User user = null;
+            String msgId = null;
+            Element userElement = ChannelTextPane.getUserElementFromLine(paragraph, false);
+            if (userElement != null
+                    && (Util.hasAttributeKey(userElement, Attribute.ID_AUTOMOD)
+                        || Util.hasAttributeKeyValue(userElement, Attribute.IS_USER_MESSAGE, true))) {
+                user = (User) userElement.getAttributes().getAttribute(Attribute.USER);
+                msgId = ChannelTextPane.getIdFromElement(userElement);
+            }
+            return new Line(text, ends, attributes,
+                    paragraph.getAttributes().copyAttributes(), user, msgId);
+        }
+        catch (BadLocationException ex) {
+            LOGGER.warning("Error storing line: " + ex);
+        }
+        return null;
+    }
+
+    private void trim() {
+        while (lines.size() > capacity) {
+            Line line = lines.removeFirst();
+            removeUserLine(line, true);
+        }
+    }
+
+    private void removeUserLine(Line line, boolean first) {
+        if (line.user != null) {
+            ArrayDeque<Line> forUser = userLines.get(line.user);
+            if (forUser != null) {
+                if (first) {
+                    forUser.removeFirst();
+                }
+                else {
+                    forUser.removeLast();
+                }
+                if (forUser.isEmpty()) {
+                    userLines.remove(line.user);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remember that messages of the given user have been deleted, so the
+     * lines can be marked accordingly once they are restored.
+     *
+     * @param user The user
+     * @param msgId Only the message with this id, or all messages of the user
+     * if null
+     */
+    public void markDeleted(User user, String msgId) {
+        ArrayDeque<Line> forUser = userLines.get(user);
+        if (forUser != null) {
+            for (Line line : forUser) {
+                if (msgId == null || msgId.equals(line.msgId)) {
+                    line.deleted = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Insert the most recently stored lines at the top of the document,
+     * removing them from storage.
+     *
+     * @param doc The document
+     * @param amount The max number of lines to restore
+     * @param deletedLines Receives the restored lines that should be marked
+     * as deleted (after all lines have been inserted)
+     * @return The length of the inserted text
+     */
+    public int restoreAtStart(StyledDocument doc, int amount, Consumer<Element> deletedLines) {
+        List<Line> restore = new ArrayList<>();
+        while (restore.size() < amount && !lines.isEmpty()) {
+            Line line = lines.removeLast();
+            removeUserLine(line, false);
+            restore.add(0, line);
+        }
+        if (restore.isEmpty()) {
+            return 0;
+        }
+        boolean empty = doc.getLength() == 0;
+        // Splitting the first line when inserting may change its attributes
+        AttributeSet firstParagraph = empty ? null : doc.getParagraphElement(0).getAttributes().copyAttributes();
+        AttributeSet firstPart = empty ? null : doc.getCharacterElement(0).getAttributes().copyAttributes();
+        List<Integer> deleted = new ArrayList<>();
+        int offset = 0;
+        try {
+            for (int i = 0; i < restore.size(); i++) {
+                Line line = restore.get(i);
+                int start = offset;
+                offset = insertLine(doc, offset, line);
+                if (!empty || i < restore.size() - 1) {
+                    // Same as when printing, the newline has the style of the following line
+                    AttributeSet newline = i < restore.size() - 1 ? restore.get(i + 1).attributes[0] : firstPart;
+                    doc.insertString(offset, "\n", newline);
+                    offset++;
+                }
+                doc.setParagraphAttributes(start, 1, line.paragraph, true);
+                if (line.deleted) {
+                    deleted.add(start);
+                }
+            }
+            if (firstParagraph != null) {
+                doc.setParagraphAttributes(offset, 1, firstParagraph, true);
+            }
+        }
+        catch (BadLocationException ex) {
+            LOGGER.warning("Error restoring lines: " + ex);
+        }
+        // Inserted before any other restored lines, so offsets are still valid
+        for (int start : deleted) {
+            deletedLines.accept(doc.getParagraphElement(start));
+        }
+        return offset;
+    }
+
+    /**
+     * Insert the oldest stored lines at the end of the document, removing
+     * them from storage.
+     *
+     * @param doc The document
+     * @param amount The max number of lines to restore
+     * @param deletedLines Receives the restored lines that should be marked
+     * as deleted (after all lines have been inserted)
+     * @return The number of restored lines
+     */
+    public int restoreAtEnd(StyledDocument doc, int amount, Consumer<Element> deletedLines) {
+        List<Integer> deleted = new ArrayList<>();
+        int restored = 0;
+        try {
+            while (restored < amount && !lines.isEmpty()) {
+                Line line = lines.removeFirst();
+                removeUserLine(line, true);
+                if (doc.getLength() > 0) {
+                    doc.insertString(doc.getLength(), "\n", line.attributes[0]);
+                }
+                int start = doc.getLength();
+                insertLine(doc, start, line);
+                doc.setParagraphAttributes(start, 1, line.paragraph, true);
+                if (line.deleted) {
+                    deleted.add(start);
+                }
+                restored++;
+            }
+        }
+        catch (BadLocationException ex) {
+            LOGGER.warning("Error restoring lines: " + ex);
+        }
+        // Inserted after any other restored lines, so offsets are still valid
+        for (int start : deleted) {
+            deletedLines.accept(doc.getParagraphElement(start));
+        }
+        return restored;
+    }
+
+    /**
+     * Insert the stored lines at the end of the document and clear the
+     * storage, for when lines can't be stored anymore. If there are more
+     * than the given number of lines, only the newest lines are restored.
+     *
+     * @param doc The document
+     * @param max The max number of lines to restore
+     * @param deletedLines Receives the restored lines that should be marked
+     * as deleted (after all lines have been inserted)
+     * @return The number of restored lines
+     */
+    public int restoreAllAtEnd(StyledDocument doc, int max, Consumer<Element> deletedLines) {
+        while (lines.size() > max) {
+            Line line = lines.removeFirst();
+            removeUserLine(line, true);
+        }
+        int restored = restoreAtEnd(doc, lines.size(), deletedLines);
+        clear();
+        return restored;
+    }
+
+    private static int insertLine(StyledDocument doc, int offset, Line line) throws BadLocationException {
+        int partStart = 0;
+        for (int i = 0; i < line.ends.length; i++) {
+            int partEnd = line.ends[i];
+            if (partEnd > partStart) {
+                doc.insertString(offset, line.text.substring(partStart, partEnd), line.attributes[i]);
+                offset += partEnd - partStart;
+                partStart = partEnd;
+            }
+        }
+        return offset;
+    }
+
+    private static class Line {
+
+        private final String text;
+
+        /**
+         * The end offset of each part (relative to the start of the line),
+         * with the attributes of each part.
+         */
+        private final int[] ends;
+        private final AttributeSet[] attributes;
+        private final AttributeSet paragraph;
+
+        /**
+         * The user, if the line can be marked as deleted, null otherwise.
+         */
+        private final User user;
+        private final String msgId;
+        private boolean deleted;
+
+        Line(String text, int[] ends, AttributeSet[] attributes, AttributeSet paragraph,
+                User user, String msgId) {
+            this.text = text;
+            this.ends = ends;
+            this.attributes = attributes;
+            this.paragraph = paragraph;
+            this.user = user;
+            this.msgId = msgId;
+        }
+
+    }
+
+}
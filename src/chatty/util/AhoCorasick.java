@@ -0,0 +1,199 @@
+
+package chatty.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * Finds all occurrences of several literal Strings (needles) in a text with a
+ * single pass over the text, independent of the number of needles.
+ *
+ * When ignoring case, characters are compared the same way a regex with the
+ * "(?iu)" flags compares literal characters, so the result of a search is the
+ * same as searching for each needle with such a quoted regex. Matching is done
+ * on single chars, so for ignoring case the needles should not contain
+ * supplementary characters.
+ *
+ * Immutable after creation, so it can be used from several threads.
+ *
+ * @author tduva
+ */
+public class AhoCorasick {
+
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private final boolean ignoreCase;
+
+    /**
+     * Per state: The chars of the transitions (sorted) and the associated
+     * target states. State 0 is the root.
+     */
+    private final char[][] keys;
+    private final int[][] targets;
+
+    /**
+     * Transitions of the root state for ASCII characters, for quicker lookup
+     * (most text will mostly start over at the root).
+     */
+    private final int[] rootAscii = new int[128];
+
+    private final int[] fail;
+
+    /**
+     * The indices of the needles that end at a state (including the ones of
+     * the fail states).
+     */
+    private final int[][] output;
+
+    /**
+     * Create a new automaton for the given needles.
+     *
+     * @param needles The Strings to search for, must not be empty
+     * @param ignoreCase Whether to ignore case (Unicode aware)
+     * @throws IllegalArgumentException If one of the needles is empty
+     */
+    public AhoCorasick(List<String> needles, boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+
+        //--------------------------
+        // Build trie
+        //--------------------------
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        ends.add(new ArrayList<>());
+        for (int i = 0; i < needles.size(); i++) {
+            String needle = needles.get(i);
+            if (needle.isEmpty()) {
+                throw new IllegalArgumentException("Empty needle");
+            }
+            int state = 0;
+            for (int j = 0; j < needle.length(); j++) {
+                char c = convert(needle.charAt(j));
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new TreeMap<>());
+                    ends.add(new ArrayList<>());
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            ends.get(state).add(i);
+        }
+
+        int count = trie.size();
+        keys = new char[count][];
+        targets = new int[count][];
+        for (int state = 0; state < count; state++) {
+            Map<Character, Integer> transitions = trie.get(state);
+            keys[state] = new char[transitions.size()];
+            targets[state] = new int[transitions.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> entry : transitions.entrySet()) {
+                keys[state][i] = entry.getKey();
+                targets[state][i] = entry.getValue();
+                i++;
+            }
+        }
+        for (int c = 0; c < rootAscii.length; c++) {
+            rootAscii[c] = lookup(0, (char) c);
+        }
+
+        //--------------------------
+        // Fail states and output
+        //--------------------------
+        fail = new int[count];
+        output = new int[count][];
+        output[0] = NO_OUTPUT;
+        // Breadth first, so fail states are always done already
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int target : targets[0]) {
+            queue.add(target);
+            output[target] = toArray(ends.get(target), NO_OUTPUT);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < keys[state].length; i++) {
+                char c = keys[state][i];
+                int target = targets[state][i];
+                int f = fail[state];
+                int next;
+                while ((next = next(f, c)) == -1 && f != 0) {
+                    f = fail[f];
+                }
+                fail[target] = next == -1 ? 0 : next;
+                output[target] = toArray(ends.get(target), output[fail[target]]);
+                queue.add(target);
+            }
+        }
+    }
+
+    private static int[] toArray(List<Integer> own, int[] inherited) {
+        if (own.isEmpty()) {
+            return inherited;
+        }
+        int[] result = Arrays.copyOf(inherited, inherited.length + own.size());
+        for (int i = 0; i < own.size(); i++) {
+            result[inherited.length + i] = own.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Convert the character the same way a case-insensitive regex does
+     * (with Unicode case enabled).
+     *
+     * @param c
+     * @return
+     */
+    public static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private char convert(char c) {
+        return ignoreCase ? fold(c) : c;
+    }
+
+    private int lookup(int state, char c) {
+        int index = Arrays.binarySearch(keys[state], c);
+        return index < 0 ? -1 : targets[state][index];
+    }
+
+    private int next(int state, char c) {
+        if (state == 0 && c < 128) {
+            return rootAscii[c];
+        }
+        return lookup(state, c);
+    }
+
+    /**
+     * Search the text for all needles.
+     *
+     * @param text The text to search in
+     * @param listener Receives the index of the needle (as given in the
+     * constructor) for every occurrence, so the same index may be reported
+     * several times
+     */
+    public void find(String text, IntConsumer listener) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = convert(text.charAt(i));
+            int next;
+            while ((next = next(state, c)) == -1 && state != 0) {
+                state = fail[state];
+            }
+            state = next == -1 ? 0 : next;
+            for (int needle : output[state]) {
+                listener.accept(needle);
+            }
+        }
+    }
+
+}
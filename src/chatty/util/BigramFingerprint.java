@@ -0,0 +1,233 @@
+
+package chatty.util;
+
+import java.util.Arrays;
+
+/**
+ * The bigrams of a String, prepared for calculating the similarity to other
+ * Strings. The bigrams are stored as sorted int arrays, so comparing two
+ * fingerprints only requires walking through both arrays once, without
+ * creating any objects. This allows a fingerprint to be created once for a
+ * message and reused for comparing it to many other messages.
+ *
+ * See {@link StringUtil#getSimilarity(String, String)} and
+ * {@link StringUtil#getSimilarity2(String, String)} for the algorithms.
+ *
+ * Immutable, so it can be used from several threads.
+ *
+ * @author tduva
+ */
+public class BigramFingerprint {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final String text;
+    private final char[] ignoredChars;
+
+    /**
+     * All bigrams (two chars encoded in one int), sorted, including
+     * duplicates.
+     */
+    private final int[] bigrams;
+
+    /**
+     * All bigrams, sorted, without duplicates.
+     */
+    private final int[] distinct;
+
+    /**
+     * Create a fingerprint of the given text, as it is.
+     *
+     * @param text The text (must not be null)
+     */
+    public BigramFingerprint(String text) {
+        this(text, null);
+    }
+
+    private BigramFingerprint(String text, char[] ignoredChars) {
+        this.text = text;
+        this.ignoredChars = ignoredChars;
+        if (text.length() < 2) {
+            bigrams = EMPTY;
+            distinct = EMPTY;
+        }
+        else {
+            bigrams = new int[text.length() - 1];
+            for (int i = 0; i < bigrams.length; i++) {
+                bigrams[i] = text.charAt(i) + (text.charAt(i + 1) << 16);
+            }
+            Arrays.sort(bigrams);
+            int count = 1;
+            for (int i = 1; i < bigrams.length; i++) {
+                if (bigrams[i] != bigrams[i - 1]) {
+                    count++;
+                }
+            }
+            if (count == bigrams.length) {
+                distinct = bigrams;
+            }
+            else {
+                distinct = new int[count];
+                distinct[0] = bigrams[0];
+                int index = 1;
+                for (int i = 1; i < bigrams.length; i++) {
+                    if (bigrams[i] != bigrams[i - 1]) {
+                        distinct[index++] = bigrams[i];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Create a fingerprint of the given text, after applying
+     * {@link StringUtil#prepareForSimilarityComparison(String, char[])}.
+     *
+     * @param input The text (must not be null)
+     * @param ignoredChars The sorted chars to remove, may be null
+     * @return The fingerprint
+     */
+    public static BigramFingerprint prepare(String input, char[] ignoredChars) {
+        return new BigramFingerprint(StringUtil.prepareForSimilarityComparison(input, ignoredChars),
+                ignoredChars != null ? ignoredChars.clone() : null);
+    }
+
+    /**
+     * Check whether this fingerprint was created with the given chars to
+     * ignore, so it can be reused.
+     *
+     * @param ignoredChars
+     * @return
+     */
+    public boolean isPreparedWith(char[] ignoredChars) {
+        return this.ignoredChars == ignoredChars
+                || Arrays.equals(this.ignoredChars, ignoredChars);
+    }
+
+    /**
+     * The text the fingerprint was created from (after preparing).
+     *
+     * @return
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Same as {@link StringUtil#checkSimilarity(String, String, float, int)}.
+     *
+     * @param a One fingerprint
+     * @param b Another fingerprint
+     * @param min The minimum similarity score the Strings need to reach
+     * @param method The comparison algorithm (1 or 2)
+     * @return The score if the Strings reach at least min similiarty score, 0
+     * otherwise
+     */
+    public static float checkSimilarity(BigramFingerprint a, BigramFingerprint b, float min, int method) {
+        if (a.text.isEmpty() && b.text.isEmpty()) {
+            return 1;
+        }
+
+        float sim;
+        if (method == 2) {
+            sim = getSimilarity2(a, b);
+        }
+        else {
+            if (StringUtil.getLengthSimilarity(a.text, b.text) >= min) {
+                sim = getSimilarity(a, b);
+            }
+            else {
+                sim = 0;
+            }
+        }
+        return sim >= min ? sim : 0;
+    }
+
+    /**
+     * Same as {@link StringUtil#getSimilarity(String, String)}.
+     *
+     * @param a One fingerprint
+     * @param b Another fingerprint
+     * @return A float between 0 (not at all similiar) and 1.
+     */
+    public static float getSimilarity(BigramFingerprint a, BigramFingerprint b) {
+        Float result = checkTrivial(a.text, b.text);
+        if (result != null) {
+            return result;
+        }
+        int count = countCommon(a.bigrams, b.bigrams);
+        return 2f * count / (a.text.length() + b.text.length() - 2);
+    }
+
+    /**
+     * Same as {@link StringUtil#getSimilarity2(String, String)}.
+     *
+     * @param a One fingerprint
+     * @param b Another fingerprint
+     * @return A float between 0 (not at all similiar) and 1.
+     */
+    public static float getSimilarity2(BigramFingerprint a, BigramFingerprint b) {
+        Float result = checkTrivial(a.text, b.text);
+        if (result != null) {
+            return result;
+        }
+        int count = countCommon(a.distinct, b.distinct);
+        return 2f * count / (a.distinct.length + b.distinct.length);
+    }
+
+    private static final Float ONE = 1f;
+    private static final Float ZERO = 0f;
+
+    /**
+     * The result for cases that don't require comparing bigrams.
+     *
+     * @param a
+     * @param b
+     * @return The result, or null if bigrams have to be compared
+     */
+    private static Float checkTrivial(String a, String b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return ONE;
+        }
+        if (a.isEmpty() || b.isEmpty()) {
+            return ZERO;
+        }
+        if (a.equals(b)) {
+            return ONE;
+        }
+        if (a.length() < 2 || b.length() < 2) {
+            return ZERO;
+        }
+        return null;
+    }
+
+    /**
+     * Count the number of values that are in both sorted arrays. Each value
+     * can only be matched once, so for duplicate values the lower number of
+     * occurrences is counted.
+     *
+     * @param a
+     * @param b
+     * @return
+     */
+    private static int countCommon(int[] a, int[] b) {
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                count++;
+                i++;
+                j++;
+            }
+            else if (a[i] < b[j]) {
+                i++;
+            }
+            else {
+                j++;
+            }
+        }
+        return count;
+    }
+
+}
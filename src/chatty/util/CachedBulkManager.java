@@ -14,13 +14,18 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.logging.Logger;
@@ -53,6 +58,11 @@ import org.json.simple.parser.JSONParser;
  * <li>The manager calls the result listener for done key queries
  * </ol>
  * 
+ * <p>By default ASAP queries trigger a request immediately, other keys are
+ * requested on a timer. With {@link #setBatching(int, int)} ASAP queries
+ * added shortly after each other are instead combined into one request, which
+ * is done when the batch is full or a short delay has passed.
+ * 
  * @author tduva
  * @param <Key> The class of keys
  * @param <Item> The class of values
@@ -133,9 +143,22 @@ public class CachedBulkManager<Key,Item> {
     // Global options
     private final Options options;
     private final String debugPrefix;
-    private long cacheRefresh;
-    private long cacheRemove;
-    private long testTimestamp = -1;
+    private volatile long cacheRefresh;
+    private volatile long cacheRemove;
+    private volatile long testTimestamp = -1;
+    
+    // Batching
+    private final Timer timer;
+    private volatile int batchSize;
+    private volatile int batchDelay;
+    private final AtomicInteger batchKeys = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    
+    // Stats
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedKeys = new LongAdder();
 
     // Queries
     private final Map<Object, Query<Key, Item>> queries = new HashMap<>();
@@ -144,8 +167,8 @@ public class CachedBulkManager<Key,Item> {
     private final Requester<Key, Item> requester;
     private final Map<Key, Long> requestPending = new HashMap<>();
     
-    // Data
-    private final Map<Key, CacheItem<Item>> cache = new HashMap<>();
+    // Data (can be read without LOCK)
+    private final Map<Key, CacheItem<Item>> cache = new ConcurrentHashMap<>();
     
     // Errors
     private final Map<Key, Long> lastError = new HashMap<>();
@@ -161,7 +184,7 @@ public class CachedBulkManager<Key,Item> {
         this.options = new Options(settings);
         this.debugPrefix = debugPrefix;
         int timerDelay = 10*1000;
-        Timer timer = new Timer("CachedBulkManager."+debugPrefix, options.contains(DAEMON));
+        timer = new Timer("CachedBulkManager."+debugPrefix, options.contains(DAEMON));
         timer.schedule(new TimerTask() {
 
             @Override
@@ -189,6 +212,21 @@ public class CachedBulkManager<Key,Item> {
         }
     }
     
+    /**
+     * Combine keys of ASAP queries into one request, instead of requesting
+     * immediately for each query. The request is performed when the given
+     * number of keys has been queried or the given delay has passed since the
+     * first query, whichever comes first.
+     * 
+     * @param batchSize The max number of keys the requester can request at
+     * once
+     * @param delay The max delay in milliseconds (0 to disable batching)
+     */
+    public void setBatching(int batchSize, int delay) {
+        this.batchSize = batchSize;
+        this.batchDelay = delay;
+    }
+    
     private boolean shouldRemove(CacheItem<Item> item) {
         return item == null
                 || (cacheRemove > 0 && item.millisecondsPassed(cacheRemove));
@@ -200,10 +238,22 @@ public class CachedBulkManager<Key,Item> {
                 || (cacheRefresh > 0 && item.millisecondsPassed(cacheRefresh));
     }
     
-    private void checkRemoveCache(Key key) {
-        if (shouldRemove(cache.get(key))) {
-            cache.remove(key);
+    /**
+     * Get the cached item, removing it if it is too old.
+     * 
+     * Synchronization: Doesn't require LOCK
+     * 
+     * @param key
+     * @return The cached item, or null if none (valid) is cached
+     */
+    private CacheItem<Item> getCached(Key key) {
+        CacheItem<Item> cached = cache.get(key);
+        if (cached != null && shouldRemove(cached)) {
+            // Only remove if it hasn't been replaced meanwhile
+            cache.remove(key, cached);
+            return null;
         }
+        return cached;
     }
     
     @SuppressWarnings("unchecked") // JSONArray / JSONObject
@@ -334,7 +384,12 @@ public class CachedBulkManager<Key,Item> {
         checkDoneQueries();
         
         if (doImmediately(query)) {
-            doRequests();
+            if (batchDelay > 0) {
+                addToBatch(query.keys.size());
+            }
+            else {
+                doRequests();
+            }
         }
         return unique;
     }
@@ -381,20 +436,17 @@ public class CachedBulkManager<Key,Item> {
      * @return 
      */
     public Item get(Key key) {
-        synchronized(LOCK) {
-            checkRemoveCache(key);
-            CacheItem<Item> cached = cache.get(key);
-            if (cached != null) {
-                return cached.value;
-            }
-            return null;
+        CacheItem<Item> cached = getCached(key);
+        if (cached != null) {
+            hits.increment();
+            return cached.value;
         }
+        misses.increment();
+        return null;
     }
     
     public void removeCachedValue(Key key) {
-        synchronized (LOCK) {
-            cache.remove(key);
-        }
+        cache.remove(key);
     }
     
     /**
@@ -411,16 +463,15 @@ public class CachedBulkManager<Key,Item> {
      */
     public Item getOrQuerySingle(Object unique, ResultListener<Key, Item> listener, int settings, Key key) {
         Item result = null;
-        synchronized(LOCK) {
-            checkRemoveCache(key);
-            CacheItem<Item> cached = cache.get(key);
-            if (cached != null) {
-                result = cached.value;
-            }
-            if (!shouldRefresh(cached)) {
-                return result;
-            }
+        CacheItem<Item> cached = getCached(key);
+        if (cached != null) {
+            result = cached.value;
+        }
+        if (!shouldRefresh(cached)) {
+            hits.increment();
+            return result;
         }
+        misses.increment();
         query(unique, listener, settings, key);
         return result;
     }
@@ -450,8 +501,12 @@ public class CachedBulkManager<Key,Item> {
         Query<Key, Item> request = new Query<>(listener, settings, keys);
         Result<Key, Item> result = getResult(request);
         if (result == null || !result.hasAllKeys) {
+            misses.increment();
             query(unique, listener, settings, keys);
         }
+        else {
+            hits.increment();
+        }
         return result;
     }
     
@@ -554,6 +609,36 @@ public class CachedBulkManager<Key,Item> {
         }
     }
     
+    /**
+     * Cache hit rate and request batch sizes, for debugging.
+     * 
+     * @return 
+     */
+    public String getStats() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        long batchCount = batches.sum();
+        return String.format(Locale.ROOT, "%scached: %d, hits: %d/%d (%d%%), batches: %d, avg batch size: %.1f",
+                debugPrefix,
+                cache.size(),
+                hitCount,
+                total,
+                total > 0 ? hitCount * 100 / total : 0,
+                batchCount,
+                batchCount > 0 ? (double) batchedKeys.sum() / batchCount : 0.0);
+    }
+    
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total > 0 ? (double) hitCount / total : 0;
+    }
+    
+    public double getAverageBatchSize() {
+        long batchCount = batches.sum();
+        return batchCount > 0 ? (double) batchedKeys.sum() / batchCount : 0;
+    }
+    
     public String debugVerbose() {
         synchronized(LOCK) {
             return String.format("requests: %d pending: %d [%s]",
@@ -576,6 +661,8 @@ public class CachedBulkManager<Key,Item> {
     
     public void setRequested(Collection<Key> keys) {
         if (keys != null && !keys.isEmpty()) {
+            batches.increment();
+            batchedKeys.add(keys.size());
             synchronized (LOCK) {
                 for (Key key : keys) {
                     requestPending.put(key, MiscUtil.ems());
@@ -612,14 +699,56 @@ public class CachedBulkManager<Key,Item> {
     // Perform requests
     //------------------
 
-    private volatile boolean requestingInProgress;
+    private final AtomicBoolean requestingInProgress = new AtomicBoolean();
+    
+    /**
+     * Set for every flush, so that a flush that comes in while a request is
+     * already in progress is performed afterwards by that thread.
+     */
+    private final AtomicBoolean flushPending = new AtomicBoolean();
     
+    /**
+     * Add the number of keys to the current batch, requesting immediately if
+     * the batch is full or scheduling a request otherwise.
+     * 
+     * @param numKeys 
+     */
+    private void addToBatch(int numKeys) {
+        if (batchKeys.addAndGet(numKeys) >= batchSize) {
+            doRequests();
+        }
+        else if (flushScheduled.compareAndSet(false, true)) {
+            timer.schedule(new TimerTask() {
+
+                @Override
+                public void run() {
+                    flushScheduled.set(false);
+                    doRequests();
+                }
+            }, batchDelay);
+        }
+    }
+    
+    /**
+     * Request keys that need to be requested. If a request is already in
+     * progress (on another thread or when called from the requester) this
+     * returns immediately and the request is repeated once the current one is
+     * done, since keys may have been added after it collected them.
+     */
     public void doRequests() {
-        if (requestingInProgress) {
-            LOGGER.warning("Ignored doRequests");
-            return;
+        flushPending.set(true);
+        while (flushPending.get() && requestingInProgress.compareAndSet(false, true)) {
+            try {
+                flushPending.set(false);
+                performRequests();
+            } finally {
+                requestingInProgress.set(false);
+            }
         }
-        requestingInProgress = true;
+    }
+    
+    private void performRequests() {
+        batchKeys.set(0);
         Set<Key> asap = new HashSet<>();
         Set<Key> normal = new HashSet<>();
         Set<Key> backlog = new HashSet<>();
@@ -640,7 +769,6 @@ public class CachedBulkManager<Key,Item> {
         if (!asap.isEmpty() || !normal.isEmpty()) {
             requester.request(this, asap, normal, backlog);
         }
-        requestingInProgress = false;
     }
     
     private void addKeys(Query<Key, Item> query, Set<Key> asap, Set<Key> normal, Set<Key> backlog) {
@@ -744,8 +872,7 @@ public class CachedBulkManager<Key,Item> {
                     continue;
                 }
                 
-                checkRemoveCache(k);
-                CacheItem<Item> cached = cache.get(k);
+                CacheItem<Item> cached = getCached(k);
                 /**
                  * The cached should not be included if a request should still
                  * take place, because otherwise it may not be requested.
@@ -22,10 +22,9 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
 import java.util.logging.Level;
@@ -65,8 +64,21 @@ public class ImageCache {
      */
     private static final int EXPIRED_FILES_CHECK_CAP = 100;
     
+    /**
+     * Remove images from the pack file that haven't been fetched in this many
+     * seconds.
+     */
+    private static final int PACK_DELETE_OLDER_THAN = DELETE_FILES_OLDER_THAN;
+    
+    /**
+     * Only compact the pack file if at least this much of it is unused.
+     */
+    private static final double PACK_COMPACT_RATIO = 0.3;
+    
     private static volatile Path defaultPath = Paths.get("");
     private static volatile boolean cachingEnabled = true;
+    private static volatile boolean packEnabled = false;
+    private static ImagePackCache pack;
     
     /**
      * Sets the default image cache Path, used by some functions.
@@ -91,6 +103,25 @@ public class ImageCache {
         cachingEnabled = enabled;
     }
     
+    /**
+     * Store cached images in a single pack file (in the default path) instead
+     * of separate files. Images already cached in the other format are not
+     * transferred.
+     * 
+     * @param enabled Whether to use the pack file
+     * @see ImagePackCache
+     */
+    public static void setPackEnabled(boolean enabled) {
+        packEnabled = enabled;
+    }
+    
+    private static synchronized ImagePackCache getPack() {
+        if (pack == null) {
+            pack = new ImagePackCache(defaultPath.resolve("pack"));
+        }
+        return pack;
+    }
+    
     /**
      * Some testing stuff.
      * 
@@ -117,7 +148,16 @@ public class ImageCache {
      * @return The number of deleted files, or -1 if failed
      */
     public static int clearCache(String prefix) {
-        return clearCache(defaultPath, prefix);
+        int result = clearCache(defaultPath, prefix);
+        if (packEnabled) {
+            int packResult = getPack().clear(prefix);
+            LOGGER.info(String.format(Locale.ROOT, "ImageCache: Removed %d images from pack",
+                    packResult));
+            if (result != -1) {
+                result += packResult;
+            }
+        }
+        return result;
     }
     
     /**
@@ -185,6 +225,9 @@ public class ImageCache {
      */
     public static void deleteExpiredFiles() {
         deleteExpiredFiles(defaultPath);
+        if (packEnabled) {
+            getPack().compact(PACK_DELETE_OLDER_THAN, PACK_COMPACT_RATIO);
+        }
     }
     
     /**
@@ -333,7 +376,13 @@ public class ImageCache {
      */
     public static ImageResult getImage(ImageRequest request, Path path, String prefix, int expireTime) {
         if (cachingEnabled && !isLocalURL(request.requestedURL)) {
-            ImageResult image = getCachedImage(request, path, prefix, expireTime);
+            ImageResult image;
+            if (packEnabled && path == defaultPath) {
+                image = getPackedImage(request, getPack(), prefix, expireTime);
+            }
+            else {
+                image = getCachedImage(request, path, prefix, expireTime);
+            }
             if (image != null) {
                 return image;
             }
@@ -397,10 +446,13 @@ public class ImageCache {
         ImageResult result = null;
         
         Object o = getLockObject(id);
-        synchronized(o) {
-            result = getCachedImage2(request, file, expireTime);
+        try {
+            synchronized(o) {
+                result = getCachedImage2(request, file, expireTime);
+            }
+        } finally {
+            removeLockObject(id);
         }
-        removeLockObject(id);
         return result;
     }
     
@@ -425,6 +477,69 @@ public class ImageCache {
         return fromFile;
     }
     
+    /**
+     * Gets the image from the pack file, with the same behaviour regarding
+     * expired images as {@link #getCachedImage(ImageRequest, Path, String, int)}.
+     * Images that can't be decoded are not stored.
+     * 
+     * @param request
+     * @param pack
+     * @param prefix
+     * @param expireTime
+     * @return The ImageIcon or null if an error occured
+     */
+    private static ImageResult getPackedImage(ImageRequest request, ImagePackCache pack, String prefix, int expireTime) {
+        String id = sha1(request.requestedURL.toString());
+        Object o = getLockObject(id);
+        try {
+            synchronized (o) {
+                if (!pack.hasExpired(prefix, id, expireTime)) {
+                    ImageResult fromPack = getImageFromBytes(pack.get(prefix, id), request);
+                    if (fromPack != null) {
+                        return fromPack;
+                    }
+                }
+                byte[] data = download(request.requestedURL);
+                ImageResult downloaded = getImageFromBytes(data, request);
+                if (downloaded != null) {
+                    pack.put(prefix, id, data, downloaded.actualBaseSize);
+                    return downloaded;
+                }
+                // Use expired image if available
+                return getImageFromBytes(pack.get(prefix, id), request);
+            }
+        } finally {
+            removeLockObject(id);
+        }
+    }
+    
+    private static byte[] download(URL url) {
+        try {
+            URLConnection c = url.openConnection();
+            try (InputStream is = c.getInputStream()) {
+                byte[] data = GifUtil.readAllBytes(is);
+                if (data.length > 0) {
+                    return data;
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.warning("Error downloading " + url + ": " + ex);
+        }
+        return null;
+    }
+    
+    private static ImageResult getImageFromBytes(byte[] data, ImageRequest request) {
+        if (data == null) {
+            return null;
+        }
+        try {
+            return GifUtil.getGifFromBytes(data, request);
+        } catch (Exception ex) {
+            LOGGER.warning("Error loading image from data: "+ex);
+        }
+        return null;
+    }
+    
     private static boolean hasExpired(int expireTime, Path file) {
         long lastModified = file.toFile().lastModified();
         long ago = (System.currentTimeMillis() - lastModified) / 1000;
@@ -494,23 +609,34 @@ public class ImageCache {
                 || "jar".equalsIgnoreCase(url.getProtocol());
     }
     
-    private static final Map<String, Object> lockObjects = new HashMap<>();
+    /**
+     * Locks for each file currently in use, so the same file isn't accessed
+     * concurrently. Only removed when no thread uses it anymore, so a thread
+     * still waiting for the lock doesn't end up using a different one than a
+     * thread that comes later.
+     */
+    private static final ConcurrentHashMap<String, LockObject> lockObjects = new ConcurrentHashMap<>();
+    
+    private static class LockObject {
+        
+        private int users;
+    }
     
     private static Object getLockObject(String file) {
-        synchronized(lockObjects) {
-            Object o = lockObjects.get(file);
+        return lockObjects.compute(file, (k, o) -> {
             if (o == null) {
-                o = new Object();
-                lockObjects.put(file, o);
+                o = new LockObject();
             }
+            o.users++;
             return o;
-        }
+        });
     }
     
     private static void removeLockObject(String file) {
-        synchronized(lockObjects) {
-            lockObjects.remove(file);
-        }
+        lockObjects.computeIfPresent(file, (k, o) -> {
+            o.users--;
+            return o.users > 0 ? o : null;
+        });
     }
     
     /**
@@ -0,0 +1,558 @@
+
+package chatty.util;
+
+import java.awt.Dimension;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Stores cached images in a single append-only pack file, with an index file
+ * containing the location and some metadata of each image. The index is read
+ * completely when the cache is first used, so looking up an image doesn't
+ * require any file system access and reading it only requires reading from
+ * the memory-mapped pack file.
+ *
+ * <p>
+ * Replaced or removed images stay in the pack file until it is compacted,
+ * which writes all still valid images into a new pack file (a new generation
+ * with a higher number in the filenames, since the old one may still be
+ * mapped).
+ * </p>
+ *
+ * <p>
+ * Index format: A header (magic number, version), followed by records that
+ * are only ever appended. Later records for the same image replace earlier
+ * ones, a record with a length of -1 removes the image.
+ * </p>
+ *
+ * @author tduva
+ */
+public class ImagePackCache {
+
+    private static final Logger LOGGER = Logger.getLogger(ImagePackCache.class.getName());
+
+    private static final int MAGIC = 0x43494d47;
+    private static final int VERSION = 1;
+    private static final int HASH_LENGTH = 20;
+
+    /**
+     * Has to stay below what can be mapped in one buffer.
+     */
+    private static final long MAX_PACK_SIZE = 1024 * 1024 * 1024;
+
+    private static final String FILE_PREFIX = "images-";
+
+    private final Path dir;
+    private final long maxPackSize;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private int generation;
+    private FileChannel pack;
+    private DataOutputStream index;
+    private MappedByteBuffer mapped;
+    private long packSize;
+    private boolean opened;
+    private boolean maxSizeLogged;
+
+    public ImagePackCache(Path dir) {
+        this(dir, MAX_PACK_SIZE);
+    }
+
+    ImagePackCache(Path dir, long maxPackSize) {
+        this.dir = dir;
+        this.maxPackSize = Math.min(maxPackSize, MAX_PACK_SIZE);
+    }
+
+    //==========================
+    // Open
+    //==========================
+    /**
+     * Open the current generation of files and read the index, if not
+     * already done.
+     *
+     * @return true if the cache can be used, false otherwise
+     */
+    private boolean open() {
+        if (opened) {
+            return pack != null;
+        }
+        opened = true;
+        try {
+            Files.createDirectories(dir);
+            generation = findGeneration();
+            deleteOtherGenerations();
+            pack = FileChannel.open(packFile(generation),
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            packSize = pack.size();
+            readIndex();
+            index = openIndex(indexFile(generation));
+            LOGGER.info(String.format(Locale.ROOT, "ImagePackCache: Loaded %d entries (%dKB) from %s",
+                    entries.size(), packSize / 1024, dir));
+            return true;
+        }
+        catch (IOException ex) {
+            LOGGER.warning("ImagePackCache: Error opening: " + ex);
+            closeFiles();
+            return false;
+        }
+    }
+
+    private int findGeneration() {
+        int result = 1;
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                int fileGeneration = getGeneration(file.getName(), ".idx");
+                if (fileGeneration > result) {
+                    result = fileGeneration;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static int getGeneration(String fileName, String suffix) {
+        if (fileName.startsWith(FILE_PREFIX) && fileName.endsWith(suffix)) {
+            try {
+                return Integer.parseInt(fileName.substring(FILE_PREFIX.length(), fileName.length() - suffix.length()));
+            }
+            catch (NumberFormatException ex) {
+                // Not a cache file
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Previous generations may not have been deleted if they were still
+     * mapped at the time.
+     */
+    private void deleteOtherGenerations() {
+        File[] files = dir.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                int fileGeneration = Math.max(getGeneration(file.getName(), ".idx"),
+                                              getGeneration(file.getName(), ".pack"));
+                if (fileGeneration != -1 && fileGeneration != generation) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    private Path packFile(int generation) {
+        return dir.resolve(FILE_PREFIX + generation + ".pack");
+    }
+
+    private Path indexFile(int generation) {
+        return dir.resolve(FILE_PREFIX + generation + ".idx");
+    }
+
+    private void readIndex() throws IOException {
+        File file = indexFile(generation).toFile();
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Invalid index file");
+            }
+            byte[] hash = new byte[HASH_LENGTH];
+            while (true) {
+                String prefix = input.readUTF();
+                input.readFully(hash);
+                long offset = input.readLong();
+                int length = input.readInt();
+                long fetched = input.readLong();
+                int width = input.readUnsignedShort();
+                int height = input.readUnsignedShort();
+                String key = makeKey(prefix, ImageCache.byteArrayToHexString(hash));
+                if (length == -1) {
+                    entries.remove(key);
+                }
+                else if (offset + length <= packSize) {
+                    entries.put(key, new Entry(prefix, hash.clone(), offset, length, fetched, width, height));
+                }
+            }
+        }
+        catch (EOFException ex) {
+            // Done, an incomplete last record (e.g. from a crash) is ignored
+        }
+    }
+
+    private DataOutputStream openIndex(Path file) throws IOException {
+        boolean exists = Files.exists(file) && Files.size(file) > 0;
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file.toFile(), true)));
+        if (!exists) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.flush();
+        }
+        return output;
+    }
+
+    private void closeFiles() {
+        try {
+            if (pack != null) {
+                pack.close();
+            }
+            if (index != null) {
+                index.close();
+            }
+        }
+        catch (IOException ex) {
+            LOGGER.warning("ImagePackCache: Error closing: " + ex);
+        }
+        pack = null;
+        index = null;
+        mapped = null;
+    }
+
+    //==========================
+    // Access
+    //==========================
+    /**
+     * Get the stored image data.
+     *
+     * @param prefix The prefix the image was stored with
+     * @param id The SHA-1 of the image URL (as hex)
+     * @return The data, or null if the image is not stored or an error
+     * occured
+     */
+    public synchronized byte[] get(String prefix, String id) {
+        if (!open()) {
+            return null;
+        }
+        Entry entry = entries.get(makeKey(prefix, id));
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return read(entry);
+        }
+        catch (IOException ex) {
+            LOGGER.warning("ImagePackCache: Error reading: " + ex);
+            return null;
+        }
+    }
+
+    /**
+     * Check if the image is stored and was fetched within the given time.
+     *
+     * @param prefix The prefix the image was stored with
+     * @param id The SHA-1 of the image URL (as hex)
+     * @param expireTime The expire time in seconds, 0 or lower means it never
+     * expires
+     * @return true if the image is not stored or expired
+     */
+    public synchronized boolean hasExpired(String prefix, String id, int expireTime) {
+        if (!open()) {
+            return true;
+        }
+        Entry entry = entries.get(makeKey(prefix, id));
+        if (entry == null) {
+            return true;
+        }
+        long ago = (System.currentTimeMillis() - entry.fetched) / 1000;
+        return expireTime > 0 && ago > expireTime;
+    }
+
+    /**
+     * Store the image data, replacing any previously stored data for the same
+     * image. If the pack file would get too large, the images that were
+     * fetched the longest time ago are removed and the pack file is
+     * compacted first.
+     *
+     * @param prefix The prefix
+     * @param id The SHA-1 of the image URL (as hex)
+     * @param data The image data
+     * @param size The size of the image, may be null
+     * @return true if the image was stored
+     */
+    public synchronized boolean put(String prefix, String id, byte[] data, Dimension size) {
+        if (!open()) {
+            return false;
+        }
+        if (packSize + data.length > maxPackSize && !makeRoom(data.length)) {
+            return false;
+        }
+        try {
+            long offset = packSize;
+            pack.write(ByteBuffer.wrap(data), offset);
+            packSize += data.length;
+            Entry entry = new Entry(prefix, hexToBytes(id), offset, data.length,
+                    System.currentTimeMillis(),
+                    size != null ? size.width : 0,
+                    size != null ? size.height : 0);
+            writeRecord(index, entry, entry.offset, entry.length);
+            index.flush();
+            entries.put(makeKey(prefix, id), entry);
+            return true;
+        }
+        catch (IOException ex) {
+            LOGGER.warning("ImagePackCache: Error writing: " + ex);
+            return false;
+        }
+    }
+
+    /**
+     * Remove all images with the given prefix. The data is only actually
+     * removed from the pack file when it's compacted.
+     *
+     * @param prefix The prefix, or null to remove all images
+     * @return The number of removed images
+     */
+    public synchronized int clear(String prefix) {
+        if (!open()) {
+            return 0;
+        }
+        int count = 0;
+        try {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (prefix == null || entry.prefix.equals(prefix)) {
+                    writeRecord(index, entry, 0, -1);
+                    it.remove();
+                    count++;
+                }
+            }
+            index.flush();
+        }
+        catch (IOException ex) {
+            LOGGER.warning("ImagePackCache: Error writing: " + ex);
+        }
+        return count;
+    }
+
+    /**
+     * Remove the images that were fetched the longest time ago until the
+     * remaining ones and the given number of bytes take up at most three
+     * quarters of the max size (so this isn't necessary again right away),
+     * then compact the pack file.
+     *
+     * @param required The number of bytes that will be added
+     * @return true if there is enough space now
+     */
+    private boolean makeRoom(int required) {
+        if (!maxSizeLogged) {
+            LOGGER.info(String.format(Locale.ROOT, "ImagePackCache: Reached max size (%dKB), removing old images",
+                    maxPackSize / 1024));
+            maxSizeLogged = true;
+        }
+        if (required > maxPackSize * 3 / 4) {
+            return false;
+        }
+        long used = 0;
+        for (Entry entry : entries.values()) {
+            used += entry.length;
+        }
+        List<Entry> byFetched = new ArrayList<>(entries.values());
+        byFetched.sort(Comparator.comparingLong((Entry e) -> e.fetched).thenComparingLong(e -> e.offset));
+        try {
+            for (Entry entry : byFetched) {
+                if (used + required <= maxPackSize * 3 / 4) {
+                    break;
+                }
+                writeRecord(index, entry, 0, -1);
+                entries.remove(makeKey(entry.prefix, ImageCache.byteArrayToHexString(entry.hash)));
+                used -= entry.length;
+            }
+            index.flush();
+        }
+        catch (IOException ex) {
+            LOGGER.warning("ImagePackCache: Error writing: " + ex);
+            return false;
+        }
+        return compact(Integer.MAX_VALUE, 0) && packSize + required <= maxPackSize;
+    }
+
+    private byte[] read(Entry entry) throws IOException {
+        if (mapped == null || entry.offset + entry.length > mapped.capacity()) {
+            // Map everything written so far
+            mapped = pack.map(FileChannel.MapMode.READ_ONLY, 0, packSize);
+        }
+        byte[] result = new byte[entry.length];
+        ByteBuffer buffer = mapped.duplicate();
+        buffer.position((int) entry.offset);
+        buffer.get(result);
+        return result;
+    }
+
+    private static void writeRecord(DataOutputStream output, Entry entry, long offset, int length) throws IOException {
+        output.writeUTF(entry.prefix);
+        output.write(entry.hash);
+        output.writeLong(offset);
+        output.writeInt(length);
+        output.writeLong(entry.fetched);
+        output.writeShort(Math.min(entry.width, 0xFFFF));
+        output.writeShort(Math.min(entry.height, 0xFFFF));
+    }
+
+    //==========================
+    // Compact
+    //==========================
+    /**
+     * Remove images that haven't been fetched in the given time and, if
+     * enough of the pack file is unused, write the remaining images into a
+     * new pack file.
+     *
+     * @param deleteOlderThan Remove images fetched longer ago than this
+     * (seconds)
+     * @param minUnusedRatio Only compact if at least this much of the pack
+     * file is unused (0-1)
+     * @return true if compacted
+     */
+    public synchronized boolean compact(int deleteOlderThan, double minUnusedRatio) {
+        if (!open()) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        List<Entry> keep = new ArrayList<>();
+        long used = 0;
+        for (Entry entry : entries.values()) {
+            if ((now - entry.fetched) / 1000 <= deleteOlderThan) {
+                keep.add(entry);
+                used += entry.length;
+            }
+        }
+        if (packSize == 0 || (packSize - used) < packSize * minUnusedRatio) {
+            return false;
+        }
+        // Keep the order of the old file
+        keep.sort(Comparator.comparingLong(e -> e.offset));
+        int newGeneration = generation + 1;
+        Map<String, Entry> newEntries = new HashMap<>();
+        try (FileChannel newPack = FileChannel.open(packFile(newGeneration),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+                DataOutputStream newIndex = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile(newGeneration).toFile())))) {
+            newIndex.writeInt(MAGIC);
+            newIndex.writeInt(VERSION);
+            long offset = 0;
+            for (Entry entry : keep) {
+                byte[] data = read(entry);
+                newPack.write(ByteBuffer.wrap(data), offset);
+                Entry newEntry = new Entry(entry.prefix, entry.hash, offset,
+                        entry.length, entry.fetched, entry.width, entry.height);
+                writeRecord(newIndex, newEntry, newEntry.offset, newEntry.length);
+                newEntries.put(makeKey(entry.prefix, ImageCache.byteArrayToHexString(entry.hash)), newEntry);
+                offset += data.length;
+            }
+        }
+        catch (IOException ex) {
+            LOGGER.warning("ImagePackCache: Error compacting: " + ex);
+            try {
+                Files.deleteIfExists(indexFile(newGeneration));
+                Files.deleteIfExists(packFile(newGeneration));
+            }
+            catch (IOException ex2) {
+                LOGGER.warning("ImagePackCache: Error deleting: " + ex2);
+            }
+            return false;
+        }
+        long oldSize = packSize;
+        int oldCount = entries.size();
+        closeFiles();
+        entries.clear();
+        entries.putAll(newEntries);
+        generation = newGeneration;
+        // Old files may fail to be deleted while still mapped
+        deleteOtherGenerations();
+        try {
+            pack = FileChannel.open(packFile(generation),
+                    StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            packSize = pack.size();
+            index = openIndex(indexFile(generation));
+        }
+        catch (IOException ex) {
+            LOGGER.warning("ImagePackCache: Error opening after compacting: " + ex);
+            closeFiles();
+            return false;
+        }
+        LOGGER.info(String.format(Locale.ROOT, "ImagePackCache: Compacted %d entries (%dKB) to %d entries (%dKB)",
+                oldCount, oldSize / 1024, entries.size(), packSize / 1024));
+        return true;
+    }
+
+    //==========================
+    // Other
+    //==========================
+    public synchronized int size() {
+        return open() ? entries.size() : 0;
+    }
+
+    public synchronized long getPackSize() {
+        return open() ? packSize : 0;
+    }
+
+    /**
+     * Close the files, for example before deleting them. The cache can't be
+     * used anymore afterwards.
+     */
+    public synchronized void close() {
+        opened = true;
+        closeFiles();
+        entries.clear();
+    }
+
+    private static String makeKey(String prefix, String id) {
+        return prefix + "__" + id;
+    }
+
+    private static byte[] hexToBytes(String hex) {
+        byte[] result = new byte[HASH_LENGTH];
+        for (int i = 0; i < HASH_LENGTH && i * 2 + 1 < hex.length(); i++) {
+            result[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return result;
+    }
+
+    private static class Entry {
+
+        private final String prefix;
+        private final byte[] hash;
+        private final long offset;
+        private final int length;
+        private final long fetched;
+        private final int width;
+        private final int height;
+
+        Entry(String prefix, byte[] hash, long offset, int length, long fetched, int width, int height) {
+            this.prefix = prefix;
+            this.hash = hash;
+            this.offset = offset;
+            this.length = length;
+            this.fetched = fetched;
+            this.width = width;
+            this.height = height;
+        }
+
+    }
+
+}
@@ -0,0 +1,192 @@
+
+package chatty.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Finds items by the (case-insensitive) prefix of one of their names, without
+ * having to check every item, for example for auto-completion. Items are
+ * added and removed as they change, so the index is maintained incrementally.
+ *
+ * <p>
+ * In addition to the start of the names, the start of words within the names
+ * can also be indexed. A word starts at every character after the first that
+ * is not a lowercase letter (e.g. "Kappa" in "MiniKappa" or "1" in "abc123"),
+ * the same way the "words" completion search mode matches.
+ * </p>
+ *
+ * <p>
+ * The names of an item are retrieved when it is added, so if they change the
+ * item has to be updated. Not thread-safe.
+ * </p>
+ *
+ * @author tduva
+ * @param <T> The type of the items
+ */
+public class PrefixIndex<T> {
+
+    private final Function<T, Collection<String>> getNames;
+    private final boolean indexWords;
+
+    /**
+     * Lowercase name (or word start) to all items with that name.
+     */
+    private final TreeMap<String, List<T>> names = new TreeMap<>();
+    private final TreeMap<String, List<T>> words = new TreeMap<>();
+
+    /**
+     * The lowercase names the item was added with, so it can be removed even
+     * if the names changed.
+     */
+    private final Map<T, String[]> items = new HashMap<>();
+
+    /**
+     * Create a new index.
+     *
+     * @param getNames Returns all names an item should be found by (null or
+     * empty names are ignored)
+     * @param indexWords Whether to also index word starts, which is required
+     * for searching by word
+     */
+    public PrefixIndex(Function<T, Collection<String>> getNames, boolean indexWords) {
+        this.getNames = getNames;
+        this.indexWords = indexWords;
+    }
+
+    public void add(T item) {
+        if (items.containsKey(item)) {
+            return;
+        }
+        List<String> keys = new ArrayList<>(1);
+        for (String name : getNames.apply(item)) {
+            if (!StringUtil.isNullOrEmpty(name)) {
+                String key = StringUtil.toLowerCase(name);
+                if (!keys.contains(key)) {
+                    keys.add(key);
+                    add(names, key, item);
+                    if (indexWords) {
+                        addWords(name, key, item);
+                    }
+                }
+            }
+        }
+        items.put(item, keys.toArray(new String[keys.size()]));
+    }
+
+    public void addAll(Collection<T> items) {
+        for (T item : items) {
+            add(item);
+        }
+    }
+
+    public void remove(T item) {
+        String[] keys = items.remove(item);
+        if (keys != null) {
+            for (String key : keys) {
+                remove(names, key, item);
+                if (indexWords) {
+                    for (int i = 1; i < key.length(); i++) {
+                        remove(words, key.substring(i), item);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Update the names of the item, if it is in the index.
+     *
+     * @param item
+     */
+    public void update(T item) {
+        if (items.containsKey(item)) {
+            remove(item);
+            add(item);
+        }
+    }
+
+    public void clear() {
+        names.clear();
+        words.clear();
+        items.clear();
+    }
+
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Find all items that have a name starting with the given search.
+     *
+     * @param search The search, case-insensitive
+     * @return The items, in order of the names they were found by
+     */
+    public Set<T> find(String search) {
+        Set<T> result = new LinkedHashSet<>();
+        find(names, StringUtil.toLowerCase(search), result);
+        return result;
+    }
+
+    /**
+     * Find all items that have a word (not at the start of the name) starting
+     * with the given search. Since only the start of words is indexed and
+     * nothing else, the results may have to be checked further.
+     *
+     * @param search The search, case-insensitive
+     * @return The items, in order of the names they were found by
+     * @throws IllegalStateException If word starts are not indexed
+     */
+    public Set<T> findWords(String search) {
+        if (!indexWords) {
+            throw new IllegalStateException("Words not indexed");
+        }
+        Set<T> result = new LinkedHashSet<>();
+        find(words, StringUtil.toLowerCase(search), result);
+        return result;
+    }
+
+    private static <T> void find(TreeMap<String, List<T>> map, String search, Set<T> result) {
+        for (Map.Entry<String, List<T>> entry : map.tailMap(search).entrySet()) {
+            if (!entry.getKey().startsWith(search)) {
+                break;
+            }
+            result.addAll(entry.getValue());
+        }
+    }
+
+    private void addWords(String name, String key, T item) {
+        // Lowercasing may change the length in some rare cases
+        if (name.length() != key.length()) {
+            return;
+        }
+        for (int i = 1; i < name.length(); i++) {
+            if (isWordStart(name.charAt(i))) {
+                add(words, key.substring(i), item);
+            }
+        }
+    }
+
+    private static boolean isWordStart(char c) {
+        return !Character.isLowerCase(c) && !Character.isWhitespace(c);
+    }
+
+    private static <T> void add(TreeMap<String, List<T>> map, String key, T item) {
+        map.computeIfAbsent(key, k -> new ArrayList<>(1)).add(item);
+    }
+
+    private static <T> void remove(TreeMap<String, List<T>> map, String key, T item) {
+        List<T> list = map.get(key);
+        if (list != null && list.remove(item) && list.isEmpty()) {
+            map.remove(key);
+        }
+    }
+
+}
@@ -18,6 +18,8 @@ import java.util.logging.Logger;
  */
 public class RawMessageTest {
     
+    private static final Logger LOGGER = Logger.getLogger(RawMessageTest.class.getName());
+    
     public static String simulateIRC(String channel, String parameters, String localUsername) {
         String split[] = parameters.split(" ", 2);
         String type = split[0];
@@ -283,4 +285,52 @@ public class RawMessageTest {
         }.start();
     }
     
+    /**
+     * Replay the received IRC lines of a file written by RawRecorder (or a
+     * file containing only raw lines), for example for load testing.
+     *
+     * @param c
+     * @param filename Relative to the debug directory, or absolute
+     * @param speed How much faster than recorded to replay (delays between
+     * lines are capped at 5 seconds), 0 to replay as fast as possible
+     */
+    public static void replayFile(TwitchConnection c, String filename, double speed) {
+        new Thread("ReplayFile") {
+
+            private long prevTime = -1;
+            private int count;
+
+            @Override
+            public void run() {
+                Path file = Chatty.getPath(Chatty.PathType.DEBUG).resolve(filename);
+                long start = System.currentTimeMillis();
+                try {
+                    RawRecorder.read(file, entry -> {
+                        if (entry.type != RawRecorder.Type.RECEIVED) {
+                            return;
+                        }
+                        if (speed > 0 && prevTime != -1 && entry.time != -1) {
+                            long delay = (long) ((entry.time - prevTime) / speed);
+                            if (delay > 0) {
+                                try {
+                                    Thread.sleep(Math.min(delay, 5000));
+                                } catch (InterruptedException ex) {
+                                    Thread.currentThread().interrupt();
+                                }
+                            }
+                        }
+                        prevTime = entry.time;
+                        c.simulate(entry.text);
+                        count++;
+                    });
+                } catch (IOException ex) {
+                    LOGGER.warning("Replay failed: "+ex);
+                }
+                LOGGER.info(String.format("Replayed %d lines from %s in %dms",
+                        count, file, System.currentTimeMillis() - start));
+            }
+
+        }.start();
+    }
+    
 }
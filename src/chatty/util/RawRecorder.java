@@ -0,0 +1,519 @@
+
+package chatty.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records raw traffic (like IRC lines) into rolling files on a separate
+ * thread, so that the thread adding lines doesn't have to wait for formatting
+ * or disk I/O.
+ *
+ * <p>
+ * Lines are added to a bounded queue without locking. If the queue is full
+ * (the writer can't keep up) the line is dropped and counted instead, and the
+ * number of dropped lines is also recorded in the file.
+ * </p>
+ *
+ * <p>
+ * The files are either text (the same format as the previous debug logs,
+ * {@code [yyyy-MM-dd HH:mm:ss/SSS] --> line}) or compressed with GZIP and
+ * containing binary frames (type, time, length, UTF-8 text). When the current
+ * file reaches the maximum size, the files are rotated ({@code name0} being
+ * the newest), the same as the FileHandler used before. Both formats can be
+ * read back with {@link #read(Path, Consumer)}, for example for replaying.
+ * </p>
+ *
+ * @author tduva
+ */
+public class RawRecorder {
+
+    private static final Logger LOGGER = Logger.getLogger(RawRecorder.class.getName());
+
+    private static final String HEADER = "chatty-raw 1";
+
+    /**
+     * How long the writer waits when the queue is empty.
+     */
+    private static final long WAIT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * How long written data may stay unflushed.
+     */
+    private static final long FLUSH_DELAY = 1000;
+
+    private static final int MAX_WAIT = 5*1000;
+
+    private static final Pattern TEXT_LINE = Pattern.compile("\\[(\\d{4}-\\d{2}-\\d{2} \\d{2}:\\d{2}:\\d{2}/\\d{3})\\] (.*)");
+
+    public enum Type {
+        RECEIVED('>', "--> "),
+        SENT('<', "<-- "),
+        INFO('I', ""),
+        DROPPED('D', ""),
+        HEADER('H', "");
+
+        private final byte id;
+        private final String textPrefix;
+
+        Type(char id, String textPrefix) {
+            this.id = (byte) id;
+            this.textPrefix = textPrefix;
+        }
+
+        private static Type fromId(byte id) {
+            for (Type type : values()) {
+                if (type.id == id) {
+                    return type;
+                }
+            }
+            return null;
+        }
+
+    }
+
+    public static class Entry {
+
+        /**
+         * The time the entry was added, or -1 if unknown (e.g. when reading
+         * a file that only contains raw lines).
+         */
+        public final long time;
+        public final Type type;
+
+        /**
+         * The line, or the number of lines for {@link Type#DROPPED}.
+         */
+        public final String text;
+
+        public Entry(long time, Type type, String text) {
+            this.time = time;
+            this.type = type;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return time+" "+type+" "+text;
+        }
+
+    }
+
+    private final Path dir;
+    private final String name;
+    private final boolean compressed;
+    private final long maxSize;
+    private final int count;
+    private final int capacity;
+
+    private final Queue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    //--------------------------
+    // Only accessed by the writer thread
+    //--------------------------
+    private final SimpleDateFormat dateTimeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss/SSS");
+    private CountingOutputStream fileOut;
+    private DataOutputStream binaryOut;
+    private boolean failed;
+    private boolean unflushed;
+    private long lastFlush;
+    private long reportedDropped;
+
+    /**
+     * Create a new recorder, which has to be started before anything is
+     * written.
+     *
+     * @param dir The directory to write the files to
+     * @param name The name of the files, the file number and extension is
+     * added
+     * @param compressed Whether to write compressed binary files instead of
+     * text
+     * @param maxSize The maximum size of a file in bytes (compressed size for
+     * compressed files), before rotating
+     * @param count The number of files to rotate through
+     * @param capacity The maximum number of entries in the queue, before
+     * further entries are dropped
+     */
+    public RawRecorder(Path dir, String name, boolean compressed,
+            long maxSize, int count, int capacity) {
+        this.dir = dir;
+        this.name = name;
+        this.compressed = compressed;
+        this.maxSize = maxSize;
+        this.count = Math.max(count, 1);
+        this.capacity = capacity;
+        this.writerThread = new Thread(this::run, "RawRecorder-"+name);
+        this.writerThread.setDaemon(true);
+    }
+
+    public void start() {
+        writerThread.start();
+    }
+
+    /**
+     * Writes the remaining entries and closes the file, waiting for the
+     * writer thread to finish (up to a few seconds). Entries added afterwards
+     * are ignored.
+     */
+    public void close() {
+        close(true);
+    }
+
+    /**
+     * Entries added afterwards are ignored. The remaining entries are still
+     * written and the file closed by the writer thread.
+     *
+     * @param wait Whether to wait for the writer thread to finish (up to a
+     * few seconds)
+     */
+    public void close(boolean wait) {
+        closed = true;
+        if (writerThread.isAlive()) {
+            LockSupport.unpark(writerThread);
+            if (!wait) {
+                return;
+            }
+            try {
+                writerThread.join(MAX_WAIT);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * The total number of entries that were dropped because the queue was
+     * full.
+     *
+     * @return
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Add an entry to be written. Does not block.
+     *
+     * @param type The type
+     * @param text The line
+     * @return true if the entry was added, false if it was dropped because
+     * the queue is full (or the recorder is closed)
+     */
+    public boolean add(Type type, String text) {
+        if (closed) {
+            return false;
+        }
+        if (queueSize.incrementAndGet() > capacity) {
+            queueSize.decrementAndGet();
+            long current = dropped.incrementAndGet();
+            if (current % 1000 == 1) {
+                LOGGER.warning("RawRecorder "+name+": Dropped "+current+" lines (queue full)");
+            }
+            return false;
+        }
+        queue.add(new Entry(System.currentTimeMillis(), type, text));
+        return true;
+    }
+
+    public Path getFile(int number) {
+        return dir.resolve(name+number+(compressed ? ".bin.gz" : ".log"));
+    }
+
+    //==========================
+    // Writer thread
+    //==========================
+
+    private void run() {
+        while (true) {
+            Entry entry = queue.poll();
+            if (entry != null) {
+                queueSize.decrementAndGet();
+                write(entry);
+                checkDropped();
+            }
+            else {
+                checkDropped();
+                if (closed) {
+                    break;
+                }
+                if (unflushed && System.currentTimeMillis() - lastFlush >= FLUSH_DELAY) {
+                    flush();
+                }
+                LockSupport.parkNanos(WAIT);
+            }
+        }
+        closeFile();
+    }
+
+    private void checkDropped() {
+        long current = dropped.get();
+        if (current != reportedDropped) {
+            write(new Entry(System.currentTimeMillis(), Type.DROPPED,
+                    String.valueOf(current - reportedDropped)));
+            reportedDropped = current;
+        }
+    }
+
+    private void write(Entry entry) {
+        if (failed) {
+            return;
+        }
+        try {
+            if (fileOut == null) {
+                open(true);
+            }
+            else if (fileOut.written >= maxSize) {
+                closeFile();
+                rotate();
+                open(false);
+            }
+            if (compressed) {
+                writeFrame(binaryOut, entry);
+            }
+            else if (entry.type != Type.HEADER) {
+                fileOut.write(toText(entry).getBytes(StandardCharsets.UTF_8));
+            }
+            unflushed = true;
+        }
+        catch (IOException ex) {
+            LOGGER.warning("RawRecorder "+name+": Failed writing, stopped recording ("+ex+")");
+            failed = true;
+            closeFile();
+        }
+    }
+
+    private void open(boolean append) throws IOException {
+        Files.createDirectories(dir);
+        Path file = getFile(0);
+        long existing = append && Files.exists(file) ? Files.size(file) : 0;
+        OutputStream out = Files.newOutputStream(file,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING);
+        if (compressed) {
+            /**
+             * Counting the compressed bytes, which lags behind somewhat
+             * because of buffering, but that doesn't matter much.
+             * 
+             * Appending adds a new GZIP member, which is read as continuous.
+             */
+            fileOut = new CountingOutputStream(out, existing);
+            binaryOut = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(fileOut, 8192, true)));
+            writeFrame(binaryOut, new Entry(System.currentTimeMillis(), Type.HEADER, HEADER));
+        }
+        else {
+            fileOut = new CountingOutputStream(new BufferedOutputStream(out), existing);
+        }
+        lastFlush = System.currentTimeMillis();
+    }
+
+    private void rotate() throws IOException {
+        for (int i = count - 1; i > 0; i--) {
+            Path source = getFile(i - 1);
+            if (Files.exists(source)) {
+                Files.move(source, getFile(i), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private void flush() {
+        try {
+            if (binaryOut != null) {
+                binaryOut.flush();
+            }
+            else if (fileOut != null) {
+                fileOut.flush();
+            }
+        }
+        catch (IOException ex) {
+            LOGGER.warning("RawRecorder "+name+": Failed flushing ("+ex+")");
+        }
+        unflushed = false;
+        lastFlush = System.currentTimeMillis();
+    }
+
+    private void closeFile() {
+        try {
+            if (binaryOut != null) {
+                binaryOut.close();
+            }
+            else if (fileOut != null) {
+                fileOut.close();
+            }
+        }
+        catch (IOException ex) {
+            LOGGER.warning("RawRecorder "+name+": Failed closing ("+ex+")");
+        }
+        binaryOut = null;
+        fileOut = null;
+        unflushed = false;
+    }
+
+    private String toText(Entry entry) {
+        String time = dateTimeFormat.format(new Date(entry.time));
+        if (entry.type == Type.DROPPED) {
+            return "["+time+"] Dropped "+entry.text+" lines (queue full)\n";
+        }
+        return "["+time+"] "+entry.type.textPrefix+entry.text+"\n";
+    }
+
+    private static void writeFrame(DataOutputStream out, Entry entry) throws IOException {
+        byte[] bytes = entry.text.getBytes(StandardCharsets.UTF_8);
+        out.writeByte(entry.type.id);
+        out.writeLong(entry.time);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Counts the bytes written to the file, to know when to rotate.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long written;
+
+        CountingOutputStream(OutputStream out, long written) {
+            super(out);
+            this.written = written;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            written += len;
+        }
+
+    }
+
+    //==========================
+    // Reading
+    //==========================
+
+    /**
+     * Read a file written by a recorder, in either format. Text files may
+     * also contain only raw lines (without time), which are read as received
+     * lines with an unknown time.
+     *
+     * @param file The file
+     * @param consumer Receives all entries, in order (except the header)
+     * @throws IOException If reading fails or the file is invalid
+     */
+    public static void read(Path file, Consumer<Entry> consumer) throws IOException {
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file))) {
+            input.mark(2);
+            int b1 = input.read();
+            int b2 = input.read();
+            input.reset();
+            if (b1 == 0x1f && b2 == 0x8b) {
+                readBinary(new DataInputStream(new BufferedInputStream(new GZIPInputStream(input))), consumer);
+            }
+            else {
+                readText(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)), consumer);
+            }
+        }
+    }
+
+    private static void readBinary(DataInputStream input, Consumer<Entry> consumer) throws IOException {
+        while (true) {
+            int id = input.read();
+            if (id == -1) {
+                return;
+            }
+            Type type = Type.fromId((byte) id);
+            if (type == null) {
+                throw new IOException("Invalid frame type: "+id);
+            }
+            try {
+                long time = input.readLong();
+                int length = input.readInt();
+                if (length < 0) {
+                    throw new IOException("Invalid frame length: "+length);
+                }
+                byte[] bytes = new byte[length];
+                input.readFully(bytes);
+                if (type != Type.HEADER) {
+                    consumer.accept(new Entry(time, type, new String(bytes, StandardCharsets.UTF_8)));
+                }
+            }
+            catch (EOFException ex) {
+                // Incomplete last frame (e.g. not flushed before exiting)
+                return;
+            }
+        }
+    }
+
+    private static void readText(BufferedReader reader, Consumer<Entry> consumer) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss/SSS");
+        String line;
+        while ((line = reader.readLine()) != null) {
+            Matcher m = TEXT_LINE.matcher(line);
+            if (m.matches()) {
+                long time;
+                try {
+                    time = format.parse(m.group(1)).getTime();
+                }
+                catch (ParseException ex) {
+                    time = -1;
+                }
+                String text = m.group(2);
+                if (text.startsWith(Type.RECEIVED.textPrefix)) {
+                    consumer.accept(new Entry(time, Type.RECEIVED, text.substring(Type.RECEIVED.textPrefix.length())));
+                }
+                else if (text.startsWith(Type.SENT.textPrefix)) {
+                    consumer.accept(new Entry(time, Type.SENT, text.substring(Type.SENT.textPrefix.length())));
+                }
+                else {
+                    consumer.accept(new Entry(time, Type.INFO, text));
+                }
+            }
+            else if (!line.isEmpty()) {
+                consumer.accept(new Entry(-1, Type.RECEIVED, line));
+            }
+        }
+    }
+
+}
@@ -1,37 +1,129 @@
-
 package chatty.util;
 
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
+ * Keeps the last added items, up to the capacity, in a fixed size array.
+ *
+ * Adding and reading is lock-free and adding doesn't create any objects. It is
+ * safe to add from several threads, although it's mostly intended for a single
+ * thread adding (like the thread receiving messages).
+ *
+ * Iterating goes over the items directly without copying them first, from the
+ * oldest to the newest item that had been added when the iterator was
+ * created. The iteration is weakly consistent: if items are added while
+ * iterating, some of the older items may already have been replaced by newer
+ * ones.
  *
  * @author tduva
  * @param <T>
  */
-public class RingBuffer<T> {
-    
+public class RingBuffer<T> implements Iterable<T> {
+
     private final int capacity;
-    private final LinkedList<T> data;
-    
+    private final AtomicReferenceArray<T> data;
+
+    /**
+     * The total number of items that have been added (the next item will be
+     * at this position, modulo capacity).
+     */
+    private final AtomicLong added = new AtomicLong();
+
     public RingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
         this.capacity = capacity;
-        this.data = new LinkedList<>();
+        this.data = new AtomicReferenceArray<>(capacity);
     }
-    
-    public synchronized void add(T item) {
-        data.addLast(item);
-        if (data.size() > capacity) {
-            data.removeFirst();
+
+    /**
+     * Add an item, replacing the oldest one if the capacity is reached.
+     *
+     * @param item The item, must not be null
+     */
+    public void add(T item) {
+        if (item == null) {
+            throw new NullPointerException();
         }
+        long pos = added.getAndIncrement();
+        data.set((int) (pos % capacity), item);
+    }
+
+    /**
+     * The current number of items.
+     *
+     * @return
+     */
+    public int size() {
+        return (int) Math.min(added.get(), capacity);
     }
-    
-    public synchronized LinkedList<T> getItems() {
-        return new LinkedList<>(data);
+
+    public int capacity() {
+        return capacity;
     }
-    
+
+    /**
+     * Copies the current items, for uses that need a separate list.
+     * Iterating over the RingBuffer directly doesn't copy.
+     *
+     * @return A new list with the items, from oldest to newest
+     */
+    public LinkedList<T> getItems() {
+        LinkedList<T> result = new LinkedList<>();
+        for (T item : this) {
+            result.add(item);
+        }
+        return result;
+    }
+
     @Override
-    public synchronized String toString() {
-        return String.format("[%d]%s", capacity, data);
+    public Iterator<T> iterator() {
+        long end = added.get();
+        long start = Math.max(0, end - capacity);
+        return new Iterator<T>() {
+
+            private long pos = start;
+            private T next = advance();
+
+            /**
+             * Get the next item, skipping positions that another thread
+             * hasn't written to yet.
+             */
+            private T advance() {
+                while (pos < end) {
+                    T item = data.get((int) (pos++ % capacity));
+                    if (item != null) {
+                        return item;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public T next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                T result = next;
+                next = advance();
+                return result;
+            }
+        };
     }
-    
+
+    @Override
+    public String toString() {
+        return String.format("[%d]%s", capacity, getItems());
+    }
+
 }
@@ -0,0 +1,83 @@
+package chatty.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Compact variant of {@link RingBuffer} that stores a long (for example a
+ * timestamp, possibly with some flags encoded) together with each item in
+ * parallel arrays, so no wrapper object has to be created for each item.
+ *
+ * The same as for {@link RingBuffer} applies: adding and reading is lock-free
+ * and reading is weakly consistent while items are added concurrently (in
+ * which case a stamp may also belong to a newer item than the one it's
+ * reported with).
+ *
+ * @author tduva
+ * @param <T>
+ */
+public class StampedRingBuffer<T> {
+
+    private final int capacity;
+    private final AtomicLongArray stamps;
+    private final AtomicReferenceArray<T> data;
+    private final AtomicLong added = new AtomicLong();
+
+    public StampedRingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.stamps = new AtomicLongArray(capacity);
+        this.data = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Add an item, replacing the oldest one if the capacity is reached.
+     *
+     * @param stamp The value to store with the item
+     * @param item The item, must not be null
+     */
+    public void add(long stamp, T item) {
+        if (item == null) {
+            throw new NullPointerException();
+        }
+        int index = (int) (added.getAndIncrement() % capacity);
+        // Item written last, so a reader seeing the item also sees the stamp
+        stamps.set(index, stamp);
+        data.set(index, item);
+    }
+
+    /**
+     * The current number of items.
+     *
+     * @return
+     */
+    public int size() {
+        return (int) Math.min(added.get(), capacity);
+    }
+
+    /**
+     * Go through the current items, from oldest to newest, without copying
+     * them.
+     *
+     * @param consumer Receives the stamp and item
+     */
+    public void forEach(StampedConsumer<T> consumer) {
+        long end = added.get();
+        for (long pos = Math.max(0, end - capacity); pos < end; pos++) {
+            int index = (int) (pos % capacity);
+            T item = data.get(index);
+            if (item != null) {
+                consumer.accept(stamps.get(index), item);
+            }
+        }
+    }
+
+    public interface StampedConsumer<T> {
+
+        void accept(long stamp, T item);
+    }
+
+}
@@ -9,12 +9,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
@@ -724,54 +722,15 @@ public class StringUtil {
      * "aa" would be equal to "aaaaaaaaaaaaaa". I'm not sure what the "correct"
      * way to implement it is, however this version appears to work better.
      * 
+     * When comparing the same String several times, use
+     * {@link BigramFingerprint} directly, so the bigrams are only created once.
+     * 
      * @param a One String (must not be null)
      * @param b Another String (must not be null)
      * @return A float between 0 (not at all similiar) and 1.
      */
     public static float getSimilarity(String a, String b) {
-        if (a.isEmpty() && b.isEmpty()) {
-            return 1;
-        }
-        if (a.isEmpty() || b.isEmpty()) {
-            return 0;
-        }
-        if (a.equals(b)) {
-            return 1;
-        }
-        if (a.length() < 2 || b.length() < 2) {
-            return 0;
-        }
-        //--------------------------
-        // First String
-        //--------------------------
-        // Create a map of bigram counts for the first String
-        Map<Integer, Integer> m = new HashMap<>(a.length());
-        for (int i = 0; i < a.length() - 1; i++) {
-            /**
-             * Encoding two chars in one int seemed to have slightly better
-             * performance than creating a lot of Strings.
-             */
-            Integer part = (a.charAt(i) + (a.charAt(i + 1) << 16));
-            m.put(part, m.getOrDefault(part, 0) + 1);
-        }
-        //--------------------------
-        // Second String
-        //--------------------------
-        // Count how many of the bigrams appear in both Strings
-        int count = 0;
-        for (int i = 0; i < b.length() - 1; i++) {
-            Integer part = (b.charAt(i) + (b.charAt(i + 1) << 16));
-            int c = m.getOrDefault(part, 0);
-            if (c > 0) {
-                count++;
-                m.put(part, c - 1);
-            }
-        }
-        /**
-         * Each String contains "a.length() - 1" bigrams, so this is dividing
-         * by the number of total possible bigrams.
-         */
-        return 2f * count / (a.length() + b.length() - 2);
+        return BigramFingerprint.getSimilarity(new BigramFingerprint(a), new BigramFingerprint(b));
     }
     
     /**
@@ -785,33 +744,7 @@ public class StringUtil {
      * @return A float between 0 (not at all similiar) and 1.
      */
     public static float getSimilarity2(String a, String b) {
-        if (a.isEmpty() && b.isEmpty()) {
-            return 1;
-        }
-        if (a.isEmpty() || b.isEmpty()) {
-            return 0;
-        }
-        if (a.equals(b)) {
-            return 1;
-        }
-        if (a.length() < 2 || b.length() < 2) {
-            return 0;
-        }
-        Set<Integer> setA = new HashSet<>();
-        Set<Integer> setB = new HashSet<>();
-        for (int i=0;i<a.length() - 1; i++) {
-            Integer part = (a.charAt(i) + (a.charAt(i+1) << 16));
-            setA.add(part);
-        }
-        int count = 0;
-        for (int i=0;i<b.length() - 1; i++) {
-            Integer part = (b.charAt(i) + (b.charAt(i+1) << 16));
-            // Count if first occurence in b and also occured in a
-            if (setB.add(part) && setA.contains(part)) {
-                count++;
-            }
-        }
-        return 2f*count / (setA.size() + setB.size());
+        return BigramFingerprint.getSimilarity2(new BigramFingerprint(a), new BigramFingerprint(b));
     }
     
     public static String plural(String input, int num) {
@@ -9,7 +9,9 @@ import chatty.util.commands.Parameters;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -59,6 +61,21 @@ public class Timestamp {
      * Optional CustomCommand to format the timestamp further (may be null).
      */
     private final CustomCommand command;
+    
+    /**
+     * The time unit (in milliseconds) the formatted time can change in, 1 if
+     * the format contains milliseconds, 1000 otherwise.
+     */
+    private final long precision;
+    
+    /**
+     * Formatted timestamps (before applying the CustomCommand, which may not
+     * always return the same result), since often many messages are received
+     * within the same second.
+     */
+    private final Map<CacheKey, String> cache = new ConcurrentHashMap<>();
+    
+    private static final int MAX_CACHE_SIZE = 100;
 
     /**
      * The timestamp input is a SimpleDateFormat format string, but may also
@@ -95,6 +112,7 @@ public class Timestamp {
         }
         format = parsedTimestamp;
         hasUptime = UPTIME.matcher(timestampInput).find();
+        precision = format != null && hasMillis(format.toPattern()) ? 1 : 1000;
 
         CustomCommand parsedCommand = null;
         if (customCommandInput != null) {
@@ -158,17 +176,26 @@ public class Timestamp {
         if (format == null) {
             return null;
         }
-        String result = time > 0 ? DateTime.format(time, format) : DateTime.currentTime(format);
+        long now = time > 0 ? time : System.currentTimeMillis();
+        CacheKey key = makeKey(time, now, info);
+        String result = cache.get(key);
+        if (result == null) {
+            result = DateTime.format(now, format);
 
-        // Uptime
-        if (hasUptime) {
-            Matcher m = UPTIME.matcher(result);
-            StringBuffer b = new StringBuffer();
-            while (m.find()) {
-                handleUptime(b, m, time, info);
+            // Uptime
+            if (hasUptime) {
+                Matcher m = UPTIME.matcher(result);
+                StringBuffer b = new StringBuffer();
+                while (m.find()) {
+                    handleUptime(b, m, time, now, info);
+                }
+                m.appendTail(b);
+                result = b.toString();
+            }
+            if (cache.size() > MAX_CACHE_SIZE) {
+                cache.clear();
             }
-            m.appendTail(b);
-            result = b.toString();
+            cache.put(key, result);
         }
 
         // Format using Custom Command
@@ -179,7 +206,111 @@ public class Timestamp {
         return result;
     }
 
-    private static void handleUptime(StringBuffer b, Matcher m, long time, StreamInfo info) {
+    /**
+     * Create a key that contains everything the timestamp (without the
+     * CustomCommand) depends on.
+     * 
+     * @param time The time given (may be -1 for current time)
+     * @param now The time the timestamp is based on
+     * @param info May be null
+     * @return The key
+     */
+    private CacheKey makeKey(long time, long now, StreamInfo info) {
+        long uptime = CacheKey.NONE;
+        long uptimePicnic = CacheKey.NONE;
+        boolean sameStart = true;
+        if (hasUptime && info != null
+                && (time > 0 || (info.isValid() && info.getOnline()))) {
+            long started = info.getHistoryStreamStart(time, false);
+            long startedPicnic = info.getHistoryStreamStart(time, true);
+            uptime = uptimeKey(started, time, now);
+            uptimePicnic = uptimeKey(startedPicnic, time, now);
+            sameStart = started == startedPicnic;
+        }
+        return new CacheKey(Math.floorDiv(now, precision), uptime, uptimePicnic, sameStart);
+    }
+    
+    /**
+     * The uptime output doesn't contain anything smaller than seconds, so only
+     * the full seconds of the duration matter (truncated the same way as when
+     * formatting the duration).
+     */
+    private static long uptimeKey(long started, long time, long now) {
+        if (started == -1) {
+            return CacheKey.NONE;
+        }
+        long duration = getDuration(time, started, now);
+        if (duration < 0) {
+            return -(-duration / 1000) - 1;
+        }
+        return duration / 1000;
+    }
+    
+    /**
+     * Check if the SimpleDateFormat pattern contains milliseconds (outside of
+     * quoted text).
+     * 
+     * @param pattern
+     * @return 
+     */
+    private static boolean hasMillis(String pattern) {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            }
+            else if (c == 'S' && !quoted) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static class CacheKey {
+        
+        private static final long NONE = Long.MIN_VALUE;
+        
+        private final long time;
+        private final long uptime;
+        private final long uptimePicnic;
+        private final boolean sameStart;
+
+        CacheKey(long time, long uptime, long uptimePicnic, boolean sameStart) {
+            this.time = time;
+            this.uptime = uptime;
+            this.uptimePicnic = uptimePicnic;
+            this.sameStart = sameStart;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final CacheKey other = (CacheKey) obj;
+            return time == other.time
+                    && uptime == other.uptime
+                    && uptimePicnic == other.uptimePicnic
+                    && sameStart == other.sameStart;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 59 * hash + Long.hashCode(time);
+            hash = 59 * hash + Long.hashCode(uptime);
+            hash = 59 * hash + Long.hashCode(uptimePicnic);
+            hash = 59 * hash + (sameStart ? 1 : 0);
+            return hash;
+        }
+        
+    }
+
+    private static void handleUptime(StringBuffer b, Matcher m, long time, long now, StreamInfo info) {
         boolean uptimeAdded = false;
         if (info != null
                 && (time > 0 || (info.isValid() && info.getOnline()))) {
@@ -234,7 +365,7 @@ public class Timestamp {
                 }
             }
             if (streamStarted != -1) {
-                long duration = getDuration(time, streamStarted);
+                long duration = getDuration(time, streamStarted, now);
                 String uptime = DateTime.duration(duration, upper, 0, lower, min, options2);
 //                        uptime = DateTime.agoUptimeCompact2(adjustTime(time, info.getHistoryStreamStart(time, false)), true);
 //                        switch (m.group(2)) {
@@ -260,11 +391,11 @@ public class Timestamp {
         }
     }
 
-    private static long getDuration(long time, long started) {
+    private static long getDuration(long time, long started, long now) {
         if (time > 0) {
             return time - started;
         }
-        return System.currentTimeMillis() - started;
+        return now - started;
     }
 
 }
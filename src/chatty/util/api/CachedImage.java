@@ -12,14 +12,15 @@ import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.WeakHashMap;
-import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 import java.util.logging.Logger;
 import javax.swing.ImageIcon;
-import javax.swing.SwingWorker;
+import javax.swing.SwingUtilities;
 
 /**
  * Used for loading an image concurrently for Emoticon and Usericon.
@@ -51,6 +52,17 @@ public class CachedImage<T> {
     public static interface CachedImageUser {
 
         void iconLoaded(Image oldImage, Image newImage, boolean sizeChanged);
+        
+        /**
+         * Images that are only used by low priority users are loaded after
+         * all other images, for example for images that are not necessarily
+         * visible right away.
+         * 
+         * @return 
+         */
+        default boolean isLowPriority() {
+            return false;
+        }
     }
 
     /**
@@ -127,7 +139,7 @@ public class CachedImage<T> {
     public final ImageType imageType;
     private final T object;
 
-    private Set<CachedImageUser> users;
+    private volatile Set<CachedImageUser> users;
     private final CachedImageRequester requester;
     
     private ImageIcon icon;
@@ -143,6 +155,8 @@ public class CachedImage<T> {
 
     private boolean loading = false;
     private boolean loadingError = false;
+    private boolean loadingCancelled = false;
+    private String loadingKey;
     private boolean isLoaded = false;
     private volatile int loadingAttempts = 0;
     private long lastLoadingAttempt;
@@ -182,8 +196,9 @@ public class CachedImage<T> {
                 loadImage();
             }
         }
-        else if (loadingError) {
-            if (loadImage()) {
+        else if (loadingError || loadingCancelled) {
+            boolean retry = loadingError;
+            if (loadImage() && retry) {
                 LOGGER.warning("Trying to load " + object + " again (" + sourceUrl + ")");
             }
         }
@@ -232,9 +247,10 @@ public class CachedImage<T> {
                 && System.currentTimeMillis() - lastLoadingAttempt > LOADING_ATTEMPT_DELAY) {
             loading = true;
             loadingError = false;
+            loadingCancelled = false;
             loadingAttempts++;
             lastLoadingAttempt = System.currentTimeMillis();
-            (new IconLoader(this)).execute();
+            startLoading();
             return true;
         }
         return false;
@@ -292,16 +308,62 @@ public class CachedImage<T> {
 
     public void addUser(CachedImageUser user) {
         if (users == null) {
-            users = Collections.newSetFromMap(new WeakHashMap<CachedImageUser, Boolean>());
+            users = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<CachedImageUser, Boolean>()));
         }
         users.add(user);
+        if (loading && loadingKey != null && !user.isLowPriority()) {
+            ImageLoader.get().prioritize(loadingKey);
+        }
     }
 
     private void informUsers(Image oldImage, Image newImage, boolean sizeChanged) {
-        for (CachedImageUser user : users) {
+        if (users == null) {
+            return;
+        }
+        List<CachedImageUser> copy;
+        synchronized (users) {
+            copy = new ArrayList<>(users);
+        }
+        for (CachedImageUser user : copy) {
             user.iconLoaded(oldImage, newImage, sizeChanged);
         }
     }
+    
+    /**
+     * Whether all users of this image are low priority. If no users have
+     * been added, then it is not considered low priority.
+     * 
+     * @return 
+     */
+    private boolean isLowPriority() {
+        Set<CachedImageUser> current = users;
+        if (current == null) {
+            return false;
+        }
+        synchronized (current) {
+            if (current.isEmpty()) {
+                return false;
+            }
+            for (CachedImageUser user : current) {
+                if (!user.isLowPriority()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    /**
+     * Whether the image is still wanted, which is the case unless users have
+     * been added but all of them have already been garbage collected. Can be
+     * called from any thread.
+     * 
+     * @return 
+     */
+    private boolean isWanted() {
+        Set<CachedImageUser> current = users;
+        return current == null || !current.isEmpty();
+    }
 
     /**
      * Construct a default icon based on the size of this emoticon.
@@ -385,83 +447,108 @@ public class CachedImage<T> {
     // Load Image
     //==========================
     /**
-     * A Worker class to load the Icon. Not doing this in it's own thread can
-     * lead to lag when a lot of new icons are being loaded.
+     * Queue the image in the {@link ImageLoader}. Loading the image in the
+     * background is necessary, since otherwise it can lead to lag when a lot
+     * of new icons are being loaded.
      */
-    private class IconLoader extends SwingWorker<ImageIcon, Object> {
+    private void startLoading() {
+        // Get the assumed size or size loaded from the size cache
+        Dimension defaultSize = requester.getBaseSize();
 
-        private final CachedImage<T> image;
-
-        public IconLoader(CachedImage<T> image) {
-            this.image = image;
+        /**
+         * Especially Emoji need this, since their emote images aren't the
+         * intended size, this forces the set width/height to be used.
+         */
+        boolean forceBaseSize = requester.forceBaseSize();
+
+        ImageRequest request = new ImageCache.ImageRequest(
+                scale -> requester.getImageUrl(scale, imageType),
+                scaleFactor,
+                maxHeight,
+                defaultSize,
+                forceBaseSize);
+
+        if (!request.valid) {
+            SwingUtilities.invokeLater(() -> loadingDone(null));
+            return;
         }
-
-        @Override
-        protected ImageIcon doInBackground() throws Exception {
-
-            // Get the assumed size or size loaded from the size cache
-            Dimension defaultSize = requester.getBaseSize();
-
-            /**
-             * Especially Emoji need this, since their emote images aren't the
-             * intended size, this forces the set width/height to be used.
-             */
-            boolean forceBaseSize = requester.forceBaseSize();
-
-            ImageRequest request = new ImageCache.ImageRequest(
-                    scale -> requester.getImageUrl(scale, image.imageType),
-                    image.scaleFactor,
-                    image.maxHeight,
-                    defaultSize,
-                    forceBaseSize);
-
-            if (!request.valid) {
-                return null;
+        
+        loadingKey = ImageLoader.get().load(request, prefix, CACHE_TIME, isLowPriority(), new ImageLoader.Listener() {
+            
+            @Override
+            public boolean isWanted() {
+                return CachedImage.this.isWanted();
             }
 
-            ImageResult result = ImageCache.getImage(request, prefix, CACHE_TIME);
-            image.setSourceUrl(request.getRequestedURL().toString());
-            image.setLoadedFromUrl(request.getLoadFromURL().toString());
-
-            /**
-             * If an error occured loading the image, return null.
-             */
-            if (result == null || !result.isValidImage()) {
-                return null;
+            @Override
+            public void loaded(ImageRequest request, ImageResult result) {
+                ImageIcon loadedIcon = finishLoading(request, result);
+                SwingUtilities.invokeLater(() -> loadingDone(loadedIcon));
             }
 
-            /**
-             * Max size fallback, just in case.
-             */
-            if (result.icon.getIconWidth() > ImageRequest.MAX_SCALED_WIDTH
-                    || result.icon.getIconHeight() > ImageRequest.MAX_SCALED_HEIGHT) {
-                return null;
+            @Override
+            public void cancelled() {
+                SwingUtilities.invokeLater(() -> loadingCancelled());
             }
+        });
+    }
+    
+    /**
+     * Process the result of loading the image, in the loading thread.
+     * 
+     * @param request
+     * @param result
+     * @return The icon to use, or null if an error occured
+     */
+    private ImageIcon finishLoading(ImageRequest request, ImageResult result) {
+        setSourceUrl(request.getRequestedURL().toString());
+        setLoadedFromUrl(request.getLoadFromURL().toString());
 
-            requester.imageLoaded(result);
-            return modifyIconIfNecessary(result.icon);
+        /**
+         * If an error occured loading the image, return null.
+         */
+        if (result == null || !result.isValidImage()) {
+            return null;
         }
 
         /**
-         * The image should be done loading, replace the defaulticon with the
-         * actual loaded icon and tell the user that it's loaded.
+         * Max size fallback, just in case.
          */
-        @Override
-        protected void done() {
-            try {
-                // This is null if an error occured
-                ImageIcon loadedIcon = get();
-                if (loadedIcon == null) {
-                    image.setLoadingError();
-                }
-                else {
-                    image.setImageIcon(loadedIcon, true);
-                }
-                image.setLoadingDone();
-            }
-            catch (InterruptedException | ExecutionException ex) {
-                LOGGER.warning("Unexpected error when loading emoticon: " + ex);
-            }
+        if (result.icon.getIconWidth() > ImageRequest.MAX_SCALED_WIDTH
+                || result.icon.getIconHeight() > ImageRequest.MAX_SCALED_HEIGHT) {
+            return null;
         }
+
+        requester.imageLoaded(result);
+        return modifyIconIfNecessary(result.icon);
+    }
+
+    /**
+     * The image should be done loading, replace the defaulticon with the
+     * actual loaded icon and tell the user that it's loaded.
+     * 
+     * @param loadedIcon The loaded icon, null if an error occured
+     */
+    private void loadingDone(ImageIcon loadedIcon) {
+        if (loadedIcon == null) {
+            setLoadingError();
+        }
+        else {
+            setImageIcon(loadedIcon, true);
+        }
+        loadingKey = null;
+        setLoadingDone();
+    }
+    
+    /**
+     * The image was not loaded because it wasn't wanted anymore, so it should
+     * be loaded again when it is requested next time.
+     */
+    private void loadingCancelled() {
+        loadingKey = null;
+        loadingAttempts--;
+        lastLoadingAttempt = 0;
+        loadingCancelled = true;
+        setLoadingDone();
     }
 }
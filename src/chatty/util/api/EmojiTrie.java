@@ -0,0 +1,193 @@
+
+package chatty.util.api;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Finds Emoji in a text in a single pass, by looking up the codepoints
+ * starting at each position in a trie of all Emoji codes, instead of running
+ * a regex for every single Emoji.
+ *
+ * <p>
+ * The longest Emoji starting at a position is used, so a ZWJ sequence or an
+ * Emoji with a skin tone modifier is found as a whole instead of as the
+ * separate Emoji it is made of. Variation selectors (U+FE0E, U+FE0F) are
+ * ignored within the code and text, since they are often missing or added,
+ * and a selector directly following the Emoji is included in the match (same
+ * as the Emoji regex does).
+ * </p>
+ *
+ * <p>
+ * Immutable after being built, but the builder methods are not thread-safe.
+ * </p>
+ *
+ * @author tduva
+ */
+class EmojiTrie {
+
+    public interface MatchListener {
+
+        /**
+         * An Emoji was found in the text.
+         *
+         * @param index The index given when adding the Emoji
+         * @param start The index of the first character of the match
+         * @param end The index of the last character of the match (inclusive)
+         */
+        void match(int index, int start, int end);
+    }
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Node root = new Node();
+    private int size;
+
+    /**
+     * Add an Emoji code.
+     *
+     * @param code The Emoji characters
+     * @param index Reported when found, if several Emoji have the same code
+     * (ignoring variation selectors) they are checked in the order they were
+     * added
+     * @return false if the code only consists of variation selectors and
+     * thus can't be added
+     */
+    public boolean add(String code, int index) {
+        Node node = root;
+        for (int i = 0; i < code.length();) {
+            int c = code.codePointAt(i);
+            i += Character.charCount(c);
+            if (!isVariationSelector(c)) {
+                node = node.getOrAdd(c);
+            }
+        }
+        if (node == root) {
+            return false;
+        }
+        node.emotes = Arrays.copyOf(node.emotes, node.emotes.length + 1);
+        node.emotes[node.emotes.length - 1] = index;
+        size++;
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find all Emoji in the text. Matches don't overlap.
+     *
+     * @param text The text
+     * @param filter Only Emoji whose index this returns true for are used (may
+     * be called several times for the same index)
+     * @param listener Receives the matches, in order of occurence
+     */
+    public void find(String text, IntPredicate filter, MatchListener listener) {
+        if (size == 0) {
+            return;
+        }
+        int length = text.length();
+        int pos = 0;
+        while (pos < length) {
+            int c = text.codePointAt(pos);
+            Node node = root.get(c);
+            if (node == null) {
+                pos += Character.charCount(c);
+                continue;
+            }
+            int matchIndex = -1;
+            int matchEnd = -1;
+            int i = pos + Character.charCount(c);
+            while (true) {
+                int emote = node.getEmote(filter);
+                if (emote != -1) {
+                    matchIndex = emote;
+                    matchEnd = i;
+                }
+                // Skip selectors within a sequence
+                while (i < length && isVariationSelector(text.charAt(i))) {
+                    i++;
+                }
+                if (i >= length) {
+                    break;
+                }
+                c = text.codePointAt(i);
+                node = node.get(c);
+                if (node == null) {
+                    break;
+                }
+                i += Character.charCount(c);
+            }
+            if (matchIndex != -1) {
+                if (matchEnd < length && isVariationSelector(text.charAt(matchEnd))) {
+                    matchEnd++;
+                }
+                listener.match(matchIndex, pos, matchEnd - 1);
+                pos = matchEnd;
+            }
+            else {
+                pos += Character.charCount(text.codePointAt(pos));
+            }
+        }
+    }
+
+    private static boolean isVariationSelector(int c) {
+        return c == '\uFE0E' || c == '\uFE0F';
+    }
+
+    /**
+     * Children are stored as sorted codepoints with the corresponding nodes,
+     * since most nodes only have very few children.
+     */
+    private static class Node {
+
+        private int[] codepoints = EMPTY;
+        private Node[] children;
+        private int[] emotes = EMPTY;
+
+        Node get(int c) {
+            int i = Arrays.binarySearch(codepoints, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node getOrAdd(int c) {
+            int i = Arrays.binarySearch(codepoints, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int insert = -i - 1;
+            int[] newCodepoints = new int[codepoints.length + 1];
+            Node[] newChildren = new Node[codepoints.length + 1];
+            System.arraycopy(codepoints, 0, newCodepoints, 0, insert);
+            System.arraycopy(codepoints, insert, newCodepoints, insert + 1, codepoints.length - insert);
+            if (children != null) {
+                System.arraycopy(children, 0, newChildren, 0, insert);
+                System.arraycopy(children, insert, newChildren, insert + 1, codepoints.length - insert);
+            }
+            Node node = new Node();
+            newCodepoints[insert] = c;
+            newChildren[insert] = node;
+            codepoints = newCodepoints;
+            children = newChildren;
+            return node;
+        }
+
+        /**
+         * Get the first Emoji ending at this node that is allowed.
+         *
+         * @param filter
+         * @return The Emoji index, or -1 if there is none
+         */
+        int getEmote(IntPredicate filter) {
+            for (int emote : emotes) {
+                if (filter.test(emote)) {
+                    return emote;
+                }
+            }
+            return -1;
+        }
+
+    }
+
+}
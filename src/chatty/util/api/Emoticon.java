@@ -126,6 +126,8 @@ public class Emoticon {
     private volatile int height;
 
     private Matcher matcher;
+    private String literalWord;
+    private boolean literalWordChecked;
     
     private CachedImageManager<Emoticon> images;
 
@@ -431,6 +433,41 @@ public class Emoticon {
         "8-)", ":|", ";)", ">(", ":\\", ":)", ":-)", "R)", ":(", ":-(", "B)", "B-)"
     }));
     
+    /**
+     * Characters that may have a special meaning in a regex.
+     */
+    private static final Pattern REGEX_CHARS = Pattern.compile("[\\\\^$.|?*+()\\[\\]{}]");
+    
+    /**
+     * Same whitespace the "\\s" in the matcher pattern refers to.
+     */
+    private static final Pattern WHITESPACE = Pattern.compile("\\s");
+    
+    /**
+     * The search that the matcher is created from (before wrapping it in the
+     * word boundary check), for non-Emoji.
+     * 
+     * @return 
+     */
+    private String getWordSearch() {
+        // Use separate regex if available (e.g. for smilies)
+        String search = !StringUtil.isNullOrEmpty(regex) ? regex : code;
+        if (search.length() < 4) {
+            // Turn some of the "smiley" emotes back into regex (they
+            // still seem to be parsed with the regex serverside)
+            // This is only the fallback for smilies that still come
+            // from the Twitch API for now
+            search = Emoticons.toRegex(search);
+        }
+        return search;
+    }
+    
+    private boolean isLiteralSearch(String search) {
+        // Literal emotes come from a source that doesn't provide
+        // regex, but may contain regex special characters
+        return literal || LITERAL.contains(search);
+    }
+    
     private void createMatcher() {
         if (matcher == null) {
             // Use separate regex if available (e.g. for smilies)
@@ -449,17 +486,9 @@ public class Emoticon {
                  */
                 search = Pattern.quote(search)+"[\uFE0E\uFE0F]?";
             } else {
-                if (search.length() < 4) {
-                    // Turn some of the "smiley" emotes back into regex (they
-                    // still seem to be parsed with the regex serverside)
-                    // This is only the fallback for smilies that still come
-                    // from the Twitch API for now
-                    search = Emoticons.toRegex(search);
-                }
+                search = getWordSearch();
                 // Any regular emotes should be separated by spaces
-                if (literal || LITERAL.contains(search)) {
-                    // Literal emotes come from a source that doesn't provide
-                    // regex, but may contain regex special characters
+                if (isLiteralSearch(search)) {
                     search = Pattern.quote(search);
                 }
                 search = "(?<=^|\\s)"+search+"(?=$|\\s)";
@@ -603,6 +632,31 @@ public class Emoticon {
         return matcher.reset(text);
     }
     
+    /**
+     * Gets the exact word this emote matches, if it can only match as a whole
+     * whitespace-separated word without any regex features. Emotes that return
+     * a non-null value here match exactly where {@link getMatcher(String)}
+     * would find a match that is equal to the returned word.
+     * 
+     * Should probably only be used out of the EDT.
+     * 
+     * @return The word, or null if the emote requires the regex matcher
+     */
+    public String getLiteralWord() {
+        if (!literalWordChecked) {
+            literalWordChecked = true;
+            if (type != Type.EMOJI) {
+                String search = getWordSearch();
+                if (!search.isEmpty()
+                        && !WHITESPACE.matcher(search).find()
+                        && (isLiteralSearch(search) || !REGEX_CHARS.matcher(search).find())) {
+                    literalWord = search;
+                }
+            }
+        }
+        return literalWord;
+    }
+    
     /**
      * Get a scaled image for this Emoticon. Should only be called from the EDT.
      *
@@ -0,0 +1,311 @@
+
+package chatty.util.api;
+
+import chatty.util.StringUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+
+/**
+ * Finds the emotes of a collection in a text, without having to run every
+ * single emote's regex on it.
+ *
+ * Most emotes only match as an exact whitespace-separated word (see
+ * {@link Emoticon#getLiteralWord()}), so they are looked up by word in a map.
+ * Emoji are looked up in a trie of codepoints (see {@link EmojiTrie}), which
+ * finds the longest Emoji at each position. Only the remaining emotes (e.g.
+ * smilies that use an actual regex) are still checked with their own matcher.
+ *
+ * The matches are reported in the same order that checking each emote in the
+ * collection's iteration order would produce, so that when matches overlap the
+ * same one is used as before.
+ *
+ * Not thread-safe, since the emote matchers aren't, so this should only be
+ * used out of the EDT, just like {@link Emoticon#getMatcher(String)}.
+ *
+ * @author tduva
+ */
+public class EmoticonIndex {
+
+    /**
+     * Receives the emotes found in a text.
+     */
+    public interface MatchListener {
+
+        /**
+         * An emote was found in the text.
+         *
+         * @param emote The emote
+         * @param start The index of the first character of the match
+         * @param end The index of the last character of the match (inclusive)
+         */
+        void match(Emoticon emote, int start, int end);
+    }
+
+    private final Emoticon[] emotes;
+
+    /**
+     * Word to the indices (in ascending order) of all emotes that match
+     * exactly that word.
+     */
+    private final Map<String, int[]> byWord;
+
+    /**
+     * Indices (in ascending order) of emotes that have to use the regex.
+     */
+    private final int[] regexEmotes;
+
+    private final EmojiTrie emoji = new EmojiTrie();
+
+    private final int sourceSize;
+    private final int minWordLength;
+    private final int maxWordLength;
+
+    public EmoticonIndex(Collection<Emoticon> source) {
+        sourceSize = source.size();
+        emotes = source.toArray(new Emoticon[sourceSize]);
+
+        Map<String, List<Integer>> words = new HashMap<>();
+        List<Integer> regex = new ArrayList<>();
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (int i = 0; i < emotes.length; i++) {
+            String word = emotes[i].getLiteralWord();
+            if (word != null) {
+                words.computeIfAbsent(word, k -> new ArrayList<>(1)).add(i);
+                min = Math.min(min, word.length());
+                max = Math.max(max, word.length());
+            }
+            else if (!isEmoji(emotes[i]) || !emoji.add(emotes[i].code, i)) {
+                regex.add(i);
+            }
+        }
+        byWord = new HashMap<>(words.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Integer>> entry : words.entrySet()) {
+            byWord.put(entry.getKey(), toArray(entry.getValue()));
+        }
+        regexEmotes = toArray(regex);
+        minWordLength = min;
+        maxWordLength = max;
+    }
+
+    /**
+     * Emoji without a separate regex, which always match the code itself.
+     *
+     * @param emote
+     * @return
+     */
+    private static boolean isEmoji(Emoticon emote) {
+        return emote.type == Emoticon.Type.EMOJI
+                && StringUtil.isNullOrEmpty(emote.regex)
+                && !StringUtil.isNullOrEmpty(emote.code);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Check whether this index was created from a collection of the given
+     * size. Since the index is a snapshot, this can be used as a cheap sanity
+     * check that it is still up-to-date.
+     *
+     * @param size
+     * @return
+     */
+    public boolean hasSourceSize(int size) {
+        return sourceSize == size;
+    }
+
+    public int size() {
+        return emotes.length;
+    }
+
+    /**
+     * Find all emotes in the given text.
+     *
+     * @param text The text to search in
+     * @param filter Only emotes that this returns true for are used, checked
+     * at most once per emote per call (only for emotes that may actually be
+     * found in the text)
+     * @param listener Receives the matches, in the same order as if each emote
+     * had been checked in iteration order of the source collection
+     */
+    public void find(String text, Predicate<Emoticon> filter, MatchListener listener) {
+        Matches matches = new Matches();
+
+        //--------------------------
+        // Words
+        //--------------------------
+        int length = text.length();
+        int wordStart = -1;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || isWhitespace(text.charAt(i))) {
+                if (wordStart != -1) {
+                    findWord(text, wordStart, i, matches);
+                    wordStart = -1;
+                }
+            }
+            else if (wordStart == -1) {
+                wordStart = i;
+            }
+        }
+
+        //--------------------------
+        // Emoji
+        //--------------------------
+        if (emoji.size() > 0) {
+            // Longer Emoji may be filtered, so the same may be checked again
+            Map<Integer, Boolean> allowed = new HashMap<>();
+            emoji.find(text,
+                    index -> allowed.computeIfAbsent(index, k -> filter.test(emotes[k])),
+                    (index, start, end) -> matches.add(index, start, end));
+        }
+
+        //--------------------------
+        // Regex
+        //--------------------------
+        for (int index : regexEmotes) {
+            Emoticon emote = emotes[index];
+            if (!filter.test(emote)) {
+                continue;
+            }
+            Matcher m = emote.getMatcher(text);
+            while (m.find()) {
+                matches.add(index, m.start(), m.end() - 1);
+            }
+        }
+        
+        //--------------------------
+        // Output
+        //--------------------------
+        matches.sort();
+        int checkedIndex = -1;
+        boolean allowed = false;
+        for (int i = 0; i < matches.size; i++) {
+            int index = matches.index(i);
+            if (index != checkedIndex) {
+                checkedIndex = index;
+                // Regex emotes and Emoji have already been filtered
+                allowed = emotes[index].getLiteralWord() == null
+                        || filter.test(emotes[index]);
+            }
+            if (allowed) {
+                listener.match(emotes[index], matches.start(i), matches.end(i));
+            }
+        }
+    }
+
+    private void findWord(String text, int start, int end, Matches matches) {
+        addWord(text, start, end, matches);
+        /**
+         * The "$" in the emote pattern can also match before a line terminator
+         * at the very end of the input, which isn't whitespace for those
+         * characters.
+         */
+        if (end == text.length() && end - start > 1
+                && isOtherLineTerminator(text.charAt(end - 1))) {
+            addWord(text, start, end - 1, matches);
+        }
+    }
+
+    private void addWord(String text, int start, int end, Matches matches) {
+        int length = end - start;
+        if (length < minWordLength || length > maxWordLength) {
+            return;
+        }
+        int[] indices = byWord.get(text.substring(start, end));
+        if (indices != null) {
+            for (int index : indices) {
+                matches.add(index, start, end - 1);
+            }
+        }
+    }
+
+    /**
+     * Same as "\s" in regex (without the UNICODE_CHARACTER_CLASS flag).
+     *
+     * @param c
+     * @return
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B'
+                || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Line terminators (as used by "$") that aren't already whitespace.
+     *
+     * @param c
+     * @return
+     */
+    private static boolean isOtherLineTerminator(char c) {
+        return c == '\u0085' || c == 0x2028 || c == 0x2029;
+    }
+
+    /**
+     * Collects matches as (emote index, start, end), usually only very few per
+     * message.
+     */
+    private static class Matches {
+
+        private int[] data = new int[3*8];
+        private int size;
+
+        void add(int index, int start, int end) {
+            if (size*3 == data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size*3] = index;
+            data[size*3 + 1] = start;
+            data[size*3 + 2] = end;
+            size++;
+        }
+
+        int index(int i) {
+            return data[i*3];
+        }
+
+        int start(int i) {
+            return data[i*3 + 1];
+        }
+
+        int end(int i) {
+            return data[i*3 + 2];
+        }
+
+        /**
+         * Sort by emote index, then start (insertion sort, since there's
+         * usually only a handful of entries that are already mostly sorted).
+         */
+        void sort() {
+            for (int i = 1; i < size; i++) {
+                int index = data[i*3];
+                int start = data[i*3 + 1];
+                int end = data[i*3 + 2];
+                int j = i - 1;
+                while (j >= 0 && (data[j*3] > index
+                        || (data[j*3] == index && data[j*3 + 1] > start))) {
+                    data[(j+1)*3] = data[j*3];
+                    data[(j+1)*3 + 1] = data[j*3 + 1];
+                    data[(j+1)*3 + 2] = data[j*3 + 2];
+                    j--;
+                }
+                data[(j+1)*3] = index;
+                data[(j+1)*3 + 1] = start;
+                data[(j+1)*3 + 2] = end;
+            }
+        }
+
+    }
+
+}
@@ -8,6 +8,8 @@ import chatty.util.CombinedEmoticon;
 import chatty.util.CombinedIterator;
 import chatty.util.LogUtil;
 import chatty.util.MiscUtil;
+import chatty.util.Pair;
+import chatty.util.PrefixIndex;
 import chatty.util.StringUtil;
 import chatty.util.TwitchEmotesApi.EmotesetInfo;
 import chatty.util.settings.Settings;
@@ -27,6 +29,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -196,6 +199,26 @@ public class Emoticons {
     
     private EmotesetManager localEmotesetManager;
     
+    /**
+     * Indices for finding emotes in messages, by the identity of the emote
+     * Set they were created from. Cleared whenever emotes are changed.
+     */
+    private final Map<Set<Emoticon>, EmoticonIndex> indices = new IdentityHashMap<>();
+    
+    /**
+     * Prevent sets that are created on demand from piling up.
+     */
+    private static final int MAX_INDICES = 200;
+    
+    /**
+     * Indices for emote completion, by the identity of the emote Collection
+     * they were created from. Only used in the EDT, so emote changes are
+     * signaled by a counter instead of clearing it directly.
+     */
+    private final Map<Collection<Emoticon>, Pair<PrefixIndex<Emoticon>, Integer>> completionIndices = new IdentityHashMap<>();
+    private volatile int changeCount;
+    private int completionIndicesChangeCount;
+    
     private static final int DEFAULT_IMAGE_EXPIRE_MINUTES = 4*60;
     private static final int FASTER_IMAGE_EXPIRE_MINUTES = 1*60;
     
@@ -230,6 +253,7 @@ public class Emoticons {
     }
     
     public void updateEmoticons(EmoticonUpdate update) {
+        emotesChanged();
         removeEmoticons(update);
         if (!update.emotesToAdd.isEmpty()) {
             addEmoticons(update.emotesToAdd);
@@ -341,6 +365,7 @@ public class Emoticons {
      * @param newEmoticons 
      */
     public void addEmoticons(Set<Emoticon> newEmoticons) {
+        emotesChanged();
         for (Emoticon emote : newEmoticons) {
             Set<String> channelRestrictions = emote.getStreamRestrictions();
             if (channelRestrictions != null) {
@@ -440,6 +465,7 @@ public class Emoticons {
     }
     
     public void setSmilies(Set<Emoticon> emotes) {
+        emotesChanged();
         smilies.clear();
         if (emotes != null) {
             smilies.addAll(emotes);
@@ -573,6 +599,80 @@ public class Emoticons {
         return result;
     }
     
+    /**
+     * Get an index to find the emotes of the given Set in a message. The index
+     * is cached as long as emotes aren't changed. Should only be used out of
+     * the EDT.
+     * 
+     * @param emotes One of the emote Sets returned by this (that is not
+     * created on demand)
+     * @return The index, never null
+     * @see #getIndex(Set, boolean)
+     */
+    public EmoticonIndex getIndex(Set<Emoticon> emotes) {
+        return getIndex(emotes, true);
+    }
+    
+    /**
+     * Get an index to find the emotes of the given Set in a message. Should
+     * only be used out of the EDT.
+     * 
+     * @param emotes The emotes to index
+     * @param cache If true, the index is cached as long as emotes aren't
+     * changed, which should only be done for Sets returned by this that are
+     * not created on demand (e.g. not for {@link #getUsableFollowerEmotes(String)}),
+     * since otherwise the cache fills up with indices that are never used
+     * again
+     * @return The index, never null
+     */
+    public EmoticonIndex getIndex(Set<Emoticon> emotes, boolean cache) {
+        if (!cache) {
+            return new EmoticonIndex(emotes);
+        }
+        EmoticonIndex index = indices.get(emotes);
+        if (index == null || !index.hasSourceSize(emotes.size())) {
+            if (indices.size() > MAX_INDICES) {
+                indices.clear();
+            }
+            index = new EmoticonIndex(emotes);
+            indices.put(emotes, index);
+        }
+        return index;
+    }
+    
+    /**
+     * Get an index to find the emotes of the given Collection by code, for
+     * completion. The index is cached as long as emotes aren't changed.
+     * Should only be used in the EDT.
+     * 
+     * @param emotes One of the emote Collections returned by this (that is
+     * not created on demand)
+     * @return The index, never null
+     */
+    public PrefixIndex<Emoticon> getCompletionIndex(Collection<Emoticon> emotes) {
+        if (completionIndicesChangeCount != changeCount) {
+            completionIndicesChangeCount = changeCount;
+            completionIndices.clear();
+        }
+        // Also store the source size, as a cheap check that it's up-to-date
+        Pair<PrefixIndex<Emoticon>, Integer> index = completionIndices.get(emotes);
+        if (index == null || index.value != emotes.size()) {
+            if (completionIndices.size() > MAX_INDICES) {
+                completionIndices.clear();
+            }
+            PrefixIndex<Emoticon> newIndex = new PrefixIndex<>(emote -> Collections.singleton(emote.code), true);
+            newIndex.addAll(emotes);
+            index = new Pair<>(newIndex, emotes.size());
+            completionIndices.put(emotes, index);
+        }
+        return index.key;
+    }
+    
+    private void emotesChanged() {
+        indices.clear();
+        changeCount++;
+    }
+    
     public Emoticon getCombinedEmote(List<Emoticon> emotes, CachedImage.ImageType imageType) {
         emotes = new ArrayList<>(emotes);
         String code = CombinedEmoticon.getCode(emotes);
@@ -626,6 +726,7 @@ public class Emoticons {
          * up-to-date in regards to non-channel-specific emotesets.
          */
         if (!this.localEmotesets.equals(emotesets)) {
+            emotesChanged();
             this.localEmotesets = emotesets;
             //--------------------------
             // By set
@@ -1008,6 +1109,7 @@ public class Emoticons {
      * parsing of each line.
      */
     public void loadCustomEmotes() {
+        emotesChanged();
         customEmotes.clear();
         customEmotesById.clear();
         
@@ -1292,6 +1394,7 @@ public class Emoticons {
     private volatile Map<Pattern, String> emojiReplacement;
     
     public void addEmoji(String sourceId) {
+        emotesChanged();
         emoji.clear();
         emoji.addAll(EmojiUtil.makeEmoticons(sourceId));
         Map<Pattern, String> replacements = new HashMap<>();
@@ -0,0 +1,337 @@
+
+package chatty.util.api;
+
+import chatty.util.ImageCache;
+import chatty.util.ImageCache.ImageRequest;
+import chatty.util.ImageCache.ImageResult;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.swing.ImageIcon;
+
+/**
+ * Loads images in a fixed number of background threads, so that loading a
+ * large amount of images (e.g. when joining a channel with many emotes)
+ * doesn't take up the threads used for other background work.
+ *
+ * <ul>
+ * <li>Requests are run in two lanes, where all high priority requests (e.g.
+ * images shown in chat) are run before any low priority requests (e.g. images
+ * in the Emotes Dialog).</li>
+ * <li>Requests for the same image that are queued or running at the same time
+ * are only loaded once, with the result given to each requester.</li>
+ * <li>Before a request is run, it is checked whether it is still wanted by any
+ * of its requesters, otherwise it is not loaded at all.</li>
+ * </ul>
+ *
+ * @author tduva
+ */
+public class ImageLoader {
+
+    private static final Logger LOGGER = Logger.getLogger(ImageLoader.class.getName());
+
+    private static final int THREADS = 4;
+
+    private static final ImageLoader INSTANCE = new ImageLoader(THREADS);
+
+    public static ImageLoader get() {
+        return INSTANCE;
+    }
+
+    public interface Listener {
+
+        /**
+         * Checked before loading, if no listener of a request still wants the
+         * image it won't be loaded.
+         *
+         * @return
+         */
+        boolean isWanted();
+
+        /**
+         * The image was loaded, called in the loading thread.
+         *
+         * @param request The request, which may be another request for the
+         * same image if it was already loading
+         * @param result The result, may be null if an error occured
+         */
+        void loaded(ImageRequest request, ImageResult result);
+
+        /**
+         * The image wasn't loaded because it wasn't wanted anymore, called in
+         * the loading thread.
+         */
+        void cancelled();
+
+    }
+
+    private final Object LOCK = new Object();
+    private final int maxThreads;
+    private final ArrayDeque<Task> high = new ArrayDeque<>();
+    private final ArrayDeque<Task> low = new ArrayDeque<>();
+
+    /**
+     * All queued or running tasks by key.
+     */
+    private final Map<String, Task> tasks = new HashMap<>();
+    private int threads;
+
+    // Stats
+    private int maxQueueSize;
+    private long loaded;
+    private long failed;
+    private long cancelled;
+    private long deduplicated;
+    private long totalLatency;
+    private long maxLatency;
+
+    ImageLoader(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * Queue an image to be loaded. If the same image is already queued or
+     * loading, the listener is added to that instead.
+     *
+     * @param request The image to load
+     * @param prefix The cache file prefix
+     * @param expireTime How long until the cache file expires (seconds)
+     * @param lowPriority Whether this should be loaded only after all other
+     * images
+     * @param listener Informed about the result
+     * @return The key for the request, which can be used to change the
+     * priority
+     */
+    public String load(ImageRequest request, String prefix, int expireTime,
+            boolean lowPriority, Listener listener) {
+        String key = makeKey(request, prefix);
+        synchronized (LOCK) {
+            Task task = tasks.get(key);
+            if (task != null) {
+                task.listeners.add(listener);
+                deduplicated++;
+                if (!lowPriority) {
+                    prioritize(task);
+                }
+                return key;
+            }
+            task = new Task(key, request, prefix, expireTime, listener);
+            tasks.put(key, task);
+            if (lowPriority) {
+                task.lowPriority = true;
+                low.add(task);
+            }
+            else {
+                high.add(task);
+            }
+            maxQueueSize = Math.max(maxQueueSize, high.size() + low.size());
+            if (threads < maxThreads && high.size() + low.size() > 0) {
+                startThread();
+            }
+            LOCK.notify();
+        }
+        return key;
+    }
+
+    /**
+     * Move the request with the given key to the high priority lane, if it's
+     * still queued with low priority.
+     *
+     * @param key The key returned when adding the request
+     */
+    public void prioritize(String key) {
+        synchronized (LOCK) {
+            Task task = tasks.get(key);
+            if (task != null) {
+                prioritize(task);
+            }
+        }
+    }
+
+    private void prioritize(Task task) {
+        if (task.lowPriority && low.remove(task)) {
+            task.lowPriority = false;
+            high.add(task);
+        }
+    }
+
+    private static String makeKey(ImageRequest request, String prefix) {
+        return prefix + "|" + request.getRequestedURL() + "|" + request.urlFactor
+                + "|" + request.scaleFactor + "|" + request.maxHeight
+                + "|" + request.resize + "|" + request.defaultSize;
+    }
+
+    private void startThread() {
+        threads++;
+        Thread thread = new Thread(this::runLoop, "ImageLoader-" + threads);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void runLoop() {
+        while (true) {
+            Task task;
+            synchronized (LOCK) {
+                while (high.isEmpty() && low.isEmpty()) {
+                    try {
+                        LOCK.wait();
+                    }
+                    catch (InterruptedException ex) {
+                        // Shouldn't happen, but just continue
+                    }
+                }
+                task = !high.isEmpty() ? high.poll() : low.poll();
+            }
+            try {
+                runTask(task);
+            }
+            catch (Exception ex) {
+                LOGGER.log(Level.WARNING, "Error loading image", ex);
+            }
+        }
+    }
+
+    private void runTask(Task task) {
+        //--------------------------
+        // Check if still wanted
+        //--------------------------
+        List<Listener> listeners;
+        synchronized (LOCK) {
+            listeners = new ArrayList<>(task.listeners);
+        }
+        List<Listener> notWanted = new ArrayList<>();
+        for (Listener listener : listeners) {
+            if (!listener.isWanted()) {
+                notWanted.add(listener);
+            }
+        }
+        if (!notWanted.isEmpty()) {
+            boolean skip;
+            synchronized (LOCK) {
+                task.listeners.removeAll(notWanted);
+                skip = task.listeners.isEmpty();
+                if (skip) {
+                    tasks.remove(task.key);
+                    cancelled++;
+                }
+            }
+            for (Listener listener : notWanted) {
+                listener.cancelled();
+            }
+            if (skip) {
+                return;
+            }
+        }
+
+        //--------------------------
+        // Load
+        //--------------------------
+        ImageResult result = null;
+        try {
+            result = ImageCache.getImage(task.request, task.prefix, task.expireTime);
+        }
+        catch (Exception ex) {
+            LOGGER.warning("Error loading image: " + ex);
+        }
+        long latency = System.nanoTime() - task.created;
+        synchronized (LOCK) {
+            // No more listeners can be added after this
+            tasks.remove(task.key);
+            listeners = new ArrayList<>(task.listeners);
+            if (result != null && result.isValidImage()) {
+                loaded++;
+            }
+            else {
+                failed++;
+            }
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+        }
+
+        //--------------------------
+        // Inform listeners
+        //--------------------------
+        /**
+         * The listeners may modify the icon, so each gets it's own (created
+         * before any listener is called).
+         */
+        List<ImageResult> results = new ArrayList<>();
+        results.add(result);
+        for (int i = 1; i < listeners.size(); i++) {
+            results.add(copy(result));
+        }
+        for (int i = 0; i < listeners.size(); i++) {
+            try {
+                listeners.get(i).loaded(task.request, results.get(i));
+            }
+            catch (Exception ex) {
+                LOGGER.log(Level.WARNING, "Error handling loaded image", ex);
+            }
+        }
+    }
+
+    private static ImageResult copy(ImageResult result) {
+        if (result == null || result.icon == null) {
+            return result;
+        }
+        ImageIcon icon = new ImageIcon(result.icon.getImage(), result.icon.getDescription());
+        return new ImageResult(icon, result.actualBaseSize, result.loadedAsGif);
+    }
+
+    /**
+     * Info about the current state of the loader, for debugging.
+     *
+     * @return
+     */
+    public String getStats() {
+        synchronized (LOCK) {
+            long done = loaded + failed;
+            return String.format("Images queued: %d (high: %d, low: %d, max: %d), loading: %d, threads: %d/%d, loaded: %d, failed: %d, cancelled: %d, deduplicated: %d, latency avg: %dms, max: %dms",
+                    high.size() + low.size(),
+                    high.size(),
+                    low.size(),
+                    maxQueueSize,
+                    tasks.size() - high.size() - low.size(),
+                    threads,
+                    maxThreads,
+                    loaded,
+                    failed,
+                    cancelled,
+                    deduplicated,
+                    done > 0 ? TimeUnit.NANOSECONDS.toMillis(totalLatency / done) : 0,
+                    TimeUnit.NANOSECONDS.toMillis(maxLatency));
+        }
+    }
+
+    public int getQueueSize() {
+        synchronized (LOCK) {
+            return high.size() + low.size();
+        }
+    }
+
+    private static class Task {
+
+        private final String key;
+        private final ImageRequest request;
+        private final String prefix;
+        private final int expireTime;
+        private final List<Listener> listeners = new ArrayList<>();
+        private final long created = System.nanoTime();
+        private boolean lowPriority;
+
+        Task(String key, ImageRequest request, String prefix, int expireTime, Listener listener) {
+            this.key = key;
+            this.request = request;
+            this.prefix = prefix;
+            this.expireTime = expireTime;
+            this.listeners.add(listener);
+        }
+
+    }
+
+}
@@ -70,6 +70,10 @@ public class Requests {
         this.newApi = new QueuedApi();
     }
     
+    public String getStats() {
+        return newApi.getStats();
+    }
+    
     
     //====================
     // Channel Information
@@ -142,6 +142,15 @@ public class TwitchApi {
         m.setNotFound(new Req(requestId, null));
     }
     
+    /**
+     * Info about the performed API requests, for debugging.
+     * 
+     * @return 
+     */
+    public String getRequestStats() {
+        return requests.getStats()+"\n"+userInfoManager.getStats();
+    }
+    
     //=================
     // Chat / Emoticons
     //=================
@@ -34,15 +34,24 @@ public class UserInfoManager {
                 api.requests.requestUserInfo(toRequest);
             }
             
-        }, CachedBulkManager.NONE);
+        }, "[UserInfoLogin] ", CachedBulkManager.NONE);
 
         perId = new CachedBulkManager<>(
             (manager, asap, normal, backlog) -> {
                 Set<String> toRequest = manager.makeAndSetRequested(asap, normal, backlog, 100);
                 api.requests.requestUserInfoById(toRequest);
             },
+            "[UserInfoId] ",
             CachedBulkManager.NONE
         );
+        
+        // Many single users may be requested at once, e.g. when joining
+        perLogin.setBatching(100, 200);
+        perId.setBatching(100, 200);
+    }
+    
+    public String getStats() {
+        return perLogin.getStats()+"\n"+perId.getStats();
     }
     
     public UserInfo getCachedOnly(String login) {
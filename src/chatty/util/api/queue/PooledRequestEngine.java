@@ -0,0 +1,79 @@
+
+package chatty.util.api.queue;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.logging.Logger;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+
+/**
+ * Performs all requests with a shared HTTP client, so that connections are
+ * kept alive and reused for further requests to the same host, instead of
+ * opening a new connection (including TLS handshake) for each request.
+ * 
+ * Requests are run in a cached thread pool, since the result listener may
+ * keep running for a while after the request is done. The number of active
+ * requests is limited by {@link QueuedApi}.
+ * 
+ * @author tduva
+ */
+public class PooledRequestEngine implements RequestEngine {
+    
+    private static final Logger LOGGER = Logger.getLogger(PooledRequestEngine.class.getName());
+    
+    private static final int MAX_CONNECTIONS_PER_HOST = QueuedApi.MAX_ACTIVE_REQUESTS;
+    private static final int MAX_CONNECTIONS = MAX_CONNECTIONS_PER_HOST * 2;
+    
+    /**
+     * Close connections that haven't been used for this long.
+     */
+    private static final int MAX_IDLE_SECONDS = 60;
+    
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+    
+    public PooledRequestEngine() {
+        connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnPerRoute(MAX_CONNECTIONS_PER_HOST)
+                .setMaxConnTotal(MAX_CONNECTIONS)
+                .build();
+        client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(Request.createConfig())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(MAX_IDLE_SECONDS))
+                .build();
+    }
+
+    @Override
+    public void execute(Request request) {
+        executor.execute(() -> request.run(client));
+    }
+
+    @Override
+    public String getStats() {
+        return "Connections: "+connectionManager.getTotalStats()
+                +" Threads: "+((ThreadPoolExecutor) executor).getPoolSize();
+    }
+    
+    /**
+     * Close all connections. Requests can't be performed anymore afterwards.
+     */
+    public void close() {
+        try {
+            client.close();
+        }
+        catch (IOException ex) {
+            LOGGER.warning("Error closing client: "+ex);
+        }
+        executor.shutdown();
+    }
+    
+}
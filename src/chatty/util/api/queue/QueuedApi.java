@@ -5,10 +5,7 @@ import chatty.util.Debugging;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.PriorityBlockingQueue;
-import java.util.concurrent.Semaphore;
 import java.util.logging.Logger;
 
 /**
@@ -19,6 +16,12 @@ public class QueuedApi {
     
     private static final Logger LOGGER = Logger.getLogger(QueuedApi.class.getName());
     
+    /**
+     * The max number of active requests, when a lot of the ratelimit is
+     * remaining.
+     */
+    public static final int MAX_ACTIVE_REQUESTS = 16;
+    
     /**
      * Queued requests are removed when they are taken from the queue in order
      * to perform the request.
@@ -38,18 +41,25 @@ public class QueuedApi {
     private volatile int ratelimitRemaining = -1;
     
     /**
-     * Limits the number of active requests. This is different to active threads
+     * The number of active requests. This is different to active threads
      * which could be more, if a thread e.g. still keeps going after the actual
      * API request (e.g. download badge images).
      * 
-     * This is so that there aren't too many concurrent API requests that could
-     * immediatelly use up all the ratelimit tokens (although this is quite
-     * unlikely with the number of usual requests anyway).
+     * The number is limited so that there aren't too many concurrent API
+     * requests that could immediatelly use up all the ratelimit tokens.
      */
-    private final Semaphore activeRequests = new Semaphore(10);
+    private int activeRequests;
+    private final Object activeLock = new Object();
+    
+    private final RequestEngine engine;
+    private final RequestStats stats = new RequestStats();
     
     public QueuedApi() {
-        ExecutorService executor = Executors.newCachedThreadPool();
+        this(new PooledRequestEngine());
+    }
+    
+    public QueuedApi(RequestEngine engine) {
+        this.engine = engine;
         queue = new PriorityBlockingQueue<>();
         
         Thread thread = new Thread(new Runnable() {
@@ -62,17 +72,20 @@ public class QueuedApi {
                             LOGGER.info("Waiting..");
                             Thread.sleep(10*1000);
                         }
-                        activeRequests.acquire();
-                        //System.out.println("Waiting for entry.. Permits: "+activeRequests.availablePermits());
+                        acquireActive();
                         Entry entry = queue.take();
-                        //System.out.println("Entry taken: "+entry.request+" Permits: "+activeRequests.availablePermits());
+                        long start = System.nanoTime();
                         entry.request.setResultListener((result, responseCode, errorResult, ratelimitRemaining) -> {
                             /**
-                             * Executed in an executor thread.
+                             * Executed in an engine thread.
                              */
                             // Get some data from the response and forward to external listener
                             QueuedApi.this.ratelimitRemaining = ratelimitRemaining;
-                            activeRequests.release();
+                            releaseActive();
+                            stats.add(entry.request.getEndpoint(),
+                                    System.nanoTime() - start,
+                                    responseCode,
+                                    result != null ? result.length() : (errorResult != null ? errorResult.length() : 0));
                             if (Debugging.isEnabled("requestresponse")) {
                                 if (result != null) {
                                     LOGGER.info(result);
@@ -86,7 +99,7 @@ public class QueuedApi {
                             removePending(entry);
                             //System.out.println("Entry done: "+entry.request+" Permits: "+activeRequests.availablePermits());
                         });
-                        executor.execute(entry.request);
+                        engine.execute(entry.request);
                         
                     } catch (InterruptedException ex) {
                         // To stop the thread (currently not used)
@@ -99,6 +112,66 @@ public class QueuedApi {
         thread.start();
     }
     
+    /**
+     * The max number of active requests, based on the most recent rate limit
+     * remaining. If a lot of the rate limit is remaining more requests can be
+     * performed at the same time, otherwise they are spread out more.
+     * 
+     * @return 
+     */
+    private int getMaxActive() {
+        int remaining = ratelimitRemaining;
+        if (remaining == -1) {
+            return 10;
+        }
+        if (remaining < 200) {
+            return 2;
+        }
+        if (remaining < 400) {
+            return 6;
+        }
+        return MAX_ACTIVE_REQUESTS;
+    }
+    
+    private void acquireActive() throws InterruptedException {
+        synchronized (activeLock) {
+            while (activeRequests >= getMaxActive()) {
+                activeLock.wait();
+            }
+            activeRequests++;
+        }
+    }
+    
+    private void releaseActive() {
+        synchronized (activeLock) {
+            activeRequests--;
+            activeLock.notifyAll();
+        }
+    }
+    
+    /**
+     * Info about the requests performed and the engine, for debugging.
+     * 
+     * @return 
+     */
+    public String getStats() {
+        int active;
+        synchronized (activeLock) {
+            active = activeRequests;
+        }
+        return String.format("Queued: %d, active: %d/%d, ratelimit remaining: %d, %s\n%s",
+                queue.size(),
+                active,
+                getMaxActive(),
+                ratelimitRemaining,
+                engine.getStats(),
+                stats);
+    }
+    
+    public RequestStats getRequestStats() {
+        return stats;
+    }
+    
     /**
      * Perform a request.
      * 
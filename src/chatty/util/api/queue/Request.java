@@ -117,7 +117,41 @@ public class Request implements Runnable {
         }
     }
     
+    /**
+     * Perform the request with the given client. The client is not closed,
+     * so that its connections can be reused for other requests.
+     * 
+     * @param httpclient 
+     */
+    public void run(CloseableHttpClient httpclient) {
+        apache(httpclient);
+    }
+    
+    /**
+     * Create a request config with the default timeouts.
+     * 
+     * @return 
+     */
+    static RequestConfig createConfig() {
+        return RequestConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT))
+                .setResponseTimeout(30, TimeUnit.SECONDS)
+                .build();
+    }
+    
     private void apache() {
+        if (listener == null) {
+            return;
+        }
+        try (CloseableHttpClient httpclient = HttpClientBuilder.create().setDefaultRequestConfig(createConfig()).build()) {
+            apache(httpclient);
+        }
+        catch (IOException ex) {
+            LOGGER.warning("Error closing client: "+ex);
+        }
+    }
+    
+    private void apache(CloseableHttpClient httpclient) {
         if (listener == null) {
             return;
         }
@@ -133,11 +167,7 @@ public class Request implements Runnable {
                 url,
                 data != null ? " ("+data+")" : ""));
         
-        RequestConfig config = RequestConfig.custom()
-                .setConnectTimeout(Timeout.ofMilliseconds(CONNECT_TIMEOUT))
-                .setResponseTimeout(30, TimeUnit.SECONDS)
-                .build();
-        try (CloseableHttpClient httpclient = HttpClientBuilder.create().setDefaultRequestConfig(config).build()) {
+        try {
             ClassicHttpRequest request = new HttpUriRequestBase(requestMethod, new URI(url));
             request.addHeader("Client-ID", CLIENT_ID);
             if (token != null) {
@@ -328,6 +358,17 @@ public class Request implements Runnable {
         return response.toString();
     }
     
+    /**
+     * The URL without query parameters, so it's the same for all requests to
+     * an endpoint.
+     * 
+     * @return 
+     */
+    public String getEndpoint() {
+        int index = url.indexOf('?');
+        return requestMethod + " " + (index == -1 ? url : url.substring(0, index));
+    }
+    
     @Override
     public boolean equals(Object obj) {
         if (obj == null) {
@@ -0,0 +1,26 @@
+
+package chatty.util.api.queue;
+
+/**
+ * Performs the requests given by {@link QueuedApi}.
+ * 
+ * @author tduva
+ */
+public interface RequestEngine {
+    
+    /**
+     * Perform the request asynchronously, the result listener set on the
+     * request is informed when it is done (in any thread).
+     * 
+     * @param request 
+     */
+    public void execute(Request request);
+    
+    /**
+     * Info about the current state, for debugging.
+     * 
+     * @return 
+     */
+    public String getStats();
+    
+}
@@ -0,0 +1,94 @@
+
+package chatty.util.api.queue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the number of requests, errors, response time and response size
+ * for each API endpoint. Thread-safe.
+ * 
+ * @author tduva
+ */
+public class RequestStats {
+    
+    private final Map<String, Stat> stats = new HashMap<>();
+    
+    /**
+     * Add the result of a request.
+     * 
+     * @param endpoint The endpoint (usually without query parameters)
+     * @param nanos How long the request took
+     * @param responseCode The response code
+     * @param length The length of the response text (or error text)
+     */
+    public synchronized void add(String endpoint, long nanos, int responseCode, int length) {
+        Stat stat = stats.get(endpoint);
+        if (stat == null) {
+            stat = new Stat(endpoint);
+            stats.put(endpoint, stat);
+        }
+        stat.count++;
+        if (responseCode < 200 || responseCode > 299) {
+            stat.errors++;
+        }
+        stat.totalNanos += nanos;
+        stat.maxNanos = Math.max(stat.maxNanos, nanos);
+        stat.length += Math.max(length, 0);
+    }
+    
+    public synchronized int getCount(String endpoint) {
+        Stat stat = stats.get(endpoint);
+        return stat != null ? stat.count : 0;
+    }
+    
+    public synchronized int getErrors(String endpoint) {
+        Stat stat = stats.get(endpoint);
+        return stat != null ? stat.errors : 0;
+    }
+    
+    /**
+     * One line for each endpoint, with the most used first.
+     * 
+     * @return 
+     */
+    @Override
+    public synchronized String toString() {
+        List<Stat> sorted = new ArrayList<>(stats.values());
+        sorted.sort((a, b) -> Integer.compare(b.count, a.count));
+        StringBuilder b = new StringBuilder();
+        for (Stat stat : sorted) {
+            if (b.length() > 0) {
+                b.append("\n");
+            }
+            b.append(String.format(Locale.ROOT, "%s: %d (%d errors), avg %dms, max %dms, %dKB",
+                    stat.endpoint,
+                    stat.count,
+                    stat.errors,
+                    TimeUnit.NANOSECONDS.toMillis(stat.totalNanos / stat.count),
+                    TimeUnit.NANOSECONDS.toMillis(stat.maxNanos),
+                    stat.length / 1024));
+        }
+        return b.toString();
+    }
+    
+    private static class Stat {
+        
+        private final String endpoint;
+        private int count;
+        private int errors;
+        private long totalNanos;
+        private long maxNanos;
+        private long length;
+        
+        Stat(String endpoint) {
+            this.endpoint = endpoint;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,28 @@
+
+package chatty.util.api.queue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Runs each request in a thread of a cached thread pool, opening a new
+ * connection for each request.
+ * 
+ * @author tduva
+ */
+public class SimpleRequestEngine implements RequestEngine {
+    
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Override
+    public void execute(Request request) {
+        executor.execute(request);
+    }
+
+    @Override
+    public String getStats() {
+        return "Threads: "+((ThreadPoolExecutor) executor).getPoolSize();
+    }
+    
+}
@@ -17,6 +17,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.logging.Logger;
@@ -52,6 +53,24 @@ public class UsericonManager {
     
     private final Map<Pair<String, Integer>, Usericon> channelLogos = new HashMap<>();
     private final Map<String, String> channelLogoUrls = new HashMap<>();
+    
+    /**
+     * The icons that may be returned for a type/id/version in a channel, so
+     * that only the user specific restrictions have to be checked for each
+     * message. Filled as needed and cleared when any icons change.
+     */
+    private final Map<IndexKey, Candidates> index = new HashMap<>();
+    
+    /**
+     * The Twitch badges for a badges tag in a channel, only for badges tags
+     * whose result doesn't depend on the user. Cleared when any icons or the
+     * relevant settings change.
+     */
+    private final Map<Pair<IrcBadges, String>, List<Usericon>> badgesCache = new HashMap<>();
+    private boolean badgesCacheCustomEnabled;
+    private boolean badgesCacheFfzEnabled;
+    
+    private static final int MAX_CACHE_SIZE = 10000;
 
     private final Settings settings;
     
@@ -74,6 +93,7 @@ public class UsericonManager {
                 defaultIcons.remove(icon);
             }
             defaultIcons.add(icon);
+            clearIndex();
         }
     }
     
@@ -81,6 +101,7 @@ public class UsericonManager {
         LOGGER.info(String.format(Locale.ROOT, "Added %d third-party badges", icons.size()));
         this.thirdParty.clear();
         this.thirdParty.addAll(icons);
+        clearIndex();
     }
     
     /**
@@ -155,6 +176,7 @@ public class UsericonManager {
     private void addFallbackIcon(Usericon.Type type, String fileName) {
         defaultIcons.add(UsericonFactory.createFallbackIcon(type,
                 MainGui.class.getResource(fileName)));
+        clearIndex();
     }
     
     public synchronized List<Usericon> getCustomData() {
@@ -168,12 +190,14 @@ public class UsericonManager {
     public synchronized void setCustomData(List<Usericon> data) {
         customIcons.clear();
         customIcons.addAll(data);
+        clearIndex();
         saveToSettings();
     }
     
     public synchronized void setHiddenBadgesData(List<Usericon> data) {
         hiddenBadges.clear();
         hiddenBadges.addAll(data);
+        clearIndex();
         saveHiddenBadgesToSettings();
     }
     
@@ -237,15 +261,102 @@ public class UsericonManager {
         if (badgesDef == null || badgesDef.isEmpty()) {
             return new ArrayList<>();
         }
+        checkBadgesCacheSettings();
+        String channel = user.getOwnerChannel();
+        Pair<IrcBadges, String> key = new Pair<>(badgesDef, channel);
+        List<Usericon> cached = badgesCache.get(key);
+        if (cached != null) {
+            return new ArrayList<>(cached);
+        }
         List<Usericon> result = new ArrayList<>();
+        boolean userIndependent = true;
         for (int i=0; i<badgesDef.size(); i++) {
             String id = badgesDef.getId(i);
             String value = badgesDef.getVersion(i);
-            Usericon icon = getIcon(Type.TWITCH, id, value, user, tags);
+            Candidates candidates = getCandidates(Type.TWITCH, id, value, channel);
+            if (!candidates.userIndependent) {
+                userIndependent = false;
+            }
+            Usericon icon = getIcon(candidates, Type.TWITCH, id, value, user, tags);
             if (icon != null) {
                 result.add(icon);
             }
         }
+        if (userIndependent) {
+            if (badgesCache.size() > MAX_CACHE_SIZE) {
+                badgesCache.clear();
+            }
+            badgesCache.put(key, new ArrayList<>(result));
+        }
+        return result;
+    }
+    
+    /**
+     * The cached badges depend on some settings, so clear if those changed.
+     */
+    private void checkBadgesCacheSettings() {
+        boolean customEnabled = customUsericonsEnabled();
+        boolean ffzEnabled = settings.getBoolean("ffzModIcon");
+        if (customEnabled != badgesCacheCustomEnabled
+                || ffzEnabled != badgesCacheFfzEnabled) {
+            badgesCache.clear();
+            badgesCacheCustomEnabled = customEnabled;
+            badgesCacheFfzEnabled = ffzEnabled;
+        }
+    }
+    
+    private void clearIndex() {
+        index.clear();
+        badgesCache.clear();
+    }
+    
+    /**
+     * Get the icons that match the given type/id/version and channel, in the
+     * order they would be checked.
+     * 
+     * @param type
+     * @param id
+     * @param version
+     * @param channel The owner channel of the user
+     * @return 
+     */
+    private Candidates getCandidates(Usericon.Type type, String id, String version, String channel) {
+        IndexKey key = new IndexKey(type, id, version, channel);
+        Candidates result = index.get(key);
+        if (result == null) {
+            List<Usericon> custom = new ArrayList<>();
+            for (Usericon icon : customIcons) {
+                if (iconsMatchesAdvancedType(icon, type, id, version)
+                        && iconMatchesChannel(icon, channel)) {
+                    custom.add(icon);
+                }
+            }
+            Usericon hidden = null;
+            for (Usericon icon : hiddenBadges) {
+                if (iconsMatchesAdvancedType(icon, type, id, version)) {
+                    hidden = icon;
+                    break;
+                }
+            }
+            List<Usericon> defaults = new ArrayList<>();
+            for (Usericon icon : defaultIcons) {
+                if (iconsMatchesAdvancedType(icon, type, id, version)
+                        && iconMatchesChannel(icon, channel)) {
+                    defaults.add(icon);
+                }
+            }
+            for (Usericon icon : thirdParty) {
+                if (iconsMatchesAdvancedType(icon, type, id, version)
+                        && iconMatchesChannel(icon, channel)) {
+                    defaults.add(icon);
+                }
+            }
+            result = new Candidates(custom, hidden, defaults);
+            if (index.size() > MAX_CACHE_SIZE) {
+                index.clear();
+            }
+            index.put(key, result);
+        }
         return result;
     }
     
@@ -269,10 +380,15 @@ public class UsericonManager {
      */
     public synchronized Usericon getIcon(Usericon.Type type,
             String id, String version, User user, MsgTags tags) {
+        Candidates candidates = getCandidates(type, id, version, user.getOwnerChannel());
+        return getIcon(candidates, type, id, version, user, tags);
+    }
+    
+    private Usericon getIcon(Candidates candidates, Usericon.Type type,
+            String id, String version, User user, MsgTags tags) {
         if (customUsericonsEnabled()) {
-            for (Usericon icon : customIcons) {
-                //System.out.println("A:"+" "+type+" "+icon.type+" "+iconsMatchesAdvancedType(icon, type, id, version)+" "+icon);
-                if (iconsMatchesAdvancedType(icon, type, id, version) && iconMatchesUser(icon, user, tags)) {
+            for (Usericon icon : candidates.custom) {
+                if (iconMatchesUserRestrictions(icon, user, tags)) {
                     if (icon.removeBadge) {
                         return icon;
                     } else if (icon.hasRegularImage) {
@@ -281,7 +397,7 @@ public class UsericonManager {
                         // If fileName is a reference, then check if an icon
                         // for that exists (only really applicable for FFZ Mod
                         // Icon at the moment)
-                        Usericon refIcon = getDefaultIcon(type, id, version, user, Usericon.SOURCE_FFZ);
+                        Usericon refIcon = getDefaultIcon(candidates, user, Usericon.SOURCE_FFZ);
                         if (refIcon != null) {
                             return refIcon;
                         }
@@ -290,12 +406,12 @@ public class UsericonManager {
                         // the Twitch Icon wasn't loaded or not loaded yet, and
                         // it should be replaced only when that happens.
                         
-                        Usericon refIcon = getDefaultIcon(type, id, version, user, Usericon.SOURCE_TWITCH2);
+                        Usericon refIcon = getDefaultIcon(candidates, user, Usericon.SOURCE_TWITCH2);
                         if (refIcon != null) {
                             return refIcon;
                         }
                     } else if (icon.fileName.equalsIgnoreCase("$default")) {
-                        Usericon refIcon = getDefaultIcon(type, id, version, user, Usericon.SOURCE_ANY);
+                        Usericon refIcon = getDefaultIcon(candidates, user, Usericon.SOURCE_ANY);
                         if (refIcon != null) {
                             return refIcon;
                         }
@@ -303,31 +419,23 @@ public class UsericonManager {
                 }
             }
         }
-        for (Usericon icon : hiddenBadges) {
-            if (iconsMatchesAdvancedType(icon, type, id, version)) {
-                return icon;
-            }
+        if (candidates.hidden != null) {
+            return candidates.hidden;
         }
-        return getDefaultIcon(type, id, version, user, Usericon.SOURCE_ANY);
+        return getDefaultIcon(candidates, user, Usericon.SOURCE_ANY);
     }
     
     /**
      * Get a default icon for the given type and user, with {@code source}.
      * 
-     * @param type The type
+     * @param candidates The icons matching the type
      * @param user The user it has to match
      * @param source The source, can be -1 to match any source
      * @return The {@code ImageIcon} or {@code null} if none was found
      */
-    private Usericon getDefaultIcon(Usericon.Type type, String id, String version, User user, int source) {
-        for (Usericon icon : defaultIcons) {
-            Usericon checked = checkIcon(icon, type, id, version, user, source);
-            if (checked != null) {
-                return checked;
-            }
-        }
-        for (Usericon icon : thirdParty) {
-            Usericon checked = checkIcon(icon, type, id, version, user, source);
+    private Usericon getDefaultIcon(Candidates candidates, User user, int source) {
+        for (Usericon icon : candidates.defaults) {
+            Usericon checked = checkIcon(icon, user, source);
             if (checked != null) {
                 return checked;
             }
@@ -335,8 +443,8 @@ public class UsericonManager {
         return null;
     }
     
-    private Usericon checkIcon(Usericon icon, Usericon.Type type, String id, String version, User user, int source) {
-        if (iconsMatchesAdvancedType(icon, type, id, version) && iconMatchesUser(icon, user, null)
+    private Usericon checkIcon(Usericon icon, User user, int source) {
+        if (iconMatchesUserRestrictions(icon, user, null)
                 && (source == Usericon.SOURCE_ANY || icon.source == source)) {
             // Skip FFZ if disabled
             if (icon.source == Usericon.SOURCE_FFZ && !settings.getBoolean("ffzModIcon")) {
@@ -422,6 +530,57 @@ public class UsericonManager {
      * otherwise
      */
     private boolean iconMatchesUser(Usericon icon, User user, MsgTags tags) {
+        return iconMatchesChannel(icon, user.getOwnerChannel())
+                && iconMatchesUserRestrictions(icon, user, tags);
+    }
+    
+    /**
+     * Checks whether the channel restriction of the given {@code Usericon}
+     * matches the given channel.
+     * 
+     * @param icon The icon to check
+     * @param channel The owner channel of the user
+     * @return 
+     */
+    private static boolean iconMatchesChannel(Usericon icon, String channel) {
+        if (!icon.channel.isEmpty()) {
+            if (icon.channel.equalsIgnoreCase(channel)) {
+                if (icon.channelInverse) {
+                    return false;
+                }
+            } else {
+                if (!icon.channelInverse) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Whether the given {@code Usericon} has any restrictions that depend on
+     * the user, other than the channel.
+     * 
+     * @param icon
+     * @return 
+     */
+    private static boolean hasUserRestrictions(Usericon icon) {
+        return icon.badgeTypeRestriction.id != null
+                || icon.usernames != null
+                || icon.userids != null
+                || (icon.restriction != null && icon.matchType != Usericon.MatchType.ALL);
+    }
+    
+    /**
+     * Checks whether the given {@code Usericon} matches the given {@code User},
+     * except for the channel restriction.
+     * 
+     * @param icon The icon to check
+     * @param user The user to check against
+     * @param tags
+     * @return 
+     */
+    private boolean iconMatchesUserRestrictions(Usericon icon, User user, MsgTags tags) {
         if (icon.badgeTypeRestriction.id != null) {
             IrcBadges badges = user.getTwitchBadges();
             String id = icon.badgeTypeRestriction.id;
@@ -437,18 +596,6 @@ public class UsericonManager {
             }
         }
         
-        // If channelRestriction doesn't match, don't have to continue
-        if (!icon.channel.isEmpty()) {
-            if (icon.channel.equalsIgnoreCase(user.getOwnerChannel())) {
-                if (icon.channelInverse) {
-                    return false;
-                }
-            } else {
-                if (!icon.channelInverse) {
-                    return false;
-                }
-            }
-        }
         // Username/id restriction (can fail only if non-null)
         boolean usernameR = icon.usernames == null || (user.getName() != null && icon.usernames.contains(user.getName()));
         boolean useridR = icon.userids == null || (user.getId() != null  && icon.userids.contains(user.getId()));
@@ -522,6 +669,7 @@ public class UsericonManager {
     private synchronized void loadFromSettings() {
         List<List> entriesToLoad = settings.getList(SETTING_NAME);
         customIcons.clear();
+        clearIndex();
         int count = 0;
         for (List entryToLoad : entriesToLoad) {
             Usericon icon = listToEntry(entryToLoad);
@@ -538,6 +686,7 @@ public class UsericonManager {
     private synchronized void loadHiddenBadgesFromSettings() {
         List<List> entriesToLoad = settings.getList(SETTING_NAME_HIDDEN_BADGES);
         hiddenBadges.clear();
+        clearIndex();
         int count = 0;
         for (List entryToLoad : entriesToLoad) {
             Usericon icon = listToEntryHiddenBadges(entryToLoad);
@@ -628,10 +777,88 @@ public class UsericonManager {
         if (!alreadyHidden) {
             Usericon customUsericon = UsericonFactory.createCustomIcon(usericon.type, usericon.badgeType.id, "", "", "", "");
             hiddenBadges.add(0, customUsericon);
+            clearIndex();
             saveHiddenBadgesToSettings();
             return true;
         }
         return false;
     }
     
+    private static class IndexKey {
+        
+        private final Usericon.Type type;
+        private final String id;
+        private final String version;
+        private final String channel;
+        
+        IndexKey(Usericon.Type type, String id, String version, String channel) {
+            this.type = type;
+            this.id = id;
+            this.version = version;
+            this.channel = channel;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final IndexKey other = (IndexKey) obj;
+            return type == other.type
+                    && Objects.equals(id, other.id)
+                    && Objects.equals(version, other.version)
+                    && Objects.equals(channel, other.channel);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, id, version, channel);
+        }
+        
+    }
+    
+    private static class Candidates {
+        
+        /**
+         * Custom icons, in order, still need to be checked for user
+         * restrictions.
+         */
+        private final List<Usericon> custom;
+        
+        /**
+         * The first matching hidden badge, if any.
+         */
+        private final Usericon hidden;
+        
+        /**
+         * Default and third-party icons, in order, still need to be checked
+         * for user restrictions.
+         */
+        private final List<Usericon> defaults;
+        
+        /**
+         * Whether none of the icons has user specific restrictions, so the
+         * result is the same for every user in the channel.
+         */
+        private final boolean userIndependent;
+        
+        Candidates(List<Usericon> custom, Usericon hidden, List<Usericon> defaults) {
+            this.custom = custom;
+            this.hidden = hidden;
+            this.defaults = defaults;
+            boolean independent = true;
+            for (Usericon icon : custom) {
+                independent = independent && !hasUserRestrictions(icon);
+            }
+            for (Usericon icon : defaults) {
+                independent = independent && !hasUserRestrictions(icon);
+            }
+            this.userIndependent = independent;
+        }
+        
+    }
+    
 }
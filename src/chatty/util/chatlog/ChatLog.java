@@ -11,6 +11,7 @@ import chatty.util.Timestamp;
 import chatty.util.api.StreamInfo.ViewerStats;
 import chatty.util.api.UserInfo;
 import chatty.util.api.eventsub.payloads.ModActionPayload;
+import chatty.util.commands.CompiledTemplate;
 import chatty.util.commands.CustomCommand;
 import chatty.util.commands.Parameters;
 import chatty.util.settings.Settings;
@@ -33,6 +34,12 @@ public class ChatLog {
     private Timestamp timestamp;
     private final CustomCommand messageTemplate;
     
+    /**
+     * The messageTemplate compiled for the message parameters, or null if it
+     * can't be compiled.
+     */
+    private final CompiledTemplate compiledMessageTemplate;
+    
     private final Map<String, Compact> compactForChannels;
     
     private final Settings settings;
@@ -54,7 +61,10 @@ public class ChatLog {
             String logSplit = settings.getString("logSplit");
             boolean logSubdirectories = settings.getBoolean("logSubdirectories");
             boolean lockFiles = settings.getBoolean("logLockFiles");
-            this.log = new LogManager(path, logSplit, logSubdirectories, lockFiles);
+            long flushDelay = settings.getLong("logFlushDelay");
+            int flushLines = settings.getInt("logFlushLines");
+            this.log = new LogManager(path, logSplit, logSubdirectories,
+                    lockFiles, flushDelay, flushLines);
         }
         compactForChannels = new HashMap<>();
         try {
@@ -71,6 +81,10 @@ public class ChatLog {
             c = CustomCommand.parse(settings.getStringDefault("logMessageTemplate"));
         }
         this.messageTemplate = c;
+        this.compiledMessageTemplate = CompiledTemplate.compile(c, MESSAGE_PARAMETERS);
+        if (compiledMessageTemplate == null) {
+            LOGGER.info("logMessageTemplate can't be compiled, using regular replacement");
+        }
     }
     
     /**
@@ -129,19 +143,31 @@ public class ChatLog {
      */
     public void message(String channel, User user, String message, boolean action, String includedChannel) {
         if (isSettingEnabled("logMessage") && isChanEnabled(channel)) {
-            Parameters param = messageParam(
-                            user,
-                            message,
-                            action,
-                            settings,
-                            timestamp(user.getRoom(), includedChannel, false));
-            String line = messageTemplate.replace(param);
+            String timestamp = timestamp(user.getRoom(), includedChannel, false);
+            String line;
+            if (compiledMessageTemplate != null) {
+                line = compiledMessageTemplate.replace(user,
+                        message, action ? "true" : null, timestamp);
+            }
+            else {
+                line = messageTemplate.replace(messageParam(
+                        user, message, action, settings, timestamp));
+            }
             if (line != null && !line.isEmpty()) {
                 writeLine(channel, line);
             }
         }
     }
     
+    /**
+     * The String parameters added by
+     * {@link #messageParam(User, String, boolean, Settings, String)}, in the
+     * order they are given to the compiled template.
+     */
+    private static final String[] MESSAGE_PARAMETERS = new String[]{
+        "msg", "action", "timestamp"
+    };
+    
     public static Parameters messageParam(User user, String message, boolean action, Settings settings, String timestamp) {
         Parameters p = Parameters.create("");
         Helper.addUserParameters(user, null, null, p);
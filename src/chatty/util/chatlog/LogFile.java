@@ -9,6 +9,7 @@ import java.nio.channels.FileChannel;
 import java.nio.channels.FileLock;
 import java.nio.file.Path;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.logging.Logger;
 
 /**
@@ -34,6 +35,11 @@ public class LogFile {
      */
     private static final int MAX_ATTEMPTS = 3;
 
+    /**
+     * Size of the write buffer, large enough for a batch of lines.
+     */
+    private static final int BUFFER_SIZE = 32*1024;
+
     /**
      * Write buffer for the LogFile instance.
      */
@@ -125,6 +131,54 @@ public class LogFile {
         }
     }
 
+    /**
+     * Attempt to write several lines to the LogFile, without flushing. The
+     * lines may only be written to the file after {@link #flush()} (or when
+     * the buffer is full).
+     *
+     * @param lines The messages to be written to the file.
+     * @return Returns true if the messages were successfully written to the
+     * buffer.
+     */
+    public boolean writeAll(Collection<String> lines) {
+        if (!valid) {
+            LOGGER.warning("Log: Tried writing to invalid file " + file + "");
+            return false;
+        }
+
+        try {
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+            return true;
+        } catch (IOException ex) {
+            LOGGER.warning("Log: Error writing to " + file + " (" + ex.getLocalizedMessage() + ")");
+            close();
+            return false;
+        }
+    }
+
+    /**
+     * Write any buffered data to the file.
+     *
+     * @return Returns true if the data was successfully written.
+     */
+    public boolean flush() {
+        if (!valid) {
+            return false;
+        }
+
+        try {
+            writer.flush();
+            return true;
+        } catch (IOException ex) {
+            LOGGER.warning("Log: Error writing to " + file + " (" + ex.getLocalizedMessage() + ")");
+            close();
+            return false;
+        }
+    }
+
     /**
      * Properly close the file, which means it can't be used anymore.
      */
@@ -164,12 +218,12 @@ public class LogFile {
             if (lockFile) {
                 FileLock lock = channel.tryLock();
                 if (lock != null) {
-                    writer = new BufferedWriter(Channels.newWriter(channel, CHARSET));
+                    writer = new BufferedWriter(Channels.newWriter(channel, CHARSET), BUFFER_SIZE);
                     valid = true;
                     return true;
                 }
             } else {
-                writer = new BufferedWriter(Channels.newWriter(channel, CHARSET));
+                writer = new BufferedWriter(Channels.newWriter(channel, CHARSET), BUFFER_SIZE);
                 valid = true;
                 return true;
             }
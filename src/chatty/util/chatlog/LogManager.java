@@ -27,13 +27,13 @@ public class LogManager {
     private final Thread writerThread;
 
     public LogManager(Path path, String splitLogs, boolean useSubdirectories,
-            boolean lockFiles) {
+            boolean lockFiles, long flushDelay, int flushLines) {
         path.toFile().mkdirs();
         if (!path.toFile().exists()) {
             LOGGER.warning("Log: Failed to create path: "+path);
         }
         this.queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
-        this.writerThread = new Thread(new LogWriter(queue, path, splitLogs, useSubdirectories, lockFiles), "LogWriter");
+        this.writerThread = new Thread(new LogWriter(queue, path, splitLogs, useSubdirectories, lockFiles, flushDelay, flushLines), "LogWriter");
     }
     
     public void start() {
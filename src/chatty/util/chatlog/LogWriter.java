@@ -4,16 +4,25 @@ package chatty.util.chatlog;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
  * Handles writing the log files. Retrieves data from a queue and manages files
  * to write the log into.
+ * 
+ * All items currently in the queue are retrieved at once and the lines are
+ * grouped per file, so each file is only written to and flushed once per
+ * batch. Flushing can optionally be delayed further, until a certain time has
+ * passed or enough lines have been written since the last flush.
  *
  * @author tduva
  */
@@ -25,6 +34,8 @@ public class LogWriter implements Runnable {
 
     private static final int STATS_INTERVAL = 25000;
     private static final int STATS_TIME_INTERVAL = 15 * 60 * 1000;
+    
+    private static final int MAX_BATCH_SIZE = 1000;
 
     private final Map<String, LogFile> files = new HashMap<>();
     private final Set<String> errors = new HashSet<>();
@@ -33,6 +44,20 @@ public class LogWriter implements Runnable {
     private final String splitLogs;
     private final boolean useSubdirectories;
     private final boolean lockFiles;
+    private final long flushDelay;
+    private final int flushLines;
+    
+    /**
+     * Lines per channel of the current batch that haven't been written yet.
+     */
+    private final Map<String, List<String>> pending = new LinkedHashMap<>();
+    
+    /**
+     * Channels with lines written since the last flush.
+     */
+    private final Set<String> unflushed = new HashSet<>();
+    private int unflushedLines;
+    private long unflushedSince;
 
     private long addedQueueSize;
     private int addedQueueSizeCount;
@@ -40,46 +65,170 @@ public class LogWriter implements Runnable {
     private long lastStatsTime;
     private int maxQueueSize;
     private int totalLines;
+    private int batchCount;
+    private int maxBatchSize;
+    private int flushCount;
+    private long flushTime;
+    private long maxFlushTime;
+    private long maxFlushLatency;
 
+    /**
+     * 
+     * @param queue
+     * @param path
+     * @param splitLogs
+     * @param useSubdirectories
+     * @param lockFiles
+     * @param flushDelay How long to wait at most before flushing written
+     * lines to the files (in milliseconds), 0 to flush after every batch
+     * @param flushLines Flush earlier if at least this many lines have been
+     * written since the last flush
+     */
     public LogWriter(BlockingQueue<LogItem> queue, Path path, String splitLogs,
-            boolean useSubdirectories, boolean lockFiles) {
+            boolean useSubdirectories, boolean lockFiles,
+            long flushDelay, int flushLines) {
         this.queue = queue;
         this.path = path;
         this.splitLogs = splitLogs;
         this.useSubdirectories = useSubdirectories;
         this.lockFiles = lockFiles;
+        this.flushDelay = Math.max(flushDelay, 0);
+        this.flushLines = Math.max(flushLines, 1);
     }
 
     @Override
     public void run() {
-        boolean run = true;
+        List<LogItem> batch = new ArrayList<>();
         try {
+            boolean run = true;
             while (run) {
-                //System.out.println("Waiting for a new item..");
-                LogItem item = queue.take();
-                stats(queue.size());
-                if (item.channel == null) {
-                    if (item.message == null) {
-                        outputStats();
+                LogItem item = waitForItem();
+                if (item == null) {
+                    // Timed out waiting, so it's time to flush
+                    flush();
+                    continue;
+                }
+                batch.add(item);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                stats(queue.size(), batch.size());
+                for (LogItem batchItem : batch) {
+                    if (!handleItem(batchItem)) {
                         run = false;
-                        closeAllFiles();
-                    } else {
-                        // Can't close any files here because it would
-                        // remove an item during iteration
-                        for (String channel : files.keySet()) {
-                            handleMessage(channel, item.message);
-                        }
+                        break;
+                    }
+                }
+                batch.clear();
+                if (run) {
+                    writePending();
+                    if (shouldFlush()) {
+                        flush();
                     }
-                } else {
-                    handleMessage(item.channel, item.message);
                 }
             }
         } catch (InterruptedException ex) {
             System.out.println("Interrupted");
+            writePending();
             closeAllFiles();
             Thread.currentThread().interrupt();
         }
     }
+    
+    /**
+     * Wait for the next item, but only until the next flush is due.
+     * 
+     * @return The item, or null if a flush is due
+     * @throws InterruptedException 
+     */
+    private LogItem waitForItem() throws InterruptedException {
+        if (unflushedLines == 0) {
+            return queue.take();
+        }
+        long timeLeft = flushDelay - (System.currentTimeMillis() - unflushedSince);
+        if (timeLeft <= 0) {
+            return null;
+        }
+        return queue.poll(timeLeft, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Handle an item from the queue. Lines are only collected per channel,
+     * but any other items write the collected lines first, so the order is
+     * retained.
+     * 
+     * @param item
+     * @return false if the writer should stop
+     */
+    private boolean handleItem(LogItem item) {
+        if (item.channel == null) {
+            writePending();
+            if (item.message == null) {
+                outputStats();
+                closeAllFiles();
+                return false;
+            } else {
+                // Can't close any files here because it would
+                // remove an item during iteration
+                for (String channel : files.keySet()) {
+                    handleMessage(channel, item.message);
+                }
+            }
+        } else if (item.message == null) {
+            writePending();
+            closeFileForChannel(item.channel);
+        } else {
+            pending.computeIfAbsent(item.channel, c -> new ArrayList<>()).add(item.message);
+        }
+        return true;
+    }
+    
+    /**
+     * Write the collected lines, all lines of a channel at once.
+     */
+    private void writePending() {
+        for (Map.Entry<String, List<String>> entry : pending.entrySet()) {
+            String channel = entry.getKey();
+            List<String> lines = entry.getValue();
+            LogFile file = getFile(channel);
+            if (file == null || !file.writeAll(lines)) {
+                fileError(channel);
+            }
+            else {
+                if (unflushedLines == 0) {
+                    unflushedSince = System.currentTimeMillis();
+                }
+                unflushed.add(channel);
+                unflushedLines += lines.size();
+            }
+        }
+        pending.clear();
+    }
+    
+    private boolean shouldFlush() {
+        return unflushedLines > 0
+                && (flushDelay == 0
+                    || unflushedLines >= flushLines
+                    || System.currentTimeMillis() - unflushedSince >= flushDelay);
+    }
+    
+    /**
+     * Flush all files that have been written to since the last flush.
+     */
+    private void flush() {
+        long start = System.currentTimeMillis();
+        for (String channel : unflushed) {
+            LogFile file = files.get(channel);
+            if (file != null && !file.flush()) {
+                fileError(channel);
+            }
+        }
+        long end = System.currentTimeMillis();
+        flushCount++;
+        flushTime += end - start;
+        maxFlushTime = Math.max(maxFlushTime, end - start);
+        maxFlushLatency = Math.max(maxFlushLatency, end - unflushedSince);
+        unflushed.clear();
+        unflushedLines = 0;
+    }
 
     private void closeAllFiles() {
         for (String channel : files.keySet()) {
@@ -232,12 +381,24 @@ public class LogWriter implements Runnable {
         return dateTimeFormat.format(cal.getTime());
     }
 
-    private void stats(int size) {
-        addedQueueSize += size;
+    /**
+     * Update stats for a batch.
+     * 
+     * @param remaining The number of items still in the queue
+     * @param size The number of items in the batch
+     */
+    private void stats(int remaining, int size) {
+        // Items that were waiting in the queue, excluding the one taken
+        int queueSize = remaining + size - 1;
+        addedQueueSize += queueSize;
         addedQueueSizeCount++;
-        totalLines++;
-        if (maxQueueSize < size) {
-            maxQueueSize = size;
+        totalLines += size;
+        batchCount++;
+        if (maxQueueSize < queueSize) {
+            maxQueueSize = queueSize;
+        }
+        if (maxBatchSize < size) {
+            maxBatchSize = size;
         }
         long lastStatsAgo = System.currentTimeMillis() - lastStatsTime;
         if (addedQueueSizeCount > STATS_INTERVAL || lastStatsAgo > STATS_TIME_INTERVAL) {
@@ -247,12 +408,21 @@ public class LogWriter implements Runnable {
 
     private void outputStats() {
         long avg = addedQueueSizeCount > 0 ? addedQueueSize / addedQueueSizeCount : 0;
+        long avgFlushTime = flushCount > 0 ? flushTime / flushCount : 0;
         LOGGER.info("Log: total: " + totalLines + " / queue size (avg: " + avg + ", max: " + maxQueueSize
-                + ") / errors: " + errorCount);
+                + ") / batches: " + batchCount + " (max size: " + maxBatchSize
+                + ") / flushes: " + flushCount + " (avg: " + avgFlushTime + "ms, max: " + maxFlushTime
+                + "ms, max latency: " + maxFlushLatency + "ms) / errors: " + errorCount);
         addedQueueSize = 0;
         addedQueueSizeCount = 0;
         errorCount = 0;
         maxQueueSize = 0;
+        batchCount = 0;
+        maxBatchSize = 0;
+        flushCount = 0;
+        flushTime = 0;
+        maxFlushTime = 0;
+        maxFlushLatency = 0;
         lastStatsTime = System.currentTimeMillis();
     }
 
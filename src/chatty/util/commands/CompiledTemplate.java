@@ -0,0 +1,270 @@
+
+package chatty.util.commands;
+
+import chatty.Helper;
+import chatty.User;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Custom Command compiled for repeatedly creating text from the same kind of
+ * parameters, such as a log line for every message, without having to create
+ * a Parameters object for each.
+ *
+ * <p>
+ * Only simple commands can be compiled, consisting of literal text,
+ * identifiers (e.g. {@code $(msg)}) and {@code $if()}. The identifiers are
+ * resolved when compiling, either to one of the given parameter names or to
+ * the corresponding field of the User, so that only the values the command
+ * actually uses are retrieved. The result is the same as replacing the
+ * command with Parameters containing the same values and the "user" object.
+ * </p>
+ *
+ * @author tduva
+ */
+public class CompiledTemplate {
+
+    private final Node root;
+    private final int numParameters;
+    private final StringBuilder builder = new StringBuilder();
+
+    private CompiledTemplate(Node root, int numParameters) {
+        this.root = root;
+        this.numParameters = numParameters;
+    }
+
+    /**
+     * Compile the given command.
+     *
+     * @param command The command
+     * @param parameterNames The names of the parameters that will be given
+     * when replacing (in the same order), which take precedence over User
+     * fields with the same name (must be all-lowercase)
+     * @return The compiled template, or null if the command contains features
+     * that can't be compiled (and thus has to be replaced normally)
+     */
+    public static CompiledTemplate compile(CustomCommand command, String... parameterNames) {
+        if (command.hasError()) {
+            return null;
+        }
+        Node root = compileItems(command.getItems(), Arrays.asList(parameterNames));
+        if (root == null) {
+            return null;
+        }
+        return new CompiledTemplate(root, parameterNames.length);
+    }
+
+    /**
+     * Create the text, reusing the same StringBuilder.
+     *
+     * @param user The User to get the user fields from, may be null
+     * @param parameters The values of the parameters, in the same order as
+     * the names given when compiling (null or empty if not set)
+     * @return The text, or null if a required identifier wasn't available
+     */
+    public synchronized String replace(User user, String... parameters) {
+        if (parameters.length != numParameters) {
+            throw new IllegalArgumentException("Expected "+numParameters+" parameters");
+        }
+        builder.setLength(0);
+        if (!root.append(user, parameters, builder)) {
+            return null;
+        }
+        return builder.toString();
+    }
+
+    //==========================
+    // Compile
+    //==========================
+
+    private static Node compileItems(Items items, List<String> names) {
+        List<Node> nodes = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            Node node = compileItem(items.getItem(i), names);
+            if (node == null) {
+                return null;
+            }
+            nodes.add(node);
+        }
+        if (nodes.size() == 1) {
+            return nodes.get(0);
+        }
+        return new Sequence(nodes.toArray(new Node[nodes.size()]));
+    }
+
+    private static Node compileItem(Item item, List<String> names) {
+        if (item instanceof Items) {
+            return compileItems((Items) item, names);
+        }
+        if (item instanceof SpecialEscape) {
+            // Only escapes if special parameters are set
+            if (names.contains(Helper.ESCAPE_FOR_CHAIN_COMMAND)
+                    || names.contains(Helper.ESCAPE_FOR_FOREACH_COMMAND)) {
+                return null;
+            }
+            return compileItem(((SpecialEscape) item).getItem(), names);
+        }
+        if (item instanceof Literal) {
+            return new Text(((Literal) item).getLiteral());
+        }
+        if (item instanceof Replacement) {
+            Replacement replacement = (Replacement) item;
+            if (replacement.getArgs() != null
+                    || !(replacement.getIdentifier() instanceof Identifier)) {
+                return null;
+            }
+            Value value = compileValue((Identifier) replacement.getIdentifier(), names);
+            return new ValueNode(value, replacement.isRequired());
+        }
+        if (item instanceof If) {
+            If ifItem = (If) item;
+            if (!(ifItem.getIdentifier() instanceof Identifier)) {
+                return null;
+            }
+            Value value = compileValue((Identifier) ifItem.getIdentifier(), names);
+            Node output1 = compileItems(ifItem.getOutput1(), names);
+            Node output2 = null;
+            if (ifItem.getOutput2() != null) {
+                output2 = compileItems(ifItem.getOutput2(), names);
+                if (output2 == null) {
+                    return null;
+                }
+            }
+            if (output1 == null) {
+                return null;
+            }
+            return new Condition(value, output1, output2, ifItem.isRequired());
+        }
+        return null;
+    }
+
+    private static Value compileValue(Identifier identifier, List<String> names) {
+        String name = identifier.getName();
+        int index = names.indexOf(name);
+        if (index != -1) {
+            return (user, parameters) -> parameters[index];
+        }
+        // Only other source (no "localUser" or "streamInfo" object)
+        return (user, parameters) -> Parameters.getUserParameter(name, user);
+    }
+
+    //==========================
+    // Nodes
+    //==========================
+
+    private interface Value {
+
+        /**
+         * Get the value.
+         *
+         * @param user
+         * @param parameters
+         * @return The value, may be null or empty if not available
+         */
+        String get(User user, String[] parameters);
+    }
+
+    private interface Node {
+
+        /**
+         * Append the text of this node.
+         *
+         * @param user
+         * @param parameters
+         * @param b
+         * @return false if a required value is missing (the same as when an
+         * Item returns null), true otherwise
+         */
+        boolean append(User user, String[] parameters, StringBuilder b);
+    }
+
+    private static class Text implements Node {
+
+        private final String text;
+
+        Text(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public boolean append(User user, String[] parameters, StringBuilder b) {
+            b.append(text);
+            return true;
+        }
+
+    }
+
+    private static class Sequence implements Node {
+
+        private final Node[] nodes;
+
+        Sequence(Node[] nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        public boolean append(User user, String[] parameters, StringBuilder b) {
+            for (Node node : nodes) {
+                if (!node.append(user, parameters, b)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    private static class ValueNode implements Node {
+
+        private final Value value;
+        private final boolean isRequired;
+
+        ValueNode(Value value, boolean isRequired) {
+            this.value = value;
+            this.isRequired = isRequired;
+        }
+
+        @Override
+        public boolean append(User user, String[] parameters, StringBuilder b) {
+            String result = value.get(user, parameters);
+            if (result != null && !result.isEmpty()) {
+                b.append(result);
+                return true;
+            }
+            return !isRequired;
+        }
+
+    }
+
+    private static class Condition implements Node {
+
+        private final Value value;
+        private final Node output1;
+        private final Node output2;
+        private final boolean isRequired;
+
+        Condition(Value value, Node output1, Node output2, boolean isRequired) {
+            this.value = value;
+            this.output1 = output1;
+            this.output2 = output2;
+            this.isRequired = isRequired;
+        }
+
+        @Override
+        public boolean append(User user, String[] parameters, StringBuilder b) {
+            String result = value.get(user, parameters);
+            int length = b.length();
+            boolean success = true;
+            if (result != null && !result.isEmpty()) {
+                success = output1.append(user, parameters, b);
+            }
+            else if (output2 != null) {
+                success = output2.append(user, parameters, b);
+            }
+            return success && (!isRequired || b.length() > length);
+        }
+
+    }
+
+}
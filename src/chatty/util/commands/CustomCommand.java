@@ -42,6 +42,10 @@ public class CustomCommand {
         return items.replace(parameters);
     }
     
+    Items getItems() {
+        return items;
+    }
+    
     /**
      * The raw input this command was created with.
      * 
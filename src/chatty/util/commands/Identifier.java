@@ -52,6 +52,10 @@ class Identifier implements Item {
         return value != null ? value : "";
     }
 
+    public String getName() {
+        return name;
+    }
+
     @Override
     public String toString() {
         return "$" + name;
@@ -44,6 +44,22 @@ class If implements Item {
         return output;
     }
 
+    public Item getIdentifier() {
+        return identifier;
+    }
+
+    public Items getOutput1() {
+        return output1;
+    }
+
+    public Items getOutput2() {
+        return output2;
+    }
+
+    public boolean isRequired() {
+        return isRequired;
+    }
+
     @Override
     public String toString() {
         return "If " + identifier + " ? " + output1 + " : " + output2;
@@ -37,6 +37,10 @@ class Items implements Item {
     public Item getItem(int index) {
         return collection.get(index);
     }
+    
+    public int size() {
+        return collection.size();
+    }
 
     public void flush() {
         if (builder.length() > 0) {
@@ -219,7 +219,7 @@ public class Parameters {
         return parameters.toString();
     }
     
-    private static String getUserParameter(String name, User user) {
+    static String getUserParameter(String name, User user) {
         if (user == null) {
             return null;
         }
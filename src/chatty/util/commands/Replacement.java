@@ -39,6 +39,18 @@ class Replacement implements Item {
         return isRequired ? null : "";
     }
 
+    public Item getIdentifier() {
+        return identifier;
+    }
+
+    public Item getArgs() {
+        return args;
+    }
+
+    public boolean isRequired() {
+        return isRequired;
+    }
+
     @Override
     public String toString() {
         return (isRequired ? "$" : "") + identifier.toString();
@@ -31,6 +31,10 @@ public class SpecialEscape implements Item {
         return result;
     }
 
+    Item getItem() {
+        return item;
+    }
+
     @Override
     public Set<String> getIdentifiersWithPrefix(String prefix) {
         return item.getIdentifiersWithPrefix(prefix);
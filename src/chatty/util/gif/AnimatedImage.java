@@ -19,7 +19,7 @@ public interface AnimatedImage {
     public int getPreferredPauseFrame();
     
     public static void setAnimationPause(int state) {
-        AnimatedImageSource.ANIMATION_PAUSE = state;
+        AnimatedImageSource.setAnimationPause(state);
     }
     
 }
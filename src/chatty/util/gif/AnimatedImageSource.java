@@ -13,14 +13,24 @@ import java.util.logging.Logger;
 /**
  * An ImageProducer for animated images.
  * 
+ * Frames are updated by the shared {@link AnimationScheduler}, so there is
+ * only a single thread for all animated images.
+ * 
  * @author tduva
  */
-public class AnimatedImageSource implements ImageProducer {
+public class AnimatedImageSource implements ImageProducer, AnimationScheduler.Task {
     
     private static final Logger LOGGER = Logger.getLogger(AnimatedImageSource.class.getName());
     
     private static final int INACTIVITY_SECONDS = 5;
     
+    /**
+     * How often to update while paused, which is mostly just to check whether
+     * there are still consumers (changing the pause state updates all images
+     * immediately).
+     */
+    private static final int PAUSED_DELAY = 500;
+    
     private final Set<ImageConsumer> consumers = new HashSet<>();
 
     private final AnimatedImage image;
@@ -30,7 +40,7 @@ public class AnimatedImageSource implements ImageProducer {
     
     private int[] pixels;
     private int currentFrame = -1;
-    private Thread thread;
+    private boolean running;
     private ElapsedTime noConsumersTime;
     private boolean errorOccured;
     private long lastFrameSent;
@@ -59,7 +69,7 @@ public class AnimatedImageSource implements ImageProducer {
         consumers.add(ic);
         initConsumer(ic);
         sendFrame(ic);
-        startThread();
+        start();
     }
     
     @Override
@@ -87,66 +97,98 @@ public class AnimatedImageSource implements ImageProducer {
     
     public static volatile int ANIMATION_PAUSE = -1;
     
-    private void startThread() {
+    /**
+     * Set the animation pause state and update all running animations.
+     * 
+     * @param state -1 for not paused, otherwise which frame to show while
+     * paused (0 = first frame, 1 = current frame, 2 = preferred frame)
+     */
+    public static void setAnimationPause(int state) {
+        if (ANIMATION_PAUSE != state) {
+            ANIMATION_PAUSE = state;
+            AnimationScheduler.get().runAllNow();
+        }
+    }
+    
+    private synchronized void start() {
         if (errorOccured) {
             return;
         }
-        if (thread == null || !thread.isAlive()) {
-            thread = new Thread(() -> {
-                do {
-                    if (isActive()) {
-                        nextFrame();
-                    }
-                    else {
-                        // Animation is paused, switch frame if necessary
-                        int pauseFrame = 0;
-                        switch (ANIMATION_PAUSE) {
-                            case 0:
-                                pauseFrame = 0;
-                                break;
-                            case 1:
-                                pauseFrame = currentFrame;
-                                break;
-                            case 2:
-                                pauseFrame = image.getPreferredPauseFrame();
-                                break;
-                        }
-                        
-                        // If it hadn't played yet could be -1 from currentFrame
-                        if (pauseFrame < 0) {
-                            pauseFrame = 0;
-                        }
-                        
-                        if (pauseFrame != currentFrame || !hasPixels()) {
-                            currentFrame = pauseFrame - 1;
-                            nextFrame();
-                        }
-                        else if (shouldSendDummyFrame()) {
-                            /**
-                             * When paused still send frames from time to time
-                             * since otherwise removeConsumer() won't be called
-                             * when the image is no longer displayed.
-                             */
-                            sendFrame();
-                        }
-                    }
-                    try {
-                        Thread.sleep(getDelay());
-                    }
-                    catch (InterruptedException ex) {
-                        // Do nothing
-                    }
-                    if (checkStopThread() || Thread.interrupted()) {
-                        threadStopped();
-                        return;
-                    }
-                } while (true);
-            }, "AnimatedImage"+(image.getName() != null ? "-"+image.getName() : ""));
-            thread.setDaemon(true);
-            // ImageFetcher is setting a lower priority, so may make sense?
-            thread.setPriority(2);
-            thread.start();
+        if (!running) {
+            running = true;
+            AnimationScheduler.get().add(this);
+        }
+    }
+    
+    /**
+     * Called by the scheduler to update the frame.
+     * 
+     * @return The delay until the next update, -1 to stop
+     */
+    @Override
+    public long run() {
+        try {
+            return update();
+        }
+        catch (Exception ex) {
+            /**
+             * The scheduler won't run this again, so it has to be marked as
+             * stopped, otherwise it would never be started again.
+             */
+            LOGGER.warning(String.format("Error updating %s: %s",
+                    image.getName(), ex));
+            stopped();
+            return -1;
+        }
+    }
+    
+    private long update() {
+        if (checkStop()) {
+            stopped();
+            return -1;
+        }
+        if (isActive()) {
+            nextFrame();
+            return getDelay();
         }
+        // Animation is paused, switch frame if necessary
+        int pauseFrame = 0;
+        switch (ANIMATION_PAUSE) {
+            case 0:
+                pauseFrame = 0;
+                break;
+            case 1:
+                pauseFrame = getCurrentFrame();
+                break;
+            case 2:
+                pauseFrame = image.getPreferredPauseFrame();
+                break;
+        }
+
+        // If it hadn't played yet could be -1 from currentFrame
+        if (pauseFrame < 0) {
+            pauseFrame = 0;
+        }
+
+        synchronized (this) {
+            if (pauseFrame != currentFrame || !hasPixels()) {
+                currentFrame = pauseFrame - 1;
+                nextFrame();
+            }
+            else if (shouldSendDummyFrame()) {
+                /**
+                 * When paused still send frames from time to time since
+                 * otherwise removeConsumer() won't be called when the image is
+                 * no longer displayed.
+                 */
+                sendFrame();
+            }
+        }
+        return PAUSED_DELAY;
+    }
+    
+    private synchronized int getCurrentFrame() {
+        return currentFrame;
     }
     
     private synchronized int getDelay() {
@@ -163,11 +205,11 @@ public class AnimatedImageSource implements ImageProducer {
     
     /**
      * Check if enough time has passed with no consumers registered for the
-     * thread to stop.
+     * updates to stop.
      * 
      * @return 
      */
-    private synchronized boolean checkStopThread() {
+    private synchronized boolean checkStop() {
         if (errorOccured) {
             return true;
         }
@@ -181,8 +223,8 @@ public class AnimatedImageSource implements ImageProducer {
         return noConsumersTime.secondsElapsed(INACTIVITY_SECONDS);
     }
     
-    private synchronized void threadStopped() {
-        thread = null;
+    private synchronized void stopped() {
+        running = false;
         pixels = null;
     }
     
@@ -0,0 +1,217 @@
+
+package chatty.util.gif;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the frame updates of all animated images in a single thread, each
+ * image being run again when its next frame is due.
+ *
+ * Updates that are due within a few milliseconds of each other are run
+ * together, so that many animated images with similar frame delays don't
+ * require the thread to wake up separately for each of them.
+ *
+ * @author tduva
+ */
+class AnimationScheduler {
+
+    private static final Logger LOGGER = Logger.getLogger(AnimationScheduler.class.getName());
+
+    /**
+     * Updates due within this many milliseconds are run together.
+     */
+    private static final long COALESCE_MS = 5;
+
+    private static final AnimationScheduler INSTANCE = new AnimationScheduler();
+
+    public static AnimationScheduler get() {
+        return INSTANCE;
+    }
+
+    public interface Task {
+
+        /**
+         * Perform an update.
+         *
+         * If an exception is thrown, the task is not run again, so the task
+         * should handle it itself if it needs to be aware of that.
+         *
+         * @return The number of milliseconds until the next update, or -1 if
+         * no further updates should be performed
+         */
+        long run();
+    }
+
+    private final Object LOCK = new Object();
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final Map<Task, Entry> scheduled = new HashMap<>();
+    private long entryCounter;
+    private Thread thread;
+
+    /**
+     * Schedule the task to be run as soon as possible, if it's not already
+     * scheduled.
+     *
+     * @param task
+     */
+    public void add(Task task) {
+        synchronized (LOCK) {
+            Entry current = scheduled.get(task);
+            if (current != null) {
+                // In case it's currently running and is about to stop
+                current.addedAgain = true;
+                return;
+            }
+            schedule(task, System.currentTimeMillis());
+            startThread();
+            LOCK.notifyAll();
+        }
+    }
+
+    /**
+     * Run all scheduled tasks as soon as possible, for example because the
+     * animation state changed.
+     */
+    public void runAllNow() {
+        synchronized (LOCK) {
+            // Currently running tasks are not in the queue and stay as they are
+            List<Entry> entries = new ArrayList<>(queue);
+            queue.clear();
+            long now = System.currentTimeMillis();
+            for (Entry entry : entries) {
+                schedule(entry.task, now);
+            }
+            LOCK.notifyAll();
+        }
+    }
+
+    /**
+     * The number of tasks currently scheduled.
+     *
+     * @return
+     */
+    public int size() {
+        synchronized (LOCK) {
+            return scheduled.size();
+        }
+    }
+
+    private void schedule(Task task, long due) {
+        Entry entry = new Entry(task, due, entryCounter++);
+        queue.add(entry);
+        scheduled.put(task, entry);
+    }
+
+    private void startThread() {
+        if (thread == null) {
+            thread = new Thread(this::runLoop, "AnimatedImages");
+            thread.setDaemon(true);
+            // ImageFetcher is setting a lower priority, so may make sense?
+            thread.setPriority(2);
+            thread.start();
+        }
+    }
+
+    private void runLoop() {
+        List<Entry> due = new ArrayList<>();
+        while (true) {
+            try {
+                long now = waitForDue(due);
+                for (Entry entry : due) {
+                    long delay = runTask(entry.task);
+                    synchronized (LOCK) {
+                        scheduled.remove(entry.task);
+                        if (delay < 0 && entry.addedAgain) {
+                            schedule(entry.task, now);
+                        }
+                        else if (delay >= 0) {
+                            /**
+                             * Based on the time it was due, so the frame rate
+                             * doesn't drift, unless it fell behind too much.
+                             */
+                            schedule(entry.task, Math.max(entry.due + delay, now));
+                        }
+                    }
+                }
+                due.clear();
+            }
+            catch (InterruptedException ex) {
+                // Shouldn't happen, but just continue
+            }
+        }
+    }
+
+    /**
+     * Wait until at least one task is due and take all tasks that are due now
+     * or within a few milliseconds.
+     *
+     * @param result The tasks are added to this
+     * @return The current time
+     * @throws InterruptedException
+     */
+    private long waitForDue(List<Entry> result) throws InterruptedException {
+        synchronized (LOCK) {
+            while (true) {
+                long now = System.currentTimeMillis();
+                Entry next = queue.peek();
+                if (next == null) {
+                    LOCK.wait();
+                }
+                else if (next.due > now + COALESCE_MS) {
+                    LOCK.wait(next.due - now);
+                }
+                else {
+                    while (next != null && next.due <= now + COALESCE_MS) {
+                        /**
+                         * Stays in "scheduled" while running, so it can't be
+                         * added a second time meanwhile.
+                         */
+                        result.add(queue.poll());
+                        next = queue.peek();
+                    }
+                    return now;
+                }
+            }
+        }
+    }
+
+    private static long runTask(Task task) {
+        try {
+            return task.run();
+        }
+        catch (Exception ex) {
+            LOGGER.log(Level.WARNING, "Error updating animation", ex);
+            return -1;
+        }
+    }
+
+    private static class Entry implements Comparable<Entry> {
+
+        private final Task task;
+        private final long due;
+        private final long order;
+        private boolean addedAgain;
+
+        Entry(Task task, long due, long order) {
+            this.task = task;
+            this.due = due;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            if (due != o.due) {
+                return Long.compare(due, o.due);
+            }
+            return Long.compare(order, o.order);
+        }
+
+    }
+
+}
@@ -0,0 +1,133 @@
+
+package chatty.util.gif;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the decoded pixels of recently shown {@link ListAnimatedImageFrame}
+ * frames, so that animations that are shown often don't have to decode each
+ * frame every time it is shown. The least recently used frames are removed
+ * when the cache exceeds the max size, so frames of images that are rarely
+ * shown only stay in their compressed form.
+ *
+ * Shared by all images, thread-safe.
+ *
+ * @author tduva
+ */
+public class DecodedFrameCache {
+
+    private static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * Estimated bytes used for an entry in addition to the pixels.
+     */
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private static final Map<ListAnimatedImageFrame, int[]> cache = new LinkedHashMap<>(64, 0.75f, true);
+
+    private static long maxSize = DEFAULT_MAX_SIZE;
+    private static long size;
+    private static long hits;
+    private static long misses;
+    private static long evictions;
+
+    /**
+     * Set the max size of the cache in bytes. Setting to 0 disables the
+     * cache.
+     *
+     * @param bytes
+     */
+    public static synchronized void setMaxSize(long bytes) {
+        maxSize = Math.max(0, bytes);
+        removeExcess();
+    }
+
+    /**
+     * Copy the cached pixels of the given frame into the array.
+     *
+     * @param frame The frame
+     * @param pixels The array to fill, must be large enough for the frame
+     * @return true if the frame was cached, false otherwise (the array
+     * remains unchanged)
+     */
+    public static synchronized boolean get(ListAnimatedImageFrame frame, int[] pixels) {
+        int[] cached = cache.get(frame);
+        if (cached == null) {
+            misses++;
+            return false;
+        }
+        hits++;
+        System.arraycopy(cached, 0, pixels, 0, cached.length);
+        return true;
+    }
+
+    /**
+     * Add the decoded pixels of the given frame.
+     *
+     * @param frame The frame
+     * @param pixels The pixels, which will be copied
+     * @param length The number of pixels that belong to the frame
+     */
+    public static synchronized void put(ListAnimatedImageFrame frame, int[] pixels, int length) {
+        long entrySize = entrySize(length);
+        // A single image shouldn't push out most other images
+        if (entrySize > maxSize / 4 || cache.containsKey(frame)) {
+            return;
+        }
+        int[] copy = new int[length];
+        System.arraycopy(pixels, 0, copy, 0, length);
+        cache.put(frame, copy);
+        size += entrySize;
+        removeExcess();
+    }
+
+    private static long entrySize(int length) {
+        return (long) length * 4 + ENTRY_OVERHEAD;
+    }
+
+    private static void removeExcess() {
+        Iterator<int[]> it = cache.values().iterator();
+        while (size > maxSize && it.hasNext()) {
+            size -= entrySize(it.next().length);
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public static synchronized void clear() {
+        cache.clear();
+        size = 0;
+    }
+
+    /**
+     * Info about the current state of the cache, for debugging.
+     *
+     * @return
+     */
+    public static synchronized String getStats() {
+        long total = hits + misses;
+        return String.format("Decoded frames: %d (%dKB/%dKB), hits: %d (%d%%), misses: %d, evictions: %d",
+                cache.size(),
+                size / 1024,
+                maxSize / 1024,
+                hits,
+                total > 0 ? hits * 100 / total : 0,
+                misses,
+                evictions);
+    }
+
+    public static synchronized long getSize() {
+        return size;
+    }
+
+    public static synchronized long getHits() {
+        return hits;
+    }
+
+    public static synchronized long getMisses() {
+        return misses;
+    }
+
+}
@@ -41,24 +41,37 @@ public class GifUtil {
      * @throws Exception When an error occured loading the image
      */
     public static ImageResult getGifFromUrl(ImageRequest request) throws Exception {
-        ImageResult result = null;
         URLConnection c = request.getLoadFromURL().openConnection();
         try (InputStream input = c.getInputStream()) {
             // Use readAllBytes() because GifDecoder doesn't handle streams well
             byte[] imageData = readAllBytes(input);
-            // Attempt decoding various formats
-            result = loadAsGif(imageData, request);
-            if (result == null) {
-                result = loadDefault(imageData, request);
-            }
-            if (result == null) {
-                result = WebPUtil.decode(imageData, request);
-            }
-            // Done with decode attempts
-            if (result != null && !result.isValidImage()) {
-                result.icon.getImage().flush();
-                return null;
-            }
+            return getGifFromBytes(imageData, request);
+        }
+    }
+    
+    /**
+     * Creates an image from the given data, same as
+     * {@link #getGifFromUrl(ImageRequest)}.
+     * 
+     * @param imageData The image data
+     * @param request Contains information about how to create the image
+     * @return The created ImageIcon, or null if an error occured creating the
+     * image
+     * @throws Exception When an error occured loading the image
+     */
+    public static ImageResult getGifFromBytes(byte[] imageData, ImageRequest request) throws Exception {
+        // Attempt decoding various formats
+        ImageResult result = loadAsGif(imageData, request);
+        if (result == null) {
+            result = loadDefault(imageData, request);
+        }
+        if (result == null) {
+            result = WebPUtil.decode(imageData, request);
+        }
+        // Done with decode attempts
+        if (result != null && !result.isValidImage()) {
+            result.icon.getImage().flush();
+            return null;
         }
         return result;
     }
@@ -151,7 +164,7 @@ public class GifUtil {
      * @return
      * @throws IOException 
      */
-    private static byte[] readAllBytes(InputStream input) throws IOException {
+    public static byte[] readAllBytes(InputStream input) throws IOException {
         ByteArrayOutputStream result = new ByteArrayOutputStream();
         byte[] buffer = new byte[1024];
         int length;
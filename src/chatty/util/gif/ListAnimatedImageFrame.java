@@ -11,7 +11,8 @@ import java.io.IOException;
  * A single frame of a ListAnimatedImage. The pixel data is compressed in the
  * PNG format. Decoding the pixel data on each frame may cause higher CPU usage
  * than just storing the entire frame uncompressed, however the difference seems
- * fairly small. It might make sense to make compression optional though.
+ * fairly small. Recently shown frames are also kept uncompressed in the
+ * {@link DecodedFrameCache}, up to a max size.
  * 
  * @author tduva
  */
@@ -52,8 +53,12 @@ public class ListAnimatedImageFrame {
      * @throws IOException 
      */
     public void getImage(int[] pixels) throws IOException {
+        if (DecodedFrameCache.get(this, pixels)) {
+            return;
+        }
         PNGDecoder decoder = new PNGDecoder(new ByteArrayInputStream(compressed));
         decoder.decode(new ARGBBuffer(pixels), width * 4, PNGDecoder.Format.RGBA);
+        DecodedFrameCache.put(this, pixels, width * height);
     }
     
     public int getDelay() {
@@ -0,0 +1,127 @@
+
+package chatty.util.irc;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads IRC lines ending with "\r\n" from an InputStream.
+ *
+ * Data is read in bulk into a reusable buffer and scanned for line endings on
+ * the bytes, so only complete lines have to be decoded (as UTF-8). This avoids
+ * the per-character (synchronized) calls of reading through a Reader.
+ *
+ * Just like the previous per-character loop, single "\r" and "\n" characters
+ * are removed from lines and only "\r\n" ends a line.
+ *
+ * The state is retained when reading throws an exception (like a
+ * SocketTimeoutException), so reading can simply be continued afterwards. Not
+ * thread-safe, it should only be used by the thread receiving data.
+ *
+ * @author tduva
+ */
+public class IrcLineReader {
+
+    private static final int READ_BUFFER_SIZE = 16*1024;
+
+    private final InputStream in;
+
+    /**
+     * Received data that hasn't been scanned yet is between position and limit.
+     */
+    private final ByteBuffer readBuffer;
+
+    /**
+     * The current line (without any "\r" or "\n").
+     */
+    private byte[] line = new byte[512];
+    private int lineLength;
+    private boolean previousWasCR;
+
+    public IrcLineReader(InputStream in) {
+        this(in, READ_BUFFER_SIZE);
+    }
+
+    public IrcLineReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.readBuffer = ByteBuffer.allocate(bufferSize);
+        this.readBuffer.flip();
+    }
+
+    /**
+     * Get the next complete line. Blocks until a line is available, the end of
+     * the stream is reached or reading throws an exception.
+     *
+     * @return The line, or null if the end of the stream has been reached
+     * (any incomplete line is discarded)
+     * @throws IOException When thrown by the underlying InputStream, reading
+     * may be continued afterwards
+     */
+    public String readLine() throws IOException {
+        while (true) {
+            String result = scan();
+            if (result != null) {
+                return result;
+            }
+            // Only reset buffer after reading, in case of an exception
+            int read = in.read(readBuffer.array(), 0, readBuffer.capacity());
+            if (read == -1) {
+                return null;
+            }
+            readBuffer.position(0);
+            readBuffer.limit(read);
+        }
+    }
+
+    /**
+     * Scan the remaining buffered data for the end of a line.
+     *
+     * @return The line, or null if more data is needed
+     */
+    private String scan() {
+        byte[] data = readBuffer.array();
+        int pos = readBuffer.position();
+        int limit = readBuffer.limit();
+        int runStart = pos;
+        while (pos < limit) {
+            byte b = data[pos];
+            if (b == '\r' || b == '\n') {
+                append(data, runStart, pos);
+                runStart = pos + 1;
+                if (b == '\r') {
+                    previousWasCR = true;
+                }
+                else if (previousWasCR) {
+                    previousWasCR = false;
+                    readBuffer.position(pos + 1);
+                    String result = new String(line, 0, lineLength, StandardCharsets.UTF_8);
+                    lineLength = 0;
+                    return result;
+                }
+            }
+            else {
+                previousWasCR = false;
+            }
+            pos++;
+        }
+        append(data, runStart, limit);
+        readBuffer.position(limit);
+        return null;
+    }
+
+    private void append(byte[] data, int start, int end) {
+        int length = end - start;
+        if (length <= 0) {
+            return;
+        }
+        if (lineLength + length > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+        }
+        System.arraycopy(data, start, line, lineLength, length);
+        lineLength += length;
+    }
+
+}
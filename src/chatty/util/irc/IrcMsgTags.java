@@ -263,24 +263,32 @@ public class IrcMsgTags {
         return tags;
     }
     
+    /**
+     * Parse the given IRCv3 tags String (no leading @). The values are only
+     * extracted and unescaped when they are actually requested, so the
+     * returned Map is read-only.
+     * 
+     * @param data The tags String
+     * @return The tags, or null if data was null
+     */
     public static Map<String, String> parseTags(String data) {
         if (data == null) {
             return null;
         }
-        String[] tags = data.split(";");
-        if (tags.length > 0) {
-            Map<String, String> result = new HashMap<>();
-            for (String tag : tags) {
-                String[] keyValue = tag.split("=",2);
-                if (keyValue.length == 2) {
-                    result.put(keyValue[0], Helper.tagsvalue_decode(keyValue[1]));
-                } else if (!keyValue[0].isEmpty()) {
-                    result.put(keyValue[0], null);
-                }
-            }
-            return result;
-        }
-        return null;
+        return parseTags(data, 0, data.length());
+    }
+    
+    /**
+     * Parse IRCv3 tags (no leading @) from the given range of a String, such
+     * as a whole IRC message, without creating a copy of the tags first.
+     * 
+     * @param data The String containing the tags
+     * @param start The start index of the tags
+     * @param end The end index of the tags (exclusive)
+     * @return The tags (read-only)
+     */
+    public static Map<String, String> parseTags(String data, int start, int end) {
+        return new LazyTagsMap(data, start, end);
     }
     
 }
@@ -0,0 +1,168 @@
+
+package chatty.util.irc;
+
+import chatty.Helper;
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only Map of IRCv3 tags that only records the positions of the tags in
+ * the original String when created. Values are only extracted and unescaped
+ * when requested, since usually only a few of the tags are actually used.
+ *
+ * Accessing single keys works directly on the original String, while
+ * operations that need all entries (iterating, equals, hashCode, toString)
+ * create a regular HashMap once.
+ *
+ * Should be safe to use from several threads, since the cached values are
+ * immutable and at worst created twice.
+ *
+ * @author tduva
+ */
+class LazyTagsMap extends AbstractMap<String, String> {
+
+    private final String data;
+
+    /**
+     * Per tag: key start, key end, value end (-1 if there is no value, the
+     * value starts after the key end and the "=").
+     */
+    private final int[] positions;
+    private final int count;
+
+    private final String[] values;
+    private volatile Map<String, String> map;
+
+    /**
+     * Records the positions of the tags in the given range of the String (no
+     * leading @). Parses the same way as {@link IrcMsgTags#parseTags(String)}
+     * used to: empty entries are ignored and if a key appears several times,
+     * the last value is used.
+     *
+     * @param data The String containing the tags
+     * @param start The start index of the tags
+     * @param end The end index of the tags (exclusive)
+     */
+    LazyTagsMap(String data, int start, int end) {
+        this.data = data;
+        int[] result = new int[3*countTags(data, start, end)];
+        int tagCount = 0;
+        int tagStart = start;
+        while (tagStart <= end) {
+            int tagEnd = data.indexOf(';', tagStart);
+            if (tagEnd == -1 || tagEnd > end) {
+                tagEnd = end;
+            }
+            int equals = data.indexOf('=', tagStart);
+            if (equals != -1 && equals < tagEnd) {
+                result[tagCount*3] = tagStart;
+                result[tagCount*3+1] = equals;
+                result[tagCount*3+2] = tagEnd;
+                tagCount++;
+            }
+            else if (tagEnd > tagStart) {
+                result[tagCount*3] = tagStart;
+                result[tagCount*3+1] = tagEnd;
+                result[tagCount*3+2] = -1;
+                tagCount++;
+            }
+            tagStart = tagEnd + 1;
+        }
+        this.positions = result;
+        this.count = tagCount;
+        this.values = new String[tagCount];
+    }
+
+    private static int countTags(String data, int start, int end) {
+        int result = 1;
+        for (int i = start; i < end; i++) {
+            if (data.charAt(i) == ';') {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Find the index of the tag with the given key. Searches backwards, so the
+     * last one is used in case of duplicate keys.
+     *
+     * @param key
+     * @return The tag index, or -1 if not found
+     */
+    private int find(Object key) {
+        if (!(key instanceof String)) {
+            return -1;
+        }
+        String search = (String) key;
+        for (int i = count - 1; i >= 0; i--) {
+            int keyStart = positions[i*3];
+            int keyEnd = positions[i*3+1];
+            if (keyEnd - keyStart == search.length()
+                    && data.startsWith(search, keyStart)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private String getValue(int index) {
+        int valueEnd = positions[index*3+2];
+        if (valueEnd == -1) {
+            return null;
+        }
+        String value = values[index];
+        if (value == null) {
+            value = data.substring(positions[index*3+1] + 1, valueEnd);
+            // All escape sequences start with a backslash
+            if (value.indexOf('\\') != -1) {
+                value = Helper.tagsvalue_decode(value);
+            }
+            values[index] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public String get(Object key) {
+        int index = find(key);
+        return index == -1 ? null : getValue(index);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return find(key) != -1;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public int size() {
+        return getMap().size();
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return getMap().entrySet();
+    }
+
+    private Map<String, String> getMap() {
+        Map<String, String> result = map;
+        if (result == null) {
+            Map<String, String> created = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                created.put(data.substring(positions[i*3], positions[i*3+1]), getValue(i));
+            }
+            result = Collections.unmodifiableMap(created);
+            map = result;
+        }
+        return result;
+    }
+
+}
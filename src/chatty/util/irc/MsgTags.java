@@ -181,6 +181,19 @@ public class MsgTags extends IrcMsgTags {
         return new MsgTags(parsedTags, null);
     }
     
+    /**
+     * Parse IRCv3 tags (no leading @) from the given range of a String into a
+     * MsgTags object.
+     * 
+     * @param data The String containing the tags (e.g. the whole IRC message)
+     * @param start The start index of the tags
+     * @param end The end index of the tags (exclusive)
+     * @return MsgTags object
+     */
+    public static MsgTags parse(String data, int start, int end) {
+        return new MsgTags(parseTags(data, start, end), null);
+    }
+    
     /**
      * Create a new MsgTags object with the given key/value pairs.
      * 
@@ -45,23 +45,34 @@ public class ParsedMsg {
         return parameters;
     }
     
+    /**
+     * Parse an IRC message. Works with positions in the original String, so
+     * only the parts that are actually stored (prefix, command, parameters)
+     * are copied. The tags values are only extracted when requested.
+     * 
+     * @param input The raw IRC message
+     * @return The parsed message, or null if it couldn't be parsed
+     */
     public static ParsedMsg parse(String input) {
         if (input == null) {
             return null;
         }
         
+        // Start of the remaining input to be parsed
+        int pos = 0;
+        
         //------
         // Tags
         //------
         MsgTags tags = MsgTags.EMPTY;
         if (input.startsWith("@")) {
-            int endOfTags = input.indexOf(" ");
+            int endOfTags = input.indexOf(' ');
             if (endOfTags == -1) {
                 LOGGER.warning("Parsing error: Couldn't find whitespace after tags: "+input);
                 return null;
             }
-            tags = MsgTags.parse(input.substring(1, endOfTags));
-            input = input.substring(endOfTags+1);
+            tags = MsgTags.parse(input, 1, endOfTags);
+            pos = endOfTags+1;
         }
         //System.out.println("Tags: "+tags);
         
@@ -72,16 +83,16 @@ public class ParsedMsg {
         String command = null;
         MsgParameters parameters = new MsgParameters();
         
-        int endOfPrefix = -1;
+        int endOfPrefix = pos-1;
         
         // Get prefix if available
-        if (input.startsWith(":")) {
-            endOfPrefix = input.indexOf(" ");
+        if (input.startsWith(":", pos)) {
+            endOfPrefix = input.indexOf(' ', pos);
             if (endOfPrefix == -1) {
-                LOGGER.warning("Parsing error: Couldn't find whitespace after prefix: "+input);
+                LOGGER.warning("Parsing error: Couldn't find whitespace after prefix: "+input.substring(pos));
                 return null;
             }
-            prefix = input.substring(1,endOfPrefix);
+            prefix = input.substring(pos+1,endOfPrefix);
         }
         
         //------------
@@ -95,7 +106,7 @@ public class ParsedMsg {
                 break;
             }
             // Find next space
-            next = input.indexOf(" ", start);
+            next = input.indexOf(' ', start);
             int end;
             if (next == -1 || input.charAt(start) == ':') {
                 // No further space found or trailing start, so until string end
@@ -109,8 +120,8 @@ public class ParsedMsg {
                 end = next;
             }
             // Set as command if not set yet, as parameter otherwise
-            String part = input.substring(start, end);
-            if (!part.isEmpty()) {
+            if (end > start) {
+                String part = input.substring(start, end);
                 if (command == null) {
                     command = part;
                 } else {
@@ -0,0 +1,115 @@
+
+package chatty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class UserManagerTest {
+
+    @Test
+    public void test() {
+        UserManager m = new UserManager();
+        Room a = Room.createRegular("#a");
+        Room b = Room.createRegular("#b");
+
+        User userA = m.getUser(a, "Abc");
+        assertSame(userA, m.getUser(a, "abc"));
+        assertSame(userA, m.getUserIfExists("#a", "abc"));
+        assertNull(m.getUserIfExists("#b", "abc"));
+        assertNull(m.getUserIfExists("#c", "abc"));
+
+        User userB = m.getUser(b, "abc");
+        assertNotSame(userA, userB);
+        assertEquals(2, m.getUsersByName("ABC").size());
+        Map<String, User> byChannel = m.getChannelsAndUsersByUserName("abc");
+        assertSame(userA, byChannel.get("#a"));
+        assertSame(userB, byChannel.get("#b"));
+
+        m.clear("#a");
+        assertNull(m.getUserIfExists("#a", "abc"));
+        assertEquals(1, m.getUsersByName("abc").size());
+        assertNotSame(userA, m.getUser(a, "abc"));
+
+        m.clear();
+        assertTrue(m.getUsersByName("abc").isEmpty());
+        assertTrue(m.getUsersByChannel("#b").isEmpty());
+    }
+
+    /**
+     * Simulates messages in 50 channels received and looked up from several
+     * threads at once, while channels are occasionally cleared.
+     */
+    @Test
+    public void testConcurrent() throws Exception {
+        UserManager m = new UserManager();
+        int numChannels = 50;
+        int numNames = 2000;
+        int numThreads = 8;
+        int iterations = 50000;
+        Room[] rooms = new Room[numChannels];
+        for (int i = 0; i < numChannels; i++) {
+            rooms[i] = Room.createRegular("#channel" + i);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            int thread = t;
+            results.add(executor.submit(() -> {
+                start.await();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < iterations; i++) {
+                    Room room = rooms[random.nextInt(numChannels)];
+                    String name = "user" + random.nextInt(numNames);
+                    User user = m.getUser(room, name);
+                    assertEquals(name, user.getName());
+                    assertEquals(room.getChannel(), user.getChannel());
+                    if (i % 10 == 0) {
+                        for (User u : m.getUsersByName(name)) {
+                            assertEquals(name, u.getName());
+                        }
+                    }
+                    if (thread == 0 && i % 5000 == 0) {
+                        m.clear(room.getChannel());
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        // Name index matches channel maps
+        for (int n = 0; n < numNames; n++) {
+            String name = "user" + n;
+            Map<String, User> byName = m.getChannelsAndUsersByUserName(name);
+            int count = 0;
+            for (Room room : rooms) {
+                User user = m.getUserIfExists(room.getChannel(), name);
+                assertSame(user, byName.get(room.getChannel()));
+                if (user != null) {
+                    count++;
+                }
+            }
+            assertEquals(count, byName.size());
+        }
+    }
+
+}
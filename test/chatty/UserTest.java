@@ -1,6 +1,10 @@
 
 package chatty;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -12,8 +16,21 @@ public class UserTest {
     
     @Test
     public void linesTest() {
+        linesTest(false);
+        linesTest(true);
+    }
+    
+    private static User createUser(boolean packed) {
+        User user = new User("", Room.EMPTY);
+        if (packed) {
+            user.setUserSettings(new User.UserSettings(100, true, null, null, null));
+        }
+        return user;
+    }
+    
+    private void linesTest(boolean packed) {
         // max
-        User maxLinesReached = new User("", Room.EMPTY);
+        User maxLinesReached = createUser(packed);
         for (int i=0;i<100;i++) {
             maxLinesReached.addMessage(null, false, null);
         }
@@ -21,7 +38,7 @@ public class UserTest {
         assertFalse(maxLinesReached.maxLinesExceeded());
         
         // max+1
-        User maxLinesExceeded = new User("", Room.EMPTY);
+        User maxLinesExceeded = createUser(packed);
         for (int i=0;i<101;i++) {
             maxLinesExceeded.addMessage(null, false, null);
         }
@@ -29,14 +46,14 @@ public class UserTest {
         assertTrue(maxLinesExceeded.maxLinesExceeded());
         
         // cleared
-        User linesCleared = new User("", Room.EMPTY);
+        User linesCleared = createUser(packed);
         linesCleared.addMessage(null, false, null);
         linesCleared.clearLinesIfInactive(0);
         assertTrue(linesCleared.linesCleared());
         assertFalse(linesCleared.maxLinesExceeded());
         
         // 120 -> cleared
-        User linesClearedAfterExcceeded = new User("", Room.EMPTY);
+        User linesClearedAfterExcceeded = createUser(packed);
         for (int i=0;i<120;i++) {
             linesClearedAfterExcceeded.addMessage(null, false, null);
         }
@@ -45,7 +62,7 @@ public class UserTest {
         assertFalse(linesClearedAfterExcceeded.maxLinesExceeded());
         
         // 120 -> cleared -> 120
-        User linesExceededAfterCleared = new User("", Room.EMPTY);
+        User linesExceededAfterCleared = createUser(packed);
         for (int i=0;i<120;i++) {
             linesExceededAfterCleared.addMessage(null, false, null);
         }
@@ -57,7 +74,7 @@ public class UserTest {
         assertTrue(linesExceededAfterCleared.maxLinesExceeded());
         
         // 40 -> cleared -> max
-        User linesMaxAfterCleared = new User("", Room.EMPTY);
+        User linesMaxAfterCleared = createUser(packed);
         for (int i=0;i<40;i++) {
             linesMaxAfterCleared.addMessage(null, false, null);
         }
@@ -69,7 +86,7 @@ public class UserTest {
         assertTrue(linesMaxAfterCleared.maxLinesExceeded());
         
         // Various tests
-        User otherTypes = new User("", Room.EMPTY);
+        User otherTypes = createUser(packed);
         for (int i=0;i<100;i++) {
             otherTypes.addMessage(null, false, null);
         }
@@ -93,7 +110,12 @@ public class UserTest {
     
     @Test
     public void testSimilarMessages() {
-        User user = new User("", Room.EMPTY);
+        testSimilarMessages(false);
+        testSimilarMessages(true);
+    }
+    
+    private void testSimilarMessages(boolean packed) {
+        User user = createUser(packed);
         user.addMessage("first line", false, "");
         user.addMessage("second line", true, "");
         user.addMessage("third line", false, "");
@@ -115,4 +137,92 @@ public class UserTest {
         assertEquals(2, user.getNumberOfSimilarChatMessages("third line", 1, 600, 0.8f, 0, new char[]{'!'}));
     }
     
+    @Test
+    public void testPackedLines() {
+        User user = createUser(true);
+        String id = "a2f5c6d8-1b3e-4f70-9a1c-2d3e4f5a6b7c";
+        user.addMessage("first", false, id);
+        user.addMessage("second äöü", true, "not-a-uuid");
+        user.addMessage(null, false, null);
+        user.addMessage("shared", false, "id", "source-id", "#source", 1000);
+        user.addBan(60, "reason", null);
+        
+        List<User.Message> messages = user.getMessages();
+        assertEquals(5, messages.size());
+        User.TextMessage first = (User.TextMessage) messages.get(0);
+        assertEquals("first", first.text);
+        assertEquals(id, first.id);
+        assertFalse(first.action);
+        User.TextMessage second = (User.TextMessage) messages.get(1);
+        assertEquals("second äöü", second.text);
+        assertEquals("not-a-uuid", second.id);
+        assertTrue(second.action);
+        assertNull(((User.TextMessage) messages.get(2)).text);
+        assertTrue(messages.get(3) instanceof User.SharedTextMessage);
+        assertEquals(1000, messages.get(3).getTime());
+        assertTrue(messages.get(4) instanceof User.BanMessage);
+        
+        assertEquals("first", user.getMessage(id).text);
+        assertEquals("second äöü", user.getMessageText("not-a-uuid"));
+        assertEquals("shared", user.getMessageText("id"));
+        assertNull(user.getMessage("a2f5c6d8-1b3e-4f70-9a1c-2d3e4f5a6b7d"));
+        assertEquals(0, user.getNumberOfMessagesAfterBan());
+    }
+    
+    @Test
+    public void testPackedLinesList() {
+        PackedLines lines = new PackedLines(10);
+        List<User.Message> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            User.Message line;
+            if (i % 7 == 0) {
+                line = new User.InfoMessage(i, "info", "info "+i);
+            }
+            else {
+                line = new User.TextMessage(i, String.join("", Collections.nCopies(i % 13, "text"+i)), i % 3 == 0, UUID.randomUUID().toString(), null);
+            }
+            lines.add(line);
+            expected.add(line);
+            if (expected.size() > 10) {
+                expected.remove(0);
+            }
+            assertEquals(expected.size(), lines.size());
+            for (int j = 0; j < expected.size(); j++) {
+                assertSameLine(expected.get(j), lines.get(j));
+                assertEquals(expected.get(j).getTime(), lines.getTime(j));
+            }
+        }
+        
+        // Replace
+        User.TextMessage replaced = new User.TextMessage(5, "replaced", false, "id", null);
+        lines.set(3, replaced);
+        expected.set(3, replaced);
+        assertSameLine(replaced, lines.get(3));
+        assertEquals(3, lines.indexOfTextMessage("id"));
+        User.TextMessage last = (User.TextMessage) expected.get(9);
+        assertEquals(9, lines.indexOfTextMessage(last.id));
+        
+        // Remove
+        lines.remove(0);
+        expected.remove(0);
+        assertEquals(expected.size(), lines.size());
+        for (int j = 0; j < expected.size(); j++) {
+            assertSameLine(expected.get(j), lines.get(j));
+        }
+    }
+    
+    private static void assertSameLine(User.Message expected, User.Message actual) {
+        if (expected instanceof User.TextMessage) {
+            User.TextMessage a = (User.TextMessage) expected;
+            User.TextMessage b = (User.TextMessage) actual;
+            assertEquals(a.text, b.text);
+            assertEquals(a.id, b.id);
+            assertEquals(a.action, b.action);
+            assertEquals(a.getTime(), b.getTime());
+        }
+        else {
+            assertSame(expected, actual);
+        }
+    }
+    
 }
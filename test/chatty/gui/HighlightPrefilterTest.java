@@ -0,0 +1,68 @@
+package chatty.gui;
+
+import chatty.gui.Highlighter.HighlightItem;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class HighlightPrefilterTest {
+    
+    private static final String[] ITEMS = new String[]{
+        "test", "mäh", "cs:Test", "start:!bet", "startw:!bet ", "w:Test",
+        "wcs:Test", "wcs:Test|Test2", "text:abc", "msgtext:abc", "msgcs:ABC",
+        "reg:dumdi|dum", "regi:abc", "!text:abc", "+text:abc text:def",
+        "user:testUser start:Test", "cat:testCat", "config:info test",
+        "İs", "cs:💕", "💕", "text:straße", "reg:[", "abc\\blah"
+    };
+    
+    private static final String[] TEXTS = new String[]{
+        "", "test", "TEST abc", "Test2", "!bet", "!BET a", "mÄh", "aBc",
+        "ABC", "def abc", "dumdidum", "IS", "ıs", "💕💕", "STRASSE", "Straße",
+        "abc\\blah", "abc blah"
+    };
+    
+    @Test
+    public void testCandidates() {
+        List<HighlightItem> items = new ArrayList<>();
+        for (String item : ITEMS) {
+            items.add(new HighlightItem(item));
+        }
+        HighlightPrefilter prefilter = new HighlightPrefilter(items);
+        assertTrue(prefilter.isEffective());
+        for (String text : TEXTS) {
+            boolean[] candidates = prefilter.getCandidates(text);
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).matchesAny(text, null)) {
+                    assertTrue(text+" / "+ITEMS[i], HighlightPrefilter.isCandidate(candidates, i));
+                }
+            }
+        }
+        
+        // Items without required text are always candidates
+        boolean[] candidates = prefilter.getCandidates("xyz");
+        assertFalse(candidates[0]);
+        assertTrue(candidates[11]);
+        assertTrue(candidates[13]);
+        assertTrue(candidates[16]);
+        assertNull(prefilter.getCandidates(null));
+    }
+    
+    @Test
+    public void testRequiredText() {
+        assertEquals("Test", new HighlightItem("cs:Test").getRequiredText());
+        assertTrue(new HighlightItem("cs:Test").isRequiredTextCaseSensitive());
+        assertEquals("abc", new HighlightItem("chan:test abc").getRequiredText());
+        assertFalse(new HighlightItem("chan:test abc").isRequiredTextCaseSensitive());
+        assertEquals("!bet", new HighlightItem("startw:!bet ").getRequiredText());
+        assertNull(new HighlightItem("reg:abc").getRequiredText());
+        assertNull(new HighlightItem("!text:abc").getRequiredText());
+        assertNull(new HighlightItem("cat:testCat").getRequiredText());
+        assertFalse(new HighlightPrefilter(new ArrayList<>()).isEffective());
+    }
+    
+}
@@ -1640,4 +1640,40 @@ public class HighlighterTest {
         updateFalse(msgsUser, "!bot", "msgs:\"mtype:outer\",\"abc2\" !bot");
     }
     
+    @Test
+    public void testContext() {
+        Highlighter ignore = new Highlighter("ignore");
+        ignore.update(Arrays.asList("cat:testCat2 regw:abc|def", "config:b|vip reg:xyz"));
+        ignore.updateBlacklist(Arrays.asList("abc"));
+        Highlighter hl = new Highlighter("highlight");
+        hl.update(Arrays.asList("cat:testCat2 regw:abc|def", "cat:testCat3 text:abc"));
+        hl.updateBlacklist(Arrays.asList("def"));
+        
+        String[] texts = new String[]{"abc", "def", "abc def", "xyz", "nothing"};
+        User[] users = new User[]{user, user2, user4};
+        for (String text : texts) {
+            for (User u : users) {
+                HighlightContext context = new HighlightContext();
+                boolean ignored = ignore.check(Type.REGULAR, text, -2, -2, null, null, u, null, MsgTags.EMPTY, false, context);
+                boolean highlighted = hl.check(Type.REGULAR, text, -2, -2, null, null, u, null, MsgTags.EMPTY, false, context);
+                String info = text+"/"+u.getName();
+                assertEquals(info, ignore.check(Type.REGULAR, text, -2, -2, null, null, u, null, MsgTags.EMPTY, false), ignored);
+                assertEquals(info, hl.check(Type.REGULAR, text, -2, -2, null, null, u, null, MsgTags.EMPTY, false), highlighted);
+            }
+        }
+        
+        Highlighter a = new Highlighter("a");
+        a.update(Arrays.asList("cat:testCat2 regw:abc|def"));
+        Highlighter b = new Highlighter("b");
+        b.update(Arrays.asList("cat:testCat2 regw:abc|def"));
+        HighlightContext context = new HighlightContext();
+        assertTrue(a.check(Type.REGULAR, "abc", -2, -2, null, null, user, null, MsgTags.EMPTY, false, context));
+        assertEquals(2, context.getEvaluated());
+        assertEquals(0, context.getSaved());
+        // Same regex on the same text and same category checked again
+        assertTrue(b.check(Type.REGULAR, "abc", -2, -2, null, null, user, null, MsgTags.EMPTY, false, context));
+        assertEquals(2, context.getEvaluated());
+        assertEquals(2, context.getSaved());
+    }
+    
 }
@@ -0,0 +1,95 @@
+
+package chatty.gui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class RenderQueueTest {
+    
+    @Test
+    public void testOrder() throws Exception {
+        RenderQueue queue = new RenderQueue();
+        List<Integer> result = new ArrayList<>();
+        int threads = 4;
+        int perThread = 5000;
+        CountDownLatch done = new CountDownLatch(threads * perThread);
+        List<Thread> started = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int base = t * perThread;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    int value = base + i;
+                    queue.add(() -> {
+                        assertTrue(SwingUtilities.isEventDispatchThread());
+                        result.add(value);
+                        done.countDown();
+                    });
+                }
+            });
+            thread.start();
+            started.add(thread);
+        }
+        for (Thread thread : started) {
+            thread.join();
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        SwingUtilities.invokeAndWait(() -> {
+            assertEquals(threads * perThread, result.size());
+            // Order for each thread must be kept
+            int[] last = new int[threads];
+            for (int t = 0; t < threads; t++) {
+                last[t] = -1;
+            }
+            for (int value : result) {
+                int t = value / perThread;
+                assertTrue(value > last[t]);
+                last[t] = value;
+            }
+        });
+    }
+    
+    @Test
+    public void testException() throws Exception {
+        RenderQueue queue = new RenderQueue();
+        CountDownLatch done = new CountDownLatch(1);
+        Thread.UncaughtExceptionHandler handler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((t, e) -> {});
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                queue.add(() -> {
+                    throw new RuntimeException("Test");
+                });
+                queue.add(done::countDown);
+            });
+            // The task after the failed one should still run
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+        finally {
+            Thread.setDefaultUncaughtExceptionHandler(handler);
+        }
+    }
+    
+    @Test
+    public void testEdt() throws Exception {
+        RenderQueue queue = new RenderQueue();
+        List<String> result = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> {
+            queue.add(() -> result.add("a"));
+            queue.edt(() -> result.add("b"));
+            assertEquals("[b]", result.toString());
+        });
+        SwingUtilities.invokeAndWait(() -> {
+            assertEquals("[b, a]", result.toString());
+        });
+    }
+    
+}
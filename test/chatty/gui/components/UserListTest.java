@@ -0,0 +1,58 @@
+package chatty.gui.components;
+
+import chatty.Room;
+import chatty.User;
+import chatty.util.settings.Settings;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class UserListTest {
+
+    @Test
+    public void testFindUsers() {
+        UserList list = new UserList(null, null, new Settings(null, null));
+        User user = new User("abc", Room.EMPTY);
+        User user2 = new User("abd", Room.EMPTY);
+        list.addUser(user);
+        list.addUser(user2);
+        assertEquals(2, list.findUsers("ab").size());
+        assertTrue(list.findUsers("abc").contains(user));
+        assertFalse(list.findUsers("abc").contains(user2));
+        
+        list.removeUser(user);
+        assertTrue(list.findUsers("abc").isEmpty());
+        assertEquals(1, list.getNumUsers());
+    }
+    
+    @Test
+    public void testUpdateNewUser() {
+        UserList list = new UserList(null, null, new Settings(null, null));
+        // E.g. whisper partners are only added through updating
+        User user = new User("whisper", Room.EMPTY);
+        list.updateUser(user);
+        assertTrue(list.getData().contains(user));
+        assertTrue(list.findUsers("whi").contains(user));
+        
+        // Updating again shouldn't add it twice
+        list.updateUser(user);
+        assertEquals(1, list.getNumUsers());
+        assertEquals(1, list.findUsers("whi").size());
+    }
+    
+    @Test
+    public void testUpdateChangedName() {
+        UserList list = new UserList(null, null, new Settings(null, null));
+        User user = new User("name", Room.EMPTY);
+        list.addUser(user);
+        user.setCustomNick("custom");
+        assertTrue(list.findUsers("cus").isEmpty());
+        list.updateUser(user);
+        assertTrue(list.findUsers("cus").contains(user));
+        assertTrue(list.findUsers("nam").contains(user));
+    }
+    
+}
@@ -0,0 +1,249 @@
+
+package chatty.gui.components.textpane;
+
+import chatty.Room;
+import chatty.User;
+import chatty.gui.components.textpane.ChannelTextPane.Attribute;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Element;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.StyleConstants;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class ScrollbackTest {
+
+    private static final Consumer<Element> NO_DELETE = line -> fail("Unexpected deleted line");
+    private static final User USER = new User("name", Room.EMPTY);
+
+    private static DefaultStyledDocument makeDoc(int lines) throws BadLocationException {
+        DefaultStyledDocument doc = new DefaultStyledDocument();
+        SimpleAttributeSet bold = new SimpleAttributeSet();
+        StyleConstants.setBold(bold, true);
+        for (int i = 0; i < lines; i++) {
+            SimpleAttributeSet paragraph = new SimpleAttributeSet();
+            StyleConstants.setSpaceAbove(paragraph, i);
+            String newline = i > 0 ? "\n" : "";
+            SimpleAttributeSet user = new SimpleAttributeSet(bold);
+            user.addAttribute(Attribute.USER, USER);
+            user.addAttribute(Attribute.IS_USER_MESSAGE, true);
+            user.addAttribute(Attribute.MSG_ID, "id" + i);
+            doc.insertString(doc.getLength(), newline + "name" + i + ": ", user);
+            doc.insertString(doc.getLength(), "message " + i, null);
+            doc.setParagraphAttributes(doc.getLength(), 1, paragraph, true);
+        }
+        return doc;
+    }
+
+    /**
+     * Same as ChannelTextPane, remove the given number of lines from the top,
+     * storing them.
+     */
+    private static void removeFirstLines(DefaultStyledDocument doc, Scrollback scrollback, int amount) throws BadLocationException {
+        Element root = doc.getDefaultRootElement();
+        for (int i = 0; i < amount; i++) {
+            scrollback.addLast(doc, root.getElement(i));
+        }
+        AttributeSet remaining = root.getElement(amount).getAttributes().copyAttributes();
+        doc.remove(0, root.getElement(amount - 1).getEndOffset());
+        doc.setParagraphAttributes(0, 1, remaining, true);
+    }
+
+    /**
+     * Same as ChannelTextPane, move the given number of lines from the bottom
+     * into the given Scrollback.
+     */
+    private static void removeLastLines(DefaultStyledDocument doc, Scrollback scrollback, int amount) throws BadLocationException {
+        Element root = doc.getDefaultRootElement();
+        int count = root.getElementCount();
+        for (int i = count - 1; i >= count - amount; i--) {
+            scrollback.addFirst(doc, root.getElement(i));
+        }
+        Element remaining = root.getElement(count - amount - 1);
+        AttributeSet remainingParagraph = remaining.getAttributes().copyAttributes();
+        int start = root.getElement(count - amount).getStartOffset() - 1;
+        doc.remove(start, doc.getLength() - start);
+        doc.setParagraphAttributes(remaining.getStartOffset(), 1, remainingParagraph, true);
+    }
+
+    private static String describe(DefaultStyledDocument doc) throws BadLocationException {
+        StringBuilder b = new StringBuilder();
+        Element root = doc.getDefaultRootElement();
+        for (int i = 0; i < root.getElementCount(); i++) {
+            Element paragraph = root.getElement(i);
+            b.append(StyleConstants.getSpaceAbove(paragraph.getAttributes())).append("|");
+            for (int j = 0; j < paragraph.getElementCount(); j++) {
+                Element part = paragraph.getElement(j);
+                int end = Math.min(part.getEndOffset(), doc.getLength());
+                b.append(StyleConstants.isBold(part.getAttributes()) ? "b" : "")
+                        .append("[").append(doc.getText(part.getStartOffset(), end - part.getStartOffset()).replace("\n", "\\n")).append("]");
+            }
+            b.append("\n");
+        }
+        return b.toString();
+    }
+
+    @Test
+    public void testRestore() throws BadLocationException {
+        DefaultStyledDocument doc = makeDoc(10);
+        String original = describe(doc);
+        Scrollback scrollback = new Scrollback();
+        scrollback.setCapacity(100);
+
+        removeFirstLines(doc, scrollback, 3);
+        removeFirstLines(doc, scrollback, 2);
+        assertEquals(5, scrollback.size());
+        assertEquals(5, doc.getDefaultRootElement().getElementCount());
+        assertTrue(doc.getText(0, doc.getLength()).startsWith("name5: "));
+
+        int length = scrollback.restoreAtStart(doc, 2, NO_DELETE);
+        assertEquals("name3: message 3\nname4: message 4\n".length(), length);
+        assertEquals(3, scrollback.size());
+        assertTrue(doc.getText(0, doc.getLength()).startsWith("name3: "));
+
+        scrollback.restoreAtStart(doc, 100, NO_DELETE);
+        assertEquals(0, scrollback.size());
+        assertEquals(original, describe(doc));
+    }
+
+    @Test
+    public void testCapacity() throws BadLocationException {
+        DefaultStyledDocument doc = makeDoc(10);
+        Scrollback scrollback = new Scrollback();
+
+        // Disabled
+        removeFirstLines(doc, scrollback, 2);
+        assertEquals(0, scrollback.size());
+
+        scrollback.setCapacity(3);
+        removeFirstLines(doc, scrollback, 5);
+        assertEquals(3, scrollback.size());
+        scrollback.restoreAtStart(doc, 10, NO_DELETE);
+        assertTrue(doc.getText(0, doc.getLength()).startsWith("name4: "));
+        assertEquals(6, doc.getDefaultRootElement().getElementCount());
+
+        removeFirstLines(doc, scrollback, 3);
+        scrollback.setCapacity(1);
+        assertEquals(1, scrollback.size());
+        scrollback.clear();
+        assertEquals(0, scrollback.size());
+    }
+
+    @Test
+    public void testRestoreAtEnd() throws BadLocationException {
+        DefaultStyledDocument doc = makeDoc(10);
+        String original = describe(doc);
+        Scrollback newer = new Scrollback();
+        newer.setCapacity(Integer.MAX_VALUE);
+
+        removeLastLines(doc, newer, 3);
+        removeLastLines(doc, newer, 2);
+        assertEquals(5, newer.size());
+        assertTrue(doc.getText(0, doc.getLength()).endsWith("message 4"));
+
+        assertEquals(2, newer.restoreAtEnd(doc, 2, NO_DELETE));
+        assertTrue(doc.getText(0, doc.getLength()).endsWith("message 6"));
+        assertEquals(3, newer.restoreAtEnd(doc, 100, NO_DELETE));
+        assertEquals(0, newer.size());
+        assertEquals(original, describe(doc));
+    }
+
+    @Test
+    public void testMoveAll() throws BadLocationException {
+        DefaultStyledDocument doc = makeDoc(10);
+        String original = describe(doc);
+        Scrollback older = new Scrollback();
+        older.setCapacity(100);
+        Scrollback newer = new Scrollback();
+        newer.setCapacity(100);
+
+        removeFirstLines(doc, older, 3);
+        removeLastLines(doc, newer, 3);
+        // Show the newest lines, like ChannelTextPane does
+        Element root = doc.getDefaultRootElement();
+        for (int i = 0; i < root.getElementCount(); i++) {
+            older.addLast(doc, root.getElement(i));
+        }
+        doc.remove(0, doc.getLength());
+        newer.moveAllTo(older);
+        assertEquals(0, newer.size());
+        assertEquals(10, older.size());
+        older.restoreAtStart(doc, 100, NO_DELETE);
+        assertEquals(original, describe(doc));
+    }
+
+    @Test
+    public void testDeleted() throws BadLocationException {
+        DefaultStyledDocument doc = makeDoc(10);
+        Scrollback older = new Scrollback();
+        older.setCapacity(100);
+        Scrollback newer = new Scrollback();
+        newer.setCapacity(100);
+        removeFirstLines(doc, older, 4);
+        removeLastLines(doc, newer, 4);
+
+        older.markDeleted(USER, "id1");
+        newer.markDeleted(USER, "id8");
+        older.markDeleted(new User("other", Room.EMPTY), null);
+
+        List<String> deleted = new ArrayList<>();
+        Consumer<Element> collect = line -> {
+            try {
+                deleted.add(doc.getText(line.getStartOffset(), line.getEndOffset() - line.getStartOffset()).trim());
+            } catch (BadLocationException ex) {
+                fail(ex.toString());
+            }
+        };
+        older.restoreAtStart(doc, 100, collect);
+        newer.restoreAtEnd(doc, 100, collect);
+        assertEquals(2, deleted.size());
+        assertEquals("name1: message 1", deleted.get(0));
+        assertEquals("name8: message 8", deleted.get(1));
+
+        // All lines of the user
+        deleted.clear();
+        removeFirstLines(doc, older, 5);
+        older.markDeleted(USER, null);
+        older.restoreAtStart(doc, 100, collect);
+        assertEquals(5, deleted.size());
+    }
+
+    @Test
+    public void testRestoreAllAtEnd() throws BadLocationException {
+        DefaultStyledDocument doc = makeDoc(10);
+        String original = describe(doc);
+        Scrollback newer = new Scrollback();
+        newer.setCapacity(100);
+
+        removeLastLines(doc, newer, 4);
+        assertEquals(4, newer.restoreAllAtEnd(doc, 10, NO_DELETE));
+        assertEquals(0, newer.size());
+        assertEquals(original, describe(doc));
+
+        // Only the newest lines
+        removeLastLines(doc, newer, 6);
+        assertEquals(2, newer.restoreAllAtEnd(doc, 2, NO_DELETE));
+        assertEquals(0, newer.size());
+        assertEquals(6, doc.getDefaultRootElement().getElementCount());
+        assertTrue(doc.getText(0, doc.getLength()).endsWith("name3: message 3\nname8: message 8\nname9: message 9"));
+    }
+
+    @Test
+    public void testNewerLinesCapacity() {
+        assertEquals(2200, ChannelTextPane.getNewerLinesCapacity(false, 1000, 100));
+        // Scrollback size changed to 0, newer lines have to be put back
+        assertEquals(0, ChannelTextPane.getNewerLinesCapacity(false, 0, 100));
+        // Lines inserted at the top, newer lines have to be put back
+        assertEquals(0, ChannelTextPane.getNewerLinesCapacity(true, 1000, 100));
+    }
+
+}
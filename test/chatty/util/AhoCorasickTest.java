@@ -0,0 +1,90 @@
+package chatty.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class AhoCorasickTest {
+    
+    @Test
+    public void testFind() {
+        List<String> needles = Arrays.asList("a", "ab", "bab", "bc", "bca", "c", "caa", "abab", "ab");
+        AhoCorasick ac = new AhoCorasick(needles, false);
+        Random random = new Random(1);
+        for (int i = 0; i < 2000; i++) {
+            String text = randomString(random, "abcA", random.nextInt(20));
+            assertEquals(text, Arrays.toString(countIndexOf(needles, text)), Arrays.toString(countFind(ac, needles, text)));
+        }
+        assertArrayEquals(new int[]{0, 0, 0, 0, 0, 0, 0, 0, 0}, countFind(ac, needles, ""));
+        assertArrayEquals(new int[]{3, 2, 1, 0, 0, 0, 0, 1, 2}, countFind(ac, needles, "ababa"));
+    }
+    
+    @Test
+    public void testIgnoreCase() {
+        List<String> needles = Arrays.asList("Test", "ÄÖ", "straße", "İs", "K", "σς", "k", "!bet ");
+        AhoCorasick ac = new AhoCorasick(needles, true);
+        String[] texts = new String[]{
+            "", "test", "TEST", "tEsT abc", "äö", "Äö", "STRASSE", "Straße",
+            "is", "İS", "ıs", "K", "k", "K", "ΣΣ", "σσ", "ςσ", "!BET a",
+            "abc 💕 test"
+        };
+        for (String text : texts) {
+            boolean[] expected = new boolean[needles.size()];
+            for (int i = 0; i < needles.size(); i++) {
+                expected[i] = Pattern.compile("(?iu)"+Pattern.quote(needles.get(i))).matcher(text).find();
+            }
+            boolean[] result = new boolean[needles.size()];
+            ac.find(text, i -> result[i] = true);
+            assertEquals(text, Arrays.toString(expected), Arrays.toString(result));
+        }
+    }
+    
+    @Test
+    public void testFold() {
+        // Required for ignoring case to work like regex
+        for (int c = Character.MIN_VALUE; c <= Character.MAX_VALUE; c++) {
+            char folded = AhoCorasick.fold((char) c);
+            assertEquals(folded, AhoCorasick.fold(folded));
+            assertEquals(folded, Character.toLowerCase(Character.toUpperCase(c)));
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmpty() {
+        new AhoCorasick(Arrays.asList("a", ""), false);
+    }
+    
+    private static String randomString(Random random, String chars, int length) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            b.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return b.toString();
+    }
+    
+    private static int[] countFind(AhoCorasick ac, List<String> needles, String text) {
+        int[] result = new int[needles.size()];
+        ac.find(text, i -> result[i]++);
+        return result;
+    }
+    
+    private static int[] countIndexOf(List<String> needles, String text) {
+        int[] result = new int[needles.size()];
+        for (int i = 0; i < needles.size(); i++) {
+            int index = -1;
+            while ((index = text.indexOf(needles.get(i), index + 1)) != -1) {
+                result[i]++;
+            }
+        }
+        return result;
+    }
+    
+}
@@ -0,0 +1,137 @@
+package chatty.util;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class BigramFingerprintTest {
+    
+    private static final String[] TEXTS = new String[]{
+        "", "a", "ab", "ba", "aa", "aaaa", "abab", "Kappa", "Kappa123",
+        "KappaKappaKappa", "kappa", "😀😀", "😀a😀", "abcdefg", "gfedcba",
+        "Hello there!", "Hello there!!!", "￿耀a耀"
+    };
+    
+    @Test
+    public void testSimilarity() {
+        for (String a : TEXTS) {
+            for (String b : TEXTS) {
+                testSimilarity(a, b);
+            }
+        }
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; i++) {
+            testSimilarity(randomString(random), randomString(random));
+        }
+    }
+    
+    private static void testSimilarity(String a, String b) {
+        BigramFingerprint fa = new BigramFingerprint(a);
+        BigramFingerprint fb = new BigramFingerprint(b);
+        String info = a + " / " + b;
+        assertEquals(info, oldSimilarity(a, b), BigramFingerprint.getSimilarity(fa, fb), 0);
+        assertEquals(info, oldSimilarity2(a, b), BigramFingerprint.getSimilarity2(fa, fb), 0);
+        assertEquals(info, oldSimilarity(a, b), StringUtil.getSimilarity(a, b), 0);
+        assertEquals(info, oldSimilarity2(a, b), StringUtil.getSimilarity2(a, b), 0);
+        for (int method = 1; method <= 2; method++) {
+            assertEquals(info,
+                    StringUtil.checkSimilarity(a, b, 0.5f, method),
+                    BigramFingerprint.checkSimilarity(fa, fb, 0.5f, method), 0);
+        }
+    }
+    
+    @Test
+    public void testPrepare() {
+        char[] ignored = StringUtil.getCharsFromString("!.");
+        BigramFingerprint f = BigramFingerprint.prepare("a b!c.", ignored);
+        assertEquals("abc", f.getText());
+        assertTrue(f.isPreparedWith(ignored));
+        assertTrue(f.isPreparedWith(StringUtil.getCharsFromString(".!")));
+        assertFalse(f.isPreparedWith(null));
+        assertFalse(f.isPreparedWith(StringUtil.getCharsFromString("!")));
+        assertTrue(BigramFingerprint.prepare("a b", null).isPreparedWith(null));
+    }
+    
+    private static String randomString(Random random) {
+        String chars = "abcAB😀";
+        StringBuilder b = new StringBuilder();
+        int length = random.nextInt(12);
+        for (int i = 0; i < length; i++) {
+            b.append(chars.charAt(random.nextInt(chars.length())));
+        }
+        return b.toString();
+    }
+    
+    /**
+     * The previous implementation of StringUtil.getSimilarity().
+     */
+    private static float oldSimilarity(String a, String b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1;
+        }
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        if (a.equals(b)) {
+            return 1;
+        }
+        if (a.length() < 2 || b.length() < 2) {
+            return 0;
+        }
+        Map<Integer, Integer> m = new HashMap<>(a.length());
+        for (int i = 0; i < a.length() - 1; i++) {
+            Integer part = (a.charAt(i) + (a.charAt(i + 1) << 16));
+            m.put(part, m.getOrDefault(part, 0) + 1);
+        }
+        int count = 0;
+        for (int i = 0; i < b.length() - 1; i++) {
+            Integer part = (b.charAt(i) + (b.charAt(i + 1) << 16));
+            int c = m.getOrDefault(part, 0);
+            if (c > 0) {
+                count++;
+                m.put(part, c - 1);
+            }
+        }
+        return 2f * count / (a.length() + b.length() - 2);
+    }
+    
+    /**
+     * The previous implementation of StringUtil.getSimilarity2().
+     */
+    private static float oldSimilarity2(String a, String b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1;
+        }
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        if (a.equals(b)) {
+            return 1;
+        }
+        if (a.length() < 2 || b.length() < 2) {
+            return 0;
+        }
+        Set<Integer> setA = new HashSet<>();
+        Set<Integer> setB = new HashSet<>();
+        for (int i = 0; i < a.length() - 1; i++) {
+            setA.add(a.charAt(i) + (a.charAt(i + 1) << 16));
+        }
+        int count = 0;
+        for (int i = 0; i < b.length() - 1; i++) {
+            Integer part = (b.charAt(i) + (b.charAt(i + 1) << 16));
+            if (setB.add(part) && setA.contains(part)) {
+                count++;
+            }
+        }
+        return 2f * count / (setA.size() + setB.size());
+    }
+    
+}
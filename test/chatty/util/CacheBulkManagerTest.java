@@ -4,7 +4,11 @@ package chatty.util;
 import static chatty.util.CachedBulkManager.*;
 import chatty.util.CachedBulkManager.Requester;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
@@ -582,6 +586,85 @@ public class CacheBulkManagerTest {
         m.doRequests();
     }
     
+    @Test
+    public void testBatching() throws InterruptedException {
+        List<Set<String>> requests = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2);
+        CachedBulkManager<String, String> m = new CachedBulkManager<>((manager, asap, normal, backlog) -> {
+            requests.add(manager.makeAndSetRequested(asap, normal, backlog, 3));
+            done.countDown();
+        }, DAEMON);
+        m.setBatching(3, 100);
+        
+        // Batch full
+        assertNull(m.getOrQuerySingle(null, ASAP, "a"));
+        assertNull(m.getOrQuerySingle(null, ASAP, "b"));
+        assertEquals(0, requests.size());
+        assertNull(m.getOrQuerySingle(null, ASAP, "c"));
+        assertEquals(1, requests.size());
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c")), requests.get(0));
+        
+        // Already requested, flushed after delay
+        assertNull(m.getOrQuerySingle(null, ASAP, "a"));
+        assertNull(m.getOrQuerySingle(null, ASAP, "d"));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, requests.size());
+        assertEquals(new HashSet<>(Arrays.asList("d")), requests.get(1));
+        
+        m.setResult("a", "r.a");
+        assertEquals("r.a", m.getOrQuerySingle(null, ASAP, "a"));
+        assertEquals("r.a", m.get("a"));
+        assertEquals(2 / 7.0, m.getHitRate(), 0.01);
+        assertEquals(2.0, m.getAverageBatchSize(), 0.01);
+    }
+    
+    /**
+     * A full batch while a request is still in progress shouldn't request
+     * again immediately, but once the current request is done.
+     */
+    @Test
+    public void testBatchingBlocked() throws InterruptedException {
+        List<Set<String>> requests = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch requestStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        CachedBulkManager<String, String> m = new CachedBulkManager<>((manager, asap, normal, backlog) -> {
+            requests.add(manager.makeAndSetRequested(asap, normal, backlog, 2));
+            requestStarted.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        }, DAEMON);
+        m.setBatching(2, 10000);
+        
+        Thread first = new Thread(() -> {
+            m.getOrQuerySingle(null, ASAP, "a");
+            m.getOrQuerySingle(null, ASAP, "b");
+        });
+        first.start();
+        assertTrue(requestStarted.await(5, TimeUnit.SECONDS));
+        
+        // Fill the next batch several times over while the request blocks
+        Thread second = new Thread(() -> {
+            for (int i = 0; i < 10; i++) {
+                m.getOrQuerySingle(null, ASAP, "c"+i);
+            }
+        });
+        second.start();
+        second.join(5000);
+        assertFalse(second.isAlive());
+        assertEquals(1, requests.size());
+        
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        first.join(5000);
+        assertEquals(2, requests.get(1).size());
+        assertTrue(requests.get(1).iterator().next().startsWith("c"));
+    }
+    
     @Test
     public void testSync() throws InterruptedException {
         for (int i=0;i<100;i++) {
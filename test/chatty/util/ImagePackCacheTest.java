@@ -0,0 +1,133 @@
+
+package chatty.util;
+
+import java.awt.Dimension;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class ImagePackCacheTest {
+
+    private static final String ID_A = ImageCache.sha1("https://example.com/a.png");
+    private static final String ID_B = ImageCache.sha1("https://example.com/b.png");
+    private static final String ID_C = ImageCache.sha1("https://example.com/c.png");
+
+    @Test
+    public void test() throws Exception {
+        Path path = Files.createTempDirectory("chatty-imagepack-test");
+        try {
+            test(path);
+        }
+        finally {
+            try (Stream<Path> files = Files.list(path)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.delete(path);
+        }
+    }
+
+    private void test(Path path) throws Exception {
+        ImagePackCache cache = new ImagePackCache(path);
+        assertNull(cache.get("emote", ID_A));
+        assertTrue(cache.hasExpired("emote", ID_A, 0));
+
+        assertTrue(cache.put("emote", ID_A, bytes("aaaa"), new Dimension(28, 28)));
+        assertTrue(cache.put("emote", ID_B, bytes("bbbbbb"), null));
+        assertTrue(cache.put("usericon", ID_C, bytes("cc"), null));
+        assertEquals("aaaa", string(cache.get("emote", ID_A)));
+        assertEquals("bbbbbb", string(cache.get("emote", ID_B)));
+        assertNull(cache.get("usericon", ID_A));
+        assertFalse(cache.hasExpired("emote", ID_A, 60));
+
+        // Replace, old data stays in the pack until compacted
+        assertTrue(cache.put("emote", ID_A, bytes("AAAAAAAA"), null));
+        assertEquals("AAAAAAAA", string(cache.get("emote", ID_A)));
+        assertEquals(20, cache.getPackSize());
+        cache.close();
+
+        // Reopen
+        cache = new ImagePackCache(path);
+        assertEquals(3, cache.size());
+        assertEquals("AAAAAAAA", string(cache.get("emote", ID_A)));
+        assertEquals("cc", string(cache.get("usericon", ID_C)));
+
+        // Clear by prefix
+        assertEquals(1, cache.clear("usericon"));
+        assertNull(cache.get("usericon", ID_C));
+        assertEquals(2, cache.size());
+
+        // Not enough unused
+        assertFalse(cache.compact(60, 0.5));
+        assertTrue(cache.compact(60, 0.1));
+        assertEquals(14, cache.getPackSize());
+        assertEquals("AAAAAAAA", string(cache.get("emote", ID_A)));
+        assertEquals("bbbbbb", string(cache.get("emote", ID_B)));
+        assertTrue(cache.put("emote", ID_C, bytes("ccc"), null));
+        cache.close();
+
+        // Reopen after compacting
+        cache = new ImagePackCache(path);
+        assertEquals(3, cache.size());
+        assertEquals("AAAAAAAA", string(cache.get("emote", ID_A)));
+        assertEquals("ccc", string(cache.get("emote", ID_C)));
+        cache.close();
+        try (Stream<Path> files = Files.list(path)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    public void testMaxSize() throws Exception {
+        Path path = Files.createTempDirectory("chatty-imagepack-test");
+        try {
+            ImagePackCache cache = new ImagePackCache(path, 40);
+            String idD = ImageCache.sha1("https://example.com/d.png");
+            assertTrue(cache.put("emote", ID_A, bytes("aaaaaaaaaa"), null));
+            assertTrue(cache.put("emote", ID_B, bytes("bbbbbbbbbb"), null));
+            assertTrue(cache.put("emote", ID_C, bytes("cccccccccc"), null));
+            assertEquals(30, cache.getPackSize());
+
+            // Oldest images removed until there is some space left
+            assertTrue(cache.put("emote", idD, bytes("ddddddddddddddd"), null));
+            assertEquals(2, cache.size());
+            assertEquals(25, cache.getPackSize());
+            assertNull(cache.get("emote", ID_A));
+            assertNull(cache.get("emote", ID_B));
+            assertEquals("cccccccccc", string(cache.get("emote", ID_C)));
+            assertEquals("ddddddddddddddd", string(cache.get("emote", idD)));
+
+            // Too large to be stored at all
+            assertFalse(cache.put("emote", ID_A, new byte[41], null));
+            assertEquals("cccccccccc", string(cache.get("emote", ID_C)));
+            cache.close();
+
+            // Removed images stay removed
+            cache = new ImagePackCache(path, 40);
+            assertEquals(2, cache.size());
+            assertNull(cache.get("emote", ID_A));
+            cache.close();
+        }
+        finally {
+            try (Stream<Path> files = Files.list(path)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.delete(path);
+        }
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] data) {
+        return data == null ? null : new String(data, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,115 @@
+
+package chatty.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class PrefixIndexTest {
+
+    @Test
+    public void test() {
+        Map<String, List<String>> names = new HashMap<>();
+        names.put("a", Arrays.asList("abc", "Xyz"));
+        names.put("b", Arrays.asList("abd"));
+        names.put("c", Arrays.asList("ABCdef", "", null));
+        PrefixIndex<String> index = new PrefixIndex<>(names::get, false);
+        index.add("a");
+        index.add("b");
+        index.add("c");
+        index.add("a");
+        assertEquals(3, index.size());
+
+        assertEquals(list("a", "c", "b"), new ArrayList<>(index.find("ab")));
+        assertEquals(list("a", "c"), new ArrayList<>(index.find("ABC")));
+        assertEquals(list("c"), new ArrayList<>(index.find("abcd")));
+        assertEquals(list("a"), new ArrayList<>(index.find("x")));
+        assertTrue(index.find("b").isEmpty());
+        assertEquals(3, index.find("").size());
+
+        // Names changed
+        names.put("a", Arrays.asList("bcd"));
+        assertEquals(list("a"), new ArrayList<>(index.find("x")));
+        index.update("a");
+        assertTrue(index.find("x").isEmpty());
+        assertEquals(list("a"), new ArrayList<>(index.find("b")));
+
+        index.remove("c");
+        assertEquals(list("b"), new ArrayList<>(index.find("ab")));
+        assertEquals(2, index.size());
+
+        index.clear();
+        assertTrue(index.find("").isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testWords() {
+        PrefixIndex<String> index = new PrefixIndex<>(name -> Arrays.asList(name), true);
+        index.addAll(Arrays.asList("MiniKappa", "KappaHD", "abc_def", "abc123", "lower"));
+        assertEquals(set("MiniKappa"), index.findWords("kap"));
+        assertEquals(set("KappaHD"), index.findWords("hd"));
+        assertEquals(set("abc_def"), index.findWords("_d"));
+        assertEquals(set("abc123"), index.findWords("23"));
+        assertTrue(index.findWords("ower").isEmpty());
+        assertTrue(index.findWords("mini").isEmpty());
+        index.remove("MiniKappa");
+        assertTrue(index.findWords("kap").isEmpty());
+        assertEquals(set("KappaHD"), index.find("kap"));
+    }
+
+    /**
+     * Results should contain everything the regex used by the "words"
+     * completion search mode finds (not at the start).
+     */
+    @Test
+    public void testWordsRegex() {
+        Random random = new Random(1);
+        String chars = "aAbBkK_1:";
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            StringBuilder b = new StringBuilder();
+            int length = random.nextInt(8) + 1;
+            for (int j = 0; j < length; j++) {
+                b.append(chars.charAt(random.nextInt(chars.length())));
+            }
+            items.add(b.toString());
+        }
+        PrefixIndex<String> index = new PrefixIndex<>(name -> Arrays.asList(name), true);
+        index.addAll(items);
+        for (String search : Arrays.asList("a", "ab", "k_", "_", "1", ":k", "bbk")) {
+            Pattern p = Pattern.compile(
+                    Pattern.quote(search.substring(0, 1).toUpperCase(Locale.ENGLISH))
+                    + "(?i)" + Pattern.quote(search.substring(1)));
+            Set<String> found = index.findWords(search);
+            for (String item : items) {
+                boolean matches = p.matcher(item.substring(1)).find();
+                if (matches) {
+                    assertTrue(search + " " + item, found.contains(item));
+                }
+            }
+        }
+    }
+
+    private static List<String> list(String... items) {
+        return Arrays.asList(items);
+    }
+
+    private static Set<String> set(String... items) {
+        return new HashSet<>(Arrays.asList(items));
+    }
+
+}
@@ -0,0 +1,183 @@
+
+package chatty.util;
+
+import chatty.util.RawRecorder.Entry;
+import chatty.util.RawRecorder.Type;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class RawRecorderTest {
+
+    @Test
+    public void testText() throws IOException {
+        testFormat(false);
+    }
+
+    @Test
+    public void testCompressed() throws IOException {
+        testFormat(true);
+    }
+
+    private static void testFormat(boolean compressed) throws IOException {
+        Path dir = Files.createTempDirectory("rawrecorder");
+        try {
+            RawRecorder recorder = new RawRecorder(dir, "test", compressed, 1024*1024, 2, 100);
+            recorder.start();
+            assertTrue(recorder.add(Type.RECEIVED, "@badges=;color= :abc!abc@abc.tmi.twitch.tv PRIVMSG #test :Hello \u00e4 \uD83D\uDE00"));
+            assertTrue(recorder.add(Type.SENT, "PRIVMSG #test :Test"));
+            assertTrue(recorder.add(Type.INFO, "[EventSub] info"));
+            recorder.close();
+            assertFalse(recorder.add(Type.RECEIVED, "after close"));
+
+            // Reopening appends
+            recorder = new RawRecorder(dir, "test", compressed, 1024*1024, 2, 100);
+            recorder.start();
+            recorder.add(Type.RECEIVED, "PING");
+            recorder.close();
+
+            List<Entry> entries = read(recorder.getFile(0));
+            assertEquals(4, entries.size());
+            assertEntry(entries.get(0), Type.RECEIVED, "@badges=;color= :abc!abc@abc.tmi.twitch.tv PRIVMSG #test :Hello \u00e4 \uD83D\uDE00");
+            assertEntry(entries.get(1), Type.SENT, "PRIVMSG #test :Test");
+            assertEntry(entries.get(2), Type.INFO, "[EventSub] info");
+            assertEntry(entries.get(3), Type.RECEIVED, "PING");
+        }
+        finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testCloseWithoutWaiting() throws IOException {
+        Path dir = Files.createTempDirectory("rawrecorder");
+        try {
+            RawRecorder recorder = new RawRecorder(dir, "test", false, 1024*1024, 2, 1000);
+            recorder.start();
+            for (int i = 0; i < 100; i++) {
+                recorder.add(Type.RECEIVED, "line "+i);
+            }
+            recorder.close(false);
+            assertFalse(recorder.add(Type.RECEIVED, "after close"));
+            // Waits for the entries added before to be written
+            recorder.close();
+            List<Entry> entries = read(recorder.getFile(0));
+            assertEquals(100, entries.size());
+            assertEntry(entries.get(99), Type.RECEIVED, "line 99");
+        }
+        finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testRotate() throws IOException {
+        Path dir = Files.createTempDirectory("rawrecorder");
+        try {
+            RawRecorder recorder = new RawRecorder(dir, "test", false, 100, 3, 1000);
+            recorder.start();
+            for (int i = 0; i < 50; i++) {
+                recorder.add(Type.RECEIVED, "line "+i);
+            }
+            recorder.close();
+            assertFalse(Files.exists(recorder.getFile(3)));
+            List<Entry> entries = new ArrayList<>();
+            for (int i = 2; i >= 0; i--) {
+                assertTrue(Files.size(recorder.getFile(i)) < 100 + 50);
+                entries.addAll(read(recorder.getFile(i)));
+            }
+            // Only the newest lines are still there, in order
+            assertEntry(entries.get(entries.size() - 1), Type.RECEIVED, "line 49");
+            for (int i = 1; i < entries.size(); i++) {
+                int prev = Integer.parseInt(entries.get(i - 1).text.substring(5));
+                int current = Integer.parseInt(entries.get(i).text.substring(5));
+                assertEquals(prev + 1, current);
+            }
+        }
+        finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testDropped() throws IOException {
+        Path dir = Files.createTempDirectory("rawrecorder");
+        try {
+            RawRecorder recorder = new RawRecorder(dir, "test", true, 1024*1024, 2, 5);
+            // Not started yet, so nothing is taken from the queue
+            for (int i = 0; i < 8; i++) {
+                assertEquals(i < 5, recorder.add(Type.RECEIVED, "line "+i));
+            }
+            assertEquals(3, recorder.getDropped());
+            recorder.start();
+            recorder.close();
+            List<String> lines = new ArrayList<>();
+            int droppedEntries = 0;
+            for (Entry entry : read(recorder.getFile(0))) {
+                if (entry.type == Type.DROPPED) {
+                    assertEquals("3", entry.text);
+                    droppedEntries++;
+                }
+                else {
+                    lines.add(entry.text);
+                }
+            }
+            assertEquals(1, droppedEntries);
+            assertEquals(Arrays.asList("line 0", "line 1", "line 2", "line 3", "line 4"), lines);
+        }
+        finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    public void testReadRaw() throws IOException {
+        Path dir = Files.createTempDirectory("rawrecorder");
+        try {
+            Path file = dir.resolve("raw.txt");
+            Files.write(file, Arrays.asList(
+                    "PING :tmi.twitch.tv",
+                    "",
+                    "[2024-01-02 03:04:05/678] <-- PONG"), StandardCharsets.UTF_8);
+            List<Entry> entries = read(file);
+            assertEquals(2, entries.size());
+            assertEntry(entries.get(0), Type.RECEIVED, "PING :tmi.twitch.tv");
+            assertEquals(-1, entries.get(0).time);
+            assertEntry(entries.get(1), Type.SENT, "PONG");
+            assertEquals(678, entries.get(1).time % 1000);
+        }
+        finally {
+            delete(dir);
+        }
+    }
+
+    private static List<Entry> read(Path file) throws IOException {
+        List<Entry> result = new ArrayList<>();
+        RawRecorder.read(file, result::add);
+        return result;
+    }
+
+    private static void assertEntry(Entry entry, Type type, String text) {
+        assertEquals(type, entry.type);
+        assertEquals(text, entry.text);
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+}
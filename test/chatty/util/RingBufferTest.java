@@ -0,0 +1,88 @@
+package chatty.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author tduva
+ */
+public class RingBufferTest {
+    
+    @Test
+    public void testAdd() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(3);
+        assertEquals(0, buffer.size());
+        assertFalse(buffer.iterator().hasNext());
+        assertEquals("[3][]", buffer.toString());
+        buffer.add(1);
+        buffer.add(2);
+        assertEquals(Arrays.asList(1, 2), buffer.getItems());
+        buffer.add(3);
+        buffer.add(4);
+        buffer.add(5);
+        assertEquals(3, buffer.size());
+        assertEquals(Arrays.asList(3, 4, 5), buffer.getItems());
+        assertEquals("[3][3, 4, 5]", buffer.toString());
+        
+        // Iterator only covers items that were there when it was created
+        Iterator<Integer> it = buffer.iterator();
+        buffer.add(6);
+        List<Integer> iterated = new ArrayList<>();
+        it.forEachRemaining(iterated::add);
+        assertEquals(3, iterated.size());
+        assertTrue(iterated.containsAll(Arrays.asList(4, 5)));
+        
+        List<Integer> all = new ArrayList<>();
+        for (Integer i : buffer) {
+            all.add(i);
+        }
+        assertEquals(Arrays.asList(4, 5, 6), all);
+    }
+    
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        RingBuffer<Integer> buffer = new RingBuffer<>(50);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100000; i++) {
+                    buffer.add(i);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        // Reading while adding should not fail
+        while (threads.get(0).isAlive()) {
+            for (Integer i : buffer) {
+                assertNotNull(i);
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(50, buffer.size());
+        assertEquals(50, buffer.getItems().size());
+    }
+    
+    @Test
+    public void testStamped() {
+        StampedRingBuffer<String> buffer = new StampedRingBuffer<>(2);
+        buffer.add(1, "a");
+        List<String> result = new ArrayList<>();
+        buffer.forEach((stamp, item) -> result.add(stamp + item));
+        assertEquals(Arrays.asList("1a"), result);
+        buffer.add(2, "b");
+        buffer.add(3, "c");
+        result.clear();
+        buffer.forEach((stamp, item) -> result.add(stamp + item));
+        assertEquals(Arrays.asList("2b", "3c"), result);
+        assertEquals(2, buffer.size());
+    }
+    
+}
@@ -108,6 +108,63 @@ public class TimestampTest {
                 createStreamInfo(time, 30*HOUR+10*MINUTE));
     }
     
+    /**
+     * Reusing a Timestamp (with the cache) should give the same results as
+     * a new one each time, also when used from several threads.
+     */
+    @Test
+    public void testCache() throws Exception {
+        ZonedDateTime datetimeDefault = ZonedDateTime.of(2022, 3, 2, 18, 3, 20, 0, ZoneId.systemDefault());
+        long time = datetimeDefault.toEpochSecond() * 1000;
+        StreamInfo[] infos = new StreamInfo[]{
+            null,
+            createStreamInfo(time, 30*MINUTE),
+            createStreamInfo(time, 30*MINUTE, 40*MINUTE),
+            createStreamInfo(time, 59*MINUTE+59500)
+        };
+        String[] inputs = new String[]{
+            "HH:mm:ss",
+            "HH:mm:ss.SSS",
+            "'S'HH:mm",
+            "'{uptime:s}{uptime:P}' HH:mm:ss",
+            "'{uptime:c}'"
+        };
+        for (String input : inputs) {
+            Timestamp timestamp = new Timestamp(input, "");
+            Thread[] threads = new Thread[4];
+            Throwable[] errors = new Throwable[threads.length];
+            for (int i = 0; i < threads.length; i++) {
+                int threadIndex = i;
+                threads[i] = new Thread(() -> {
+                    try {
+                        for (int offset = 0; offset < 3000; offset += 7) {
+                            for (StreamInfo info : infos) {
+                                long t = time + offset;
+                                assertEquals(new Timestamp(input, "").make2(t, info),
+                                        timestamp.make2(t, info));
+                            }
+                        }
+                    }
+                    catch (Throwable ex) {
+                        errors[threadIndex] = ex;
+                    }
+                });
+                threads[i].start();
+            }
+            for (int i = 0; i < threads.length; i++) {
+                threads[i].join();
+                if (errors[i] != null) {
+                    throw new AssertionError(input, errors[i]);
+                }
+            }
+        }
+        
+        // Custom command is applied every time
+        Timestamp timestamp = new Timestamp("ss###$1 $randnum(1000000000)", "");
+        assertEquals("20", timestamp.make2(time, null).substring(0, 2));
+        assertEquals(false, timestamp.make2(time, null).equals(timestamp.make2(time, null)));
+    }
+    
     private static void t(String input, String timezone, long time, String expected) {
         t(input, timezone, time, expected, null);
     }
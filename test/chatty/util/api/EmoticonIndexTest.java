@@ -0,0 +1,169 @@
+
+package chatty.util.api;
+
+import chatty.gui.emoji.EmojiUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class EmoticonIndexTest {
+
+    private static Set<Emoticon> makeEmotes() {
+        Set<Emoticon> result = new LinkedHashSet<>();
+        result.add(new Emoticon.Builder(Emoticon.Type.TWITCH, "Kappa").build());
+        result.add(new Emoticon.Builder(Emoticon.Type.TWITCH, "Keepo").build());
+        result.add(new Emoticon.Builder(Emoticon.Type.TWITCH, ":)").build());
+        result.add(new Emoticon.Builder(Emoticon.Type.TWITCH, "B)").build());
+        result.add(new Emoticon.Builder(Emoticon.Type.TWITCH, "[oO](_|\\.)[oO]").build());
+        result.add(new Emoticon.Builder(Emoticon.Type.BTTV, "(ditto)").setLiteral(true).build());
+        result.add(new Emoticon.Builder(Emoticon.Type.BTTV, "D:").setLiteral(true).build());
+        result.add(new Emoticon.Builder(Emoticon.Type.FFZ, "Kappa").build());
+        result.add(new Emoticon.Builder(Emoticon.Type.FFZ, "two words").setLiteral(true).build());
+        result.add(new Emoticon.Builder(Emoticon.Type.SEVENTV, "catJAM").setLiteral(true).build());
+        result.add(new Emoticon.Builder(Emoticon.Type.EMOJI, "❤").build());
+        return result;
+    }
+
+    @Test
+    public void testLiteralWord() {
+        assertEquals("Kappa", new Emoticon.Builder(Emoticon.Type.TWITCH, "Kappa").build().getLiteralWord());
+        assertEquals("(ditto)", new Emoticon.Builder(Emoticon.Type.BTTV, "(ditto)").setLiteral(true).build().getLiteralWord());
+        assertNull(new Emoticon.Builder(Emoticon.Type.TWITCH, ":)").build().getLiteralWord());
+        assertNull(new Emoticon.Builder(Emoticon.Type.TWITCH, "[oO](_|\\.)[oO]").build().getLiteralWord());
+        assertNull(new Emoticon.Builder(Emoticon.Type.BTTV, "two words").setLiteral(true).build().getLiteralWord());
+        assertNull(new Emoticon.Builder(Emoticon.Type.EMOJI, "❤").build().getLiteralWord());
+    }
+
+    @Test
+    public void testFind() {
+        Set<Emoticon> emotes = makeEmotes();
+        EmoticonIndex index = new EmoticonIndex(emotes);
+        String[] texts = new String[]{
+            "",
+            "Kappa",
+            "Kappa Kappa",
+            "  Kappa\tKeepo\n",
+            "Kappa123 aKappa Kappa.",
+            ":) :-) B) o_O O.o",
+            "(ditto) D: catJAM",
+            "a two words b",
+            "Kappa ",
+            "Kappa Keepo",
+            "❤︎ ❤️ abc❤",
+            "catJAM catJAM catJAM Kappa (ditto)",
+        };
+        for (String text : texts) {
+            assertEquals(text, findRegex(emotes, text, e -> true), findIndex(index, text, e -> true));
+            assertEquals(text, findRegex(emotes, text, e -> e.type != Emoticon.Type.TWITCH),
+                    findIndex(index, text, e -> e.type != Emoticon.Type.TWITCH));
+        }
+        assertTrue(index.hasSourceSize(emotes.size()));
+    }
+
+    @Test
+    public void testEmoji() {
+        Set<Emoticon> emotes = new LinkedHashSet<>();
+        emotes.add(new Emoticon.Builder(Emoticon.Type.EMOJI, "❤").build());
+        emotes.add(new Emoticon.Builder(Emoticon.Type.EMOJI, "❤️‍🔥").build());
+        emotes.add(new Emoticon.Builder(Emoticon.Type.EMOJI, "🔥").build());
+        emotes.add(new Emoticon.Builder(Emoticon.Type.EMOJI, "👍").build());
+        emotes.add(new Emoticon.Builder(Emoticon.Type.EMOJI, "👍🏽").build());
+        emotes.add(new Emoticon.Builder(Emoticon.Type.EMOJI, "👨").build());
+        emotes.add(new Emoticon.Builder(Emoticon.Type.EMOJI, "👩").build());
+        emotes.add(new Emoticon.Builder(Emoticon.Type.EMOJI, "👨‍👩‍👧").build());
+        emotes.add(new Emoticon.Builder(Emoticon.Type.EMOJI, "🇩🇪").build());
+        emotes.add(new Emoticon.Builder(Emoticon.Type.EMOJI, "x").setRegex("x+").build());
+        EmoticonIndex index = new EmoticonIndex(emotes);
+
+        // Same as regex if nothing overlaps
+        String[] texts = new String[]{
+            "❤︎ ❤️ abc❤",
+            "🔥🔥 👍 👨 a👩b 🇩🇪",
+            "xx 🔥",
+            "️❤"
+        };
+        for (String text : texts) {
+            assertEquals(text, findRegex(emotes, text, e -> true), findIndex(index, text, e -> true));
+        }
+
+        // Longest match (reported in order of the emotes, like other matches)
+        assertEquals(Arrays.asList("EMOJI/❤️‍🔥/0-4", "EMOJI/👍🏽/6-9"),
+                findIndex(index, "❤️‍🔥 👍🏽", e -> true));
+        assertEquals(Arrays.asList("EMOJI/❤/0-0", "EMOJI/❤️‍🔥/3-6"),
+                findIndex(index, "❤‍ ❤‍🔥", e -> true));
+        assertEquals(Arrays.asList("EMOJI/👨/8-9", "EMOJI/👨‍👩‍👧/0-7"),
+                findIndex(index, "👨‍👩‍👧👨", e -> true));
+        // Incomplete sequence
+        assertEquals(Arrays.asList("EMOJI/👨/2-3", "EMOJI/👩/0-1", "EMOJI/👩/5-6"),
+                findIndex(index, "👩👨‍👩", e -> true));
+        // Text style selector is included in the match
+        assertEquals(Arrays.asList("EMOJI/👍🏽/0-4"),
+                findIndex(index, "👍🏽︎", e -> true));
+
+        // Filtered longer match
+        assertEquals(Arrays.asList("EMOJI/❤/0-1", "EMOJI/🔥/3-4"),
+                findIndex(index, "❤️‍🔥", e -> !e.code.equals("❤️‍🔥")));
+    }
+
+    /**
+     * Each Emoji of the actual set should be found as a whole.
+     */
+    @Test
+    public void testEmojiSet() {
+        Set<Emoticon> emotes = EmojiUtil.makeEmoticons("twemoji");
+        EmoticonIndex index = new EmoticonIndex(emotes);
+        for (Emoticon emote : emotes) {
+            String text = "a " + emote.code + " b";
+            List<String> result = new ArrayList<>();
+            index.find(text, e -> true, (e, start, end) -> {
+                result.add(e.code + "/" + start + "-" + end);
+            });
+            assertEquals(emote.code, 1, result.size());
+            String match = result.get(0);
+            // Different Emoji may only differ in variation selectors
+            assertEquals(emote.code, strip(emote.code) + "/2-" + (emote.code.length() + 1),
+                    strip(match));
+        }
+    }
+
+    private static String strip(String code) {
+        return code.replaceAll("[\uFE0E\uFE0F]", "");
+    }
+
+    private static List<String> findIndex(EmoticonIndex index, String text,
+            java.util.function.Predicate<Emoticon> filter) {
+        List<String> result = new ArrayList<>();
+        index.find(text, filter, (emote, start, end) -> {
+            result.add(emote.type + "/" + emote.code + "/" + start + "-" + end);
+        });
+        return result;
+    }
+
+    /**
+     * The way emotes were found before the index.
+     */
+    private static List<String> findRegex(Set<Emoticon> emotes, String text,
+            java.util.function.Predicate<Emoticon> filter) {
+        List<String> result = new ArrayList<>();
+        for (Emoticon emote : emotes) {
+            if (!filter.test(emote)) {
+                continue;
+            }
+            Matcher m = emote.getMatcher(text);
+            while (m.find()) {
+                result.add(emote.type + "/" + emote.code + "/" + m.start() + "-" + (m.end() - 1));
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,88 @@
+
+package chatty.util.api;
+
+import chatty.gui.MainGui;
+import chatty.util.ImageCache.ImageRequest;
+import chatty.util.ImageCache.ImageResult;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class ImageLoaderTest {
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch done = new CountDownLatch(5);
+
+    @Test
+    public void test() throws InterruptedException {
+        ImageLoader loader = new ImageLoader(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+
+        // Occupies the only thread until the other requests are queued
+        loader.load(request("app_debug_16.png"), "test", 0, false, new TestListener("blocking", true) {
+
+            @Override
+            public boolean isWanted() {
+                try {
+                    blocked.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException ex) {
+                    // Just continue
+                }
+                return true;
+            }
+        });
+        loader.load(request("app_help_16.png"), "test", 0, true, new TestListener("low", true));
+        loader.load(request("app_live_16.png"), "test", 0, false, new TestListener("high", true));
+        loader.load(request("app_live_16.png"), "test", 0, true, new TestListener("high2", true));
+        loader.load(request("app_debug_64.png"), "test", 0, false, new TestListener("unwanted", false));
+        blocked.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals("[loaded blocking, loaded high, loaded high2, cancelled unwanted, loaded low]", events.toString());
+        assertEquals(0, loader.getQueueSize());
+    }
+
+    private static ImageRequest request(String file) {
+        return new ImageRequest(MainGui.class.getResource(file));
+    }
+
+    private class TestListener implements ImageLoader.Listener {
+
+        private final String name;
+        private final boolean wanted;
+
+        TestListener(String name, boolean wanted) {
+            this.name = name;
+            this.wanted = wanted;
+        }
+
+        @Override
+        public boolean isWanted() {
+            return wanted;
+        }
+
+        @Override
+        public void loaded(ImageRequest request, ImageResult result) {
+            assertTrue(result.isValidImage());
+            events.add("loaded " + name);
+            done.countDown();
+        }
+
+        @Override
+        public void cancelled() {
+            events.add("cancelled " + name);
+            done.countDown();
+        }
+
+    }
+
+}
@@ -0,0 +1,92 @@
+
+package chatty.util.api.queue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Performs requests against a local HTTP server.
+ *
+ * @author tduva
+ */
+public class QueuedApiTest {
+
+    @Test
+    public void testPooled() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<>());
+        server.createContext("/helix/users", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            String query = exchange.getRequestURI().getQuery();
+            byte[] response = ("{\"user\":\""+query+"\",\"token\":\""+exchange.getRequestHeaders().getFirst("Authorization")+"\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Ratelimit-Remaining", "700");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        });
+        server.createContext("/helix/missing", exchange -> {
+            byte[] response = "{\"error\":\"Not Found\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(404, response.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(response);
+            }
+        });
+        server.start();
+        PooledRequestEngine engine = new PooledRequestEngine();
+        try {
+            String base = "http://127.0.0.1:"+server.getAddress().getPort();
+            QueuedApi api = new QueuedApi(engine);
+
+            int count = 20;
+            CountDownLatch done = new CountDownLatch(count + 1);
+            Map<String, ResultListener.Result> results = new ConcurrentHashMap<>();
+            for (int i = 0; i < count; i++) {
+                String id = "id="+i;
+                api.add(base+"/helix/users?"+id, "GET", "abc", r -> {
+                    results.put(id, r);
+                    done.countDown();
+                });
+            }
+            api.add(base+"/helix/missing", "GET", null, r -> {
+                results.put("missing", r);
+                done.countDown();
+            });
+            assertTrue(done.await(20, TimeUnit.SECONDS));
+
+            for (int i = 0; i < count; i++) {
+                ResultListener.Result r = results.get("id="+i);
+                assertEquals(200, r.responseCode);
+                assertEquals("{\"user\":\"id="+i+"\",\"token\":\"Bearer abc\"}", r.text);
+            }
+            ResultListener.Result missing = results.get("missing");
+            assertEquals(404, missing.responseCode);
+            assertNull(missing.text);
+            assertEquals("{\"error\":\"Not Found\"}", missing.errorText);
+
+            // Connections are reused
+            assertTrue(clientPorts.size() < count);
+
+            RequestStats stats = api.getRequestStats();
+            assertEquals(count, stats.getCount("GET "+base+"/helix/users"));
+            assertEquals(0, stats.getErrors("GET "+base+"/helix/users"));
+            assertEquals(1, stats.getErrors("GET "+base+"/helix/missing"));
+        }
+        finally {
+            engine.close();
+            server.stop(0);
+        }
+    }
+
+}
@@ -57,6 +57,62 @@ public class UsericonManagerTest {
         testThirdParty(m, usernames, userids, user, true, true, false, true);
     }
     
+    @Test
+    public void testTwitchBadges() {
+        Settings settings = new Settings(null, null);
+        settings.addBoolean("ffzModIcon", false);
+        settings.addBoolean("customUsericonsEnabled", false);
+        settings.addList("customUsericons", new ArrayList<>(), Setting.LIST);
+        UsericonManager m = new UsericonManager(settings);
+        String url = MainGui.class.getResource("star.png").toString();
+        Usericon global = UsericonFactory.createTwitchBadge("subscriber", "0", url, url, null, "Global", null, null);
+        Usericon channel = UsericonFactory.createTwitchBadge("subscriber", "0", url, url, "#test", "Channel", null, null);
+        Usericon moderator = UsericonFactory.createTwitchBadge("moderator", "1", url, url, null, "Mod", null, null);
+        List<Usericon> icons = new ArrayList<>();
+        icons.add(global);
+        icons.add(moderator);
+        m.addDefaultIcons(icons);
+        
+        User user = new User("user", Room.createRegular("#test"));
+        User user2 = new User("user2", Room.createRegular("#test"));
+        User other = new User("user", Room.createRegular("#other"));
+        IrcBadges badges = IrcBadges.parse("moderator/1,subscriber/0");
+        
+        assertBadges(m.getBadges(badges, user, null, false, null, -1), moderator, global);
+        // Again, possibly cached
+        assertBadges(m.getBadges(badges, user2, null, false, null, -1), moderator, global);
+        
+        // Adding icons should update the result
+        icons.clear();
+        icons.add(channel);
+        m.addDefaultIcons(icons);
+        assertBadges(m.getBadges(badges, user, null, false, null, -1), moderator, channel);
+        assertBadges(m.getBadges(badges, user2, null, false, null, -1), moderator, channel);
+        assertBadges(m.getBadges(badges, other, null, false, null, -1), moderator, global);
+        
+        // Returned list can be modified without affecting later results
+        m.getBadges(badges, user, null, false, null, -1).clear();
+        assertBadges(m.getBadges(badges, user, null, false, null, -1), moderator, channel);
+        
+        // Icons restricted to a user
+        Set<String> usernames = new HashSet<>();
+        usernames.add("user");
+        Usericon restricted = UsericonFactory.createThirdParty("moderator", "1", url, url, "Title", null, null, usernames, null, "");
+        List<Usericon> thirdParty = new ArrayList<>();
+        thirdParty.add(restricted);
+        m.setThirdPartyIcons(thirdParty);
+        assertTrue(m.getBadges(badges, user, null, false, null, -1).contains(restricted));
+        assertFalse(m.getBadges(badges, user2, null, false, null, -1).contains(restricted));
+        assertTrue(m.getBadges(badges, user, null, false, null, -1).contains(restricted));
+    }
+    
+    private static void assertBadges(List<Usericon> actual, Usericon... expected) {
+        assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertSame(expected[i], actual.get(i));
+        }
+    }
+    
     private void testThirdParty(UsericonManager m, Set<String> usernames, Set<String> userids, User user, boolean... results) {
         List<Usericon> thirdParty = setThirdParty(m, usernames, userids);
         List<Usericon> badges = m.getBadges(IrcBadges.parse(null), user, null, false, null, -1);
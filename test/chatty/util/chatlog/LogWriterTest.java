@@ -0,0 +1,89 @@
+package chatty.util.chatlog;
+
+import chatty.util.chatlog.LogWriter.LogItem;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.Stream;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class LogWriterTest {
+    
+    @Test
+    public void testBatch() throws Exception {
+        testWrite(0, 500);
+    }
+    
+    @Test
+    public void testDelayedFlush() throws Exception {
+        testWrite(60*1000, 3);
+    }
+    
+    private void testWrite(long flushDelay, int flushLines) throws Exception {
+        Path path = Files.createTempDirectory("chatty-logwriter-test");
+        try {
+            testWrite(path, flushDelay, flushLines);
+        }
+        finally {
+            try (Stream<Path> files = Files.list(path)) {
+                files.forEach(file -> file.toFile().delete());
+            }
+            Files.delete(path);
+        }
+    }
+    
+    private void testWrite(Path path, long flushDelay, int flushLines) throws Exception {
+        BlockingQueue<LogItem> queue = new LinkedBlockingQueue<>();
+        // Add items before starting, so they are handled in one batch
+        for (int i = 0; i < 10; i++) {
+            queue.add(new LogItem("#a", "a"+i));
+            queue.add(new LogItem("#b", "b"+i));
+        }
+        queue.add(new LogItem(null, "all"));
+        queue.add(new LogItem("#b", null));
+        queue.add(new LogItem("#a", "last"));
+        Thread thread = new Thread(new LogWriter(queue, path, "never", false, false, flushDelay, flushLines));
+        thread.start();
+        queue.add(new LogItem("#a", "later"));
+        queue.add(new LogItem(null, null));
+        thread.join(10000);
+        assertFalse(thread.isAlive());
+        
+        List<String> expectedA = new ArrayList<>();
+        List<String> expectedB = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            expectedA.add("a"+i);
+            expectedB.add("b"+i);
+        }
+        expectedA.add("all");
+        expectedB.add("all");
+        expectedA.add("last");
+        expectedA.add("later");
+        assertEquals(expectedA, readLog(path.resolve("#a.log")));
+        assertEquals(expectedB, readLog(path.resolve("#b.log")));
+    }
+    
+    /**
+     * Read the lines of a log file, without the log started/closed lines.
+     */
+    private static List<String> readLog(Path file) throws IOException {
+        List<String> result = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.startsWith("# Log ") && !line.equals("-")) {
+                result.add(line);
+            }
+        }
+        return result;
+    }
+    
+}
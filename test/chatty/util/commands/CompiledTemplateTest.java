@@ -0,0 +1,69 @@
+
+package chatty.util.commands;
+
+import chatty.Room;
+import chatty.User;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class CompiledTemplateTest {
+
+    private static final String[] NAMES = new String[]{"msg", "action", "timestamp"};
+
+    @Test
+    public void testSameResult() {
+        String[] templates = new String[]{
+            "",
+            "abc",
+            "$if(timestamp,$(timestamp) )<$(full-nick2)>$if(action,*) $(msg)",
+            "$(timestamp) $(nick): $(msg)",
+            "[$(user-channel)|$(user-stream)] $(display-nick2)/$(custom-nick)/$(special-nick)",
+            "$$(action)$(msg)",
+            "$if(action,/me ,say )$(msg)",
+            "$$if(action,/me )$(msg)",
+            "$if(custom-nick,[$(custom-nick)],$if(special-nick,[$(display-nick)]))",
+            "$(unknown)$(args)$(_abc)$(my-nick)$(streamtitle)|",
+            "$(twitch-badges) $(twitch-badge-info) $(user-id)",
+            "$if(msg,$$(action))",
+        };
+        User user = new User("username", "User Name", Room.createRegular("#channel"));
+        User user2 = new User("username", "UserName", Room.EMPTY);
+        user2.setCustomNick("custom");
+        for (String template : templates) {
+            CustomCommand command = CustomCommand.parse(template);
+            CompiledTemplate compiled = CompiledTemplate.compile(command, NAMES);
+            assertNotNull(template, compiled);
+            for (User u : new User[]{user, user2}) {
+                test(command, compiled, u, "Hello World", false, "[12:00] ");
+                test(command, compiled, u, "Hello World", true, "");
+                test(command, compiled, u, "", true, null);
+            }
+        }
+    }
+
+    @Test
+    public void testNotCompiled() {
+        assertNull(CompiledTemplate.compile(CustomCommand.parse("$(1)"), NAMES));
+        assertNull(CompiledTemplate.compile(CustomCommand.parse("$upper(msg)"), NAMES));
+        assertNull(CompiledTemplate.compile(CustomCommand.parse("$if(msg,$lower(msg))"), NAMES));
+        assertNull(CompiledTemplate.compile(CustomCommand.parse("$(abc"), NAMES));
+    }
+
+    private static void test(CustomCommand command, CompiledTemplate compiled,
+            User user, String msg, boolean action, String timestamp) {
+        Parameters p = Parameters.create("");
+        p.putObject("user", user);
+        p.put("msg", msg);
+        if (action) {
+            p.put("action", "true");
+        }
+        p.put("timestamp", timestamp);
+        assertEquals(command.getRaw(), command.replace(p),
+                compiled.replace(user, msg, action ? "true" : null, timestamp));
+    }
+
+}
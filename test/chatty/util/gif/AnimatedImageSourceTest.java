@@ -0,0 +1,113 @@
+package chatty.util.gif;
+
+import java.awt.Dimension;
+import java.awt.image.ColorModel;
+import java.awt.image.ImageConsumer;
+import java.util.Hashtable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class AnimatedImageSourceTest {
+    
+    @Test
+    public void testRestartAfterError() throws InterruptedException {
+        AtomicInteger delayCalls = new AtomicInteger();
+        CountDownLatch failed = new CountDownLatch(1);
+        CountDownLatch restarted = new CountDownLatch(1);
+        AnimatedImageSource source = new AnimatedImageSource(new TestImage() {
+            
+            @Override
+            public int getDelay(int frame) {
+                if (delayCalls.incrementAndGet() == 1) {
+                    failed.countDown();
+                    throw new RuntimeException("Test");
+                }
+                restarted.countDown();
+                return 10;
+            }
+        });
+        source.addConsumer(new TestConsumer());
+        assertTrue(failed.await(10, TimeUnit.SECONDS));
+        
+        // The failed update should have stopped it, so it can start again
+        long end = System.currentTimeMillis() + 10000;
+        while (restarted.getCount() > 0 && System.currentTimeMillis() < end) {
+            source.addConsumer(new TestConsumer());
+            restarted.await(20, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(0, restarted.getCount());
+    }
+    
+    private static class TestImage implements AnimatedImage {
+
+        @Override
+        public void getFrame(int frame, int[] pixels) throws Exception {
+        }
+
+        @Override
+        public int getFrameCount() {
+            return 2;
+        }
+
+        @Override
+        public int getDelay(int frame) {
+            return 10;
+        }
+
+        @Override
+        public Dimension getSize() {
+            return new Dimension(1, 1);
+        }
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public int getPreferredPauseFrame() {
+            return 0;
+        }
+        
+    }
+    
+    private static class TestConsumer implements ImageConsumer {
+
+        @Override
+        public void setDimensions(int width, int height) {
+        }
+
+        @Override
+        public void setProperties(Hashtable<?, ?> props) {
+        }
+
+        @Override
+        public void setColorModel(ColorModel model) {
+        }
+
+        @Override
+        public void setHints(int hintflags) {
+        }
+
+        @Override
+        public void setPixels(int x, int y, int w, int h, ColorModel model, byte[] pixels, int off, int scansize) {
+        }
+
+        @Override
+        public void setPixels(int x, int y, int w, int h, ColorModel model, int[] pixels, int off, int scansize) {
+        }
+
+        @Override
+        public void imageComplete(int status) {
+        }
+        
+    }
+    
+}
@@ -0,0 +1,90 @@
+
+package chatty.util.gif;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class AnimationSchedulerTest {
+    
+    @Test
+    public void testRunAndStop() throws InterruptedException {
+        AnimationScheduler scheduler = AnimationScheduler.get();
+        int tasks = 200;
+        CountDownLatch done = new CountDownLatch(tasks);
+        AtomicInteger runs = new AtomicInteger();
+        for (int i = 0; i < tasks; i++) {
+            int delay = 5 + i % 20;
+            scheduler.add(new AnimationScheduler.Task() {
+                
+                private int count;
+                
+                @Override
+                public long run() {
+                    runs.incrementAndGet();
+                    if (++count == 5) {
+                        done.countDown();
+                        return -1;
+                    }
+                    return delay;
+                }
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(tasks * 5, runs.get());
+    }
+    
+    @Test
+    public void testRunAllNow() throws InterruptedException {
+        AnimationScheduler scheduler = AnimationScheduler.get();
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(2);
+        scheduler.add(() -> {
+            first.countDown();
+            second.countDown();
+            // Would take very long without runAllNow()
+            return second.getCount() == 0 ? -1 : 100000;
+        });
+        assertTrue(first.await(10, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        scheduler.runAllNow();
+        assertTrue(second.await(10, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    public void testAddWhileRunning() throws InterruptedException {
+        AnimationScheduler scheduler = AnimationScheduler.get();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        AnimationScheduler.Task task = () -> {
+            if (runs.incrementAndGet() == 1) {
+                running.countDown();
+                try {
+                    proceed.await();
+                }
+                catch (InterruptedException ex) {
+                    // Continue
+                }
+            }
+            return -1;
+        };
+        scheduler.add(task);
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+        // Added while running, but the task is about to stop
+        scheduler.add(task);
+        proceed.countDown();
+        long start = System.currentTimeMillis();
+        while (runs.get() < 2 && System.currentTimeMillis() - start < 10000) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, runs.get());
+    }
+    
+}
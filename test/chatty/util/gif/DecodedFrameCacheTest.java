@@ -0,0 +1,88 @@
+
+package chatty.util.gif;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class DecodedFrameCacheTest {
+    
+    @After
+    public void reset() {
+        DecodedFrameCache.setMaxSize(32 * 1024 * 1024);
+        DecodedFrameCache.clear();
+    }
+    
+    private static ListAnimatedImageFrame makeFrame(int width, int height, int seed) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, 0xFF000000 | (x * 31 + y * 17 + seed * 101));
+            }
+        }
+        return new ListAnimatedImageFrame(image, 50);
+    }
+    
+    @Test
+    public void testCachedPixels() throws IOException {
+        DecodedFrameCache.clear();
+        ListAnimatedImageFrame frame = makeFrame(20, 10, 1);
+        
+        int[] first = new int[200];
+        long misses = DecodedFrameCache.getMisses();
+        frame.getImage(first);
+        assertEquals(misses + 1, DecodedFrameCache.getMisses());
+        assertEquals(0xFF000000 | (5 * 31 + 3 * 17 + 101), first[3 * 20 + 5]);
+        
+        int[] second = new int[200];
+        long hits = DecodedFrameCache.getHits();
+        frame.getImage(second);
+        assertEquals(hits + 1, DecodedFrameCache.getHits());
+        assertEquals(Arrays.toString(first), Arrays.toString(second));
+        
+        // Modifying the result doesn't affect the cache
+        second[0] = 0;
+        int[] third = new int[200];
+        frame.getImage(third);
+        assertEquals(Arrays.toString(first), Arrays.toString(third));
+    }
+    
+    @Test
+    public void testMaxSize() throws IOException {
+        DecodedFrameCache.clear();
+        // Room for about 5 frames of 10x10 (plus overhead)
+        DecodedFrameCache.setMaxSize(5 * (400 + 64) + 10);
+        ListAnimatedImageFrame[] frames = new ListAnimatedImageFrame[10];
+        int[] pixels = new int[100];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = makeFrame(10, 10, i);
+            frames[i].getImage(pixels);
+        }
+        assertEquals(5 * (400 + 64), DecodedFrameCache.getSize());
+        
+        // Most recent ones are still cached
+        long hits = DecodedFrameCache.getHits();
+        frames[9].getImage(pixels);
+        frames[5].getImage(pixels);
+        assertEquals(hits + 2, DecodedFrameCache.getHits());
+        
+        // Oldest one was removed
+        long misses = DecodedFrameCache.getMisses();
+        frames[0].getImage(pixels);
+        assertEquals(misses + 1, DecodedFrameCache.getMisses());
+        
+        // Disabled
+        DecodedFrameCache.setMaxSize(0);
+        assertEquals(0, DecodedFrameCache.getSize());
+        frames[1].getImage(pixels);
+        assertEquals(0, DecodedFrameCache.getSize());
+    }
+    
+}
@@ -0,0 +1,161 @@
+
+package chatty.util.irc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ *
+ * @author tduva
+ */
+public class IrcLineReaderTest {
+
+    private static final String[] INPUTS = new String[]{
+        "",
+        "abc",
+        "abc\r\n",
+        "PING\r\nPONG\r\n",
+        "a\rb\nc\r\n\r\n",
+        "\r\r\n\n\r\n",
+        "@badges=;emotes= :a!a@a.tmi.twitch.tv PRIVMSG #test :Kappa 𠜎 äöü ❤️\r\nincomplete",
+        "line1\r\nline2\r",
+    };
+
+    @Test
+    public void testLines() throws IOException {
+        for (String input : INPUTS) {
+            List<String> expected = readOld(input);
+            assertEquals(input, expected, readNew(new ByteArrayInputStream(bytes(input)), 4096));
+            // Small buffer and chunks, so lines and characters are split up
+            assertEquals(input, expected, readNew(new ChunkedInputStream(bytes(input), 1, false), 2));
+            assertEquals(input, expected, readNew(new ChunkedInputStream(bytes(input), 3, false), 5));
+        }
+    }
+
+    @Test
+    public void testTimeout() throws IOException {
+        for (String input : INPUTS) {
+            List<String> expected = readOld(input);
+            InputStream in = new ChunkedInputStream(bytes(input), 2, true);
+            IrcLineReader reader = new IrcLineReader(in, 3);
+            List<String> result = new ArrayList<>();
+            while (true) {
+                try {
+                    String line = reader.readLine();
+                    if (line == null) {
+                        break;
+                    }
+                    result.add(line);
+                }
+                catch (SocketTimeoutException ex) {
+                    // Continue reading
+                }
+            }
+            assertEquals(input, expected, result);
+        }
+    }
+
+    @Test
+    public void testLongLine() throws IOException {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            b.append("Kappa ");
+        }
+        String input = b+"\r\nabc\r\n";
+        assertEquals(readOld(input), readNew(new ByteArrayInputStream(bytes(input)), 100));
+    }
+
+    private static byte[] bytes(String input) {
+        return input.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readNew(InputStream in, int bufferSize) throws IOException {
+        IrcLineReader reader = new IrcLineReader(in, bufferSize);
+        List<String> result = new ArrayList<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            result.add(line);
+        }
+        return result;
+    }
+
+    /**
+     * The way Connection used to read lines.
+     */
+    private static List<String> readOld(String input) throws IOException {
+        Reader in = new InputStreamReader(new ByteArrayInputStream(bytes(input)), StandardCharsets.UTF_8);
+        List<String> result = new ArrayList<>();
+        StringBuilder b = new StringBuilder();
+        boolean previousWasCR = false;
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\r') {
+                previousWasCR = true;
+            }
+            else if (c == '\n') {
+                if (previousWasCR) {
+                    result.add(b.toString());
+                    b.setLength(0);
+                    previousWasCR = false;
+                }
+            }
+            else {
+                b.append((char) c);
+                previousWasCR = false;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns at most the given number of bytes per read, optionally throwing
+     * a timeout exception before every read that returns data.
+     */
+    private static class ChunkedInputStream extends InputStream {
+
+        private final byte[] data;
+        private final int chunkSize;
+        private final boolean timeouts;
+        private int pos;
+        private boolean timedOut;
+
+        ChunkedInputStream(byte[] data, int chunkSize, boolean timeouts) {
+            this.data = data;
+            this.chunkSize = chunkSize;
+            this.timeouts = timeouts;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (pos >= data.length) {
+                return -1;
+            }
+            if (timeouts && !timedOut) {
+                timedOut = true;
+                throw new SocketTimeoutException();
+            }
+            timedOut = false;
+            int count = Math.min(Math.min(len, chunkSize), data.length - pos);
+            System.arraycopy(data, pos, b, off, count);
+            pos += count;
+            return count;
+        }
+
+    }
+
+}
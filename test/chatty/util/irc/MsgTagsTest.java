@@ -65,6 +65,30 @@ public class MsgTagsTest {
         assertEquals(tags1, tags1Reparsed);
     }
     
+    @Test
+    public void testParse() {
+        // Empty entries, empty key, duplicate key (last one is used)
+        MsgTags tags1 = MsgTags.parse(";a=1;;b;=c;a=2;d=;e=x\\sy\\:z\\\\;");
+        assertEquals(MsgTags.create("a", "2", "b", null, "", "c", "d", "", "e", "x y;z\\"), tags1);
+        assertEquals("2", tags1.get("a"));
+        assertEquals(null, tags1.get("b"));
+        assertTrue(tags1.containsKey("b"));
+        assertFalse(tags1.containsKey("f"));
+        assertEquals("x y;z\\", tags1.get("e"));
+        assertEquals(5, tags1.keys().size());
+        
+        // Range of a String
+        String line = "@id=abc;room-id=123 :a!a@a.tmi.twitch.tv PRIVMSG #a :b";
+        MsgTags tags2 = MsgTags.parse(line, 1, line.indexOf(' '));
+        assertEquals(MsgTags.create("id", "abc", "room-id", "123"), tags2);
+        assertEquals("123", tags2.get("room-id"));
+        assertEquals(null, tags2.get("room-id 123"));
+        assertEquals(tags2, ParsedMsg.parse(line).getTags());
+        
+        MsgTags tags3 = MsgTags.parse(line, 1, 1);
+        assertTrue(tags3.isEmpty());
+    }
+    
     @Test
     public void testMerge() {
         MsgTags tags1 = MsgTags.create("a", "1", "b", "2");